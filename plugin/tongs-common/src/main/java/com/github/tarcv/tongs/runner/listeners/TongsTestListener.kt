@@ -11,11 +11,11 @@
 package com.github.tarcv.tongs.runner.listeners
 
 import com.github.tarcv.tongs.api.result.TestCaseRunResult
-import com.github.tarcv.tongs.api.run.TestCaseRunRule
+import com.github.tarcv.tongs.api.run.BatchableTestCaseRunRule
 import com.github.tarcv.tongs.api.run.TestCaseRunRuleAfterArguments
 import com.github.tarcv.tongs.api.run.ResultStatus
 
-abstract class TongsTestListener: TestCaseRunRule {
+abstract class TongsTestListener: BatchableTestCaseRunRule {
     abstract fun onTestStarted()
     abstract fun onTestSuccessful()
     abstract fun onTestSkipped(skipResult: TestCaseRunResult)
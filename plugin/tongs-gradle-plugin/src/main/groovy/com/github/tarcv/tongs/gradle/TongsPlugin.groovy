@@ -95,6 +95,17 @@ class TongsPlugin implements Plugin<Project> {
                 retryPerTestCaseQuota = config.retryPerTestCaseQuota
                 isCoverageEnabled = config.isCoverageEnabled
                 poolingStrategy = config.poolingStrategy
+                testCaseOrder = config.testCaseOrder
+                testCaseBatchSize = config.testCaseBatchSize
+                deviceSetupConcurrency = config.deviceSetupConcurrency
+                forceReinstall = config.forceReinstall
+                compactLogcat = config.compactLogcat
+                processScopedLogcat = config.processScopedLogcat
+                screenshotFrameCount = config.screenshotFrameCount
+                screenshotMaxSize = config.screenshotMaxSize
+                mergedCoverageOnly = config.mergedCoverageOnly
+                artifactPullBatchSize = config.artifactPullBatchSize
+                speculativeExecution = config.speculativeExecution
                 ignoreFailures = config.ignoreFailures
                 excludedAnnotation = config.excludedAnnotation
                 tongsIntegrationTestRunType =
@@ -109,6 +120,15 @@ class TongsPlugin implements Plugin<Project> {
                 }
                 output = new File(outputBase, variant.name)
 
+                String historyDir = config.historyDir
+                File historyBase
+                if (historyDir) {
+                    historyBase = new File(historyDir)
+                } else {
+                    historyBase = new File(project.buildDir, "tongs-history")
+                }
+                historyDirectory = new File(historyBase, variant.name)
+
                 if (config.tongsIntegrationTestRunType != STUB_PARALLEL_TESTRUN) {
                     dependsOn(((InstallableVariant) testedVariant).installProvider, ((InstallableVariant) variant).installProvider)
                 }
@@ -15,6 +15,7 @@ package com.github.tarcv.tongs.gradle
 
 import com.github.tarcv.tongs.Configuration
 import com.github.tarcv.tongs.PoolingStrategy
+import com.github.tarcv.tongs.TestCaseOrder
 import com.github.tarcv.tongs.Tongs
 import com.github.tarcv.tongs.api.TongsConfiguration
 import org.gradle.api.DefaultTask
@@ -44,6 +45,9 @@ class TongsRunTask extends DefaultTask implements VerificationTask {
     @OutputDirectory
     File output
 
+    /** Directory with data collected from previous runs. */
+    File historyDirectory
+
     String applicationPackage
 
     String instrumentationPackage
@@ -75,6 +79,28 @@ class TongsRunTask extends DefaultTask implements VerificationTask {
 
     PoolingStrategy poolingStrategy
 
+    TestCaseOrder testCaseOrder
+
+    int testCaseBatchSize
+
+    int deviceSetupConcurrency
+
+    boolean forceReinstall
+
+    boolean compactLogcat
+
+    boolean processScopedLogcat
+
+    int screenshotFrameCount
+
+    int screenshotMaxSize
+
+    boolean mergedCoverageOnly
+
+    int artifactPullBatchSize
+
+    boolean speculativeExecution
+
     String excludedAnnotation
 
     TongsConfiguration.TongsIntegrationTestRunType tongsIntegrationTestRunType
@@ -91,6 +117,7 @@ class TongsRunTask extends DefaultTask implements VerificationTask {
                 .withInstrumentationApk(null)
                 .withInstrumentationPackage(instrumentationPackage)
                 .withOutput(output)
+                .withHistoryDirectory(historyDirectory)
                 .withTitle(title)
                 .withSubtitle(subtitle)
                 .withTestPackage(testPackage)
@@ -105,6 +132,17 @@ class TongsRunTask extends DefaultTask implements VerificationTask {
                 .withRetryPerTestCaseQuota(retryPerTestCaseQuota)
                 .withCoverageEnabled(isCoverageEnabled)
                 .withPoolingStrategy(poolingStrategy)
+                .withTestCaseOrder(testCaseOrder)
+                .withTestCaseBatchSize(testCaseBatchSize)
+                .withDeviceSetupConcurrency(deviceSetupConcurrency)
+                .withForceReinstall(forceReinstall)
+                .withCompactLogcat(compactLogcat)
+                .withProcessScopedLogcat(processScopedLogcat)
+                .withScreenshotFrameCount(screenshotFrameCount)
+                .withScreenshotMaxSize(screenshotMaxSize)
+                .withMergedCoverageOnly(mergedCoverageOnly)
+                .withArtifactPullBatchSize(artifactPullBatchSize)
+                .withSpeculativeExecution(speculativeExecution)
                 .withExcludedAnnotation(excludedAnnotation)
                 .withTongsIntegrationTestRunType(tongsIntegrationTestRunType)
                 .withDdmTermination(false) // AGP doesn't terminate DdmLib, neither should Tongs
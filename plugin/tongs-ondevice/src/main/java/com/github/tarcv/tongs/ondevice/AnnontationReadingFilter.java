@@ -10,6 +10,8 @@
 
 package com.github.tarcv.tongs.ondevice;
 
+import android.os.Bundle;
+import android.support.test.InstrumentationRegistry;
 import android.util.Log;
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -17,21 +19,110 @@ import org.json.JSONObject;
 import org.junit.runner.Description;
 import org.junit.runner.manipulation.Filter;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.lang.annotation.Annotation;
 import java.lang.annotation.Inherited;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.HashSet;
+import java.util.Set;
 
+/**
+ * Writes information about each test and suite to the file which name is passed in 'tongs_testInfoFile' argument,
+ * one JSON object per line.
+ *
+ * The file is put into the external files directory of the tested application, as the filter is executed
+ * in its process and that directory is writable without any permissions (and with scoped storage).
+ * The actual path depends on the user and the storage, so it is reported back in an instrumentation status
+ * with 'tongs_testInfoFile' key.
+ * When the file can't be written, tests are still listed, so Tongs can fall back to reading annotations
+ * from the instrumentation APK.
+ */
 public class AnnontationReadingFilter extends Filter {
-    private static final int MSG_LENGTH_LIMIT_WITHOUT_PREFIX = 4000 - 16;
-    private final AtomicInteger index = new AtomicInteger();
-    private final String objectId = String.format("%08x", System.identityHashCode(this));
+    private static final String TAG = "Tongs.TestInfo";
+    private static final String TEST_INFO_FILE_KEY = "tongs_testInfoFile";
+
+    /**
+     * Any code except 2 (in progress) ends a status, Tongs consumes this status before it gets to DdmLib
+     */
+    private static final int TEST_INFO_FILE_STATUS_CODE = 84;
+
+    /**
+     * Paths that were already opened in this process, the runner might create several instances of the filter
+     */
+    private static final Set<String> openedPaths = new HashSet<>();
+
+    private final String outputPath;
+    private final Writer output;
+
+    public AnnontationReadingFilter(Bundle bundle) {
+        this(resolveOutputPath(getRequiredOutputName(bundle)));
+        if (output != null) {
+            reportOutputPath(outputPath);
+        }
+    }
+
+    AnnontationReadingFilter(String outputPath) {
+        this.outputPath = outputPath;
+        output = outputPath == null ? null : openOutput(outputPath);
+    }
+
+    private static String getRequiredOutputName(Bundle bundle) {
+        String outputName = bundle.getString(TEST_INFO_FILE_KEY);
+        if (outputName == null) {
+            throw new IllegalArgumentException("tongs_testInfoFile argument is required");
+        }
+        return outputName;
+    }
+
+    private static String resolveOutputPath(String outputName) {
+        File directory = InstrumentationRegistry.getTargetContext().getExternalFilesDir(null);
+        if (directory == null) {
+            Log.w(TAG, "External storage is not available, information about tests will not be written");
+            return null;
+        }
+        return new File(directory, outputName).getPath();
+    }
+
+    private static void reportOutputPath(String outputPath) {
+        Bundle status = new Bundle();
+        status.putString(TEST_INFO_FILE_KEY, outputPath);
+        InstrumentationRegistry.getInstrumentation().sendStatus(TEST_INFO_FILE_STATUS_CODE, status);
+    }
+
+    private static Writer openOutput(String outputPath) {
+        File outputFile = new File(outputPath);
+        try {
+            File parent = outputFile.getParentFile();
+            if (parent != null) {
+                //noinspection ResultOfMethodCallIgnored
+                parent.mkdirs();
+            }
+
+            // Infos left from previous runs are dropped, but other instances in this process append to the file
+            boolean append;
+            synchronized (openedPaths) {
+                append = !openedPaths.add(outputFile.getAbsolutePath());
+            }
+            return new OutputStreamWriter(new FileOutputStream(outputFile, append), "UTF-8");
+        } catch (IOException | SecurityException e) {
+            Log.w(TAG, "Failed to open " + outputPath + ", information about tests will not be written", e);
+            return null;
+        }
+    }
 
     @Override
     public boolean shouldRun(Description description) {
+        if (output == null) {
+            return true;
+        }
+
         final JSONObject info = new JSONObject();
         final JSONArray annotationsInfo = new JSONArray();
 
@@ -63,14 +154,14 @@ public class AnnontationReadingFilter extends Filter {
                 info.put("annotations", annotationsInfo);
             }
 
-            String message = info.toString() + ",";
-            int messageLength = message.length();
-            for (int i = 0; i < messageLength; i += MSG_LENGTH_LIMIT_WITHOUT_PREFIX) {
-                String linePrefix = objectId + "-" + String.format("%08x", index.getAndIncrement()) + ":";
-                int endIndex = Math.min(i + MSG_LENGTH_LIMIT_WITHOUT_PREFIX, messageLength);
-                Log.i("Tongs.TestInfo", linePrefix + message.substring(i, endIndex));
+            // JSONObject escapes line breaks inside strings, so each object takes exactly one line
+            String line = info.toString() + "\n";
+            synchronized (output) {
+                // Flushed right away, as there is no callback for the end of the run
+                output.write(line);
+                output.flush();
             }
-        } catch (JSONException e) {
+        } catch (JSONException | IOException e) {
             throw new RuntimeException(e);
         }
 
@@ -20,14 +20,34 @@ import org.junit.runner.Description;
 import org.junit.runner.manipulation.Filter;
 
 import java.io.UnsupportedEncodingException;
+import java.util.HashSet;
+import java.util.Set;
 
 public class ClassMethodFilter extends Filter {
-    private final String expectedClassName;
-    private final String expectedMethodName;
+    /**
+     * Expected tests as 'class#method' strings
+     */
+    private final Set<String> expectedTests = new HashSet<>();
 
     public ClassMethodFilter(Bundle bundle) {
-        this.expectedClassName = decode(bundle.getString("tongs_filterClass"));
-        this.expectedMethodName = decode(bundle.getString("tongs_filterMethod"));
+        this(bundle.getString("tongs_filterClass"), bundle.getString("tongs_filterMethod"), new Base64Decoder() {
+            @Override
+            public byte[] decode(String encoded) {
+                return Base64.decode(encoded, Base64.NO_WRAP);
+            }
+        });
+    }
+
+    ClassMethodFilter(String encodedClassList, String encodedMethodList, Base64Decoder decoder) {
+        // Several tests are passed as comma separated lists (commas are not used in encoded names)
+        String[] encodedClassNames = encodedClassList.split(",");
+        String[] encodedMethodNames = encodedMethodList.split(",");
+        if (encodedClassNames.length != encodedMethodNames.length) {
+            throw new IllegalArgumentException("Numbers of expected classes and methods do not match");
+        }
+        for (int i = 0; i < encodedClassNames.length; i++) {
+            expectedTests.add(decode(decoder, encodedClassNames[i]) + "#" + decode(decoder, encodedMethodNames[i]));
+        }
     }
 
     @Override
@@ -48,12 +68,11 @@ public class ClassMethodFilter extends Filter {
     private boolean checkTest(Description description) {
         String className = description.getClassName();
         String methodName = description.getMethodName();
-        return expectedClassName.equals(className)
-                    && expectedMethodName.equals(methodName);
+        return expectedTests.contains(className + "#" + methodName);
     }
 
-    private static  String decode(String encodedName) {
-        byte[] bytes = Base64.decode(encodedName.replaceAll("_", "="), Base64.NO_WRAP);
+    private static String decode(Base64Decoder decoder, String encodedName) {
+        byte[] bytes = decoder.decode(encodedName.replaceAll("_", "="));
         try {
             return new String(bytes, "utf-8");
         } catch (UnsupportedEncodingException e) {
@@ -65,4 +84,11 @@ public class ClassMethodFilter extends Filter {
     public String describe() {
         return null;
     }
+
+    /**
+     * android.util.Base64 is not available in local unit tests, so it is hidden behind this interface
+     */
+    interface Base64Decoder {
+        byte[] decode(String encoded);
+    }
 }
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.github.tarcv.tongs.ondevice;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.Description;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AnnontationReadingFilterTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testTestsAreListedWhenOutputIsNotWritable() throws Exception {
+        // A regular file as the parent can't be written even by root, unlike a read-only directory
+        File notADirectory = temporaryFolder.newFile("read-only");
+        File outputFile = new File(notADirectory, "test-info.jsonl");
+
+        AnnontationReadingFilter filter = new AnnontationReadingFilter(outputFile.getPath());
+
+        Description suite = Description.createSuiteDescription("com.example.ClassTest");
+        Description test = Description.createTestDescription("com.example.ClassTest", "test");
+        suite.addChild(test);
+        assertTrue(filter.shouldRun(suite));
+        assertTrue(filter.shouldRun(test));
+        assertFalse(outputFile.exists());
+    }
+
+    @Test
+    public void testInfosLeftFromPreviousRunsAreDropped() throws Exception {
+        File outputFile = temporaryFolder.newFile("test-info.jsonl");
+        Files.write(outputFile.toPath(), "stale\n".getBytes(StandardCharsets.UTF_8));
+
+        // The runner might create several instances of the filter, all of them write to the same file
+        Description test = Description.createTestDescription(AnnontationReadingFilterTest.class, "test");
+        new AnnontationReadingFilter(outputFile.getPath()).shouldRun(test);
+        new AnnontationReadingFilter(outputFile.getPath()).shouldRun(test);
+
+        List<String> lines = Files.readAllLines(outputFile.toPath(), StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        assertFalse(lines.contains("stale"));
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.github.tarcv.tongs.ondevice;
+
+import org.junit.Test;
+import org.junit.runner.Description;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ClassMethodFilterTest {
+    private static final ClassMethodFilter.Base64Decoder DECODER = new ClassMethodFilter.Base64Decoder() {
+        @Override
+        public byte[] decode(String encoded) {
+            return Base64.getDecoder().decode(encoded);
+        }
+    };
+
+    @Test
+    public void testBatchOfEncodedNamesIsDecoded() {
+        String[] classes = {"com.example.FirstTest", "com.example.Outer$Inner", "com.example.ParameterizedTest"};
+        String[] methods = {"test", "testÜnicode", "test[a, b]"};
+
+        ClassMethodFilter filter = new ClassMethodFilter(
+                encodeList(classes),
+                encodeList(methods),
+                DECODER
+        );
+
+        Description suite = Description.createSuiteDescription("com.example.Suite");
+        for (int i = 0; i < classes.length; i++) {
+            Description test = Description.createTestDescription(classes[i], methods[i]);
+            suite.addChild(test);
+            assertTrue(filter.shouldRun(test));
+        }
+        assertTrue(filter.shouldRun(suite));
+        assertFalse(filter.shouldRun(Description.createTestDescription(classes[0], methods[1])));
+        assertFalse(filter.shouldRun(Description.createTestDescription("com.example.ParameterizedTest", "test[a")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMismatchingListsAreRejected() {
+        new ClassMethodFilter(
+                encodeList(new String[]{"com.example.FirstTest", "com.example.SecondTest"}),
+                encodeList(new String[]{"test"}),
+                DECODER
+        );
+    }
+
+    /**
+     * Encodes names the same way the runner does
+     */
+    private static String encodeList(String[] names) {
+        StringBuilder builder = new StringBuilder();
+        for (String name : names) {
+            if (builder.length() > 0) {
+                builder.append(',');
+            }
+            builder.append(Base64.getEncoder()
+                    .encodeToString(name.getBytes(StandardCharsets.UTF_8))
+                    .replace("=", "_"));
+        }
+        return builder.toString();
+    }
+}
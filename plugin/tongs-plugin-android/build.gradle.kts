@@ -1,6 +1,7 @@
 plugins {
     `java-library`
     kotlin("jvm")
+    id("me.champeau.gradle.jmh")
 }
 
 java {
@@ -12,6 +13,8 @@ repositories {
     mavenCentral()
 }
 
+val versions: Map<String, String>
+    get() = rootProject.extra["versions"] as Map<String, String>
 val deps: Map<String, String>
     get() = rootProject.extra["deps"] as Map<String, String>
 dependencies {
@@ -29,6 +32,7 @@ dependencies {
     }
     implementation(deps.getValue("gson"))
     implementation(deps.getValue("guava"))
+    implementation(deps.getValue("jacocoCore"))
     implementation(deps.getValue("jsr305"))
     implementation(deps.getValue("slf4j"))
     implementation("com.madgag:animated-gif-lib:1.2") // TODO: move GIF creation back to plugin api or runner
@@ -39,3 +43,8 @@ dependencies {
     testImplementation(deps.getValue("hamcrest"))
     testImplementation(deps.getValue("junitParams"))
 }
+
+jmh {
+    jmhVersion = versions.getValue("jmh")
+    duplicateClassesStrategy = DuplicatesStrategy.EXCLUDE
+}
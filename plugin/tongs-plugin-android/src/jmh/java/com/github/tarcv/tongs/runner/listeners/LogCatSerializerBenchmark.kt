@@ -0,0 +1,119 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.runner.listeners
+
+import com.android.ddmlib.Log
+import com.android.ddmlib.logcat.LogCatHeader
+import com.android.ddmlib.logcat.LogCatMessage
+import com.android.ddmlib.logcat.LogCatTimestamp
+import com.android.ddmlib.testrunner.TestIdentifier
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Level
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import org.openjdk.jmh.infra.Blackhole
+import java.util.AbstractList
+import java.util.concurrent.TimeUnit
+import java.util.regex.Pattern
+
+/**
+ * Measures how long it takes to take the messages of one test from a 1M-line log with [LogCatSerializer],
+ * compared to the previous implementation that matched both patterns against every message
+ * and copied matching messages into a new list.
+ *
+ * Run with `./gradlew :tongs-plugin-android:jmh`
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+open class LogCatSerializerBenchmark {
+    private val test = TestIdentifier(CLASS_NAME, TEST_NAME)
+
+    private lateinit var logs: List<LogCatMessage>
+
+    @Setup(Level.Trial)
+    fun setUpTrial() {
+        logs = GeneratedLog()
+    }
+
+    @Benchmark
+    fun slice(blackhole: Blackhole) {
+        val writer = LogCatWriter { logCatMessages ->
+            logCatMessages.forEach { blackhole.consume(it) }
+        }
+        LogCatSerializer(test, writer).serializeLogs(logs)
+    }
+
+    @Benchmark
+    fun matchEveryMessage(blackhole: Blackhole) {
+        val startPattern = Pattern.compile(createPattern("started"))
+        val endPattern = Pattern.compile(createPattern("finished"))
+
+        var isWriting = false
+        val filteredLogCatMessages = ArrayList<LogCatMessage>()
+        logs.forEach { logCatMessage ->
+            if (startPattern.matcher(logCatMessage.message).find()) {
+                isWriting = true
+            }
+            if (isWriting) {
+                filteredLogCatMessages.add(logCatMessage)
+            }
+            if (endPattern.matcher(logCatMessage.message).find()) {
+                isWriting = false
+            }
+        }
+        filteredLogCatMessages.forEach { blackhole.consume(it) }
+    }
+
+    private fun createPattern(action: String) = String.format("%s:\\s+\\Q%s\\E\\(\\Q%s\\E\\)",
+            action, test.testName, test.className)
+
+    /**
+     * Log with test markers at fixed positions, messages of which are created on access to avoid using a lot of memory
+     */
+    private class GeneratedLog : AbstractList<LogCatMessage>() {
+        private val appHeader = LogCatHeader(Log.LogLevel.DEBUG, 1234, 4321, "com.test.waffles", "WaffleView", TIMESTAMP)
+        private val runnerHeader = LogCatHeader(Log.LogLevel.INFO, 1234, 4321, "com.test.waffles", "TestRunner", TIMESTAMP)
+
+        override fun get(index: Int): LogCatMessage {
+            return when (index) {
+                TEST_START -> LogCatMessage(runnerHeader, "started: $TEST_NAME($CLASS_NAME)")
+                TEST_END -> LogCatMessage(runnerHeader, "finished: $TEST_NAME($CLASS_NAME)")
+                else -> LogCatMessage(appHeader, "Measured waffle #$index in 16ms, layout is done")
+            }
+        }
+
+        override val size: Int
+            get() = LOG_SIZE
+    }
+
+    companion object {
+        private const val LOG_SIZE = 1_000_000
+        private const val TEST_START = 400_000
+        private const val TEST_END = 600_000
+        private const val CLASS_NAME = "com.test.waffles.WaffleTest"
+        private const val TEST_NAME = "testBadgersLikeWaffles"
+
+        private val TIMESTAMP = LogCatTimestamp.fromString("08-13 22:37:24.001")
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.device
+
+import com.android.ddmlib.IDevice
+import com.android.ddmlib.SyncService
+import com.github.tarcv.tongs.Utils
+import com.github.tarcv.tongs.model.AndroidDevice
+import com.github.tarcv.tongs.system.io.RemoteFileManager.removeRemotePath
+import com.github.tarcv.tongs.system.io.RemoteFileManager.removeRemotePaths
+import com.google.common.util.concurrent.ThreadFactoryBuilder
+import org.slf4j.LoggerFactory
+import java.io.File
+import java.lang.System.nanoTime
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.locks.ReentrantLock
+import javax.annotation.concurrent.GuardedBy
+import kotlin.concurrent.withLock
+
+/**
+ * Pulls and removes files on a device in the background, so the device can execute the next test case meanwhile.
+ *
+ * At most [concurrency] transfers run at the same time, the others wait in the queue.
+ * When [concurrency] is 0, transfers are executed right away in the calling thread.
+ *
+ * When [batchSize] is positive, files are left on the device until [batchSize] of them are pending
+ * (or until [flush] is called), and then they are transferred together in one sync session
+ * and removed with as few shell commands as possible.
+ */
+class ArtifactTransferQueue(
+        private val deviceInterface: IDevice,
+        concurrency: Int = DEFAULT_CONCURRENCY,
+        private val batchSize: Int = 0
+) {
+    private val executor: ThreadPoolExecutor? = if (concurrency > 0) {
+        ThreadPoolExecutor(concurrency, concurrency, 1, TimeUnit.SECONDS,
+                LinkedBlockingQueue(),
+                ThreadFactoryBuilder()
+                        .setNameFormat("ArtifactTransfer-${deviceInterface.serialNumber}-%d")
+                        .build()
+        ).apply {
+            allowCoreThreadTimeOut(true)
+        }
+    } else {
+        null
+    }
+
+    private val lock = ReentrantLock()
+    private val noPendingTransfers = lock.newCondition()
+
+    @GuardedBy("lock")
+    private var pendingCount = 0
+
+    @GuardedBy("lock")
+    private var pendingBatch = Batch()
+
+    /**
+     * Pulls [remotePath] to [localFile], and then removes [remotePath] from the device when [removeAfter] is true.
+     * [onPulled] is executed in the transfer thread after the file is successfully pulled
+     */
+    @JvmOverloads
+    fun pull(remotePath: String, localFile: File, removeAfter: Boolean, onPulled: Runnable? = null) {
+        if (batchSize > 0) {
+            addToBatch { it.pulls.add(BatchedPull(remotePath, localFile, removeAfter, onPulled)) }
+            return
+        }
+
+        submit("pull $remotePath") {
+            logger.trace("Started pulling file {} to {}", remotePath, localFile)
+            val startNanos = nanoTime()
+            localFile.parentFile.mkdirs()
+            deviceInterface.pullFile(remotePath, localFile.toString())
+
+            // A file that couldn't be pulled is kept on the device, so that it is not lost
+            if (removeAfter) {
+                removeRemotePath(deviceInterface, remotePath)
+            }
+            logger.trace("Pulling finished in {}ms {}", Utils.millisSinceNanoTime(startNanos), remotePath)
+            onPulled?.run()
+        }
+    }
+
+    fun remove(remotePath: String) {
+        if (batchSize > 0) {
+            addToBatch { it.removals.add(remotePath) }
+            return
+        }
+
+        submit("remove $remotePath") {
+            removeRemotePath(deviceInterface, remotePath)
+        }
+    }
+
+    /**
+     * Waits until all transfers queued before this call are finished
+     */
+    fun flush() {
+        submitBatch(lock.withLock { takeBatch() })
+        lock.withLock {
+            while (pendingCount > 0) {
+                noPendingTransfers.await()
+            }
+        }
+    }
+
+    /**
+     * Finishes all queued transfers and stops accepting new ones
+     */
+    fun shutdown() {
+        flush()
+        executor?.shutdown()
+    }
+
+    private fun addToBatch(adder: (Batch) -> Unit) {
+        val fullBatch = lock.withLock {
+            adder(pendingBatch)
+            if (pendingBatch.size >= batchSize) {
+                takeBatch()
+            } else {
+                null
+            }
+        }
+        submitBatch(fullBatch)
+    }
+
+    @GuardedBy("lock")
+    private fun takeBatch(): Batch? {
+        if (pendingBatch.size == 0) {
+            return null
+        }
+        return pendingBatch.also { pendingBatch = Batch() }
+    }
+
+    private fun submitBatch(batch: Batch?) {
+        if (batch == null) {
+            return
+        }
+        submit("transfer ${batch.size} files") {
+            transferBatch(batch)
+        }
+    }
+
+    private fun transferBatch(batch: Batch) {
+        logger.trace("Started transferring {} files from {}", batch.size, deviceInterface.serialNumber)
+        val startNanos = nanoTime()
+
+        val pulledFiles = ArrayList<BatchedPull>()
+        val failedPulls = ArrayList<BatchedPull>()
+        val syncService: SyncService? = try {
+            deviceInterface.syncService
+        } catch (e: Exception) {
+            logger.warn("Failed to open a sync session on ${deviceInterface.serialNumber}, pulling files one by one", e)
+            null
+        }
+        try {
+            batch.pulls.forEach {
+                try {
+                    it.localFile.parentFile.mkdirs()
+                    if (syncService != null) {
+                        syncService.pullFile(it.remotePath, it.localFile.toString(), SyncService.getNullProgressMonitor())
+                    } else {
+                        deviceInterface.pullFile(it.remotePath, it.localFile.toString())
+                    }
+                    pulledFiles.add(it)
+                } catch (e: Exception) {
+                    logger.warn("Failed to pull ${it.remotePath} on ${deviceInterface.serialNumber}", e)
+                    failedPulls.add(it)
+                }
+            }
+        } finally {
+            syncService?.close()
+        }
+
+        // A failure can break the whole sync session, so the failed files are retried one by one in fresh sessions
+        failedPulls.forEach {
+            try {
+                deviceInterface.pullFile(it.remotePath, it.localFile.toString())
+                pulledFiles.add(it)
+            } catch (e: Exception) {
+                logger.error("Failed to pull ${it.remotePath} on ${deviceInterface.serialNumber}," +
+                        " leaving it on the device", e)
+            }
+        }
+
+        // Files that couldn't be pulled are kept on the device, so that they are not lost
+        val removedPaths = pulledFiles
+                .filter { it.removeAfter }
+                .map { it.remotePath } + batch.removals
+        removeRemotePaths(deviceInterface, removedPaths)
+
+        logger.trace("Transferring finished in {}ms", Utils.millisSinceNanoTime(startNanos))
+        pulledFiles.forEach { it.onPulled?.run() }
+    }
+
+    private fun submit(description: String, transfer: () -> Unit) {
+        val action = Runnable {
+            try {
+                transfer()
+            } catch (e: Exception) {
+                logger.error("Failed to $description on ${deviceInterface.serialNumber}", e)
+            }
+        }
+
+        if (executor == null) {
+            action.run()
+            return
+        }
+
+        lock.withLock {
+            pendingCount++
+        }
+        try {
+            executor.execute {
+                try {
+                    action.run()
+                } finally {
+                    transferFinished()
+                }
+            }
+        } catch (e: Exception) {
+            transferFinished()
+            throw e
+        }
+    }
+
+    private fun transferFinished() {
+        lock.withLock {
+            pendingCount--
+            if (pendingCount == 0) {
+                noPendingTransfers.signalAll()
+            }
+        }
+    }
+
+    private class BatchedPull(
+            val remotePath: String,
+            val localFile: File,
+            val removeAfter: Boolean,
+            val onPulled: Runnable?
+    )
+
+    private class Batch {
+        val pulls = ArrayList<BatchedPull>()
+        val removals = ArrayList<String>()
+
+        val size: Int
+            get() = pulls.size + removals.size
+    }
+
+    companion object {
+        private const val DEFAULT_CONCURRENCY = 2
+
+        private val logger = LoggerFactory.getLogger(ArtifactTransferQueue::class.java)
+
+        /**
+         * @return the queue of [device], or a queue executing transfers right away when the device is not set up
+         */
+        @JvmStatic
+        fun of(device: AndroidDevice): ArtifactTransferQueue {
+            return device.artifactTransferQueue ?: ArtifactTransferQueue(device.deviceInterface, 0)
+        }
+    }
+}
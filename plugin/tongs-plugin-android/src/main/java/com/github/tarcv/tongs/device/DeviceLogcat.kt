@@ -0,0 +1,395 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.device
+
+import com.android.ddmlib.IDevice
+import com.android.ddmlib.Log
+import com.android.ddmlib.MultiLineReceiver
+import com.android.ddmlib.logcat.LogCatHeader
+import com.android.ddmlib.logcat.LogCatMessage
+import com.android.ddmlib.logcat.LogCatMessageParser
+import com.android.ddmlib.logcat.LogCatTimestamp
+import org.slf4j.LoggerFactory
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.ByteArrayOutputStream
+import java.io.Closeable
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.UncheckedIOException
+import java.nio.channels.Channels
+import java.nio.file.Files
+import java.util.Arrays
+import java.util.concurrent.TimeUnit
+import javax.annotation.concurrent.GuardedBy
+
+/**
+ * Single logcat stream of a device, shared by all tests executed on that device.
+ *
+ * Received messages are appended to [storageFile] instead of being kept in memory.
+ * Every message gets a sequence number, so each test can take its window of messages
+ * by remembering [position] at its start and end.
+ *
+ * [filterArguments] are added to the logcat command, so that filtered out messages are never transferred
+ * from the device.
+ */
+class DeviceLogcat(
+        private val deviceInterface: IDevice,
+        private val storageFile: File,
+        private val filterArguments: String = ""
+) {
+    @Volatile
+    private var isStopped = false
+
+    private val receiver = object : MultiLineReceiver() {
+        private val parser = LogCatMessageParser()
+
+        init {
+            setTrimLine(false)
+        }
+
+        override fun processNewLines(lines: Array<String>) {
+            appendMessages(parser.processLogLines(lines, deviceInterface))
+        }
+
+        override fun isCancelled(): Boolean = isStopped
+    }
+
+    private val lock = Any()
+
+    @GuardedBy("lock")
+    private val output = DataOutputStream(BufferedOutputStream(FileOutputStream(storageFile, true)))
+
+    @GuardedBy("lock")
+    private var isClosed = false
+
+    @GuardedBy("lock")
+    private var messageCount = 0L
+
+    @GuardedBy("lock")
+    private var writtenBytes = 0L
+
+    /**
+     * Offsets of every [INDEX_STEP]-th message in [storageFile]
+     */
+    @GuardedBy("lock")
+    private var offsetIndex = LongArray(1024)
+
+    /**
+     * Sequence number of the next message to be received
+     */
+    val position: Long
+        get() = synchronized(lock) {
+            messageCount
+        }
+
+    val isFiltered: Boolean
+        get() = filterArguments.isNotEmpty()
+
+    fun start() {
+        val command = "$LOGCAT_COMMAND $filterArguments".trim()
+        Thread({
+            try {
+                deviceInterface.executeShellCommand(command, receiver, 0, TimeUnit.MILLISECONDS)
+            } catch (e: Exception) {
+                if (!isStopped) {
+                    logger.warn("Stopped receiving logcat from ${deviceInterface.serialNumber}", e)
+                }
+            }
+        }, "CatLogger-" + deviceInterface.serialNumber).start()
+    }
+
+    fun stop() {
+        isStopped = true
+        synchronized(lock) {
+            isClosed = true
+            output.close()
+        }
+        storageFile.delete()
+    }
+
+    /**
+     * Writes messages the device still keeps in its log buffers since [since] to [output] as text,
+     * without applying [filterArguments]
+     */
+    fun dumpUnfiltered(since: LogCatTimestamp, output: File) {
+        output.bufferedWriter(Charsets.UTF_8).use { writer ->
+            val dumpReceiver = object : MultiLineReceiver() {
+                override fun processNewLines(lines: Array<String>) {
+                    lines.forEach {
+                        writer.write(it)
+                        writer.newLine()
+                    }
+                }
+
+                override fun isCancelled(): Boolean = false
+            }
+            deviceInterface.executeShellCommand("$LOGCAT_COMMAND -d -T '$since'", dumpReceiver)
+        }
+    }
+
+    /**
+     * @return messages with sequence numbers from [fromPosition] (inclusive) to [toPosition] (exclusive)
+     */
+    fun messagesBetween(fromPosition: Long, toPosition: Long): Window {
+        synchronized(lock) {
+            val from = fromPosition.coerceIn(0, messageCount)
+            val to = toPosition.coerceIn(from, messageCount)
+            return Window(from, to)
+        }
+    }
+
+    /**
+     * Messages stored for a range of positions. They are read from the disk each time the window is iterated.
+     *
+     * Iterators of a non-empty window keep the storage file open until they are exhausted,
+     * so iteration that might stop early should close them with [closeIfNeeded].
+     */
+    inner class Window internal constructor(
+            private val fromPosition: Long,
+            private val toPosition: Long
+    ) : Iterable<LogCatMessage> {
+        val size: Long
+            get() = toPosition - fromPosition
+
+        /**
+         * @return part of this window from [fromIndex] (inclusive) to [toIndex] (exclusive), without reading messages
+         */
+        fun slice(fromIndex: Long, toIndex: Long): Window {
+            require(fromIndex in 0..toIndex && toIndex <= size) {
+                "Slice $fromIndex..$toIndex is out of the window of $size messages"
+            }
+            return Window(fromPosition + fromIndex, fromPosition + toIndex)
+        }
+
+        /**
+         * @return the first message of this window, or null if it is empty
+         */
+        fun first(): LogCatMessage? {
+            val iterator = iterator()
+            try {
+                return if (iterator.hasNext()) iterator.next() else null
+            } finally {
+                closeIfNeeded(iterator)
+            }
+        }
+
+        override fun iterator(): Iterator<LogCatMessage> {
+            if (fromPosition == toPosition) {
+                return emptyList<LogCatMessage>().iterator()
+            }
+
+            val indexedPosition = fromPosition / INDEX_STEP
+            val startOffset = synchronized(lock) {
+                offsetIndex[indexedPosition.toInt()]
+            }
+            val skippedMessages = fromPosition - indexedPosition * INDEX_STEP
+            return MessageIterator(startOffset, skippedMessages, toPosition - fromPosition)
+        }
+    }
+
+    internal fun appendMessages(newMessages: List<LogCatMessage>) {
+        // Encode outside the lock, so that readers are not blocked by a large batch
+        val records = newMessages.map { encode(it) }
+        synchronized(lock) {
+            if (isClosed) {
+                return
+            }
+            try {
+                records.forEach { record ->
+                    if (messageCount % INDEX_STEP == 0L) {
+                        val indexPosition = (messageCount / INDEX_STEP).toInt()
+                        if (indexPosition == offsetIndex.size) {
+                            offsetIndex = Arrays.copyOf(offsetIndex, offsetIndex.size * 2)
+                        }
+                        offsetIndex[indexPosition] = writtenBytes
+                    }
+                    output.writeInt(record.size)
+                    output.write(record)
+                    writtenBytes += Integer.BYTES + record.size
+                    messageCount++
+                }
+
+                // Only flushed messages are visible to readers
+                output.flush()
+            } catch (e: IOException) {
+                logger.error("Failed to store logcat messages from ${deviceInterface.serialNumber}", e)
+            }
+        }
+    }
+
+    private inner class MessageIterator(
+            startOffset: Long,
+            skippedMessages: Long,
+            private var remainingMessages: Long
+    ) : Iterator<LogCatMessage>, Closeable {
+        private val input: DataInputStream = FileInputStream(storageFile).let { stream ->
+            stream.channel.position(startOffset)
+            DataInputStream(BufferedInputStream(Channels.newInputStream(stream.channel)))
+        }
+
+        init {
+            try {
+                for (i in 0 until skippedMessages) {
+                    val recordSize = input.readInt()
+                    input.skipFully(recordSize)
+                }
+            } catch (e: IOException) {
+                input.close()
+                throw UncheckedIOException(e)
+            }
+        }
+
+        override fun hasNext(): Boolean {
+            val hasNext = remainingMessages > 0
+            if (!hasNext) {
+                input.close()
+            }
+            return hasNext
+        }
+
+        override fun next(): LogCatMessage {
+            if (!hasNext()) {
+                throw NoSuchElementException()
+            }
+            try {
+                input.readInt() // record size
+                return decode(input)
+                        .also { remainingMessages-- }
+            } catch (e: IOException) {
+                input.close()
+                throw UncheckedIOException(e)
+            }
+        }
+
+        override fun close() {
+            input.close()
+        }
+    }
+
+    companion object {
+        private const val INDEX_STEP = 64
+        private const val LOGCAT_COMMAND = "logcat -v long"
+
+        private val logger = LoggerFactory.getLogger(DeviceLogcat::class.java)
+
+        /**
+         * Releases resources of [iterator] if it holds any, e.g. when iteration of a [Window] stopped early
+         */
+        @JvmStatic
+        fun closeIfNeeded(iterator: Iterator<*>) {
+            (iterator as? Closeable)?.close()
+        }
+
+        /**
+         * Calls [action] for each element and closes the iterator afterwards, even when [action] throws
+         */
+        @JvmStatic
+        inline fun <T> Iterable<T>.forEachClosing(action: (T) -> Unit) {
+            val iterator = iterator()
+            try {
+                iterator.forEach(action)
+            } finally {
+                closeIfNeeded(iterator)
+            }
+        }
+
+        /**
+         * Same as [com.google.common.collect.Iterables.concat], but closing an iterator of the result
+         * also closes the iterator of the current part
+         */
+        @JvmStatic
+        fun <T> concat(parts: List<Iterable<T>>): Iterable<T> = Iterable { ConcatenatedIterator(parts.iterator()) }
+
+        fun createStorageFile(deviceInterface: IDevice): File {
+            val safeSerial = deviceInterface.serialNumber.replace(Regex("[^A-Za-z0-9._-]"), "_")
+            return Files.createTempFile("tongs-logcat-$safeSerial-", ".bin").toFile()
+                    .apply { deleteOnExit() }
+        }
+
+        private fun encode(message: LogCatMessage): ByteArray {
+            val bytes = ByteArrayOutputStream(64 + message.message.length)
+            DataOutputStream(bytes).use { output ->
+                output.writeChar(message.logLevel.priorityLetter.toInt())
+                output.writeInt(message.pid)
+                output.writeInt(message.tid)
+                output.writeUTF(message.appName ?: "")
+                output.writeUTF(message.tag ?: "")
+                output.writeUTF(message.timestamp.toString())
+
+                // writeUTF is limited to 64KB
+                val messageBytes = message.message.toByteArray(Charsets.UTF_8)
+                output.writeInt(messageBytes.size)
+                output.write(messageBytes)
+            }
+            return bytes.toByteArray()
+        }
+
+        private fun decode(input: DataInputStream): LogCatMessage {
+            val logLevel = Log.LogLevel.getByLetter(input.readChar())
+            val pid = input.readInt()
+            val tid = input.readInt()
+            val appName = input.readUTF()
+            val tag = input.readUTF()
+            val timestamp = LogCatTimestamp.fromString(input.readUTF())
+            val messageBytes = ByteArray(input.readInt())
+            input.readFully(messageBytes)
+
+            val header = LogCatHeader(logLevel, pid, tid, appName, tag, timestamp)
+            return LogCatMessage(header, String(messageBytes, Charsets.UTF_8))
+        }
+
+        private fun DataInputStream.skipFully(count: Int) {
+            var remaining = count
+            while (remaining > 0) {
+                val skipped = skipBytes(remaining)
+                if (skipped <= 0) {
+                    throw IOException("Unexpected end of logcat storage")
+                }
+                remaining -= skipped
+            }
+        }
+    }
+}
+
+private class ConcatenatedIterator<T>(
+        private val parts: Iterator<Iterable<T>>
+) : Iterator<T>, Closeable {
+    private var current: Iterator<T> = emptyList<T>().iterator()
+
+    override fun hasNext(): Boolean {
+        while (!current.hasNext()) {
+            DeviceLogcat.closeIfNeeded(current)
+            if (!parts.hasNext()) {
+                return false
+            }
+            current = parts.next().iterator()
+        }
+        return true
+    }
+
+    override fun next(): T {
+        if (!hasNext()) {
+            throw NoSuchElementException()
+        }
+        return current.next()
+    }
+
+    override fun close() {
+        DeviceLogcat.closeIfNeeded(current)
+    }
+}
@@ -12,6 +12,7 @@ package com.github.tarcv.tongs.device
 
 import com.android.ddmlib.*
 import com.github.tarcv.tongs.api.devices.Diagnostics
+import com.github.tarcv.tongs.system.adb.CollectingShellOutputReceiver
 import org.slf4j.LoggerFactory
 import java.io.IOException
 
@@ -29,6 +30,58 @@ fun clearLogcat(device: IDevice) {
     }
 }
 
+/**
+ * Kills processes of [packages] on the device, e.g. to stop an instrumentation run that is no longer needed
+ */
+fun forceStop(device: IDevice, packages: Collection<String>) {
+    packages.distinct().forEach { packageName ->
+        try {
+            device.executeShellCommand("am force-stop $packageName", NullOutputReceiver())
+        } catch (e: Exception) {
+            logger.warn("Could not force-stop $packageName on device: " + device.serialNumber, e)
+        }
+    }
+}
+
+/**
+ * @return logcat arguments that keep only messages of processes running as [packages],
+ * or an empty string when logcat of the device can't filter them
+ */
+fun processScopedLogcatArguments(device: IDevice, packages: Collection<String>): String {
+    return try {
+        val help = CollectingShellOutputReceiver()
+                .also { device.executeShellCommand("logcat --help 2>&1", it) }
+                .output
+        if (!help.contains("--uid")) {
+            logger.warn("Logcat on {} can't filter messages by UID, so all messages are received", device.serialNumber)
+            return ""
+        }
+
+        // UIDs stay the same when processes are restarted, unlike PIDs
+        val uids = packages.map { packageName ->
+            uidOf(device, packageName)
+                    ?: throw IllegalStateException("Failed to get UID of $packageName")
+        }
+        "--uid=" + uids.distinct().joinToString(",")
+    } catch (e: Exception) {
+        logger.warn("Failed to set up logcat filtering on ${device.serialNumber}, so all messages are received", e)
+        ""
+    }
+}
+
+private fun uidOf(device: IDevice, packageName: String): Int? {
+    return CollectingShellOutputReceiver()
+            .also { device.executeShellCommand("pm list packages -U $packageName", it) }
+            .output
+            .lines()
+            .map { it.trim() }
+            .firstOrNull { it.startsWith("package:$packageName ") }
+            ?.substringAfter("uid:")
+            ?.substringBefore(',') // UIDs of other users might be listed too
+            ?.trim()
+            ?.toIntOrNull()
+}
+
 fun computeDiagnostics(deviceInterface: IDevice?, apiLevel: Int): Diagnostics {
     if (deviceInterface == null) {
         return Diagnostics.NONE
@@ -17,10 +17,13 @@ import com.android.ddmlib.IDevice;
 import com.github.tarcv.tongs.api.devices.Device;
 import com.github.tarcv.tongs.api.devices.Diagnostics;
 import com.github.tarcv.tongs.api.devices.DisplayGeometry;
+import com.github.tarcv.tongs.device.ArtifactTransferQueue;
+import com.github.tarcv.tongs.device.DeviceLogcat;
 import org.jetbrains.annotations.NotNull;
 
 import javax.annotation.Nullable;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.github.tarcv.tongs.device.DeviceUtilsKt.computeDiagnostics;
 import static com.google.common.base.Strings.isNullOrEmpty;
@@ -41,6 +44,8 @@ public class AndroidDevice extends Device {
 	private final DisplayGeometry geometry;
     private final Diagnostics diagnostics;
 	private final AtomicBoolean hasOnDeviceLibrary = new AtomicBoolean(true);
+	private final transient AtomicReference<DeviceLogcat> logcat = new AtomicReference<>();
+	private final transient AtomicReference<ArtifactTransferQueue> artifactTransferQueue = new AtomicReference<>();
 
 	@NotNull
 	@Override
@@ -113,6 +118,32 @@ public class AndroidDevice extends Device {
 		hasOnDeviceLibrary.set(newValue);
 	}
 
+	/**
+	 * @return logcat stream of this device, or null when the device is not set up
+	 */
+	@Nullable
+	public DeviceLogcat getLogcat() {
+		return logcat.get();
+	}
+
+	@Nullable
+	public DeviceLogcat setLogcat(@Nullable DeviceLogcat newValue) {
+		return logcat.getAndSet(newValue);
+	}
+
+	/**
+	 * @return queue for pulling files from this device in the background, or null when the device is not set up
+	 */
+	@Nullable
+	public ArtifactTransferQueue getArtifactTransferQueue() {
+		return artifactTransferQueue.get();
+	}
+
+	@Nullable
+	public ArtifactTransferQueue setArtifactTransferQueue(@Nullable ArtifactTransferQueue newValue) {
+		return artifactTransferQueue.getAndSet(newValue);
+	}
+
     public static class Builder {
         private String serial = "Unspecified serial";
         private String manufacturer = "Unspecified manufacturer";
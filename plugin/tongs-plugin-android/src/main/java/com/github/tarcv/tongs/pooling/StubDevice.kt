@@ -20,12 +20,8 @@ import java.io.File
 import java.io.FileWriter
 import java.io.IOException
 import java.lang.Thread.sleep
-import java.time.OffsetDateTime
-import java.time.ZoneOffset
-import java.time.format.DateTimeFormatter
 import java.util.concurrent.Future
 import java.util.concurrent.TimeUnit
-import javax.annotation.concurrent.GuardedBy
 
 class StubDevice(
         private val serial: String,
@@ -42,9 +38,6 @@ class StubDevice(
 
     private val deviceLogFile = File("${serial}_adb.log")
 
-    @GuardedBy("this")
-    private var logcatReceiver: IShellOutputReceiver? = null
-
     override fun startScreenRecorder(remoteFilePath: String, options: ScreenRecorderOptions, receiver: IShellOutputReceiver) {
         synchronized(this) {
             val optionsStr = "{dimen=${options.width}x${options.height}" +
@@ -83,11 +76,12 @@ class StubDevice(
 
         if (command.contains("am instrument")) {
             if (command.contains("-e log true")) {
-                executeCollectingRun()
+                sleep(TestAndroidTestRunnerFactory.testInfoLines.size.toLong())
             } else {
                 sleep(testCommandDelay)
             }
-        } else if (command.contains("logcat") && !command.contains("-c")) {
+        } else if (command.contains("logcat") && !command.contains("-c") && !command.contains("-d")
+                && !command.contains("--help")) {
             executeLogcatCollectionLoop(command, receiver, maxTimeToOutputResponseMillis)
         } else {
             val outputBytes = "<stub> <stub> <stub> <stub> <stub>".toByteArray()
@@ -101,10 +95,6 @@ class StubDevice(
             throw AssertionError("maxTimeToOutputResponse should be 0 for listen logcat command")
         }
 
-        synchronized(this) {
-            logcatReceiver = receiver
-        }
-
         var lastWarningTime = System.currentTimeMillis()
         while (!receiver.isCancelled) {
             sleep(300L) // 'logcat' only stops on Ctrl+C or when device is disconnected
@@ -115,31 +105,6 @@ class StubDevice(
         }
     }
 
-    private fun executeCollectingRun() {
-        synchronized(this) {
-            logcatReceiver?.run {
-                val timePrefix = DateTimeFormatter.ofPattern("MM-dd hh:mm:ss")
-                        .format(OffsetDateTime.now(ZoneOffset.UTC)) + "."
-                TestAndroidTestRunnerFactory.logcatLines
-                        .asSequence()
-                        .chunked(3)
-                        .mapIndexed { index, item ->
-                            item.map {
-                                it
-                                        .replace("LOGCAT_TIME", timePrefix + String.format("%03d", index))
-                                        .replace("LOGCAT_INDEX", String.format("%08x", index))
-                            }
-                        }
-                        .flatMap { it.asSequence() }
-                        .forEach {
-                            val bytes = ("$it\r\n").toByteArray()
-                            addOutput(bytes, 0, bytes.size)
-                        }
-            }
-        }
-        sleep(TestAndroidTestRunnerFactory.logcatLines.size.toLong())
-    }
-
     override fun getProperty(name: String): String {
         return when (name) {
             "ro.product.manufacturer" -> manufacturer
@@ -161,6 +126,12 @@ class StubDevice(
         }
 
         val writer = FileWriter(File(local))
+        if (remote.endsWith("/tongs-test-info.jsonl")) {
+            TestAndroidTestRunnerFactory.testInfoLines.forEach {
+                writer.write(it)
+                writer.write("\n")
+            }
+        }
         writer.flush()
         writer.close()
     }
@@ -232,6 +203,9 @@ class StubDevice(
 
     override fun getClientName(pid: Int): String = "client$pid"
 
+    // No sync session, so Tongs falls back to pulling files one by one with pullFile
+    override fun getSyncService(): SyncService? = null
+
     // Methods below this line are not used Tongs and therefore doesn't need to be stubbed
 
     override fun isOffline(): Boolean {
@@ -374,10 +348,6 @@ class StubDevice(
         TODO("not implemented")
     }
 
-    override fun getSyncService(): SyncService {
-        TODO("not implemented")
-    }
-
     override fun syncPackageToDevice(localFilePath: String?): String {
         TODO("not implemented")
     }
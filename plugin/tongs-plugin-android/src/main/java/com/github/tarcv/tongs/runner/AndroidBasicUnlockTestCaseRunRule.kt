@@ -14,7 +14,7 @@ package com.github.tarcv.tongs.runner
 
 import com.android.ddmlib.IDevice
 import com.android.ddmlib.NullOutputReceiver
-import com.github.tarcv.tongs.api.run.TestCaseRunRule
+import com.github.tarcv.tongs.api.run.BatchScopedTestCaseRunRule
 import com.github.tarcv.tongs.api.run.TestCaseRunRuleAfterArguments
 import com.github.tarcv.tongs.api.run.TestCaseRunRuleContext
 import com.github.tarcv.tongs.api.run.TestCaseRunRuleFactory
@@ -33,7 +33,7 @@ class AndroidBasicUnlockTestCaseRunRuleFactory : TestCaseRunRuleFactory<AndroidB
 
 class AndroidBasicUnlockTestCaseRunRule(
         device: AndroidDevice
-) : TestCaseRunRule {
+) : BatchScopedTestCaseRunRule {
     private val device: IDevice = device.deviceInterface
 
     override fun before() {
@@ -13,7 +13,7 @@
 package com.github.tarcv.tongs.runner
 
 import com.android.ddmlib.*
-import com.github.tarcv.tongs.api.run.TestCaseRunRule
+import com.github.tarcv.tongs.api.run.BatchScopedTestCaseRunRule
 import com.github.tarcv.tongs.api.run.TestCaseRunRuleAfterArguments
 import com.github.tarcv.tongs.api.run.TestCaseRunRuleContext
 import com.github.tarcv.tongs.api.run.TestCaseRunRuleFactory
@@ -37,11 +37,14 @@ class AndroidCleanupTestCaseRunRuleFactory : TestCaseRunRuleFactory<AndroidClean
     }
 }
 
+/**
+ * Clears app data before a test case. In a batch, data is cleared once before the whole batch
+ */
 class AndroidCleanupTestCaseRunRule(
         device: AndroidDevice,
         private val applicationPackage: String,
         private val testPackage: String
-) : TestCaseRunRule {
+) : BatchScopedTestCaseRunRule {
     private val logger = LoggerFactory.getLogger(AndroidInstrumentedTestRun::class.java)
     private val device: IDevice = device.deviceInterface
 
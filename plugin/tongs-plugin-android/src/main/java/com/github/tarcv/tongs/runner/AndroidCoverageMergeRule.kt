@@ -0,0 +1,70 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.runner
+
+import com.github.tarcv.tongs.api.TongsConfiguration
+import com.github.tarcv.tongs.api.devices.Pool
+import com.github.tarcv.tongs.api.run.PoolRunRule
+import com.github.tarcv.tongs.api.run.PoolRunRuleContext
+import com.github.tarcv.tongs.api.run.PoolRunRuleFactory
+import com.github.tarcv.tongs.api.run.RunRule
+import com.github.tarcv.tongs.api.run.RunRuleContext
+import com.github.tarcv.tongs.api.run.RunRuleFactory
+import com.github.tarcv.tongs.runner.listeners.CoverageAggregator
+
+class AndroidCoverageMergeRunRuleFactory : RunRuleFactory<AndroidCoverageMergeRunRule> {
+    override fun runRules(context: RunRuleContext): Array<out AndroidCoverageMergeRunRule> {
+        return if (context.configuration.isCoverageEnabled) {
+            arrayOf(AndroidCoverageMergeRunRule(context.configuration))
+        } else {
+            emptyArray()
+        }
+    }
+}
+
+class AndroidCoverageMergeRunRule(private val configuration: TongsConfiguration) : RunRule {
+    override fun before() {
+        CoverageAggregator.of(configuration)
+    }
+
+    override fun after() {
+        CoverageAggregator.finish(configuration)
+    }
+}
+
+class AndroidCoverageMergePoolRuleFactory : PoolRunRuleFactory<AndroidCoverageMergePoolRule> {
+    override fun poolRules(context: PoolRunRuleContext): Array<out AndroidCoverageMergePoolRule> {
+        return if (context.configuration.isCoverageEnabled) {
+            arrayOf(AndroidCoverageMergePoolRule(context.configuration, context.pool))
+        } else {
+            emptyArray()
+        }
+    }
+}
+
+/**
+ * Writes merged coverage of a pool. All coverage files of the pool are already pulled at this moment,
+ * as device rules wait for pending transfers
+ */
+class AndroidCoverageMergePoolRule(
+        private val configuration: TongsConfiguration,
+        private val pool: Pool
+) : PoolRunRule {
+    override fun before() {
+        // no op
+    }
+
+    override fun after() {
+        CoverageAggregator.of(configuration).finishPool(pool)
+    }
+}
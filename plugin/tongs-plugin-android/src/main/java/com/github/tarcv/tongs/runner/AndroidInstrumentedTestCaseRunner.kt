@@ -22,6 +22,7 @@ import com.github.tarcv.tongs.api.testcases.TestCase
 import com.github.tarcv.tongs.injector.runner.TestRunFactoryInjector
 import com.github.tarcv.tongs.model.AndroidDevice
 import com.github.tarcv.tongs.suite.ApkTestCase
+import com.github.tarcv.tongs.system.io.RemoteFileManager
 
 class AndroidInstrumentedTestCaseRunnerFactory: TestCaseRunnerFactory<AndroidInstrumentedTestCaseRunner> {
     override fun testCaseRunners(context: TestCaseRunnerContext): Array<out AndroidInstrumentedTestCaseRunner> {
@@ -29,7 +30,7 @@ class AndroidInstrumentedTestCaseRunnerFactory: TestCaseRunnerFactory<AndroidIns
     }
 }
 
-class AndroidInstrumentedTestCaseRunner(val context: TestCaseRunnerContext): TestCaseRunner {
+class AndroidInstrumentedTestCaseRunner(val context: TestCaseRunnerContext): BatchTestCaseRunner {
     override fun supports(device: Device, testCase: TestCase): Boolean {
         return device is AndroidDevice && testCase.typeTag == ApkTestCase::class.java
     }
@@ -43,6 +44,27 @@ class AndroidInstrumentedTestCaseRunner(val context: TestCaseRunnerContext): Tes
         return testRun.execute()
     }
 
+    override fun runBatch(arguments: List<TestCaseRunnerArguments>): List<RunTesult> {
+        // Coverage is collected per instrumentation run, so it requires running test cases one by one
+        if (arguments.size <= 1 || context.configuration.isCoverageEnabled) {
+            return arguments.map { run(it) }
+        }
+
+        val androidTestRunFactory = TestRunFactoryInjector.testRunFactory(context.configuration)
+        val device = context.device as AndroidDevice
+        val runContexts = arguments.map { AndroidRunContext(context, it) }
+        // Failed test cases are run again in isolation by Tongs, so that their rules are executed again too
+        return androidTestRunFactory.splitIntoBatches(runContexts, device)
+                .flatMap { batch ->
+                    if (batch.size == 1) {
+                        val runContext = batch.single()
+                        listOf(androidTestRunFactory.createTestRun(runContext, runContext.testCaseEvent, device,
+                                context.pool).execute())
+                    } else {
+                        androidTestRunFactory.createBatchTestRun(batch, device, context.pool).executeBatch()
+                    }
+                }
+    }
 }
 
 class AndroidRunContext(
@@ -63,4 +85,9 @@ class AndroidRunContext(
 
     val device: AndroidDevice
         get() = context.device as AndroidDevice
+
+    /**
+     * Device side file to which coverage of this test case attempt is written
+     */
+    val remoteCoverageFile: String by lazy { RemoteFileManager.remoteCoverageForTest() }
 }
\ No newline at end of file
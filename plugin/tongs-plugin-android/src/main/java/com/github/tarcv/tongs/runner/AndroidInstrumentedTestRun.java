@@ -18,9 +18,8 @@ import com.android.ddmlib.testrunner.ITestRunListener;
 import com.android.ddmlib.testrunner.RemoteAndroidTestRunner;
 import com.github.tarcv.tongs.api.result.TestCaseRunResult;
 import com.github.tarcv.tongs.api.run.TestCaseEvent;
-import com.github.tarcv.tongs.api.testcases.TestCase;
 import com.github.tarcv.tongs.runner.listeners.IResultProducer;
-import com.github.tarcv.tongs.runner.listeners.RunListenerAdapter;
+import com.github.tarcv.tongs.runner.listeners.RunBoundariesListener;
 import com.github.tarcv.tongs.system.io.RemoteFileManager;
 import com.google.common.base.Strings;
 import org.slf4j.Logger;
@@ -28,6 +27,7 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
@@ -44,21 +44,43 @@ public class AndroidInstrumentedTestRun {
 	private final TestRunParameters testRunParameters;
 	private final List<? extends ITestRunListener> testRunListeners;
 	private final IRemoteAndroidTestRunnerFactory remoteAndroidTestRunnerFactory;
-	private final IResultProducer resultProducer;
+	private final List<? extends IResultProducer> resultProducers;
 
 	public AndroidInstrumentedTestRun(String poolName,
                                       TestRunParameters testRunParameters,
                                       List<? extends ITestRunListener> testRunListeners,
                                       IResultProducer resultProducer,
                                       IRemoteAndroidTestRunnerFactory remoteAndroidTestRunnerFactory) {
+		this(poolName, testRunParameters, testRunListeners, Collections.singletonList(resultProducer),
+				remoteAndroidTestRunnerFactory);
+	}
+
+	/**
+	 * @param resultProducers producers of results for each test case of the run, in the same order as
+	 *                        {@link TestRunParameters#getTests()}
+	 */
+	public AndroidInstrumentedTestRun(String poolName,
+									  TestRunParameters testRunParameters,
+									  List<? extends ITestRunListener> testRunListeners,
+									  List<? extends IResultProducer> resultProducers,
+									  IRemoteAndroidTestRunnerFactory remoteAndroidTestRunnerFactory) {
         this.poolName = poolName;
 		this.testRunParameters = testRunParameters;
 		this.testRunListeners = testRunListeners;
-		this.resultProducer = resultProducer;
+		this.resultProducers = resultProducers;
 		this.remoteAndroidTestRunnerFactory = remoteAndroidTestRunnerFactory;
 	}
 
 	public TestCaseRunResult execute() {
+		return executeBatch().get(0);
+	}
+
+	/**
+	 * Executes all test cases of the run in one instrumentation run
+	 *
+	 * @return results of the test cases in the same order as {@link TestRunParameters#getTests()}
+	 */
+	public List<TestCaseRunResult> executeBatch() {
 		final String testPackage = testRunParameters.getTestPackage();
 		final IDevice device = testRunParameters.getDeviceInterface();
 
@@ -69,30 +91,41 @@ public class AndroidInstrumentedTestRun {
 		runner.setMaxtimeToOutputResponse(testRunParameters.getTestOutputTimeout());
 
 		// Custom filter is required to support Parameterized tests with default names
-		final TestCaseEvent test = testRunParameters.getTest();
+		final List<TestCaseEvent> tests = testRunParameters.getTests();
 		final String testClassName;
 		final String testMethodName;
 		final String specialFilter;
-		if (test != null) {
-			final TestCase testCase = test.getTestCase();
-			testClassName = test.getTestClass();
-			testMethodName = test.getTestMethod();
+		if (!tests.isEmpty()) {
+			if (tests.size() == 1) {
+				testClassName = tests.get(0).getTestClass();
+				testMethodName = tests.get(0).getTestMethod();
+			} else {
+				testClassName = "Batch of " + tests.size() + " tests";
+				testMethodName = "";
+			}
 			specialFilter = TESTCASE_FILTER;
 
 			if (testRunParameters.isWithOnDeviceLibrary()) {
-				String encodedClassName = remoteAndroidTestRunnerFactory.encodeTestName(testClassName);
-				String encodedMethodName = remoteAndroidTestRunnerFactory.encodeTestName(testMethodName);
-
-				remoteAndroidTestRunnerFactory.properlyAddInstrumentationArg(runner, "tongs_filterClass", encodedClassName);
-				remoteAndroidTestRunnerFactory.properlyAddInstrumentationArg(runner, "tongs_filterMethod", encodedMethodName);
+				String encodedClassNames = tests.stream()
+						.map(test -> remoteAndroidTestRunnerFactory.encodeTestName(test.getTestClass()))
+						.collect(Collectors.joining(","));
+				String encodedMethodNames = tests.stream()
+						.map(test -> remoteAndroidTestRunnerFactory.encodeTestName(test.getTestMethod()))
+						.collect(Collectors.joining(","));
+
+				remoteAndroidTestRunnerFactory.properlyAddInstrumentationArg(runner, "tongs_filterClass", encodedClassNames);
+				remoteAndroidTestRunnerFactory.properlyAddInstrumentationArg(runner, "tongs_filterMethod", encodedMethodNames);
 			} else {
-				remoteAndroidTestRunnerFactory.properlyAddInstrumentationArg(runner, "class",
-						testClassName + "#" + testMethodName);
+				String classArgument = tests.stream()
+						.map(test -> test.getTestClass() + "#" + test.getTestMethod())
+						.collect(Collectors.joining(","));
+				remoteAndroidTestRunnerFactory.properlyAddInstrumentationArg(runner, "class", classArgument);
 			}
 
-			if (testRunParameters.isCoverageEnabled()) {
+			// Coverage file is set per instrumentation run, so it is collected for single test runs only
+			if (testRunParameters.isCoverageEnabled() && tests.size() == 1) {
 				runner.setCoverage(true);
-				runner.addInstrumentationArg("coverageFile", RemoteFileManager.getCoverageFileName(testCase));
+				runner.addInstrumentationArg("coverageFile", testRunParameters.getCoverageFile());
 			}
 		} else {
 			testClassName = "Test case collection";
@@ -100,6 +133,9 @@ public class AndroidInstrumentedTestRun {
 			specialFilter = COLLECTING_RUN_FILTER;
 
 			runner.addBooleanArg("log", true);
+			if (testRunParameters.isWithOnDeviceLibrary()) {
+				runner.addInstrumentationArg("tongs_testInfoFile", RemoteFileManager.TEST_INFO_FILE_NAME);
+			}
 		}
 
 		addFilterAndCustomArgs(
@@ -116,8 +152,8 @@ public class AndroidInstrumentedTestRun {
 
 		try {
 			for (ITestRunListener testRunListener : testRunListeners) { // TODO: refactor this
-				if (testRunListener instanceof RunListenerAdapter) {
-					((RunListenerAdapter) testRunListener).onBeforeTestRunStarted();
+				if (testRunListener instanceof RunBoundariesListener) {
+					((RunBoundariesListener) testRunListener).onBeforeTestRunStarted();
 				}
 			}
 
@@ -129,13 +165,15 @@ public class AndroidInstrumentedTestRun {
 			throw new RuntimeException(format("Error while running test %s %s", testClassName, testMethodName), e);
 		} finally {
 			for (ITestRunListener testRunListener : testRunListeners) { // TODO: refactor this
-				if (testRunListener instanceof RunListenerAdapter) {
-					((RunListenerAdapter) testRunListener).onAfterTestRunEnded();
+				if (testRunListener instanceof RunBoundariesListener) {
+					((RunBoundariesListener) testRunListener).onAfterTestRunEnded();
 				}
 			}
 		}
 
-        return resultProducer.getResult();
+		return resultProducers.stream()
+				.map(IResultProducer::getResult)
+				.collect(Collectors.toList());
     }
 
 	private void addFilterAndCustomArgs(RemoteAndroidTestRunner runner, @Nullable String collectingRunFilter) {
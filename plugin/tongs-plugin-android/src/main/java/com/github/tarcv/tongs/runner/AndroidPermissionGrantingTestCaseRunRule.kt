@@ -42,9 +42,14 @@ class AndroidPermissionGrantingTestCaseRunRuleFactory : TestCaseRunRuleFactory<A
                             emptyList()
                         }
                     }
-            arrayOf(
-                    AndroidPermissionGrantingTestCaseRunRule(context.configuration, device.deviceInterface, permissionsToGrant)
-            )
+            if (permissionsToGrant.isEmpty()) {
+                // The rule would do nothing, and without it the test case can be batched with others
+                emptyArray()
+            } else {
+                arrayOf(
+                        AndroidPermissionGrantingTestCaseRunRule(context.configuration, device.deviceInterface, permissionsToGrant)
+                )
+            }
         } else {
             return emptyArray()
         }
@@ -14,12 +14,17 @@
 package com.github.tarcv.tongs.runner
 
 import com.android.ddmlib.DdmPreferences
+import com.github.tarcv.tongs.api.TongsConfiguration
 import com.github.tarcv.tongs.api.run.DeviceRunRule
 import com.github.tarcv.tongs.api.run.DeviceRunRuleContext
 import com.github.tarcv.tongs.api.run.DeviceRunRuleFactory
+import com.github.tarcv.tongs.device.ArtifactTransferQueue
+import com.github.tarcv.tongs.device.DeviceLogcat
 import com.github.tarcv.tongs.device.clearLogcat
+import com.github.tarcv.tongs.device.processScopedLogcatArguments
 import com.github.tarcv.tongs.injector.system.InstallerInjector.installer
 import com.github.tarcv.tongs.model.AndroidDevice
+import com.github.tarcv.tongs.runner.listeners.AnimationEncoder
 import com.github.tarcv.tongs.system.adb.PackageInstaller
 import com.github.tarcv.tongs.system.io.RemoteFileManager
 
@@ -28,7 +33,7 @@ class AndroidSetupDeviceRuleFactory : DeviceRunRuleFactory<AndroidSetupDeviceRul
         val device = context.device
         if (device is AndroidDevice) {
             return arrayOf(
-                    AndroidSetupDeviceRule(device, installer(context.configuration))
+                    AndroidSetupDeviceRule(device, installer(context.configuration), context.configuration)
             )
         } else {
             return emptyArray()
@@ -36,7 +41,11 @@ class AndroidSetupDeviceRuleFactory : DeviceRunRuleFactory<AndroidSetupDeviceRul
     }
 }
 
-class AndroidSetupDeviceRule(private val device: AndroidDevice, private val installer: PackageInstaller) : DeviceRunRule {
+class AndroidSetupDeviceRule(
+        private val device: AndroidDevice,
+        private val installer: PackageInstaller,
+        private val configuration: TongsConfiguration
+) : DeviceRunRule {
     override fun before() {
         DdmPreferences.setTimeOut(30000)
         installer.resetInstallation(device)
@@ -47,9 +56,30 @@ class AndroidSetupDeviceRule(private val device: AndroidDevice, private val inst
         RemoteFileManager.createRemoteDirectory(deviceInterface)
 
         clearLogcat(deviceInterface)
+
+        val filterArguments = if (configuration.isProcessScopedLogcatEnabled) {
+            processScopedLogcatArguments(deviceInterface,
+                    listOf(configuration.applicationPackage, configuration.instrumentationPackage))
+        } else {
+            ""
+        }
+
+        // The stream is shared by all tests on the device, so no messages are lost while a per-test stream starts
+        DeviceLogcat(deviceInterface, DeviceLogcat.createStorageFile(deviceInterface), filterArguments)
+                .also { it.start() }
+                .let { device.setLogcat(it) }
+                ?.stop()
+
+        device.setArtifactTransferQueue(
+                ArtifactTransferQueue(deviceInterface, batchSize = configuration.artifactPullBatchSize))
+                ?.shutdown()
     }
 
     override fun after() {
-        // no-op
+        device.setLogcat(null)?.stop()
+
+        // Reports are generated after all device rules are finished, so all artifacts are pulled or written by then
+        device.setArtifactTransferQueue(null)?.shutdown()
+        AnimationEncoder.awaitPendingEncodes(device.deviceInterface)
     }
 }
\ No newline at end of file
@@ -20,14 +20,25 @@ import com.github.tarcv.tongs.injector.runner.RemoteAndroidTestRunnerFactoryInje
 import com.github.tarcv.tongs.model.AndroidDevice;
 import com.github.tarcv.tongs.runner.listeners.*;
 import com.github.tarcv.tongs.suite.TestCollectingListener;
+import com.github.tarcv.tongs.system.io.RemoteFileManager;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
 
 public class AndroidTestRunFactory {
 
+    /**
+     * The rest of the shell command (package, runner, custom arguments) is expected to fit into the other half
+     */
+    private static final int MAX_BATCH_FILTER_LENGTH = RemoteFileManager.MAX_COMMAND_LENGTH / 2;
+
     private final TongsConfiguration configuration;
 
     public AndroidTestRunFactory(TongsConfiguration configuration) {
@@ -40,7 +51,8 @@ public class AndroidTestRunFactory {
         TestRunParameters testRunParameters = createTestParameters(testCase,
                 device,
                 configuration,
-                device.hasOnDeviceLibrary());
+                device.hasOnDeviceLibrary(),
+                testRunContext.getRemoteCoverageFile());
 
         IResultProducer resultProducer = createResultProducer(testRunContext);
         List<RunListener> testRunListeners = new ArrayList<>(resultProducer.requestListeners());
@@ -58,6 +70,110 @@ public class AndroidTestRunFactory {
         );
     }
 
+    /**
+     * Splits test cases into batches which filter arguments fit into one shell command.
+     * Test cases that can't be put into a batch are returned as single item batches. The order is kept.
+     */
+    public List<List<AndroidRunContext>> splitIntoBatches(List<AndroidRunContext> testRunContexts,
+                                                          AndroidDevice device) {
+        IRemoteAndroidTestRunnerFactory remoteAndroidTestRunnerFactory =
+                RemoteAndroidTestRunnerFactoryInjector.remoteAndroidTestRunnerFactory(configuration);
+        boolean withOnDeviceLib = device.hasOnDeviceLibrary();
+
+        return splitIntoBatches(
+                testRunContexts,
+                testRunContext -> batchFilterLength(
+                        testRunContext.getTestCaseEvent(), withOnDeviceLib, remoteAndroidTestRunnerFactory),
+                MAX_BATCH_FILTER_LENGTH
+        );
+    }
+
+    static <T> List<List<T>> splitIntoBatches(List<T> items, ToIntFunction<T> lengthOf, int maxLength) {
+        List<List<T>> batches = new ArrayList<>();
+        List<T> currentBatch = new ArrayList<>();
+        int currentLength = 0;
+        for (T item : items) {
+            int length = lengthOf.applyAsInt(item);
+            if (length > maxLength) {
+                if (!currentBatch.isEmpty()) {
+                    batches.add(currentBatch);
+                    currentBatch = new ArrayList<>();
+                    currentLength = 0;
+                }
+                batches.add(Collections.singletonList(item));
+                continue;
+            }
+
+            if (currentLength + length > maxLength) {
+                batches.add(currentBatch);
+                currentBatch = new ArrayList<>();
+                currentLength = 0;
+            }
+            currentBatch.add(item);
+            currentLength += length;
+        }
+        if (!currentBatch.isEmpty()) {
+            batches.add(currentBatch);
+        }
+        return batches;
+    }
+
+    /**
+     * @return number of characters a test case adds to filter arguments of a batch,
+     * or {@link Integer#MAX_VALUE} when the test case can't be batched
+     */
+    static int batchFilterLength(TestCaseEvent testCase,
+                                         boolean withOnDeviceLib,
+                                         IRemoteAndroidTestRunnerFactory remoteAndroidTestRunnerFactory) {
+        if (withOnDeviceLib) {
+            // Encoded names never contain commas
+            return remoteAndroidTestRunnerFactory.encodeTestName(testCase.getTestClass()).length()
+                    + remoteAndroidTestRunnerFactory.encodeTestName(testCase.getTestMethod()).length()
+                    + 2;
+        } else if (testCase.getTestClass().contains(",") || testCase.getTestMethod().contains(",")) {
+            // 'class' argument is a comma separated list, so such names would be split into garbage
+            return Integer.MAX_VALUE;
+        } else {
+            return testCase.getTestClass().length() + testCase.getTestMethod().length() + 2;
+        }
+    }
+
+    /**
+     * Creates a run that executes all given test cases in one instrumentation run
+     */
+    public AndroidInstrumentedTestRun createBatchTestRun(List<AndroidRunContext> testRunContexts,
+                                                         AndroidDevice device,
+                                                         Pool pool) {
+        List<TestCaseEvent> testCases = testRunContexts.stream()
+                .map(AndroidRunContext::getTestCaseEvent)
+                .collect(Collectors.toList());
+        TestRunParameters testRunParameters = createTestParameters(testCases,
+                device,
+                configuration,
+                device.hasOnDeviceLibrary(),
+                null);
+
+        List<IResultProducer> resultProducers = new ArrayList<>();
+        Map<TestIdentifier, RunListenerAdapter> testAdapters = new LinkedHashMap<>();
+        for (AndroidRunContext testRunContext : testRunContexts) {
+            TestCaseEvent testCase = testRunContext.getTestCaseEvent();
+            IResultProducer resultProducer = createResultProducer(testRunContext);
+            resultProducers.add(resultProducer);
+
+            TestIdentifier testIdentifier = new TestIdentifier(testCase.getTestClass(), testCase.getTestMethod());
+            testAdapters.put(testIdentifier,
+                    new RunListenerAdapter(testCase.toString(), testIdentifier, resultProducer.requestListeners()));
+        }
+
+        return new AndroidInstrumentedTestRun(
+                pool.getName(),
+                testRunParameters,
+                Collections.singletonList(new BatchRunListenerAdapter(testAdapters)),
+                resultProducers,
+                RemoteAndroidTestRunnerFactoryInjector.remoteAndroidTestRunnerFactory(configuration)
+        );
+    }
+
     @NotNull
     protected IResultProducer createResultProducer(AndroidRunContext testRunContext) {
         return new ResultProducer(testRunContext);
@@ -70,7 +186,8 @@ public class AndroidTestRunFactory {
         TestRunParameters testRunParameters = createTestParameters(null,
                 device,
                 configuration,
-                withOnDeviceLib);
+                withOnDeviceLib,
+                null);
 
         List<ITestRunListener> testRunListeners = new ArrayList<>();
         testRunListeners.add(testCollectingListener);
@@ -84,10 +201,15 @@ public class AndroidTestRunFactory {
         );
     }
 
-    private static TestRunParameters createTestParameters(TestCaseEvent testCase, AndroidDevice device, TongsConfiguration configuration, boolean withOnDeviceLib) {
+    private static TestRunParameters createTestParameters(TestCaseEvent testCase, AndroidDevice device, TongsConfiguration configuration, boolean withOnDeviceLib, @Nullable String coverageFile) {
+        List<TestCaseEvent> testCases = testCase == null ? Collections.emptyList() : Collections.singletonList(testCase);
+        return createTestParameters(testCases, device, configuration, withOnDeviceLib, coverageFile);
+    }
+
+    private static TestRunParameters createTestParameters(List<TestCaseEvent> testCases, AndroidDevice device, TongsConfiguration configuration, boolean withOnDeviceLib, @Nullable String coverageFile) {
         return TestRunParameters.Builder.testRunParameters()
                 .withDeviceInterface(device.getDeviceInterface())
-                .withTest(testCase)
+                .withTests(testCases)
                 .withTestPackage(configuration.getInstrumentationPackage())
                 .withApplicationPackage(configuration.getApplicationPackage())
                 .withTestRunner(configuration.getTestRunnerClass())
@@ -95,6 +217,7 @@ public class AndroidTestRunFactory {
                 .withTestOutputTimeout((int) configuration.getTestOutputTimeout())
                 .withOnDeviceLibrary(withOnDeviceLib)
                 .withCoverageEnabled(configuration.isCoverageEnabled())
+                .withCoverageFile(coverageFile)
                 .withExcludedAnnotation(configuration.getExcludedAnnotation())
                 .build();
     }
@@ -20,18 +20,89 @@ import com.google.gson.JsonObject
 import org.slf4j.LoggerFactory
 
 internal class JsonInfoDecorder {
-    internal fun decodeStructure(rawMessages: List<JsonObject>): List<TestInfo> {
-        class RawItem(
-                val uniqueId: Int?,
-                val semiUniqueId: Int?,
-                val readableName: String?,
-                var json: JsonObject? = null,
-                val parent: RawItem? = null
-        ) {
-            val children: ArrayList<RawItem> = ArrayList()
+    internal fun decodeStructure(rawMessages: Sequence<JsonObject>): List<TestInfo> {
+        val decoder = StructureDecoder()
+        return rawMessages
+                .mapNotNull { decoder.decode(it) }
+                .toList()
+    }
+
+    /**
+     * Links descriptions received from the 'ondevice' library into a tree one by one.
+     *
+     * A description is matched to the most recently announced child description having the same
+     * unique ID, semi-unique ID or readable name. Announced children are kept in hash indexes by each of these keys,
+     * so each description is decoded in constant time.
+     */
+    private inner class StructureDecoder {
+        private var nextSequenceNumber = 0L
+
+        private val unboundByUniqueId = HashMap<Int, ArrayList<RawItem>>()
+        private val unboundBySemiUniqueId = HashMap<Int, ArrayList<RawItem>>()
+        private val unboundByReadableName = HashMap<String, ArrayList<RawItem>>()
+
+        fun decode(message: JsonObject): TestInfo? {
+            val partialItem = RawItem(
+                    message.get("sId1")?.asIntOrNull,
+                    message.get("sId2")?.asIntOrNull,
+                    message.get("sName")?.asStringOrNull
+            )
+
+            val actualItem = listOfNotNull(
+                    lastUnbound(unboundByUniqueId, partialItem.uniqueId),
+                    lastUnbound(unboundBySemiUniqueId, partialItem.semiUniqueId),
+                    lastUnbound(unboundByReadableName, partialItem.readableName)
+            )
+                    .maxBy { it.sequenceNumber }
+                    ?.also { it.isBound = true }
+                    ?: partialItem
+
+            message.get("sChildren").asJsonArray
+                    .forEach { child ->
+                        val (uniqueId, semiUniqueId, readableName) =
+                                child.asString.split(childIdSeparator, limit = 3) // an ID might be negative
+                        val childItem = RawItem(uniqueId.toInt(), semiUniqueId.toInt(), readableName, actualItem)
+                        addUnbound(unboundByUniqueId, childItem.uniqueId, childItem)
+                        addUnbound(unboundBySemiUniqueId, childItem.semiUniqueId, childItem)
+                        addUnbound(unboundByReadableName, childItem.readableName, childItem)
+                    }
+
+            return if (message.has("testClass")) {
+                TestInfo(
+                        TestIdentifier(message.get("testClass").asString, message.get("testMethod").asString),
+                        message.get("testPackage").asString,
+                        buildPathFor(actualItem),
+                        deserializeAnnotations(message.get("annotations")?.asJsonArray)
+                )
+            } else {
+                null
+            }
+        }
+
+        private fun <K : Any> addUnbound(index: HashMap<K, ArrayList<RawItem>>, key: K?, item: RawItem) {
+            if (key != null) {
+                index.computeIfAbsent(key) { ArrayList(1) }.add(item)
+            }
         }
 
-        fun buildPathFor(item: RawItem): List<String> {
+        private fun <K : Any> lastUnbound(index: HashMap<K, ArrayList<RawItem>>, key: K?): RawItem? {
+            if (key == null) {
+                return null
+            }
+            val items = index[key] ?: return null
+
+            // Items bound through another index are removed lazily, so each item is removed at most once
+            while (items.isNotEmpty() && items.last().isBound) {
+                items.removeAt(items.lastIndex)
+            }
+            if (items.isEmpty()) {
+                index.remove(key)
+                return null
+            }
+            return items.last()
+        }
+
+        private fun buildPathFor(item: RawItem): List<String> {
             var parent: RawItem? = item
             val names = ArrayList<String>()
             while (parent != null) {
@@ -41,48 +112,15 @@ internal class JsonInfoDecorder {
             return names.reversed()
         }
 
-        val unboundItems = ArrayList<RawItem>()
-        return rawMessages
-                .mapNotNull {
-                    val partialItem = RawItem(
-                            it.get("sId1")?.asIntOrNull,
-                            it.get("sId2")?.asIntOrNull,
-                            it.get("sName")?.asStringOrNull
-                    )
-
-                    val unboundIndex = unboundItems.indexOfLast {unbound ->
-                        (partialItem.uniqueId?.equals(unbound.uniqueId) == true) ||
-                        (partialItem.semiUniqueId?.equals(unbound.semiUniqueId) == true) ||
-                        (partialItem.readableName?.equals(unbound.readableName) == true)
-                    }
-                    val actualItem = if (unboundIndex >= 0) {
-                        val item = unboundItems.removeAt(unboundIndex)
-                        item
-                    } else {
-                        partialItem
-                    }
-
-                    val children = it.get("sChildren").asJsonArray
-                            .map { child ->
-                                val (uniqueId, semiUniqueId, readableName) =
-                                        child.asString.split(Regex("(?<=\\d)-"), limit = 3) // an ID might be negative
-                                RawItem(uniqueId.toInt(), semiUniqueId.toInt(), readableName, null, actualItem)
-                            }
-                    unboundItems.addAll(children)
-
-                    actualItem.children.addAll(children)
-
-                    if (it.has("testClass")) {
-                        TestInfo(
-                                TestIdentifier(it.get("testClass").asString, it.get("testMethod").asString),
-                                it.get("testPackage").asString,
-                                buildPathFor(actualItem),
-                                deserializeAnnotations(it.get("annotations")?.asJsonArray)
-                        )
-                    } else {
-                        null
-                    }
-                }
+        private inner class RawItem(
+                val uniqueId: Int?,
+                val semiUniqueId: Int?,
+                val readableName: String?,
+                val parent: RawItem? = null
+        ) {
+            val sequenceNumber = nextSequenceNumber++
+            var isBound = false
+        }
     }
 
     internal fun deserializeAnnotations(annotations: JsonArray?): List<AnnotationInfo> {
@@ -136,8 +174,15 @@ internal class JsonInfoDecorder {
     }
 
     companion object {
+        /**
+         * Version of test infos written by the 'ondevice' library, must be increased when their format changes
+         */
+        const val FORMAT_VERSION = 2
+
         val logger = LoggerFactory.getLogger(JsonInfoDecorder::class.java)
 
+        private val childIdSeparator = Regex("(?<=\\d)-")
+
         private val JsonElement.asIntOrNull: Int?
             get() {
                 return try {
@@ -20,6 +20,7 @@ import com.github.tarcv.tongs.api.result.TestCaseRunResult
 import com.github.tarcv.tongs.api.run.ResultStatus
 import com.github.tarcv.tongs.runner.listeners.BroadcastingListener
 import com.github.tarcv.tongs.system.DdmsUtils
+import com.github.tarcv.tongs.system.io.RemoteFileManager.TEST_INFO_FILE_NAME
 import org.apache.commons.text.StringEscapeUtils
 import java.nio.charset.StandardCharsets
 import java.time.Instant
@@ -82,6 +83,12 @@ class TestAndroidTestRunnerFactory : IRemoteAndroidTestRunnerFactory {
                                 .filter { !withF2Filter || !it.contains("#filteredByF2Filter")}
                                 .toList()
                         testCount = filteredTestIdentifiers.size
+                        listenersCollection
+                                .filterIsInstance<TestInfoFileListener>()
+                                .forEach {
+                                    it.onTestInfoFileWritten(
+                                            "/storage/emulated/0/Android/data/$testPackage/files/$TEST_INFO_FILE_NAME")
+                                }
                         listeners.testRunStarted("emulators", testCount)
                         filteredTestIdentifiers.forEach {
                             listeners.fireTest(it)
@@ -223,6 +230,7 @@ class TestAndroidTestRunnerFactory : IRemoteAndroidTestRunnerFactory {
                         " -e filter ((?:\\S+,)?com.github.tarcv.tongs.ondevice.AnnontationReadingFilter(,?:\\S+)?)" +
                         " -e log true" +
                         " -e test_argument \\S+" +
+                        " -e tongs_testInfoFile \\S+" +
                         """\s+$expectedTestPackage\/$expectedTestRunner""")
                         .replace(".", "\\.")
                         .replace(" -", "\\s+-")
@@ -239,7 +247,6 @@ class TestAndroidTestRunnerFactory : IRemoteAndroidTestRunnerFactory {
                         .replace("()", "(.+?)")
                         .toRegex()
 
-        private val timeLine = "[ LOGCAT_TIME 1234: 5678 I/Tongs.TestInfo ]"
         private val parameterizedTestSuffix = """"annotations":[{"annotationType":"org.junit.runner.RunWith","value":"class org.junit.runners.Parameterized"},{"annotationType":"org.junit.runner.RunWith","value":"class org.junit.runners.Parameterized"},{"annotationType":"org.junit.Test","expected":"class org.junit.Test${'$'}None","timeout":0}]},"""
         private val standardTestSuffix = """"annotations":[{"annotationType":"org.junit.Test","expected":"class org.junit.Test${'$'}None","timeout":0}]},"""
         private val tests = listOf(
@@ -303,7 +310,7 @@ class TestAndroidTestRunnerFactory : IRemoteAndroidTestRunnerFactory {
             )
 
         val testIdentifiers: List<String> = tests.map { it.toStringIdentifier() }
-        val logcatLines: List<String> = tests.flatMap { it.toLines() }
+        val testInfoLines: List<String> = tests.map { it.toJsonLine() }
 
         private fun test(shortenedTestClass: String, testMethod: String, additionalAnnotations: String = ""): TestInfo {
             return TestInfo(shortenedTestClass, testMethod, additionalAnnotations)
@@ -325,18 +332,14 @@ class TestAndroidTestRunnerFactory : IRemoteAndroidTestRunnerFactory {
             val fullTestClass: String
                 get() = """$testPackageRoot.$shortenedTestClass"""
 
-            fun toLines(): List<String> {
+            fun toJsonLine(): String {
                 val additionalAnnotationsPart = if (additionalAnnotations.isNotBlank()) {
                     "$additionalAnnotations,"
                 } else {
                     ""
                 }
                 val escapedMethod = testMethod.replace("\"", "\\\"")
-                return listOf(
-                        timeLine,
-                        """0b2d3157-LOGCAT_INDEX:{"testClass":"$fullTestClass","testMethod":"$escapedMethod","annotations":[$additionalAnnotationsPart{"annotationType":"org.junit.Test","expected":"class org.junit.Test${'$'}None","timeout":0}]},""",
-                        ""
-                )
+                return """{"testClass":"$fullTestClass","testMethod":"$escapedMethod","annotations":[$additionalAnnotationsPart{"annotationType":"org.junit.Test","expected":"class org.junit.Test${'$'}None","timeout":0}]}"""
             }
 
             fun toStringIdentifier(): String {
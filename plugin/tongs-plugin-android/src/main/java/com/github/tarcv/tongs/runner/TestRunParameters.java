@@ -16,22 +16,28 @@ package com.github.tarcv.tongs.runner;
 import com.android.ddmlib.IDevice;
 import com.github.tarcv.tongs.api.run.TestCaseEvent;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 public class TestRunParameters {
-	private final TestCaseEvent test;
+	private final List<TestCaseEvent> tests;
 	private final String testPackage;
 	private final String testRunner;
 	private final Map<String, String> testRunnerArguments;
 	private final boolean isCoverageEnabled;
+	private final String coverageFile;
 	private final int testOutputTimeout;
 	private final IDevice deviceInterface;
 	private final String excludedAnnotation;
 	private final String applicationPackage;
 	private final boolean withOnDeviceLibrary;
 
-	public TestCaseEvent getTest() {
-		return test;
+	/**
+	 * Test cases to execute in one instrumentation run, empty for a test collecting run
+	 */
+	public List<TestCaseEvent> getTests() {
+		return tests;
 	}
 
 	public String getTestPackage() {
@@ -62,6 +68,13 @@ public class TestRunParameters {
 		return isCoverageEnabled;
 	}
 
+	/**
+	 * Device side file to which coverage of the test case is written, null for batch and test collecting runs
+	 */
+	public String getCoverageFile() {
+		return coverageFile;
+	}
+
 	public String getExcludedAnnotation() {
 		return excludedAnnotation;
 	}
@@ -71,11 +84,12 @@ public class TestRunParameters {
 	}
 
 	public static class Builder {
-		private TestCaseEvent test;
+		private List<TestCaseEvent> tests = Collections.emptyList();
 		private String testPackage;
 		private String testRunner;
 		private Map<String, String> testRunnerArguments;
 		private boolean isCoverageEnabled;
+		private String coverageFile;
 		private IDevice deviceInterface;
 		private int testOutputTimeout;
 		private String excludedAnnotation;
@@ -87,7 +101,12 @@ public class TestRunParameters {
 		}
 
 		public Builder withTest(TestCaseEvent test) {
-			this.test = test;
+			this.tests = test == null ? Collections.emptyList() : Collections.singletonList(test);
+			return this;
+		}
+
+		public Builder withTests(List<TestCaseEvent> tests) {
+			this.tests = tests;
 			return this;
 		}
 
@@ -116,6 +135,11 @@ public class TestRunParameters {
 			return this;
 		}
 
+		public Builder withCoverageFile(String coverageFile) {
+			this.coverageFile = coverageFile;
+			return this;
+		}
+
 		public Builder withExcludedAnnotation(String excludedAnnotation) {
 			this.excludedAnnotation = excludedAnnotation;
 			return this;
@@ -142,7 +166,7 @@ public class TestRunParameters {
     }
 
 	private TestRunParameters(Builder builder) {
-		test = builder.test;
+		tests = builder.tests;
 		testPackage = builder.testPackage;
 		testRunner = builder.testRunner;
 		testRunnerArguments = builder.testRunnerArguments;
@@ -150,6 +174,7 @@ public class TestRunParameters {
 		deviceInterface = builder.deviceInterface;
 		withOnDeviceLibrary = builder.withOnDeviceLibrary;
 		isCoverageEnabled = builder.isCoverageEnabled;
+		coverageFile = builder.coverageFile;
 		this.excludedAnnotation = builder.excludedAnnotation;
 		this.applicationPackage = builder.applicationPackage;
 	}
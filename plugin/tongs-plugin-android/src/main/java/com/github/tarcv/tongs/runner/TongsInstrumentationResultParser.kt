@@ -19,12 +19,13 @@ import java.lang.reflect.InvocationTargetException
 
 class TongsInstrumentationResultParser(
         runName: String,
-        listeners: Collection<ITestRunListener>
+        private val listeners: Collection<ITestRunListener>
 ) : InstrumentationResultParser(runName, PatchingListener(listeners)) {
     // TODO: Consider forking DdmLib to patch this class more cleanly
 
     private val streamBuilder = StringBuilder()
     private var insideStream: Boolean = false
+    private var insideTestInfoFileStatus: Boolean = false
 
     init {
         this.privateFieldValue<InstrumentationResultParser, List<ITestRunListener>>("mTestListeners")
@@ -45,6 +46,10 @@ class TongsInstrumentationResultParser(
     }
 
     private fun parse(line: String) {
+        if (tryParseAsTestInfoFileStatus(line)) {
+            return
+        }
+
         val linePrefix = knownPrefixes.firstOrNull { line.startsWith(it) }
         if (linePrefix != null) {
             // section finished, so reset anything related to reading stream
@@ -62,6 +67,36 @@ class TongsInstrumentationResultParser(
         }
     }
 
+    /**
+     * Status with the location of the file written by the 'ondevice' library is not a test status,
+     * so it is consumed here and never gets to DdmLib
+     *
+     * @return true when the line is a part of such status
+     */
+    private fun tryParseAsTestInfoFileStatus(line: String): Boolean {
+        if (insideTestInfoFileStatus) {
+            if (line.startsWith(statusCodePrefix)) {
+                insideTestInfoFileStatus = false
+            }
+            return true
+        }
+
+        if (!line.startsWith(statusPrefix)) {
+            return false
+        }
+        val parts = line.removePrefix(statusPrefix).split(Regex("="), 2)
+        if (parts.size != 2 || parts[0].trim() != TEST_INFO_FILE_KEY) {
+            return false
+        }
+
+        insideTestInfoFileStatus = true
+        val remotePath = parts[1].trim()
+        listeners
+                .filterIsInstance<TestInfoFileListener>()
+                .forEach { it.onTestInfoFileWritten(remotePath) }
+        return true
+    }
+
     private fun tryParseAsStreamStart(linePrefix: String, line: String) {
         if (linePrefix == statusPrefix || linePrefix == resultPrefix) {
             val otherPart = line.removePrefix(linePrefix)
@@ -88,6 +123,12 @@ class TongsInstrumentationResultParser(
     }
 
     companion object {
+        /**
+         * Key of the instrumentation status in which the 'ondevice' library reports where it wrote information
+         * about tests
+         */
+        const val TEST_INFO_FILE_KEY = "tongs_testInfoFile"
+
         private val LOG_TAG: String = InstrumentationResultParser::class.java.privateStaticFieldValue("LOG_TAG")
 
         private val prefixesClass = InstrumentationResultParser::class.java.privateStaticClass("Prefixes")
@@ -111,6 +152,7 @@ class TongsInstrumentationResultParser(
 
         private val statusPrefix: String = prefixesClass.privateStaticFieldValue("STATUS")
         private val resultPrefix: String = prefixesClass.privateStaticFieldValue("RESULT")
+        private val statusCodePrefix: String = prefixesClass.privateStaticFieldValue("STATUS_CODE")
 
         private val streamKey: String = InstrumentationResultParser::class.java.privateStaticFieldValue("STREAM")
 
@@ -154,4 +196,11 @@ class TongsInstrumentationResultParser(
                     .single { it.simpleName == name }
         }
     }
-}
\ No newline at end of file
+}
+
+/**
+ * Gets notified about the location of the file the 'ondevice' library wrote information about tests to
+ */
+interface TestInfoFileListener {
+    fun onTestInfoFileWritten(remotePath: String)
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.runner.listeners;
+
+import com.android.ddmlib.IDevice;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.madgag.gif.fmsware.AnimatedGifEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes captured frames into animated GIFs in the background, so that a device can execute the next test case
+ * meanwhile. Encodes of a device are tracked until {@link #awaitPendingEncodes(IDevice)} is called for it.
+ */
+public final class AnimationEncoder {
+    private static final Logger logger = LoggerFactory.getLogger(AnimationEncoder.class);
+
+    /**
+     * Threads are not kept when there is nothing to encode, so they don't prevent the JVM from exiting
+     */
+    private static final ExecutorService encodingExecutor = createEncodingExecutor();
+
+    private static final Map<IDevice, Set<Future<?>>> pendingEncodes = new ConcurrentHashMap<>();
+
+    private AnimationEncoder() {
+    }
+
+    static void encode(IDevice deviceInterface, List<BufferedImage> frames, File file) {
+        Set<Future<?>> devicePendingEncodes = pendingEncodes.computeIfAbsent(deviceInterface,
+                device -> ConcurrentHashMap.newKeySet());
+        FutureTask<Void> encoding = new FutureTask<>(() -> createGif(frames, file), null);
+        devicePendingEncodes.add(encoding);
+        encodingExecutor.execute(() -> {
+            try {
+                encoding.run();
+            } finally {
+                devicePendingEncodes.remove(encoding);
+            }
+        });
+    }
+
+    /**
+     * Waits until all animations of test cases executed on the device are written
+     */
+    public static void awaitPendingEncodes(IDevice deviceInterface) throws InterruptedException {
+        Set<Future<?>> devicePendingEncodes = pendingEncodes.remove(deviceInterface);
+        if (devicePendingEncodes == null) {
+            return;
+        }
+
+        for (Future<?> encoding : devicePendingEncodes) {
+            try {
+                encoding.get();
+            } catch (ExecutionException e) {
+                logger.error("Failed to save animated GIF for {}", deviceInterface.getSerialNumber(), e.getCause());
+            }
+        }
+    }
+
+    private static void createGif(List<BufferedImage> frames, File file) {
+        AnimatedGifEncoder encoder = new AnimatedGifEncoder();
+        encoder.start(file.getAbsolutePath());
+        encoder.setDelay(1500);
+        encoder.setQuality(1);
+        encoder.setRepeat(0);
+        encoder.setTransparent(Color.WHITE);
+
+        int width = 0;
+        int height = 0;
+        for (BufferedImage frame : frames) {
+            width = Math.max(frame.getWidth(), width);
+            height = Math.max(frame.getHeight(), height);
+        }
+        encoder.setSize(width, height);
+
+        for (BufferedImage frame : frames) {
+            encoder.addFrame(frame);
+        }
+
+        if (!encoder.finish()) {
+            logger.error("Error saving animated GIF to {}", file);
+            if (!file.delete()) {
+                logger.warn("Failed to delete incomplete animated GIF {}", file);
+            }
+        }
+    }
+
+    private static ExecutorService createEncodingExecutor() {
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("GifEncoder-%d").build());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
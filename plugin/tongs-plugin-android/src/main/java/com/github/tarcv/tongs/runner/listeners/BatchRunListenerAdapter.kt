@@ -0,0 +1,165 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.runner.listeners
+
+import com.android.ddmlib.testrunner.ITestRunListener
+import com.android.ddmlib.testrunner.TestIdentifier
+import org.slf4j.LoggerFactory
+import javax.annotation.concurrent.GuardedBy
+import javax.annotation.concurrent.ThreadSafe
+
+/**
+ * Splits events of an instrumentation run that executes several test cases between adapters of those test cases.
+ *
+ * Each adapter sees its own run that starts right before its test case is started and finishes right after
+ * the test case ends, so listeners of a test case (logcat, screen recording, etc.) cover only that test case.
+ */
+@ThreadSafe
+class BatchRunListenerAdapter(
+        private val testAdapters: Map<TestIdentifier, RunListenerAdapter>
+) : ITestRunListener, FullTestRunListener, RunBoundariesListener {
+    private val lock = Any()
+
+    @GuardedBy("lock")
+    private var currentTest: TestIdentifier? = null
+
+    @GuardedBy("lock")
+    private val startedTests = HashSet<TestIdentifier>()
+
+    @GuardedBy("lock")
+    private val finishedTests = HashSet<TestIdentifier>()
+
+    @GuardedBy("lock")
+    private var runFailure: String? = null
+
+    override fun onBeforeTestRunStarted() {
+        // no op, runs of adapters are started when their test cases start
+    }
+
+    override fun testRunStarted(runName: String?, testCount: Int) {
+        // no op, runs of adapters are started when their test cases start
+    }
+
+    override fun testStarted(test: TestIdentifier) {
+        synchronized(lock) {
+            val adapter = adapterFor(test) ?: return
+            finishCurrentTest()
+            startTest(test, adapter)
+            adapter.testStarted(test)
+        }
+    }
+
+    override fun testFailed(test: TestIdentifier, trace: String) {
+        synchronized(lock) {
+            startedAdapterFor(test)?.testFailed(test, trace)
+        }
+    }
+
+    override fun testAssumptionFailure(test: TestIdentifier, trace: String) {
+        synchronized(lock) {
+            startedAdapterFor(test)?.testAssumptionFailure(test, trace)
+        }
+    }
+
+    override fun testIgnored(test: TestIdentifier) {
+        synchronized(lock) {
+            startedAdapterFor(test)?.testIgnored(test)
+        }
+    }
+
+    override fun testEnded(test: TestIdentifier, testMetrics: Map<String, String>) {
+        synchronized(lock) {
+            val adapter = startedAdapterFor(test) ?: return
+            adapter.testEnded(test, testMetrics)
+            if (currentTest == test) {
+                finishCurrentTest()
+            }
+        }
+    }
+
+    override fun testRunFailed(errorMessage: String) {
+        synchronized(lock) {
+            // The failure most likely happened in the test case that is being executed
+            runFailure = errorMessage
+            currentTest?.let { testAdapters.getValue(it).testRunFailed(errorMessage) }
+        }
+    }
+
+    override fun testRunStopped(elapsedTime: Long) {}
+
+    override fun testRunEnded(elapsedTime: Long, runMetrics: Map<String, String>?) {
+        testRunEnded(elapsedTime, "", runMetrics)
+    }
+
+    override fun testRunEnded(elapsedTime: Long, output: String, runMetrics: Map<String, String>?) {
+        synchronized(lock) {
+            currentTest?.let { testAdapters.getValue(it).testRunEnded(elapsedTime, output, runMetrics) }
+        }
+    }
+
+    override fun onAfterTestRunEnded() {
+        synchronized(lock) {
+            finishCurrentTest()
+
+            testAdapters
+                    .filterKeys { it !in finishedTests }
+                    .forEach { (test, adapter) ->
+                        if (test !in startedTests) {
+                            startTest(test, adapter)
+                        }
+                        adapter.testRunFailed(runFailure ?: "Test case was not executed as a part of its batch")
+                        adapter.onAfterTestRunEnded()
+                        finishedTests.add(test)
+                    }
+            currentTest = null
+        }
+    }
+
+    @GuardedBy("lock")
+    private fun adapterFor(test: TestIdentifier): RunListenerAdapter? {
+        val adapter = testAdapters[test]
+        if (adapter == null) {
+            logger.warn("Got an event for $test which is not a part of the batch")
+        } else if (test in finishedTests) {
+            logger.warn("Got an event for $test after it was finished")
+            return null
+        }
+        return adapter
+    }
+
+    @GuardedBy("lock")
+    private fun startedAdapterFor(test: TestIdentifier): RunListenerAdapter? {
+        val adapter = adapterFor(test) ?: return null
+        if (test !in startedTests) {
+            finishCurrentTest()
+            startTest(test, adapter)
+        }
+        return adapter
+    }
+
+    @GuardedBy("lock")
+    private fun startTest(test: TestIdentifier, adapter: RunListenerAdapter) {
+        adapter.onBeforeTestRunStarted()
+        startedTests.add(test)
+        currentTest = test
+    }
+
+    @GuardedBy("lock")
+    private fun finishCurrentTest() {
+        val test = currentTest ?: return
+        testAdapters.getValue(test).onAfterTestRunEnded()
+        finishedTests.add(test)
+        currentTest = null
+    }
+
+    companion object {
+        private val logger = LoggerFactory.getLogger(BatchRunListenerAdapter::class.java)
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.runner.listeners
+
+import com.android.ddmlib.logcat.LogCatMessage
+import com.github.tarcv.tongs.api.result.Table
+import com.github.tarcv.tongs.injector.GsonInjector.gson
+import com.google.gson.Gson
+import java.io.File
+import kotlin.system.exitProcess
+
+/**
+ * Converts logcat files in the compact format to the JSON table format written by [TableLogCatWriter]
+ */
+object CompactLogCatConverter {
+    /**
+     * Reads a compact logcat file for reports
+     */
+    fun readTable(compactFile: File): Table.TableJson {
+        val rows = ArrayList<List<String>>()
+        forEachMessage(compactFile) { rows.add(TableLogCatWriter.toRow(it)) }
+        return Table.TableJson(TableLogCatWriter.headers, rows)
+    }
+
+    fun convertToJson(compactFile: File, jsonFile: File, gson: Gson) {
+        CompactLogCatReader(compactFile.inputStream()).use { reader ->
+            jsonFile.bufferedWriter(Charsets.UTF_8).use { writer ->
+                TableLogCatWriter.writeTable(gson, writer, Iterable { reader })
+            }
+        }
+    }
+
+    private inline fun forEachMessage(compactFile: File, action: (LogCatMessage) -> Unit) {
+        CompactLogCatReader(compactFile.inputStream()).use { reader ->
+            reader.forEach(action)
+        }
+    }
+
+    @JvmStatic
+    fun main(args: Array<String>) {
+        if (args.size != 2) {
+            System.err.println("Usage: CompactLogCatConverter <compact logcat file> <output JSON file>")
+            exitProcess(1)
+        }
+        convertToJson(File(args[0]), File(args[1]), gson())
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.runner.listeners
+
+import com.android.ddmlib.Log
+import com.android.ddmlib.logcat.LogCatHeader
+import com.android.ddmlib.logcat.LogCatMessage
+import com.github.tarcv.tongs.runner.listeners.CompactLogCatEncoder.Companion.BUFFER_SIZE
+import com.github.tarcv.tongs.runner.listeners.CompactLogCatEncoder.Companion.MAGIC
+import com.github.tarcv.tongs.runner.listeners.CompactLogCatEncoder.Companion.timestampOf
+import java.io.BufferedInputStream
+import java.io.Closeable
+import java.io.DataInputStream
+import java.io.IOException
+import java.io.InputStream
+import java.io.UncheckedIOException
+import java.util.zip.GZIPInputStream
+
+/**
+ * Decodes messages written by [CompactLogCatWriter] one block at a time,
+ * so only one block of messages is kept in memory
+ */
+class CompactLogCatReader(input: InputStream) : Iterator<LogCatMessage>, Closeable {
+    private val data = DataInputStream(BufferedInputStream(GZIPInputStream(input, BUFFER_SIZE), BUFFER_SIZE))
+
+    private val appNames = ArrayList<String>()
+    private val tags = ArrayList<String>()
+    private var lastPid = 0
+    private var lastTime = 0L
+
+    private var block: Array<LogCatMessage> = emptyArray()
+    private var indexInBlock = 0
+    private var isFinished = false
+
+    init {
+        try {
+            if (data.readInt() != MAGIC) {
+                throw IOException("Not a compact logcat file")
+            }
+        } catch (e: IOException) {
+            data.close()
+            throw e
+        }
+    }
+
+    override fun hasNext(): Boolean {
+        if (indexInBlock < block.size) {
+            return true
+        }
+        if (!isFinished) {
+            try {
+                readBlock()
+            } catch (e: IOException) {
+                throw UncheckedIOException(e)
+            }
+        }
+        return indexInBlock < block.size
+    }
+
+    override fun next(): LogCatMessage {
+        if (!hasNext()) {
+            throw NoSuchElementException()
+        }
+        return block[indexInBlock++]
+    }
+
+    override fun close() {
+        data.close()
+    }
+
+    private fun readBlock() {
+        val size = readUnsigned().toInt()
+        if (size == 0) {
+            isFinished = true
+            block = emptyArray()
+            indexInBlock = 0
+            return
+        }
+
+        val levels = Array(size) { Log.LogLevel.getByLetter(data.readByte().toChar()) }
+        val pids = IntArray(size) {
+            lastPid += readSigned().toInt()
+            lastPid
+        }
+        val tids = IntArray(size) { index -> pids[index] + readSigned().toInt() }
+        val appNamesOfBlock = Array(size) { readReference(appNames) }
+        val tagsOfBlock = Array(size) { readReference(tags) }
+        val times = LongArray(size) {
+            lastTime += readSigned()
+            lastTime
+        }
+        block = Array(size) { index ->
+            val header = LogCatHeader(levels[index], pids[index], tids[index],
+                    appNamesOfBlock[index], tagsOfBlock[index], timestampOf(times[index]))
+            LogCatMessage(header, readString())
+        }
+        indexInBlock = 0
+    }
+
+    private fun readReference(dictionary: ArrayList<String>): String {
+        val reference = readUnsigned().toInt()
+        return if (reference == 0) {
+            readString().also { dictionary.add(it) }
+        } else {
+            dictionary[reference - 1]
+        }
+    }
+
+    private fun readString(): String {
+        val bytes = ByteArray(readUnsigned().toInt())
+        data.readFully(bytes)
+        return String(bytes, Charsets.UTF_8)
+    }
+
+    private fun readSigned(): Long {
+        val value = readUnsigned()
+        return (value ushr 1) xor -(value and 1)
+    }
+
+    private fun readUnsigned(): Long {
+        var value = 0L
+        var shift = 0
+        while (true) {
+            val byte = data.readUnsignedByte()
+            value = value or ((byte and 0x7F).toLong() shl shift)
+            if (byte and 0x80 == 0) {
+                return value
+            }
+            shift += 7
+            if (shift > 63) {
+                throw IOException("Malformed compact logcat file")
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.runner.listeners
+
+import com.android.ddmlib.logcat.LogCatMessage
+import com.android.ddmlib.logcat.LogCatTimestamp
+import com.github.tarcv.tongs.api.result.TestCaseFile
+import com.github.tarcv.tongs.device.DeviceLogcat.Companion.forEachClosing
+import java.io.BufferedOutputStream
+import java.io.Closeable
+import java.io.DataOutputStream
+import java.io.OutputStream
+import java.util.zip.GZIPOutputStream
+
+/**
+ * Writes messages in the compact format that can be read with [CompactLogCatReader]
+ */
+class CompactLogCatWriter(
+        private val file: TestCaseFile
+) : LogCatWriter {
+    override fun writeLogs(logCatMessages: Iterable<LogCatMessage>) {
+        CompactLogCatEncoder(file.create().outputStream()).use { encoder ->
+            logCatMessages.forEachClosing { encoder.write(it) }
+        }
+    }
+}
+
+/**
+ * Encodes messages into a gzipped stream of blocks of up to [BLOCK_SIZE] messages.
+ *
+ * Each block starts with the count of its messages and stores them column by column:
+ * levels as priority letters, pids as deltas from the previous pid, tids as deltas from the pid of the same message,
+ * app names and tags as dictionary references, timestamps as deltas from the previous timestamp, and then messages.
+ * A dictionary reference is an index of a previously seen value plus one, or zero followed by a new value.
+ * The stream ends with a block of zero messages.
+ */
+internal class CompactLogCatEncoder(output: OutputStream) : Closeable {
+    private val data = DataOutputStream(BufferedOutputStream(GZIPOutputStream(output, BUFFER_SIZE), BUFFER_SIZE))
+
+    private val appNames = HashMap<String, Int>()
+    private val tags = HashMap<String, Int>()
+    private val block = ArrayList<LogCatMessage>(BLOCK_SIZE)
+    private var lastPid = 0
+    private var lastTime = 0L
+
+    init {
+        data.writeInt(MAGIC)
+    }
+
+    fun write(message: LogCatMessage) {
+        block.add(message)
+        if (block.size == BLOCK_SIZE) {
+            writeBlock()
+        }
+    }
+
+    override fun close() {
+        data.use {
+            writeBlock()
+            writeUnsigned(0)
+        }
+    }
+
+    private fun writeBlock() {
+        if (block.isEmpty()) {
+            return
+        }
+
+        writeUnsigned(block.size.toLong())
+        block.forEach { data.writeByte(it.logLevel.priorityLetter.toInt()) }
+        block.forEach {
+            writeSigned(it.pid.toLong() - lastPid)
+            lastPid = it.pid
+        }
+        block.forEach { writeSigned(it.tid.toLong() - it.pid) }
+        block.forEach { writeReference(appNames, it.appName ?: "") }
+        block.forEach { writeReference(tags, it.tag ?: "") }
+        block.forEach {
+            val time = timeKeyOf(it.timestamp)
+            writeSigned(time - lastTime)
+            lastTime = time
+        }
+        block.forEach { writeString(it.message) }
+
+        block.clear()
+    }
+
+    private fun writeReference(dictionary: HashMap<String, Int>, value: String) {
+        val index = dictionary[value]
+        if (index != null) {
+            writeUnsigned(index + 1L)
+        } else {
+            dictionary[value] = dictionary.size
+            writeUnsigned(0)
+            writeString(value)
+        }
+    }
+
+    private fun writeString(value: String) {
+        val bytes = value.toByteArray(Charsets.UTF_8)
+        writeUnsigned(bytes.size.toLong())
+        data.write(bytes)
+    }
+
+    private fun writeSigned(value: Long) {
+        writeUnsigned((value shl 1) xor (value shr 63)) // zigzag, so that small negative deltas stay short
+    }
+
+    private fun writeUnsigned(value: Long) {
+        var remaining = value
+        while (remaining and 0x7FL.inv() != 0L) {
+            data.writeByte(((remaining and 0x7F) or 0x80).toInt())
+            remaining = remaining ushr 7
+        }
+        data.writeByte(remaining.toInt())
+    }
+
+    companion object {
+        internal const val MAGIC = 0x544C4331 // "TLC1"
+        internal const val BLOCK_SIZE = 1024
+        internal const val BUFFER_SIZE = 64 * 1024
+
+        private val timestampRegex = Regex("""(\d+)-(\d+)\s+(\d+):(\d+):(\d+)\.(\d+)""")
+
+        /**
+         * @return number that grows with [timestamp], so that consecutive timestamps have small deltas
+         */
+        internal fun timeKeyOf(timestamp: LogCatTimestamp): Long {
+            val match = timestampRegex.matchEntire(timestamp.toString())
+                    ?: throw IllegalStateException("Unexpected logcat timestamp format: $timestamp")
+            val (month, day, hour, minute, second, milli) = match.destructured
+            return ((((month.toLong() * 32 + day.toLong()) * 24 + hour.toLong()) * 60 + minute.toLong()) * 60 +
+                    second.toLong()) * 1000 + milli.toLong()
+        }
+
+        internal fun timestampOf(timeKey: Long): LogCatTimestamp {
+            var remaining = timeKey
+            val milli = remaining % 1000
+            remaining /= 1000
+            val second = remaining % 60
+            remaining /= 60
+            val minute = remaining % 60
+            remaining /= 60
+            val hour = remaining % 24
+            remaining /= 24
+            val day = remaining % 32
+            val month = remaining / 32
+            return LogCatTimestamp.fromString(
+                    String.format("%02d-%02d %02d:%02d:%02d.%03d", month, day, hour, minute, second, milli))
+        }
+    }
+}
@@ -16,7 +16,6 @@ package com.github.tarcv.tongs.runner.listeners;
 import com.android.ddmlib.logcat.LogCatMessage;
 
 import java.util.Arrays;
-import java.util.List;
 
 class CompositeLogCatWriter implements LogCatWriter {
 
@@ -27,7 +26,7 @@ class CompositeLogCatWriter implements LogCatWriter {
 	}
 
 	@Override
-	public void writeLogs(List<LogCatMessage> logCatMessages) {
+	public void writeLogs(Iterable<LogCatMessage> logCatMessages) {
 		for (LogCatWriter logCatWriter : logCatWriters) {
 			logCatWriter.writeLogs(logCatMessages);
 		}
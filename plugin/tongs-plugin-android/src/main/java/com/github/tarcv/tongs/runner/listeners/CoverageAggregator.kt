@@ -0,0 +1,164 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.runner.listeners
+
+import com.github.tarcv.tongs.api.TongsConfiguration
+import com.github.tarcv.tongs.api.devices.Pool
+import com.github.tarcv.tongs.api.result.StandardFileTypes.COVERAGE
+import com.google.common.util.concurrent.ThreadFactoryBuilder
+import org.jacoco.core.data.ExecutionData
+import org.jacoco.core.data.ExecutionDataReader
+import org.jacoco.core.data.ExecutionDataStore
+import org.jacoco.core.data.ExecutionDataWriter
+import org.jacoco.core.data.SessionInfoStore
+import org.slf4j.LoggerFactory
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+
+/**
+ * Merges coverage files of test cases into a coverage file per pool and a coverage file for the whole run.
+ *
+ * Files are merged in a background thread as soon as they are pulled. Merged data is only accessed
+ * from that thread, so no locking is needed.
+ */
+class CoverageAggregator(private val outputDirectory: File) {
+    private val executor: ExecutorService = Executors.newSingleThreadExecutor(
+            ThreadFactoryBuilder()
+                    .setNameFormat("CoverageMerger-%d")
+                    .setDaemon(true)
+                    .build()
+    )
+
+    private val poolData = HashMap<String, CoverageData>()
+    private val runData = CoverageData()
+
+    /**
+     * Merges [coverageFile] of a test case executed in [pool], and then removes it when [removeAfter] is true
+     */
+    fun merge(pool: Pool, coverageFile: File, removeAfter: Boolean) {
+        executor.execute {
+            try {
+                val data = poolData.getOrPut(pool.name) { CoverageData() }
+                data.read(coverageFile, runData)
+                if (removeAfter && !coverageFile.delete()) {
+                    logger.warn("Failed to remove merged coverage file {}", coverageFile)
+                }
+            } catch (e: Exception) {
+                logger.error("Failed to merge coverage file $coverageFile", e)
+            }
+        }
+    }
+
+    /**
+     * Writes the merged coverage file of [pool] once all files queued for it before this call are merged
+     */
+    fun finishPool(pool: Pool) {
+        executor.submit {
+            poolData.remove(pool.name)?.let { writePool(pool.name, it) }
+        }.get()
+    }
+
+    /**
+     * Writes merged coverage files of the run and of pools that were not finished yet
+     */
+    fun finish() {
+        try {
+            executor.submit {
+                poolData.forEach { (poolName, data) -> writePool(poolName, data) }
+                poolData.clear()
+                write(runData, File(coverageDirectory(), MERGED_FILE_NAME))
+            }.get()
+        } finally {
+            executor.shutdown()
+        }
+    }
+
+    private fun writePool(poolName: String, data: CoverageData) {
+        write(data, File(File(coverageDirectory(), poolName), MERGED_FILE_NAME))
+    }
+
+    private fun write(data: CoverageData, file: File) {
+        try {
+            data.write(file)
+            logger.info("Merged coverage is written to {}", file)
+        } catch (e: Exception) {
+            logger.error("Failed to write merged coverage file $file", e)
+        }
+    }
+
+    private fun coverageDirectory() = File(outputDirectory, COVERAGE.directory)
+
+    private class CoverageData {
+        val executionData = ExecutionDataStore()
+        val sessionInfos = SessionInfoStore()
+
+        /**
+         * Merges [file] into this data and [otherData]
+         */
+        fun read(file: File, otherData: CoverageData) {
+            BufferedInputStream(FileInputStream(file)).use { input ->
+                val reader = ExecutionDataReader(input)
+                reader.setSessionInfoVisitor { info ->
+                    sessionInfos.visitSessionInfo(info)
+                    otherData.sessionInfos.visitSessionInfo(info)
+                }
+                reader.setExecutionDataVisitor { data ->
+                    // Stores keep and then modify the passed object, so each store gets its own copy
+                    otherData.executionData.visitClassExecution(
+                            ExecutionData(data.id, data.name, data.probes.clone()))
+                    executionData.visitClassExecution(data)
+                }
+                reader.read()
+            }
+        }
+
+        fun write(file: File) {
+            file.parentFile.mkdirs()
+            BufferedOutputStream(FileOutputStream(file)).use { output ->
+                val writer = ExecutionDataWriter(output)
+                sessionInfos.accept(writer)
+                executionData.accept(writer)
+            }
+        }
+    }
+
+    companion object {
+        const val MERGED_FILE_NAME = "merged.ec"
+
+        private val logger = LoggerFactory.getLogger(CoverageAggregator::class.java)
+
+        private val aggregators = ConcurrentHashMap<File, CoverageAggregator>()
+
+        /**
+         * @return the aggregator of the run with [configuration]
+         */
+        @JvmStatic
+        fun of(configuration: TongsConfiguration): CoverageAggregator {
+            return aggregators.computeIfAbsent(configuration.output.absoluteFile) { CoverageAggregator(it) }
+        }
+
+        /**
+         * Writes merged coverage of the run with [configuration]
+         */
+        @JvmStatic
+        fun finish(configuration: TongsConfiguration) {
+            aggregators.remove(configuration.output.absoluteFile)?.finish()
+        }
+    }
+}
@@ -12,14 +12,14 @@
 package com.github.tarcv.tongs.runner.listeners;
 
 import com.android.ddmlib.testrunner.TestIdentifier;
+import com.github.tarcv.tongs.api.TongsConfiguration;
 import com.github.tarcv.tongs.api.devices.Pool;
 import com.github.tarcv.tongs.api.result.TestCaseFile;
 import com.github.tarcv.tongs.api.result.TestCaseFileManager;
 import com.github.tarcv.tongs.api.run.ResultStatus;
 import com.github.tarcv.tongs.api.run.TestCaseEvent;
-import com.github.tarcv.tongs.api.testcases.TestCase;
+import com.github.tarcv.tongs.device.ArtifactTransferQueue;
 import com.github.tarcv.tongs.model.AndroidDevice;
-import com.github.tarcv.tongs.system.io.RemoteFileManager;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,29 +36,32 @@ public class CoverageListener implements RunListener {
     private final Pool pool;
     private final Logger logger = LoggerFactory.getLogger(CoverageListener.class);
     private final TestCaseEvent testCase;
+    private final CoverageAggregator coverageAggregator;
+    private final boolean mergedCoverageOnly;
+    private final String remoteFile;
 
     @NotNull
     public final TestCaseFile coverageFile;
 
-    public CoverageListener(AndroidDevice device, TestCaseFileManager fileManager, Pool pool, TestCaseEvent testCase) {
+    public CoverageListener(AndroidDevice device, TestCaseFileManager fileManager, Pool pool, TestCaseEvent testCase,
+                            TongsConfiguration configuration, String remoteFile) {
         this.device = device;
         this.fileManager = fileManager;
         this.pool = pool;
         this.testCase = testCase;
+        this.coverageAggregator = CoverageAggregator.of(configuration);
+        this.mergedCoverageOnly = configuration.isMergedCoverageOnly();
+        this.remoteFile = remoteFile;
         this.coverageFile = new TestCaseFile(fileManager, COVERAGE, "");
     }
 
     @Override
     public void onRunFinished() {
-        TestCase testIdentifier = testCase.getTestCase();
-        final String remoteFile = RemoteFileManager.getCoverageFileName(testIdentifier);
-        final File file = coverageFile.toFile();
-        file.getParentFile().mkdirs();
-        try {
-            device.getDeviceInterface().pullFile(remoteFile, file.getAbsolutePath());
-        } catch (Exception e) {
-            logger.error("Something went wrong while pulling coverage file", e);
-        }
+        final File file = coverageFile.toFile().getAbsoluteFile();
+
+        // The file is pulled and merged while the device executes the next test case
+        ArtifactTransferQueue.of(device).pull(remoteFile, file, true,
+                () -> coverageAggregator.merge(pool, file, mergedCoverageOnly));
     }
 
     @Override
@@ -15,45 +15,86 @@ package com.github.tarcv.tongs.runner.listeners;
 
 import com.android.ddmlib.logcat.LogCatMessage;
 import com.android.ddmlib.testrunner.TestIdentifier;
+import com.github.tarcv.tongs.device.DeviceLogcat;
+import com.google.common.collect.Iterators;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.regex.Pattern;
 
 import static java.lang.String.format;
 
 class LogCatSerializer {
+	private final String testClassName;
 	private final Pattern testStartPattern;
 	private final Pattern testEndPattern;
 	private final LogCatWriter logCatWriter;
 
 	LogCatSerializer(TestIdentifier test, LogCatWriter logCatWriter) {
 		this.logCatWriter = logCatWriter;
+		testClassName = test.getClassName();
 		testStartPattern = Pattern.compile(createPattern("started", test));
 		testEndPattern = Pattern.compile(createPattern("finished", test));
 	}
 
-	public void serializeLogs(List<LogCatMessage> logCatMessages) {
-		List<LogCatMessage> filterLogCatMessages = filterLogCatMessages(logCatMessages);
+	public void serializeLogs(Iterable<LogCatMessage> logCatMessages) {
+		Iterable<LogCatMessage> filterLogCatMessages = filterLogCatMessages(logCatMessages);
 		logCatWriter.writeLogs(filterLogCatMessages);
 	}
 
-    //TODO No need to start and stop writing, we could just get index for start & stop and get inline sublist (no new list)
-	private List<LogCatMessage> filterLogCatMessages(List<LogCatMessage> logCatMessages) {
-		boolean isWriting = false;
-		List<LogCatMessage> filteredLogCatMessages = new ArrayList<>();
-		for (LogCatMessage logCatMessage : logCatMessages) {
-			if (testStartPattern.matcher(logCatMessage.getMessage()).find()) {
-				isWriting = true;
-			}
-			if (isWriting) {
-				filteredLogCatMessages.add(logCatMessage);
+	/**
+	 * Finds boundaries of the test in one pass and returns views of the matching parts of the logs
+	 */
+	private Iterable<LogCatMessage> filterLogCatMessages(Iterable<LogCatMessage> logCatMessages) {
+		List<long[]> ranges = findTestRanges(logCatMessages);
+
+		List<Iterable<LogCatMessage>> slices = new ArrayList<>(ranges.size());
+		for (long[] range : ranges) {
+			if (logCatMessages instanceof List) {
+				slices.add(((List<LogCatMessage>) logCatMessages).subList((int) range[0], (int) range[1]));
+			} else if (logCatMessages instanceof DeviceLogcat.Window) {
+				slices.add(((DeviceLogcat.Window) logCatMessages).slice(range[0], range[1]));
+			} else {
+				slices.add(() -> Iterators.limit(
+						Iterators.skip(logCatMessages.iterator(), (int) range[0]),
+						(int) (range[1] - range[0])));
 			}
-			if (testEndPattern.matcher(logCatMessage.getMessage()).find()) {
-				isWriting = false;
+		}
+		return DeviceLogcat.concat(slices);
+	}
+
+	/**
+	 * @return ranges of indexes (start inclusive, end exclusive) of messages that belong to the test
+	 */
+	private List<long[]> findTestRanges(Iterable<LogCatMessage> logCatMessages) {
+		List<long[]> ranges = new ArrayList<>(1);
+		long startIndex = -1;
+		long index = 0;
+		Iterator<LogCatMessage> iterator = logCatMessages.iterator();
+		try {
+			while (iterator.hasNext()) {
+				String message = iterator.next().getMessage();
+
+				// Markers always contain the class name, so most messages are skipped without matching the patterns
+				if (message.contains(testClassName)) {
+					if (startIndex < 0 && testStartPattern.matcher(message).find()) {
+						startIndex = index;
+					}
+					if (startIndex >= 0 && testEndPattern.matcher(message).find()) {
+						ranges.add(new long[]{startIndex, index + 1});
+						startIndex = -1;
+					}
+				}
+				index++;
 			}
+		} finally {
+			DeviceLogcat.closeIfNeeded(iterator);
+		}
+		if (startIndex >= 0) {
+			ranges.add(new long[]{startIndex, index});
 		}
-		return filteredLogCatMessages;
+		return ranges;
 	}
 
 	private String createPattern(String action, TestIdentifier test) {
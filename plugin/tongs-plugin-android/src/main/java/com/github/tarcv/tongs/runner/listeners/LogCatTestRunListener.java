@@ -14,72 +14,116 @@
 package com.github.tarcv.tongs.runner.listeners;
 
 import com.android.ddmlib.logcat.LogCatMessage;
+import com.android.ddmlib.logcat.LogCatTimestamp;
 import com.android.ddmlib.testrunner.TestIdentifier;
 import com.github.tarcv.tongs.api.devices.Pool;
 import com.github.tarcv.tongs.api.result.TestCaseFile;
 import com.github.tarcv.tongs.api.result.TestCaseFileManager;
 import com.github.tarcv.tongs.api.run.ResultStatus;
 import com.github.tarcv.tongs.api.testcases.TestCase;
+import com.github.tarcv.tongs.device.DeviceLogcat;
 import com.github.tarcv.tongs.model.AndroidDevice;
 import com.google.gson.Gson;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
 import java.util.Collections;
-import java.util.List;
 import java.util.Map;
 
+import static com.github.tarcv.tongs.api.result.StandardFileTypes.COMPACT_LOG;
 import static com.github.tarcv.tongs.api.result.StandardFileTypes.JSON_LOG;
 import static com.github.tarcv.tongs.api.result.StandardFileTypes.RAW_LOG;
 
 class LogCatTestRunListener implements RunListener {
-	private final LogcatReceiver logcatReceiver;
+	private static final Logger logger = LoggerFactory.getLogger(LogCatTestRunListener.class);
+
     private final TestCaseFileManager fileManager;
     private final Pool pool;
 	private final AndroidDevice device;
     private final Gson gson;
-    private final List<LogCatMessage> messages = Collections.synchronizedList(new ArrayList<LogCatMessage>());
+	private final boolean compactLogcat;
+	private long startPosition;
+	private boolean hasFailed;
 
 	private final TestCaseFile tableFile;
 	private final TestCaseFile rawFile;
+	private final TestCaseFile compactFile;
+	private final TestCaseFile unfilteredFile;
 	private final TestCase testCase;
 
 	public LogCatTestRunListener(Gson gson,
 								 TestCaseFileManager fileManager,
 								 Pool pool,
 								 AndroidDevice device,
-								 TestCase testCase
+								 TestCase testCase,
+								 boolean compactLogcat
 	) {
-		this.logcatReceiver = new LogcatReceiver(device);
 		this.gson = gson;
 		this.fileManager = fileManager;
 		this.pool = pool;
 		this.device = device;
 		this.testCase = testCase;
+		this.compactLogcat = compactLogcat;
 		this.tableFile = new TestCaseFile(fileManager, JSON_LOG, "");
 		this.rawFile = new TestCaseFile(fileManager, RAW_LOG, "");
+		this.compactFile = new TestCaseFile(fileManager, COMPACT_LOG, "");
+		this.unfilteredFile = new TestCaseFile(fileManager, RAW_LOG, "unfiltered");
 	}
 
 	@Override
 	public void onRunStarted() {
-		logcatReceiver.start(testCase.toString());
+		DeviceLogcat logcat = device.getLogcat();
+		startPosition = logcat != null ? logcat.getPosition() : 0;
+		hasFailed = false;
 	}
 
 	@Override
 	public void onRunFinished() {
-		List<LogCatMessage> copyOfLogCatMessages = logcatReceiver.getMessages();
-		synchronized (messages) {
-			messages.clear();
-			messages.addAll(copyOfLogCatMessages);
+		DeviceLogcat logcat = device.getLogcat();
+		Iterable<LogCatMessage> logCatMessages;
+		if (logcat != null) {
+			DeviceLogcat.Window window = logcat.messagesBetween(startPosition, logcat.getPosition());
+			if (hasFailed && logcat.isFiltered()) {
+				dumpUnfilteredLogs(logcat, window);
+			}
+			logCatMessages = window;
+		} else {
+			logger.warn("Logcat is not collected for {}, as {} is not set up", testCase, device.getSerial());
+			logCatMessages = Collections.emptyList();
+		}
+
+		LogCatWriter logCatWriter;
+		if (compactLogcat) {
+			logCatWriter = new CompactLogCatWriter(compactFile);
+		} else {
+			logCatWriter = new CompositeLogCatWriter(
+					new TableLogCatWriter(gson, tableFile),
+					new RawLogCatWriter(fileManager, pool, device, rawFile));
 		}
-		LogCatWriter logCatWriter = new CompositeLogCatWriter(
-				new TableLogCatWriter(gson, tableFile),
-				new RawLogCatWriter(fileManager, pool, device, rawFile));
 		TestIdentifier test = new TestIdentifier(testCase.getTestClass(), testCase.getTestMethod());
 		LogCatSerializer logCatSerializer = new LogCatSerializer(test, logCatWriter);
-		logCatSerializer.serializeLogs(copyOfLogCatMessages);
+		logCatSerializer.serializeLogs(logCatMessages);
+	}
 
-		logcatReceiver.stop();
+	/**
+	 * Saves all messages from the device for a failed test case, as only the messages of the tested processes
+	 * are received for the others
+	 */
+	private void dumpUnfilteredLogs(DeviceLogcat logcat, DeviceLogcat.Window logCatMessages) {
+		LogCatMessage firstMessage = logCatMessages.first();
+		if (firstMessage == null) {
+			logger.warn("Unfiltered logcat is not saved for {}, as it has no messages", testCase);
+			return;
+		}
+
+		LogCatTimestamp since = firstMessage.getTimestamp();
+		try {
+			logcat.dumpUnfiltered(since, unfilteredFile.create());
+		} catch (Exception e) {
+			logger.warn("Failed to save unfiltered logcat for {}", testCase, e);
+		}
 	}
 
 	public TestCaseFile getTableFile() {
@@ -90,14 +134,32 @@ class LogCatTestRunListener implements RunListener {
 		return rawFile;
 	}
 
+	public TestCaseFile getCompactFile() {
+		return compactFile;
+	}
+
+	public boolean isCompactLogcat() {
+		return compactLogcat;
+	}
+
+	/**
+	 * @return file with all messages from the device, when it was saved for a failed test case
+	 */
+	@Nullable
+	public TestCaseFile getUnfilteredFile() {
+		return unfilteredFile.toFile().isFile() ? unfilteredFile : null;
+	}
+
 	@Override
 	public void onTestFinished(@NotNull TestIdentifier testIdentifier, @NotNull ResultStatus resultStatus, @NotNull String trace, boolean hasStarted) {
-
+		if (ResultStatus.isFailure(resultStatus)) {
+			hasFailed = true;
+		}
 	}
 
 	@Override
 	public void onRunFailure(@NotNull String errorMessage) {
-
+		hasFailed = true;
 	}
 
 	@Override
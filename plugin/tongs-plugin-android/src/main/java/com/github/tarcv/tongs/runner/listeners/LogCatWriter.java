@@ -15,9 +15,10 @@ package com.github.tarcv.tongs.runner.listeners;
 
 import com.android.ddmlib.logcat.LogCatMessage;
 
-import java.util.List;
-
 interface LogCatWriter {
 
-	void writeLogs(List<LogCatMessage> logCatMessages);
+	/**
+	 * @param logCatMessages messages to write, they might be read from the disk while being iterated
+	 */
+	void writeLogs(Iterable<LogCatMessage> logCatMessages);
 }
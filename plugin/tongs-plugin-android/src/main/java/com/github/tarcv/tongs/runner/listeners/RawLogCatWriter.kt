@@ -18,6 +18,7 @@ import com.github.tarcv.tongs.api.devices.Device
 import com.github.tarcv.tongs.api.devices.Pool
 import com.github.tarcv.tongs.api.result.TestCaseFile
 import com.github.tarcv.tongs.api.result.TestCaseFileManager
+import com.github.tarcv.tongs.device.DeviceLogcat.Companion.forEachClosing
 import org.apache.commons.io.IOUtils
 
 internal class RawLogCatWriter(
@@ -26,11 +27,11 @@ internal class RawLogCatWriter(
         private val device: Device,
         private val file: TestCaseFile
 ) : LogCatWriter {
-    override fun writeLogs(logCatMessages: List<LogCatMessage>) {
+    override fun writeLogs(logCatMessages: Iterable<LogCatMessage>) {
         file.create()
                 .bufferedWriter(Charsets.UTF_8)
                 .use { fileWriter ->
-                    for (logCatMessage in logCatMessages) {
+                    logCatMessages.forEachClosing { logCatMessage ->
                         IOUtils.write(logCatMessage.toString(), fileWriter)
                         IOUtils.write("\n", fileWriter)
                     }
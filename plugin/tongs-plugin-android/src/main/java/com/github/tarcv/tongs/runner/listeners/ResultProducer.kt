@@ -12,7 +12,6 @@
  */
 package com.github.tarcv.tongs.runner.listeners
 
-import com.github.tarcv.tongs.api.TongsConfiguration
 import com.github.tarcv.tongs.api.devices.Diagnostics
 import com.github.tarcv.tongs.api.devices.Pool
 import com.github.tarcv.tongs.api.result.FileTableReportData
@@ -62,9 +61,9 @@ class ResultProducer(
     private val androidDevice = context.device
     private val resultListener = ResultListener(context.testCaseEvent.testCase.toString())
     private val logCatListener = LogCatTestRunListener(gson(), context.fileManager, context.pool, androidDevice,
-            context.testCaseEvent.testCase)
+            context.testCaseEvent.testCase, context.configuration.isCompactLogcatEnabled)
     private val screenTraceListener = getScreenTraceTestRunListener(context.fileManager, androidDevice)
-    private val coverageListener = getCoverageTestRunListener(context.configuration, androidDevice, context.fileManager, context.pool, context.testCaseEvent)
+    private val coverageListener = getCoverageTestRunListener(context, androidDevice, context.fileManager, context.pool, context.testCaseEvent)
 
     override fun requestListeners(): List<RunListener> {
         return listOf(
@@ -77,22 +76,12 @@ class ResultProducer(
     override fun getResult(): TestCaseRunResult {
         val shellResult = resultListener.result
 
-        val gson = gson()
         val reportBlocks = listOfNotNull(
                 addOutput(shellResult.output),
-                addTraceReport(screenTraceListener),
-                FileTableReportData("Logcat", logCatListener.tableFile, { tableFile ->
-                    tableFile
-                            .bufferedReader(Charsets.UTF_8)
-                            .use { reader ->
-                                gson.fromJson(reader, Table.TableJson::class.java)
-                            }
-                }),
-                LinkedFileReportData("Logcat", logCatListener.rawFile),
-                LinkedFileReportData("Logcat as JSON", logCatListener.tableFile)
-        )
+                addTraceReport(screenTraceListener)
+        ) + addLogcatReports(logCatListener)
 
-        val coverageReport = if (coverageListener is CoverageListener) {
+        val coverageReport = if (coverageListener is CoverageListener && !context.configuration.isMergedCoverageOnly) {
             coverageListener.coverageFile
         } else {
             null
@@ -129,12 +118,39 @@ class ResultProducer(
         }
     }
 
+    private fun addLogcatReports(logCatListener: LogCatTestRunListener): List<TestReportData> {
+        val unfilteredReport = logCatListener.unfilteredFile
+                ?.let { LinkedFileReportData("Unfiltered logcat", it) }
+        val reports = if (logCatListener.isCompactLogcat) {
+            listOf(
+                    FileTableReportData("Logcat", logCatListener.compactFile) { compactFile ->
+                        CompactLogCatConverter.readTable(compactFile)
+                    },
+                    LinkedFileReportData("Logcat (compact)", logCatListener.compactFile)
+            )
+        } else {
+            val gson = gson()
+            listOf(
+                    FileTableReportData("Logcat", logCatListener.tableFile, { tableFile ->
+                        tableFile
+                                .bufferedReader(Charsets.UTF_8)
+                                .use { reader ->
+                                    gson.fromJson(reader, Table.TableJson::class.java)
+                                }
+                    }),
+                    LinkedFileReportData("Logcat", logCatListener.rawFile),
+                    LinkedFileReportData("Logcat as JSON", logCatListener.tableFile)
+            )
+        }
+        return reports + listOfNotNull(unfilteredReport)
+    }
+
     private fun addTraceReport(screenTraceListener: RunListener): TestReportData? {
         val dataTitle = "Screen recording"
         return if (screenTraceListener is ScreenRecorderTestRunListener) {
             VideoReportData(dataTitle, screenTraceListener.file)
         } else if (screenTraceListener is ScreenCaptureTestRunListener) {
-            ImageReportData(dataTitle, screenTraceListener.file)
+            screenTraceListener.file?.let { ImageReportData(dataTitle, it) }
         } else {
             null
         }
@@ -144,19 +160,20 @@ class ResultProducer(
         return if (Diagnostics.VIDEO == device.supportedVisualDiagnostics) {
             ScreenRecorderTestRunListener(fileManager, device)
         } else if (Diagnostics.SCREENSHOTS == device.supportedVisualDiagnostics && context.configuration.canFallbackToScreenshots()) {
-            ScreenCaptureTestRunListener(fileManager, device)
+            ScreenCaptureTestRunListener(fileManager, device,
+                    context.configuration.screenshotFrameCount, context.configuration.screenshotMaxSize)
         } else {
             NoOpRunListener()
         }
     }
 
-    private fun getCoverageTestRunListener(configuration: TongsConfiguration,
+    private fun getCoverageTestRunListener(context: AndroidRunContext,
                                            device: AndroidDevice,
                                            fileManager: TestCaseFileManager,
                                            pool: Pool,
                                            testCase: TestCaseEvent): RunListener {
-        return if (configuration.isCoverageEnabled) {
-            CoverageListener(device, fileManager, pool, testCase)
+        return if (context.configuration.isCoverageEnabled) {
+            CoverageListener(device, fileManager, pool, testCase, context.configuration, context.remoteCoverageFile)
         } else {
             NoOpRunListener()
         }
@@ -21,7 +21,7 @@ import kotlin.concurrent.withLock
 @ThreadSafe
 class RunListenerAdapter(private val runName: String,
                          private val expectedTest: TestIdentifier,
-                         private val listeners: List<RunListener>) : ITestRunListener, FullTestRunListener {
+                         private val listeners: List<RunListener>) : ITestRunListener, FullTestRunListener, RunBoundariesListener {
 
     private val lock = ReentrantLock()
 
@@ -46,7 +46,7 @@ class RunListenerAdapter(private val runName: String,
         return field
     }
 
-    fun onBeforeTestRunStarted() {
+    override fun onBeforeTestRunStarted() {
         lock.withLock {
             if (!checkRunActive()) return
 
@@ -85,7 +85,7 @@ class RunListenerAdapter(private val runName: String,
         }
     }
 
-    fun onAfterTestRunEnded() {
+    override fun onAfterTestRunEnded() {
         lock.withLock {
             if (!checkRunActive()) return
 
@@ -242,6 +242,14 @@ class RunListenerAdapter(private val runName: String,
     }
 }
 
+/**
+ * Gets notified right before an instrumentation run is started and right after it is finished
+ */
+interface RunBoundariesListener {
+    fun onBeforeTestRunStarted()
+    fun onAfterTestRunEnded()
+}
+
 interface RunListener {
     fun onRunStarted()
 
@@ -16,23 +16,29 @@ import com.github.tarcv.tongs.api.result.TestCaseFile;
 import com.github.tarcv.tongs.api.result.TestCaseFileManager;
 import com.github.tarcv.tongs.model.AndroidDevice;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.Map;
 
 class ScreenCaptureTestRunListener extends BaseCaptureTestRunListener {
     private final TestCaseFileManager fileManager;
     private final IDevice deviceInterface;
+    private final int maxFrameCount;
+    private final int maxSize;
 
     private ScreenCapturer screenCapturer;
 
-    public ScreenCaptureTestRunListener(TestCaseFileManager fileManager, AndroidDevice device) {
+    public ScreenCaptureTestRunListener(TestCaseFileManager fileManager, AndroidDevice device,
+                                        int maxFrameCount, int maxSize) {
         this.fileManager = fileManager;
         this.deviceInterface = device.getDeviceInterface();
+        this.maxFrameCount = maxFrameCount;
+        this.maxSize = maxSize;
     }
 
     @Override
     public void onRunStarted() {
-        screenCapturer = new ScreenCapturer(deviceInterface, fileManager);
+        screenCapturer = new ScreenCapturer(deviceInterface, fileManager, maxFrameCount, maxSize);
         new Thread(screenCapturer, "ScreenCapturer").start();
     }
 
@@ -41,7 +47,7 @@ class ScreenCaptureTestRunListener extends BaseCaptureTestRunListener {
         screenCapturer.stopCapturing(isHasFailed());
     }
 
-    @NotNull
+    @Nullable
     public TestCaseFile getFile() {
         return screenCapturer.getFile();
     }
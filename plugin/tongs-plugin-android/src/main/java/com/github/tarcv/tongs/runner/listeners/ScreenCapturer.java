@@ -18,147 +18,187 @@ import com.android.ddmlib.TimeoutException;
 import com.github.tarcv.tongs.Utils;
 import com.github.tarcv.tongs.api.result.TestCaseFile;
 import com.github.tarcv.tongs.api.result.TestCaseFileManager;
-import com.madgag.gif.fmsware.AnimatedGifEncoder;
 import org.slf4j.Logger;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.LoggerFactory;
 
-import javax.imageio.ImageIO;
-import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.File;
+import java.awt.image.DataBufferByte;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
 
 import static com.github.tarcv.tongs.api.result.StandardFileTypes.ANIMATION;
-import static com.github.tarcv.tongs.api.result.StandardFileTypes.SCREENSHOT;
-import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static java.awt.image.BufferedImage.TYPE_3BYTE_BGR;
 import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
+/**
+ * Captures screenshots of a device into a bounded in-memory ring of the latest frames.
+ * Frames are downscaled while being converted, and a frame is skipped when it is the same as the previous one.
+ * The frames are encoded into an animation in the background by {@link AnimationEncoder}
+ * only when the test case has failed.
+ */
 class ScreenCapturer implements Runnable {
     private static final Logger logger = LoggerFactory.getLogger(ScreenCapturer.class);
-    private final IDevice deviceInterface;
-    private final TestCaseFileManager fileManager;
 
-    private final Object lock = new Object();
-    private final List<File> files = new ArrayList<>();
-    private boolean capturing;
-    private boolean hasFailed;
+    /**
+     * Limits memory used by frames of one capturer, the oldest frames are dropped when it is exceeded
+     */
+    private static final long MAX_BUFFERED_PIXELS = 16L * 1024 * 1024;
+
+    private final IDevice deviceInterface;
+    private final int maxFrameCount;
+    private final int maxSize;
+    private final ArrayDeque<BufferedImage> frames = new ArrayDeque<>();
+    private long bufferedPixels = 0;
+    private int lastFrameHash;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private volatile boolean hasFailed;
+    private volatile boolean isAnimationScheduled;
     private final TestCaseFile animationFile;
 
-    ScreenCapturer(IDevice deviceInterface, TestCaseFileManager fileManager) {
+    /**
+     * @param maxFrameCount number of the latest frames to keep
+     * @param maxSize maximum width and height of frames, or 0 to keep the original size
+     */
+    ScreenCapturer(IDevice deviceInterface, TestCaseFileManager fileManager, int maxFrameCount, int maxSize) {
         this.deviceInterface = deviceInterface;
-        this.fileManager = fileManager;
+        this.maxFrameCount = maxFrameCount;
+        this.maxSize = maxSize;
         this.animationFile = new TestCaseFile(fileManager, ANIMATION, "");
     }
 
     @Override
     public void run() {
-        Thread currentThread = Thread.currentThread();
-        synchronized (lock) {
-            try {
-                int count = 0;
-                capturing = true;
-                while (capturing) {
-                    getScreenshot(count++);
-                    pauseTillNextScreenCapture();
-                }
+        try {
+            do {
+                getScreenshot();
+            } while (!stopped.await(300, MILLISECONDS));
 
-                if (hasFailed) {
-                    File file = animationFile.create();
-                    createGif(files, file);
-                }
-            } catch (InterruptedException e) {
-                logger.warn("Screenshot capturer thread was interrupted", e);
-                currentThread.interrupt();
-            } finally {
-                deleteFiles(files);
-                files.clear();
+            if (hasFailed && !frames.isEmpty()) {
+                AnimationEncoder.encode(deviceInterface, new ArrayList<>(frames), animationFile.create());
+                isAnimationScheduled = true;
             }
+        } catch (InterruptedException e) {
+            logger.warn("Screenshot capturer thread was interrupted", e);
+            Thread.currentThread().interrupt();
+        } finally {
+            // Frames of passed tests are dropped without being encoded
+            frames.clear();
+            finished.countDown();
         }
     }
 
-    private static void pauseTillNextScreenCapture() throws InterruptedException {
-        Thread.sleep(300);
-    }
-
-    private void getScreenshot(int sequenceNumber) {
+    private void getScreenshot() {
         try {
             logger.trace("Started getting screenshot");
             long startNanos = nanoTime();
             RawImage screenshot = deviceInterface.getScreenshot();
-            File file = fileManager.createFile(SCREENSHOT, sequenceNumber);
-            files.add(file);
-            ImageIO.write(bufferedImageFrom(screenshot), SCREENSHOT.getSuffix(), file);
-            logger.trace("Finished writing screenshot in {}ms to: {}", Utils.millisSinceNanoTime(startNanos), file);
+            addFrame(bufferedImageFrom(screenshot, maxSize));
+            logger.trace("Finished getting screenshot in {}ms", Utils.millisSinceNanoTime(startNanos));
         } catch (TimeoutException | AdbCommandRejectedException | IOException e) {
             logger.error("Error when getting screenshot of device", e);
         }
     }
 
-    public void stopCapturing(boolean hasFailed) {
-        synchronized (lock) {
-            this.hasFailed = hasFailed;
-            capturing = false;
+    private void addFrame(BufferedImage frame) {
+        byte[] pixels = pixelsOf(frame);
+        int hash = Arrays.hashCode(pixels);
+        BufferedImage lastFrame = frames.peekLast();
+        if (lastFrame != null && hash == lastFrameHash && Arrays.equals(pixels, pixelsOf(lastFrame))) {
+            logger.trace("Skipped screenshot that is the same as the previous one");
+            return;
         }
-    }
-
-    private static BufferedImage bufferedImageFrom(RawImage rawImage) {
-        BufferedImage image = new BufferedImage(rawImage.width, rawImage.height, TYPE_INT_ARGB);
+        lastFrameHash = hash;
 
-        int index = 0;
-        int bytesPerPixel = rawImage.bpp >> 3;
-        for (int y = 0; y < rawImage.height; y++) {
-            for (int x = 0; x < rawImage.width; x++) {
-                image.setRGB(x, y, rawImage.getARGB(index) | 0xff000000);
-                index += bytesPerPixel;
-            }
+        frames.addLast(frame);
+        bufferedPixels += pixelCountOf(frame);
+        while (frames.size() > 1 && (frames.size() > maxFrameCount || bufferedPixels > MAX_BUFFERED_PIXELS)) {
+            bufferedPixels -= pixelCountOf(frames.removeFirst());
         }
-        return image;
     }
 
-    private static void createGif(List<File> files, File file) {
-        try {
-            AnimatedGifEncoder encoder = new AnimatedGifEncoder();
-            encoder.start(file.getAbsolutePath());
-            encoder.setDelay(1500);
-            encoder.setQuality(1);
-            encoder.setRepeat(0);
-            encoder.setTransparent(Color.WHITE);
-
-            int width = 0;
-            int height = 0;
-            for (File testScreenshot : files) {
-                BufferedImage bufferedImage = ImageIO.read(testScreenshot);
-                width = Math.max(bufferedImage.getWidth(), width);
-                height = Math.max(bufferedImage.getHeight(), height);
-            }
-            encoder.setSize(width, height);
+    private static byte[] pixelsOf(BufferedImage frame) {
+        return ((DataBufferByte) frame.getRaster().getDataBuffer()).getData();
+    }
 
-            for (File testScreenshot : files) {
-                encoder.addFrame(ImageIO.read(testScreenshot));
-            }
+    private static long pixelCountOf(BufferedImage frame) {
+        return (long) frame.getWidth() * frame.getHeight();
+    }
 
-            encoder.finish();
-        } catch (IOException e) {
-            logger.error("Error saving animated GIF", e);
+    /**
+     * Stops capturing and waits until the animation is scheduled for encoding (when there is something to encode)
+     */
+    public void stopCapturing(boolean hasFailed) {
+        this.hasFailed = hasFailed;
+        stopped.countDown();
+        try {
+            finished.await();
+        } catch (InterruptedException e) {
+            logger.warn("Interrupted while waiting for screenshot capturer to stop", e);
+            Thread.currentThread().interrupt();
         }
     }
 
-    private static void deleteFiles(List<File> files) {
-        for (File file : files) {
-            try {
-                Files.deleteIfExists(file.toPath());
-            } catch (IOException e) {
-                if (logger.isWarnEnabled()) {
-                    logger.warn(String.format("Failed to delete %s", file), e);
+    /**
+     * Converts a framebuffer directly into the pixel array of an image in the format used by the GIF encoder.
+     * Frames larger than {@code maxSize} are downscaled by picking the nearest source pixels,
+     * so the full size image is never created.
+     *
+     * @param maxSize maximum width and height of the result, or 0 to keep the original size
+     */
+    static BufferedImage bufferedImageFrom(RawImage rawImage, int maxSize) {
+        int longestSide = Math.max(rawImage.width, rawImage.height);
+        int width = rawImage.width;
+        int height = rawImage.height;
+        if (maxSize > 0 && longestSide > maxSize) {
+            width = Math.max(1, (int) ((long) rawImage.width * maxSize / longestSide));
+            height = Math.max(1, (int) ((long) rawImage.height * maxSize / longestSide));
+        }
+
+        BufferedImage image = new BufferedImage(width, height, TYPE_3BYTE_BGR);
+        byte[] pixels = pixelsOf(image);
+        byte[] data = rawImage.data;
+        int bytesPerPixel = rawImage.bpp >> 3;
+        boolean isRgb888 = rawImage.bpp == 32
+                && rawImage.red_length == 8 && rawImage.green_length == 8 && rawImage.blue_length == 8;
+        int redOffset = rawImage.red_offset;
+        int greenOffset = rawImage.green_offset;
+        int blueOffset = rawImage.blue_offset;
+
+        int target = 0;
+        for (int y = 0; y < height; y++) {
+            int sourceRow = (int) ((long) y * rawImage.height / height) * rawImage.width;
+            for (int x = 0; x < width; x++, target += 3) {
+                int source = (sourceRow + (int) ((long) x * rawImage.width / width)) * bytesPerPixel;
+                if (isRgb888) {
+                    int value = (data[source] & 0xff)
+                            | (data[source + 1] & 0xff) << 8
+                            | (data[source + 2] & 0xff) << 16
+                            | (data[source + 3] & 0xff) << 24;
+                    pixels[target] = (byte) (value >>> blueOffset);
+                    pixels[target + 1] = (byte) (value >>> greenOffset);
+                    pixels[target + 2] = (byte) (value >>> redOffset);
+                } else {
+                    int argb = rawImage.getARGB(source);
+                    pixels[target] = (byte) argb;
+                    pixels[target + 1] = (byte) (argb >>> 8);
+                    pixels[target + 2] = (byte) (argb >>> 16);
                 }
             }
         }
+        return image;
     }
 
+    /**
+     * @return file the animation is written to in the background, or null when no animation is written
+     */
+    @Nullable
     public TestCaseFile getFile() {
-        return animationFile;
+        return isAnimationScheduled ? animationFile : null;
     }
 }
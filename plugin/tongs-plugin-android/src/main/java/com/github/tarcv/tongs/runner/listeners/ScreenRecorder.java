@@ -16,11 +16,8 @@ import com.github.tarcv.tongs.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.File;
 import java.io.IOException;
 
-import static com.github.tarcv.tongs.system.io.RemoteFileManager.remoteVideoForTest;
-import static com.github.tarcv.tongs.system.io.RemoteFileManager.removeRemotePath;
 import static java.lang.System.nanoTime;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
@@ -34,15 +31,13 @@ class ScreenRecorder implements Runnable {
             .build();
 
     private final String remoteFilePath;
-    private final File localVideoFile;
     private final IDevice deviceInterface;
-    private final ScreenRecorderStopper screenRecorderStopper;
 
-    public ScreenRecorder(ScreenRecorderStopper screenRecorderStopper, File localVideoFile,
-                          IDevice deviceInterface) {
-        remoteFilePath = remoteVideoForTest();
-        this.screenRecorderStopper = screenRecorderStopper;
-        this.localVideoFile = localVideoFile;
+    /**
+     * Records the screen to {@code remoteFilePath} until the recording is stopped with {@link ScreenRecorderStopper}
+     */
+    public ScreenRecorder(String remoteFilePath, IDevice deviceInterface) {
+        this.remoteFilePath = remoteFilePath;
         this.deviceInterface = deviceInterface;
     }
 
@@ -50,10 +45,6 @@ class ScreenRecorder implements Runnable {
     public void run() {
         try {
             startRecordingTestVideo();
-            if (screenRecorderStopper.hasFailed()) {
-                pullTestVideo();
-            }
-            removeTestVideo();
         } catch (Exception e) {
             logger.error("Something went wrong while screen recording", e);
         }
@@ -67,19 +58,4 @@ class ScreenRecorder implements Runnable {
         deviceInterface.startScreenRecorder(remoteFilePath, RECORDER_OPTIONS, outputReceiver);
         logger.trace("Recording finished in {}ms {}", Utils.millisSinceNanoTime(startNanos), remoteFilePath);
     }
-
-    private void pullTestVideo() throws IOException, AdbCommandRejectedException, TimeoutException, SyncException {
-        logger.trace("Started pulling file {} to {}", remoteFilePath, localVideoFile);
-        long startNanos = nanoTime();
-        localVideoFile.getParentFile().mkdirs();
-        deviceInterface.pullFile(remoteFilePath, localVideoFile.toString());
-        logger.trace("Pulling finished in {}ms {}", Utils.millisSinceNanoTime(startNanos), remoteFilePath);
-    }
-
-    private void removeTestVideo() {
-        logger.trace("Started removing file {}", remoteFilePath);
-        long startNanos = nanoTime();
-        removeRemotePath(deviceInterface, remoteFilePath);
-        logger.trace("Removed file in {}ms {}", Utils.millisSinceNanoTime(startNanos), remoteFilePath);
-    }
 }
@@ -14,23 +14,33 @@ import com.android.ddmlib.IDevice;
 import com.android.ddmlib.testrunner.TestIdentifier;
 import com.github.tarcv.tongs.api.result.TestCaseFile;
 import com.github.tarcv.tongs.api.result.TestCaseFileManager;
+import com.github.tarcv.tongs.device.ArtifactTransferQueue;
 import com.github.tarcv.tongs.model.AndroidDevice;
 import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.io.File;
 import java.util.Map;
 
 import static com.github.tarcv.tongs.api.result.StandardFileTypes.SCREENRECORD;
+import static com.github.tarcv.tongs.system.io.RemoteFileManager.remoteVideoForTest;
 
 class ScreenRecorderTestRunListener extends BaseCaptureTestRunListener {
+    private static final Logger logger = LoggerFactory.getLogger(ScreenRecorderTestRunListener.class);
+    private static final long RECORDER_STOP_TIMEOUT_MILLIS = 10_000;
+
+    private final AndroidDevice device;
     private final IDevice deviceInterface;
 
     private final ScreenRecorderStopper screenRecorderStopper;
+    private String remoteFilePath;
+    private Thread recorderThread;
 
     @NotNull
     public final TestCaseFile file;
 
     public ScreenRecorderTestRunListener(TestCaseFileManager fileManager, AndroidDevice device) {
+        this.device = device;
         deviceInterface = device.getDeviceInterface();
         screenRecorderStopper = new ScreenRecorderStopper(deviceInterface);
         file = new TestCaseFile(fileManager, SCREENRECORD, "");
@@ -43,14 +53,31 @@ class ScreenRecorderTestRunListener extends BaseCaptureTestRunListener {
 
     @Override
     public void onRunStarted() {
-        File localVideoFile = file.toFile();
-        ScreenRecorder screenRecorder = new ScreenRecorder(screenRecorderStopper, localVideoFile, deviceInterface);
-        new Thread(screenRecorder, "ScreenRecorder").start();
+        remoteFilePath = remoteVideoForTest();
+        recorderThread = new Thread(new ScreenRecorder(remoteFilePath, deviceInterface), "ScreenRecorder");
+        recorderThread.start();
     }
 
     @Override
     public void onRunFinished() {
-        screenRecorderStopper.stopScreenRecord(isHasFailed());
+        boolean hasFailed = isHasFailed();
+        screenRecorderStopper.stopScreenRecord(hasFailed);
+        try {
+            recorderThread.join(RECORDER_STOP_TIMEOUT_MILLIS);
+            if (recorderThread.isAlive()) {
+                logger.warn("Screen recording on {} didn't stop in time", deviceInterface.getSerialNumber());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // The video is transferred while the device executes the next test case
+        ArtifactTransferQueue transferQueue = ArtifactTransferQueue.of(device);
+        if (hasFailed) {
+            transferQueue.pull(remoteFilePath, file.toFile(), true);
+        } else {
+            transferQueue.remove(remoteFilePath);
+        }
     }
 
     @Override
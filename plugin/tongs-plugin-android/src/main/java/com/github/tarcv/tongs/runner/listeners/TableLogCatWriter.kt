@@ -16,27 +16,28 @@ package com.github.tarcv.tongs.runner.listeners
 import com.android.ddmlib.logcat.LogCatMessage
 import com.github.tarcv.tongs.api.result.Table
 import com.github.tarcv.tongs.api.result.TestCaseFile
+import com.github.tarcv.tongs.device.DeviceLogcat.Companion.forEachClosing
 import com.google.gson.Gson
-import java.util.function.Function
-import java.util.stream.Collectors
+import java.io.Writer
 
 class TableLogCatWriter(
         private val gson: Gson,
         private val file: TestCaseFile
 ) : LogCatWriter {
-    override fun writeLogs(logCatMessages: List<LogCatMessage>) {
-        convertToTable(logCatMessages)
-                .writeToFile(file) { outputFile, tableJson ->
-                    outputFile
-                            .bufferedWriter(Charsets.UTF_8)
-                            .use { writer ->
-                                gson.toJson(tableJson, writer)
-                            }
+    override fun writeLogs(logCatMessages: Iterable<LogCatMessage>) {
+        file.create()
+                .bufferedWriter(Charsets.UTF_8)
+                .use { writer ->
+                    writeTable(gson, writer, logCatMessages)
                 }
     }
 
     fun convertToTable(messages: List<LogCatMessage>): Table {
-        val headers = listOf("appName",
+        return Table(headers, messages.map { toRow(it) })
+    }
+
+    companion object {
+        internal val headers = listOf("appName",
                 "logLevel",
                 "message",
                 "pid",
@@ -44,16 +45,37 @@ class TableLogCatWriter(
                 "tid",
                 "time"
         )
-        val rows: List<List<String>> = messages.stream()
-                .map(Function { logCatMessage: LogCatMessage ->
-                    listOf(logCatMessage.appName,
-                            logCatMessage.logLevel.stringValue,
-                            logCatMessage.message, logCatMessage.pid.toString(),
-                            logCatMessage.tag, logCatMessage.tid.toString(),
-                            logCatMessage.timestamp.toString()
-                    )
-                })
-                .collect(Collectors.toList<List<String>>())
-        return Table(headers, rows)
+
+        /**
+         * Writes messages in the format of [Table.TableJson] one by one, so that they are never kept in memory all at once
+         */
+        internal fun writeTable(gson: Gson, writer: Writer, logCatMessages: Iterable<LogCatMessage>) {
+            val jsonWriter = gson.newJsonWriter(writer)
+            jsonWriter.beginObject()
+
+            jsonWriter.name("headers").beginArray()
+            headers.forEach { jsonWriter.value(it) }
+            jsonWriter.endArray()
+
+            jsonWriter.name("rows").beginArray()
+            logCatMessages.forEachClosing { logCatMessage ->
+                jsonWriter.beginArray()
+                toRow(logCatMessage).forEach { jsonWriter.value(it) }
+                jsonWriter.endArray()
+            }
+            jsonWriter.endArray()
+
+            jsonWriter.endObject()
+            jsonWriter.flush()
+        }
+
+        internal fun toRow(logCatMessage: LogCatMessage): List<String> {
+            return listOf(logCatMessage.appName,
+                    logCatMessage.logLevel.stringValue,
+                    logCatMessage.message, logCatMessage.pid.toString(),
+                    logCatMessage.tag, logCatMessage.tid.toString(),
+                    logCatMessage.timestamp.toString()
+            )
+        }
     }
-}
\ No newline at end of file
+}
@@ -25,19 +25,14 @@ import org.jf.dexlib2.iface.BasicAnnotation
 import org.jf.dexlib2.iface.value.*
 import org.slf4j.LoggerFactory
 import java.io.File
+import java.util.stream.Collectors
+import java.util.zip.ZipFile
 
 class ApkTestInfoReader {
     fun readTestInfo(apk: File, testsToCheck: Collection<TestIdentifier>): List<TestInfo> {
-        class FoundMethod(
-                val matchingParts: Int,
-                val method: DexBackedMethod
-        )
-
-        class Test(val testIdentifier: TestIdentifier) {
-            var foundMethod: FoundMethod? = null
-        }
-
-        val testParts = HashMap<String, List<Test>>()
+        // Tests are matched to methods through this index of (parts of test identifiers -> how many times
+        // a part occurs in each test)
+        val testParts = HashMap<String, MutableMap<Test, Int>>()
         val testMatches = ArrayList<Test>()
         testsToCheck
                 .forEach { test ->
@@ -50,65 +45,36 @@ class ApkTestInfoReader {
                             .forEach { part ->
                                 testParts
                                         .computeIfAbsent(part) {
-                                            ArrayList()
-                                        }
-                                        .let {
-                                            (it as MutableList).add(testInfo)
+                                            HashMap()
                                         }
+                                        .merge(testInfo, 1) { a, b -> a + b }
                             }
                 }
 
-        val dexClasses = generateSequence(1) { it + 1}
-            .map {
-                val indexStr = if (it == 1) {
-                    ""
-                } else {
-                    it.toString()
-                }
-
-                try {
-                    DexFileFactory.loadDexEntry(apk, "classes${indexStr}.dex", true, null)
-                } catch (e: DexFileFactory.DexFileNotFoundException) {
-                    null
+        // Each dex entry is loaded and scanned on its own thread
+        val scannedDexes = listDexEntries(apk)
+                .withIndex()
+                .toList()
+                .parallelStream()
+                .map { (dexIndex, entryName) ->
+                    val dexFile = DexFileFactory.loadDexEntry(apk, entryName, true, null).dexFile
+                    scanDex(dexIndex, dexFile.classes, testParts)
                 }
-            }
-            .takeWhile { it != null }
-            .toList()
-            .flatMap { it!!.dexFile.classes }
+                .collect(Collectors.toList())
 
-        val knownClasses = dexClasses
-                .filter(Companion::isClass)
-                .associateBy { decodeClassName(it.type) }
+        // Later entries override earlier ones, the same way as when reading all entries sequentially
+        val knownClasses = HashMap<String, DexBackedClassDef>()
+        scannedDexes.forEach { knownClasses.putAll(it.knownClasses) }
 
-        dexClasses
-                .filter(Companion::isClass)
-                .flatMap { clazz ->
-                    (clazz.virtualMethods + clazz.directMethods)
-                            .filter { it.name !in ignoredMethods }
-                            .filter {
-                                AccessFlags.ABSTRACT !in it.accessFlags
-                                        && AccessFlags.CONSTRUCTOR !in it.accessFlags
-                                        && AccessFlags.NATIVE !in it.accessFlags
-                            }
-                }
-                .sortedBy(Companion::methodCompareIndex)
-                .forEach { method ->
-                    val className = decodeClassName(method.classDef.type)
-                    val methodName = method.name
-                    (
-                            (testParts[className] ?: emptyList()) +
-                                    (testParts[methodName] ?: emptyList())
-                            )
-                            .groupingBy { it }
-                            .eachCount()
-                            .forEach { (test, matchingParts) ->
-                                test.foundMethod.let {
-                                    if (it == null || it.matchingParts < matchingParts) {
-                                        test.foundMethod = FoundMethod(matchingParts, method)
-                                    }
-                                }
-                            }
+        scannedDexes.forEach { scannedDex ->
+            scannedDex.foundMethods.forEach { (test, candidate) ->
+                test.foundMethod.let {
+                    if (it == null || candidate.isBetterThan(it)) {
+                        test.foundMethod = candidate
+                    }
                 }
+            }
+        }
 
         val notFoundTests = testMatches
             .filter { test -> test.foundMethod == null }
@@ -140,6 +106,75 @@ class ApkTestInfoReader {
                 }
     }
 
+    private fun listDexEntries(apk: File): List<String> {
+        val entryNames = ZipFile(apk).use { zip ->
+            zip.entries().asSequence().map { it.name }.toHashSet()
+        }
+        return generateSequence(1) { it + 1 }
+                .map {
+                    val indexStr = if (it == 1) {
+                        ""
+                    } else {
+                        it.toString()
+                    }
+                    "classes${indexStr}.dex"
+                }
+                .takeWhile { it in entryNames }
+                .toList()
+    }
+
+    private fun scanDex(
+            dexIndex: Int,
+            classes: Collection<DexBackedClassDef>,
+            testParts: Map<String, Map<Test, Int>>
+    ): ScannedDex {
+        val knownClasses = HashMap<String, DexBackedClassDef>()
+        val foundMethods = HashMap<Test, FoundMethod>()
+        var methodPosition = 0L
+
+        classes
+                .filter(Companion::isClass)
+                .forEach { clazz ->
+                    val className = decodeClassName(clazz.type)
+                    knownClasses[className] = clazz
+
+                    val classMatches = testParts[className] ?: emptyMap()
+                    (clazz.virtualMethods + clazz.directMethods)
+                            .forEach { method ->
+                                val position = methodPosition++
+                                if (method.name in ignoredMethods
+                                        || AccessFlags.ABSTRACT in method.accessFlags
+                                        || AccessFlags.CONSTRUCTOR in method.accessFlags
+                                        || AccessFlags.NATIVE in method.accessFlags) {
+                                    return@forEach
+                                }
+
+                                val methodMatches = testParts[method.name] ?: emptyMap()
+                                if (classMatches.isEmpty() && methodMatches.isEmpty()) {
+                                    return@forEach
+                                }
+
+                                val compareIndex = methodCompareIndex(method)
+                                fun offer(test: Test, matchingParts: Int) {
+                                    val candidate = FoundMethod(matchingParts, compareIndex, dexIndex, position, method)
+                                    foundMethods.merge(test, candidate) { old, new ->
+                                        if (new.isBetterThan(old)) new else old
+                                    }
+                                }
+                                classMatches.forEach { (test, count) ->
+                                    offer(test, count + (methodMatches[test] ?: 0))
+                                }
+                                methodMatches.forEach { (test, count) ->
+                                    if (test !in classMatches) {
+                                        offer(test, count)
+                                    }
+                                }
+                            }
+                }
+
+        return ScannedDex(knownClasses, foundMethods)
+    }
+
     private fun extractPackage(testClass: DexBackedClassDef): String {
         return testClass.type
                 .substringBeforeLast('/', "")
@@ -340,5 +375,33 @@ class ApkTestInfoReader {
         }
     }
 
+    private class Test(val testIdentifier: TestIdentifier) {
+        var foundMethod: FoundMethod? = null
+    }
+
+    private class FoundMethod(
+            val matchingParts: Int,
+            private val compareIndex: Int,
+            private val dexIndex: Int,
+            private val position: Long,
+            val method: DexBackedMethod
+    ) {
+        /**
+         * More matching parts win, then methods are preferred by their kind (see [methodCompareIndex])
+         * and then by their order in the APK
+         */
+        fun isBetterThan(other: FoundMethod): Boolean = when {
+            matchingParts != other.matchingParts -> matchingParts > other.matchingParts
+            compareIndex != other.compareIndex -> compareIndex < other.compareIndex
+            dexIndex != other.dexIndex -> dexIndex < other.dexIndex
+            else -> position < other.position
+        }
+    }
+
+    private class ScannedDex(
+            val knownClasses: Map<String, DexBackedClassDef>,
+            val foundMethods: Map<Test, FoundMethod>
+    )
+
     class ApkReadingException(message: String) : RuntimeException(message)
 }
\ No newline at end of file
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.suite
+
+import com.github.tarcv.tongs.api.devices.Device
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+
+/**
+ * Devices of the same profile (with the same APKs installed) are expected to have the same list of tests
+ */
+internal data class DeviceProfile(
+        val manufacturer: String,
+        val modelName: String,
+        val osApiLevel: Int,
+        val isTablet: Boolean
+) {
+    companion object {
+        fun of(device: Device) = DeviceProfile(
+                device.manufacturer,
+                device.modelName,
+                device.osApiLevel,
+                device.isTablet
+        )
+    }
+}
+
+/**
+ * Runs [collect] once for each group of [devices] (concurrently for different groups),
+ * trying at most [attemptsPerGroup] representatives of a group until one of them succeeds.
+ *
+ * Cancellation of [collect] is not treated as a failed attempt, it cancels the whole collection.
+ *
+ * @return result of a successful representative paired with each device of its group,
+ * or the last failure for each group where all attempts failed
+ */
+internal suspend fun <D, K, R> collectOncePerGroup(
+        devices: List<D>,
+        attemptsPerGroup: Int,
+        groupKey: (D) -> K,
+        collect: suspend (D) -> R
+): List<Result<List<Pair<D, R>>>> = coroutineScope {
+    require(attemptsPerGroup > 0) { "At least one attempt per group is required" }
+
+    devices
+            .groupBy(groupKey)
+            .values
+            .map { group ->
+                async {
+                    var lastResult: Result<R>? = null
+                    for (representative in group.take(attemptsPerGroup)) {
+                        lastResult = runCatching { collect(representative) }
+                        val failure = lastResult.exceptionOrNull()
+                        if (failure is CancellationException) {
+                            throw failure
+                        }
+                        if (failure == null || failure is InterruptedException) {
+                            break
+                        }
+                    }
+                    lastResult!!.map { collected -> group.map { it to collected } }
+                }
+            }
+            .awaitAll()
+}
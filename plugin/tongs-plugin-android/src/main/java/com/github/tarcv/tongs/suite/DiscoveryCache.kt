@@ -0,0 +1,175 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.suite
+
+import com.android.ddmlib.testrunner.TestIdentifier
+import com.github.tarcv.tongs.CommonDefaults
+import com.github.tarcv.tongs.api.devices.Device
+import com.github.tarcv.tongs.runner.JsonInfoDecorder
+import com.github.tarcv.tongs.runner.TestInfo
+import com.github.tarcv.tongs.util.FileDigests
+import com.google.gson.Gson
+import com.google.gson.GsonBuilder
+import com.google.gson.JsonArray
+import com.google.gson.JsonObject
+import com.google.gson.JsonParser
+import org.slf4j.LoggerFactory
+import java.io.File
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+
+/**
+ * Keeps lists of tests collected from devices between runs, so that repeated runs of the same build
+ * do not need a collecting run on devices.
+ *
+ * An entry is used only when all of its [Key] inputs are the same, so changing the instrumentation APK,
+ * the test runner, instrumentation arguments, the excluded annotation or upgrading Tongs
+ * makes tests to be collected again.
+ */
+internal class DiscoveryCache(private val directory: File) {
+    private val gson = GsonBuilder().serializeNulls().create()
+    private val jsonInfoDecoder = JsonInfoDecorder()
+
+    fun load(key: Key): Entry? {
+        val file = fileFor(key)
+        if (!file.isFile) {
+            return null
+        }
+
+        return try {
+            val json = file.reader(Charsets.UTF_8).use { JsonParser().parse(it).asJsonObject }
+            if (json.get("version").asInt != FORMAT_VERSION || json.get("key").asString != key.canonicalForm) {
+                return null
+            }
+
+            val tests = json.getAsJsonArray("tests")
+                    .map { readIdentifier(it.asJsonObject) }
+                    .toSet()
+            val infos = json.getAsJsonArray("infos")
+                    .map { element ->
+                        val info = element.asJsonObject
+                        TestInfo(
+                                readIdentifier(info),
+                                info.get("testPackage").asString,
+                                info.getAsJsonArray("readablePath").map { it.asString },
+                                jsonInfoDecoder.deserializeAnnotations(info.getAsJsonArray("annotations"))
+                        )
+                    }
+                    .associateBy { it.identifier }
+            Entry(json.get("hasOnDeviceLibrary").asBoolean, tests, infos)
+        } catch (e: Exception) {
+            logger.warn("Failed to read cached list of tests from $file", e)
+            null
+        }
+    }
+
+    fun store(key: Key, entry: Entry) {
+        val json = JsonObject().apply {
+            addProperty("version", FORMAT_VERSION)
+            addProperty("key", key.canonicalForm)
+            addProperty("hasOnDeviceLibrary", entry.hasOnDeviceLibrary)
+            add("tests", JsonArray().apply {
+                entry.tests.forEach { add(writeIdentifier(it)) }
+            })
+            add("infos", JsonArray().apply {
+                entry.infos.values.forEach { info ->
+                    add(writeIdentifier(info.identifier).apply {
+                        addProperty("testPackage", info.`package`)
+                        add("readablePath", gson.toJsonTree(info.readablePath))
+                        add("annotations", JsonArray().apply {
+                            info.annotations.forEach { annotation ->
+                                add(gson.toJsonTree(annotation.properties).asJsonObject.apply {
+                                    addProperty("annotationType", annotation.fullyQualifiedName)
+                                })
+                            }
+                        })
+                    })
+                }
+            })
+        }
+
+        val file = fileFor(key)
+        try {
+            directory.mkdirs()
+            // Devices of the same profile might store their lists at the same time, so replace the file atomically
+            val tempFile = File.createTempFile(file.name, ".tmp", directory)
+            try {
+                tempFile.writeText(gson.toJson(json), Charsets.UTF_8)
+                Files.move(tempFile.toPath(), file.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+            } finally {
+                tempFile.delete()
+            }
+        } catch (e: IOException) {
+            logger.warn("Failed to cache list of tests to $file", e)
+        }
+    }
+
+    private fun fileFor(key: Key) = File(directory, "${FileDigests.sha256Of(key.canonicalForm)}.json")
+
+    private fun readIdentifier(json: JsonObject) =
+            TestIdentifier(json.get("testClass").asString, json.get("testMethod").asString)
+
+    private fun writeIdentifier(identifier: TestIdentifier) = JsonObject().apply {
+        addProperty("testClass", identifier.className)
+        addProperty("testMethod", identifier.testName)
+    }
+
+    /**
+     * @param tongsVersion version of Tongs that collected the tests, so that lists collected by other versions
+     *                     (which might produce different test infos) are not used
+     */
+    class Key(
+            instrumentationApkDigest: String,
+            testRunnerClass: String,
+            instrumentationArguments: Map<String, String>,
+            excludedAnnotation: String?,
+            device: Device,
+            tongsVersion: String = CURRENT_TONGS_VERSION
+    ) {
+        private val deviceProfile = DeviceProfile.of(device).let {
+            listOf(it.manufacturer, it.modelName, it.osApiLevel.toString(), it.isTablet.toString())
+        }
+
+        val canonicalForm: String = Gson().toJson(listOf(
+                instrumentationApkDigest,
+                testRunnerClass,
+                instrumentationArguments.toSortedMap(),
+                excludedAnnotation ?: "",
+                deviceProfile,
+                tongsVersion,
+                JsonInfoDecorder.FORMAT_VERSION
+        ))
+
+        companion object {
+            /**
+             * Version from the manifest of Tongs JARs, it is missing when Tongs is not run from JARs (e.g. in tests)
+             */
+            private val CURRENT_TONGS_VERSION: String =
+                    CommonDefaults::class.java.`package`?.implementationVersion ?: ""
+        }
+    }
+
+    class Entry(
+            val hasOnDeviceLibrary: Boolean,
+            val tests: Set<TestIdentifier>,
+            val infos: Map<TestIdentifier, TestInfo>
+    )
+
+    companion object {
+        private const val FORMAT_VERSION = 1
+
+        private val logger = LoggerFactory.getLogger(DiscoveryCache::class.java)
+    }
+}
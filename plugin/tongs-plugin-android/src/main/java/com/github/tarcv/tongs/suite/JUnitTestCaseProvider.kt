@@ -11,28 +11,25 @@
 package com.github.tarcv.tongs.suite
 
 import com.android.ddmlib.CollectingOutputReceiver
-import com.android.ddmlib.logcat.LogCatMessage
 import com.android.ddmlib.testrunner.TestIdentifier
 import com.github.tarcv.tongs.api.testcases.NoTestCasesFoundException
 import com.github.tarcv.tongs.api.testcases.TestCase
 import com.github.tarcv.tongs.api.testcases.TestCaseProvider
 import com.github.tarcv.tongs.api.testcases.TestCaseProviderContext
-import com.github.tarcv.tongs.device.clearLogcat
 import com.github.tarcv.tongs.model.AndroidDevice
 import com.github.tarcv.tongs.runner.AndroidTestRunFactory
 import com.github.tarcv.tongs.runner.JsonInfoDecorder
 import com.github.tarcv.tongs.runner.TestInfo
-import com.github.tarcv.tongs.runner.listeners.LogcatReceiver
+import com.github.tarcv.tongs.system.io.RemoteFileManager
+import com.github.tarcv.tongs.util.FileDigests
 import com.google.gson.JsonObject
 import com.google.gson.JsonParser
 import kotlinx.coroutines.Dispatchers
-import kotlinx.coroutines.async
-import kotlinx.coroutines.awaitAll
-import kotlinx.coroutines.delay
 import kotlinx.coroutines.runBlocking
 import kotlinx.coroutines.withContext
 import org.slf4j.LoggerFactory
 import java.io.File
+import java.io.IOException
 import java.nio.file.Files
 
 class JUnitTestCaseProvider(
@@ -40,10 +37,31 @@ class JUnitTestCaseProvider(
     private val testRunFactory: AndroidTestRunFactory,
     private val apkTestInfoReader: ApkTestInfoReader
 ) : TestCaseProvider {
-    private val logger = LoggerFactory.getLogger(JUnitTestCaseProvider::class.java)
+    private val discoveryCache = DiscoveryCache(File(context.configuration.historyDirectory, "discovery-cache"))
+
+    /**
+     * Digest of the instrumentation APK, or null when the APK is not available locally (and so lists of tests
+     * can't be cached)
+     */
+    private val instrumentationApkDigest: String? by lazy {
+        context.configuration.instrumentationApk?.let {
+            try {
+                FileDigests.sha256Of(it)
+            } catch (e: IOException) {
+                logger.warn("Failed to calculate digest of $it, lists of tests will not be cached", e)
+                null
+            }
+        }
+    }
 
     companion object {
-        const val logcatWaiterSleep: Long = 2500
+        private val logger = LoggerFactory.getLogger(JUnitTestCaseProvider::class.java)
+
+        /**
+         * How many devices of the same profile are tried before giving up collecting tests for that profile
+         */
+        private const val representativeAttempts = 2
+
         private val jsonInfoDecoder = JsonInfoDecorder()
 
         fun calculateDeviceIncludes(input: Sequence<Pair<AndroidDevice, Set<TestIdentifier>>>)
@@ -59,92 +77,46 @@ class JUnitTestCaseProvider(
                     }
         }
 
-        fun decodeMessages(testInfoMessages: Collection<LogCatMessage>): List<JsonObject> {
-            class MessageKey(val id: String, val lineIndex: String) : Comparable<MessageKey> {
-
-                override fun compareTo(other: MessageKey): Int {
-                    return id.compareTo(other.id)
-                            .let {
-                                if (it == 0) {
-                                    lineIndex.compareTo(other.lineIndex)
-                                } else {
-                                    it
-                                }
-                            }
-                }
-
-                override fun equals(other: Any?): Boolean {
-                    if (this === other) return true
-                    if (javaClass != other?.javaClass) return false
-
-                    other as MessageKey
-
-                    if (id != other.id) return false
-                    if (lineIndex != other.lineIndex) return false
-
-                    return true
-                }
-
-                override fun hashCode(): Int {
-                    var result = id.hashCode()
-                    result = 31 * result + lineIndex.hashCode()
-                    return result
-                }
-            }
-
+        /**
+         * Lazily reads test infos written by the 'ondevice' library, one JSON object per line.
+         * Malformed lines (e.g. the last line when the instrumentation crashed while writing it) are skipped.
+         */
+        fun readTestInfoLines(lines: Sequence<String>): Sequence<JsonObject> {
             val jsonParser = JsonParser()
-            return testInfoMessages.asSequence()
-                    .map { it.message }
-                    .fold(ArrayList<Pair<MessageKey, String>>()) { acc, message ->
-                        val (prefix, line) = message.split(':', limit = 2)
-                        val (id, lineIndex) = prefix.split('-', limit = 2)
-
-                        acc.apply {
-                            acc.add(MessageKey(id, lineIndex) to line)
+            return lines
+                    .filter { it.isNotBlank() }
+                    .mapNotNull { line ->
+                        try {
+                            jsonParser.parse(line).asJsonObject
+                        } catch (e: RuntimeException) {
+                            logger.warn("Skipping malformed test info line: $line", e)
+                            null
                         }
                     }
-                    .groupBy({ it.first.id })
-                    .values
-                    .flatMap { pair ->
-                        pair
-                                .sortedBy { it.first.lineIndex.toInt(16) }
-                                .map { it.second }
-                                .let { arrayContent ->
-                                    val json = arrayContent.joinToString("", "[", "]")
-                                    jsonParser
-                                            .parse(json)
-                                            .asJsonArray
-                                            .asSequence()
-                                            .filter { !it.isJsonNull }
-                                            .map { it.asJsonObject }
-                                            .toList()
-                                }
-                    }
         }
-
     }
 
     @Throws(NoTestCasesFoundException::class)
     override fun loadTestSuite(): Collection<TestCase> = runBlocking {
-        context.pool.devices
+        val androidDevices = context.pool.devices
                 .filterIsInstance(AndroidDevice::class.java) // TODO: handle other types of devices
-                .map { device ->
-                    async {
-                        kotlin.runCatching {
-                            try {
-                                collectTestsFromLogOnlyRun(device)
-                            } catch (e: InterruptedException) {
-                                throw e
-                            } catch (e: Exception) {
-                                logger.warn("Didn't collect test cases from ${device.name}", e)
-                                throw e
-                            }
-                        }
-                    }
-                }
-                .awaitAll()
+
+        // Tests are collected on one representative device of each profile and then reused for its other devices
+        collectOncePerGroup(androidDevices, representativeAttempts, { DeviceProfile.of(it) }) { device ->
+            try {
+                collectTestsFromLogOnlyRun(device)
+            } catch (e: InterruptedException) {
+                throw e
+            } catch (e: Exception) {
+                logger.warn("Didn't collect test cases from ${device.name}", e)
+                throw e
+            }
+        }
                 .let { collectedInfoResults ->
-                    val collectedInfos = collectedInfoResults.mapNotNull { it.getOrNull() }
+                    val collectedInfos = collectedInfoResults
+                            .mapNotNull { it.getOrNull() }
+                            .flatten()
+                            .map { (device, collected) -> collected.forDevice(device) }
                     if (collectedInfos.isEmpty()) {
                         val lastCause = if (collectedInfoResults.isEmpty()) {
                             null
@@ -162,11 +134,12 @@ class JUnitTestCaseProvider(
                         }
                         it.device.setHasOnDeviceLibrary(it.hasOnDeviceLibrary)
                     }
-                    val hasOnDeviceLibrary = collectedInfos.any { it.hasOnDeviceLibrary }
+                    val hasTestInfos = collectedInfos.any { it.infoMessages.isNotEmpty() }
 
-                    val annotationInfos = if (!hasOnDeviceLibrary) {
-                        logger.warn("It seems '-ondevice' dependency is missing on all devices in ${context.pool.name}." +
-                                "Falling back to getting annotation data from bytecode in the instrumentation APK (such data will not be 100% accurate).")
+                    val annotationInfos = if (!hasTestInfos) {
+                        logger.warn("No device in ${context.pool.name} reported information about tests" +
+                                " (e.g. '-ondevice' dependency is missing)." +
+                                " Falling back to getting annotation data from bytecode in the instrumentation APK (such data will not be 100% accurate).")
 
                         val allTests = collectedInfos.asSequence()
                                 .map { it.tests }
@@ -252,6 +225,37 @@ class JUnitTestCaseProvider(
     }
 
     private suspend fun collectTestsFromLogOnlyRun(device: AndroidDevice): CollectedInfo {
+        val cacheKey = instrumentationApkDigest?.let {
+            DiscoveryCache.Key(
+                    it,
+                    context.configuration.testRunnerClass,
+                    context.configuration.testRunnerArguments,
+                    context.configuration.excludedAnnotation,
+                    device
+            )
+        }
+        if (cacheKey != null) {
+            val cachedEntry = withContext(Dispatchers.IO) { discoveryCache.load(cacheKey) }
+            if (cachedEntry != null) {
+                logger.info("Using cached list of tests for ${device.name}")
+                return CollectedInfo(device, cachedEntry.hasOnDeviceLibrary, cachedEntry.tests, cachedEntry.infos)
+            }
+        }
+
+        return collectTestsFromDevice(device)
+                .also {
+                    if (cacheKey != null) {
+                        withContext(Dispatchers.IO) {
+                            discoveryCache.store(
+                                    cacheKey,
+                                    DiscoveryCache.Entry(it.hasOnDeviceLibrary, it.tests, it.infoMessages)
+                            )
+                        }
+                    }
+                }
+    }
+
+    private suspend fun collectTestsFromDevice(device: AndroidDevice): CollectedInfo {
         var hasOnDeviceLibrary = true
         var collectionResult = collectTestData(device, hasOnDeviceLibrary)
 
@@ -277,49 +281,69 @@ class JUnitTestCaseProvider(
                 }
             }
         }
-        val testInfoMessages = collectionResult.first
-
-        hasOnDeviceLibrary = hasOnDeviceLibrary && testInfoMessages.isNotEmpty()
-
-        val testInfos = tryCollectingAndDecodingInfos(testInfoMessages)
+        val testInfos = collectionResult.first
+        if (hasOnDeviceLibrary && testInfos == null) {
+            logger.warn("'ondevice' library on ${device.name} didn't write information about tests," +
+                    " annotations will be read from the instrumentation APK")
+        }
 
-        return CollectedInfo(device, hasOnDeviceLibrary, deviceTests, testInfos)
+        return CollectedInfo(device, hasOnDeviceLibrary, deviceTests, testInfos ?: emptyMap())
     }
 
     private suspend fun collectTestData(
             device: AndroidDevice,
-            withOnDeviceLib: Boolean): Pair<List<LogCatMessage>, TestCollectingListener.Result> = withContext(Dispatchers.IO) {
+            withOnDeviceLib: Boolean
+    ): Pair<Map<TestIdentifier, TestInfo>?, TestCollectingListener.Result> = withContext(Dispatchers.IO) {
         val testCollectingListener = TestCollectingListener()
-        val logCatCollector = LogcatReceiver(device)
         val testRun = testRunFactory.createCollectingRun(
                 device, context.pool, testCollectingListener, withOnDeviceLib)
-        try {
-            clearLogcat(device.deviceInterface)
-            logCatCollector.start(this@JUnitTestCaseProvider.javaClass.simpleName)
-
-            testRun.execute()
-
-            delay(logcatWaiterSleep) // make sure all logcat messages are read
-            logCatCollector.stop()
+        testRun.execute()
+
+        val testInfos = if (withOnDeviceLib) {
+            val remoteInfoFile = testCollectingListener.testInfoFile
+            if (remoteInfoFile == null) {
+                logger.warn("'ondevice' library on ${device.name} didn't report where information about tests" +
+                        " was written")
+                null
+            } else {
+                pullTestInfos(device, remoteInfoFile)
+                        .also { RemoteFileManager.removeRemotePath(device.deviceInterface, remoteInfoFile) }
+            }
+        } else {
+            null
+        }
+        Pair(testInfos, testCollectingListener.result)
+    }
 
-            Pair(
-                    logCatCollector.messages
-                            .filter { logCatMessage -> "Tongs.TestInfo" == logCatMessage.tag },
-                    testCollectingListener.result
-            )
+    /**
+     * @return decoded test infos, or null when the 'ondevice' library reported nothing
+     */
+    private fun pullTestInfos(device: AndroidDevice, remoteInfoFile: String): Map<TestIdentifier, TestInfo>? {
+        val localInfoFile = Files.createTempFile("tongs-test-info", ".jsonl").toFile()
+        return try {
+            device.deviceInterface.pullFile(remoteInfoFile, localInfoFile.absolutePath)
+
+            // Messages are decoded while reading, so they are never kept in memory all at once
+            localInfoFile.useLines(Charsets.UTF_8) { lines ->
+                var messageCount = 0
+                val testInfos = tryCollectingAndDecodingInfos(
+                        readTestInfoLines(lines).onEach { messageCount++ }
+                )
+                testInfos.takeIf { messageCount > 0 }
+            }
+        } catch (e: Exception) {
+            logger.warn("Failed to pull test infos from ${device.name}", e)
+            null
         } finally {
-            logCatCollector.stop()
+            localInfoFile.delete()
         }
     }
 
     internal fun tryCollectingAndDecodingInfos(
-            testInfoMessages: List<LogCatMessage>
+            testInfoMessages: Sequence<JsonObject>
     ): Map<TestIdentifier, TestInfo> {
         return try {
-            decodeMessages(testInfoMessages)
-                    .let {
-                        jsonInfoDecoder.decodeStructure(it.toList())
-                    }
+            jsonInfoDecoder.decodeStructure(testInfoMessages)
                     .asReversed() // make sure the first entry for duplicate keys is used
                     .associateBy { it.identifier }
         } catch (e: Exception) {
@@ -333,5 +357,11 @@ class JUnitTestCaseProvider(
             val hasOnDeviceLibrary: Boolean,
             val tests: Set<TestIdentifier>,
             val infoMessages: Map<TestIdentifier, TestInfo>
-    )
+    ) {
+        fun forDevice(otherDevice: AndroidDevice) = if (otherDevice == device) {
+            this
+        } else {
+            CollectedInfo(otherDevice, hasOnDeviceLibrary, tests, infoMessages)
+        }
+    }
 }
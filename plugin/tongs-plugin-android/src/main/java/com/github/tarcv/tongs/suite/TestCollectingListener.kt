@@ -11,13 +11,14 @@ package com.github.tarcv.tongs.suite
 
 import com.android.ddmlib.testrunner.ITestRunListener
 import com.android.ddmlib.testrunner.TestIdentifier
+import com.github.tarcv.tongs.runner.TestInfoFileListener
 import java.util.*
 import javax.annotation.concurrent.GuardedBy
 
 /**
- * Records identifiers of started tests
+ * Records identifiers of started tests and the location of the file with information about them
  */
-class TestCollectingListener : ITestRunListener {
+class TestCollectingListener : ITestRunListener, TestInfoFileListener {
     private val lock = Any()
 
     @GuardedBy("lock")
@@ -26,6 +27,16 @@ class TestCollectingListener : ITestRunListener {
     @GuardedBy("lock")
     private var lastFailure: String? = null
 
+    @GuardedBy("lock")
+    private var _testInfoFile: String? = null
+
+    /**
+     * Path on the device of the file the 'ondevice' library wrote information about tests to,
+     * null when the library reported nothing
+     */
+    val testInfoFile: String?
+        get() = synchronized(lock) { _testInfoFile }
+
     val result: Result
         get() = synchronized(lock) {
             lastFailure.let {
@@ -37,6 +48,12 @@ class TestCollectingListener : ITestRunListener {
             }
         }
 
+    override fun onTestInfoFileWritten(remotePath: String) {
+        synchronized(lock) {
+            _testInfoFile = remotePath
+        }
+    }
+
     override fun testStarted(test: TestIdentifier) {
         synchronized(lock) {
             tests.add(test)
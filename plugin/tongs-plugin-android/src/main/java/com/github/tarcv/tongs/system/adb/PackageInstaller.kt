@@ -12,8 +12,11 @@
  */
 package com.github.tarcv.tongs.system.adb
 
+import com.android.ddmlib.IDevice
 import com.android.ddmlib.InstallException
+import com.android.ddmlib.NullOutputReceiver
 import com.github.tarcv.tongs.model.AndroidDevice
+import com.github.tarcv.tongs.util.FileDigests
 import com.github.tarcv.tongs.util.repeatUntilSuccessful
 import org.slf4j.LoggerFactory
 import java.io.File
@@ -22,7 +25,8 @@ class PackageInstaller(
     private val appApk: File?,
     private val appPackage: String,
     private val testApk: File?,
-    private val testPackage: String
+    private val testPackage: String,
+    private val forceReinstall: Boolean
 ) {
     companion object {
         val logger = LoggerFactory.getLogger(PackageInstaller::class.java)
@@ -39,6 +43,14 @@ class PackageInstaller(
 
     private fun doResetInstallation(device: AndroidDevice, apk: File, packageId: String) {
         val deviceInterface = device.deviceInterface
+        if (!forceReinstall && isSameApkInstalled(deviceInterface, apk, packageId)) {
+            logger.info("$packageId on ${deviceInterface.name} is the same as $apk, skipping its reinstallation")
+
+            // Uninstallation also clears data, so do the same here
+            deviceInterface.executeShellCommand("pm clear $packageId", NullOutputReceiver())
+            return
+        }
+
         try {
             deviceInterface.uninstallPackage(packageId)
         } catch (e: InstallException) {
@@ -55,4 +67,36 @@ class PackageInstaller(
                 deviceInterface.installPackage(apk.absolutePath, true, "-t", "-d")
             }
     }
-}
\ No newline at end of file
+
+    /**
+     * Compares the digest of [apk] with the one of the APK installed for [packageId] on the device
+     * (calculated on the device, so the installed APK is not pulled).
+     *
+     * Any problem with getting the installed APK digest is treated as a difference
+     */
+    private fun isSameApkInstalled(deviceInterface: IDevice, apk: File, packageId: String): Boolean {
+        return try {
+            val installedApks = CollectingShellOutputReceiver()
+                    .also { deviceInterface.executeShellCommand("pm path $packageId", it) }
+                    .output
+                    .lines()
+                    .map { it.trim() }
+                    .filter { it.startsWith("package:") }
+                    .map { it.removePrefix("package:") }
+            if (installedApks.size != 1) {
+                // Either not installed or installed as a split APK
+                return false
+            }
+
+            val installedDigest = CollectingShellOutputReceiver()
+                    .also { deviceInterface.executeShellCommand("sha256sum ${installedApks.single()}", it) }
+                    .output
+                    .trim()
+                    .substringBefore(' ')
+            installedDigest.length == 64 && installedDigest.equals(FileDigests.sha256Of(apk), ignoreCase = true)
+        } catch (e: Exception) {
+            logger.warn("Failed to check APK installed for $packageId on ${deviceInterface.name}", e)
+            false
+        }
+    }
+}
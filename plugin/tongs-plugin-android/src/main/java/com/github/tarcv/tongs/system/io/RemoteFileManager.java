@@ -14,12 +14,12 @@
 package com.github.tarcv.tongs.system.io;
 
 import com.android.ddmlib.*;
-import com.github.tarcv.tongs.api.testcases.TestCase;
 import com.github.tarcv.tongs.system.DdmsUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.concurrent.atomic.AtomicInteger;
 
 
@@ -28,6 +28,7 @@ public class RemoteFileManager {
     private static final Logger logger = LoggerFactory.getLogger(RemoteFileManager.class);
     private static final String TONGS_DIRECTORY = "/sdcard/tongs"; // TODO: use $EXTERNAL_STORAGE instead of /sdcard
     private static final NullOutputReceiver NO_OP_RECEIVER = new NullOutputReceiver();
+    public static final int MAX_COMMAND_LENGTH = 1000; // Old adb daemons reject longer shell commands
 
     private RemoteFileManager() {}
 
@@ -35,11 +36,42 @@ public class RemoteFileManager {
         executeCommand(device, "rm " + remotePath, "Could not delete remote file(s): " + remotePath);
     }
 
-    // TODO: use file index for this too and call this method only once for each test attempt
-    public static String getCoverageFileName(TestCase testIdentifier) {
-        return remoteFileForTest("/coverage.ec");
+    /**
+     * Removes files in as few shell commands as possible
+     */
+    public static void removeRemotePaths(IDevice device, Collection<String> remotePaths) {
+        StringBuilder command = new StringBuilder();
+        for (String remotePath : remotePaths) {
+            if (command.length() > 0 && command.length() + remotePath.length() >= MAX_COMMAND_LENGTH) {
+                removeRemotePath(device, command.toString());
+                command.setLength(0);
+            }
+            if (command.length() > 0) {
+                command.append(' ');
+            }
+            command.append(remotePath);
+        }
+        if (command.length() > 0) {
+            removeRemotePath(device, command.toString());
+        }
+    }
+
+    private static final AtomicInteger coverageIndex = new AtomicInteger();
+    public static String remoteCoverageForTest() {
+        // Each attempt gets its own file, so files can be left on a device until they are pulled
+        String filename = String.format("coverage%x.ec", coverageIndex.getAndIncrement());
+
+        return remoteFileForTest(filename);
     }
 
+    /**
+     * Name of the file to which the 'ondevice' library writes information about tests during a collecting run.
+     * The library is executed in the process of the tested application, so it puts the file into the external files
+     * directory of that application, which it can write to without any permissions. That directory depends
+     * on the user, the storage and the API level, so the library reports the actual path back.
+     */
+    public static final String TEST_INFO_FILE_NAME = "tongs-test-info.jsonl";
+
     public static void createRemoteDirectory(IDevice device) {
         executeCommand(device, "mkdir " + TONGS_DIRECTORY, "Could not create remote directory: " + TONGS_DIRECTORY);
     }
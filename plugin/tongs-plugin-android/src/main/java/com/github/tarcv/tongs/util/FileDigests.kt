@@ -0,0 +1,53 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.util
+
+import java.io.File
+import java.security.DigestInputStream
+import java.security.MessageDigest
+import java.util.concurrent.ConcurrentHashMap
+
+object FileDigests {
+    /**
+     * Digests of local files, so that they are calculated once per run and not once per device
+     */
+    private val digests = ConcurrentHashMap<FileState, String>()
+
+    /**
+     * @return hex encoded SHA-256 digest of [file], recalculated only when the file is changed
+     */
+    @JvmStatic
+    fun sha256Of(file: File): String {
+        return digests.computeIfAbsent(FileState(file.absoluteFile, file.length(), file.lastModified())) {
+            val digest = MessageDigest.getInstance("SHA-256")
+            DigestInputStream(file.inputStream().buffered(), digest).use { stream ->
+                val buffer = ByteArray(64 * 1024)
+                while (stream.read(buffer) != -1) {
+                    // just read the whole file
+                }
+            }
+            toHex(digest.digest())
+        }
+    }
+
+    @JvmStatic
+    fun sha256Of(text: String): String {
+        return MessageDigest.getInstance("SHA-256")
+                .digest(text.toByteArray(Charsets.UTF_8))
+                .let { toHex(it) }
+    }
+
+    private fun toHex(bytes: ByteArray): String = bytes.joinToString("") { String.format("%02x", it) }
+
+    private data class FileState(val file: File, val length: Long, val lastModified: Long)
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.github.tarcv.tongs.device
+
+import com.android.ddmlib.IDevice
+import com.android.ddmlib.IShellOutputReceiver
+import com.github.tarcv.tongs.pooling.StubDevice
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.io.IOException
+
+class ArtifactTransferQueueTest {
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    private val device = StubDevice("tongs-5554", "Stub", "StubModel", "stub", 25, "", 0)
+
+    @Test
+    fun testFlushWaitsForQueuedPulls() {
+        val queue = ArtifactTransferQueue(device)
+        val localFiles = (0 until 20).map { File(temporaryFolder.root, "artifacts/file$it") }
+
+        localFiles.forEachIndexed { index, file ->
+            queue.pull("/sdcard/tongs/file$index", file, removeAfter = index % 2 == 0)
+        }
+        queue.shutdown()
+
+        localFiles.forEach {
+            assertTrue("$it should be pulled", it.isFile)
+        }
+    }
+
+    @Test
+    fun testBatchedFilesArePulledOnlyWhenBatchIsFull() {
+        val queue = ArtifactTransferQueue(device, 0, 3)
+        val localFiles = (0 until 4).map { File(temporaryFolder.root, "artifacts/file$it") }
+        val pulledFiles = ArrayList<File>()
+
+        localFiles.take(2).forEachIndexed { index, file ->
+            queue.pull("/sdcard/tongs/file$index", file, true, Runnable { pulledFiles.add(file) })
+        }
+        assertTrue(pulledFiles.isEmpty())
+        assertFalse(localFiles[0].exists())
+
+        queue.remove("/sdcard/tongs/other")
+        assertEquals(localFiles.take(2), pulledFiles)
+
+        queue.pull("/sdcard/tongs/file3", localFiles[3], false)
+        assertFalse(localFiles[3].exists())
+
+        queue.shutdown()
+        assertTrue(localFiles[3].isFile)
+    }
+
+    @Test
+    fun testPullsRightAwayWithoutConcurrency() {
+        val queue = ArtifactTransferQueue(device, 0)
+        val localFile = File(temporaryFolder.root, "artifacts/file")
+
+        queue.pull("/sdcard/tongs/file", localFile, removeAfter = false)
+
+        assertTrue(localFile.isFile)
+    }
+
+    @Test
+    fun testFilesAreRemovedOnlyWhenPulled() {
+        val flakyDevice = FlakyPullDevice(device, failingOnce = "/sdcard/tongs/flaky", alwaysFailing = "/sdcard/tongs/broken")
+        val queue = ArtifactTransferQueue(flakyDevice, 0, 3)
+        val flakyFile = File(temporaryFolder.root, "artifacts/flaky")
+        val pulledFiles = ArrayList<File>()
+
+        queue.pull("/sdcard/tongs/flaky", flakyFile, true, Runnable { pulledFiles.add(flakyFile) })
+        queue.pull("/sdcard/tongs/broken", File(temporaryFolder.root, "artifacts/broken"), true)
+        queue.remove("/sdcard/tongs/other")
+
+        assertEquals(listOf(flakyFile), pulledFiles)
+        assertEquals(listOf("rm /sdcard/tongs/flaky /sdcard/tongs/other"), flakyDevice.shellCommands)
+    }
+
+    @Test
+    fun testUnbatchedFilesAreRemovedOnlyWhenPulled() {
+        val flakyDevice = FlakyPullDevice(device, failingOnce = "/sdcard/tongs/flaky", alwaysFailing = "/sdcard/tongs/broken")
+        val queue = ArtifactTransferQueue(flakyDevice, 0)
+        val pulledFile = File(temporaryFolder.root, "artifacts/pulled")
+        val pulledFiles = ArrayList<File>()
+
+        queue.pull("/sdcard/tongs/broken", File(temporaryFolder.root, "artifacts/broken"), true)
+        queue.pull("/sdcard/tongs/pulled", pulledFile, true, Runnable { pulledFiles.add(pulledFile) })
+
+        assertEquals(listOf(pulledFile), pulledFiles)
+        assertEquals(listOf("rm /sdcard/tongs/pulled"), flakyDevice.shellCommands)
+    }
+
+    private class FlakyPullDevice(
+            private val delegate: IDevice,
+            private val failingOnce: String,
+            private val alwaysFailing: String
+    ) : IDevice by delegate {
+        val shellCommands = ArrayList<String>()
+        private var failedOnce = false
+
+        override fun pullFile(remote: String, local: String) {
+            if (remote == alwaysFailing || remote == failingOnce && !failedOnce) {
+                failedOnce = failedOnce || remote == failingOnce
+                throw IOException("Failed to pull $remote")
+            }
+            delegate.pullFile(remote, local)
+        }
+
+        override fun executeShellCommand(command: String, receiver: IShellOutputReceiver) {
+            shellCommands.add(command)
+        }
+    }
+}
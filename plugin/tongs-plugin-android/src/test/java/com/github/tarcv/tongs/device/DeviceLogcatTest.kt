@@ -0,0 +1,141 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.github.tarcv.tongs.device
+
+import com.android.ddmlib.Log
+import com.android.ddmlib.logcat.LogCatHeader
+import com.android.ddmlib.logcat.LogCatMessage
+import com.android.ddmlib.logcat.LogCatTimestamp
+import com.github.tarcv.tongs.device.DeviceLogcat.Companion.forEachClosing
+import com.github.tarcv.tongs.pooling.StubDevice
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.Closeable
+import java.io.UncheckedIOException
+
+class DeviceLogcatTest {
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    private val logcat by lazy {
+        val device = StubDevice("tongs-5554", "Stub", "StubModel", "stub", 25, "", 0)
+        DeviceLogcat(device, temporaryFolder.newFile())
+    }
+
+    @After
+    fun tearDown() {
+        logcat.stop()
+    }
+
+    @Test
+    fun testWindowContainsOnlyMessagesBetweenPositions() {
+        logcat.appendMessages((0 until 100).map { aMessage("message $it") })
+        val start = logcat.position
+        logcat.appendMessages((100 until 250).map { aMessage("message $it") })
+        val end = logcat.position
+        logcat.appendMessages((250 until 300).map { aMessage("message $it") })
+
+        assertEquals(100L, start)
+        assertEquals(250L, end)
+        assertEquals(
+                (100 until 250).map { "message $it" },
+                logcat.messagesBetween(start, end).map { it.message }
+        )
+    }
+
+    @Test
+    fun testMessagesAreStoredWithAllFields() {
+        val longMessage = "Ω".repeat(70_000)
+        val original = LogCatMessage(
+                LogCatHeader(Log.LogLevel.WARN, 1234, 4321, "com.example.app", "ExampleTag",
+                        LogCatTimestamp.fromString("08-13 22:37:24.123")),
+                longMessage
+        )
+        logcat.appendMessages(listOf(original))
+
+        val restored = logcat.messagesBetween(0, logcat.position).single()
+        assertEquals(original.logLevel, restored.logLevel)
+        assertEquals(original.pid, restored.pid)
+        assertEquals(original.tid, restored.tid)
+        assertEquals(original.appName, restored.appName)
+        assertEquals(original.tag, restored.tag)
+        assertEquals(original.timestamp.toString(), restored.timestamp.toString())
+        assertEquals(longMessage, restored.message)
+    }
+
+    @Test
+    fun testWindowIsClampedToReceivedMessages() {
+        logcat.appendMessages((0 until 10).map { aMessage("message $it") })
+
+        assertEquals(10, logcat.messagesBetween(-5, 1000).count())
+        assertTrue(logcat.messagesBetween(7, 3).none())
+    }
+
+    @Test
+    fun testFirstReadsOnlyFirstMessage() {
+        logcat.appendMessages((0 until 100).map { aMessage("message $it") })
+
+        assertEquals("message 70", logcat.messagesBetween(70, 90).first()?.message)
+        assertNull(logcat.messagesBetween(50, 50).first())
+    }
+
+    @Test(expected = UncheckedIOException::class)
+    fun testClosedIteratorStopsReading() {
+        logcat.appendMessages((0 until 10).map { aMessage("message $it") })
+        val iterator = logcat.messagesBetween(0, logcat.position).iterator()
+        iterator.next()
+
+        DeviceLogcat.closeIfNeeded(iterator)
+
+        iterator.next()
+    }
+
+    @Test
+    fun testIteratorIsClosedWhenIterationStopsEarly() {
+        val parts = listOf(TrackedIterable(listOf("a", "b")), TrackedIterable(listOf("c", "d")))
+
+        try {
+            DeviceLogcat.concat(parts).forEachClosing {
+                if (it == "c") {
+                    throw IllegalStateException("Stopped at $it")
+                }
+            }
+        } catch (e: IllegalStateException) {
+            // expected
+        }
+
+        assertEquals(listOf(1, 1), parts.map { it.closedIterators })
+    }
+
+    private class TrackedIterable(private val values: List<String>) : Iterable<String> {
+        var closedIterators = 0
+
+        override fun iterator(): Iterator<String> {
+            val iterator = values.iterator()
+            return object : Iterator<String> by iterator, Closeable {
+                override fun close() {
+                    closedIterators++
+                }
+            }
+        }
+    }
+
+    private fun aMessage(text: String): LogCatMessage {
+        val header = LogCatHeader(Log.LogLevel.INFO, 1, 2, "app", "tag",
+                LogCatTimestamp.fromString("08-13 22:37:24.001"))
+        return LogCatMessage(header, text)
+    }
+}
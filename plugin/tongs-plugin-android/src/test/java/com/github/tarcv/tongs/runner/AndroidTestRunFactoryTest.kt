@@ -0,0 +1,74 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.github.tarcv.tongs.runner
+
+import com.github.tarcv.tongs.api.run.TestCaseEvent
+import com.github.tarcv.tongs.api.run.aTestCaseEvent
+import com.github.tarcv.tongs.api.testcases.aTestCase
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.util.function.ToIntFunction
+
+class AndroidTestRunFactoryTest {
+    private val lengthOfItem = ToIntFunction<String> { it.length }
+
+    @Test
+    fun testBatchesAreSplitExactlyAtLengthLimit() {
+        val batches = AndroidTestRunFactory.splitIntoBatches(
+                listOf("aaaa", "bbbbbb", "cc", "dddd", "e"),
+                lengthOfItem,
+                10
+        )
+
+        assertEquals(
+                listOf(listOf("aaaa", "bbbbbb"), listOf("cc", "dddd"), listOf("e")),
+                batches
+        )
+    }
+
+    @Test
+    fun testTooLongItemIsPutIntoItsOwnBatch() {
+        val batches = AndroidTestRunFactory.splitIntoBatches(
+                listOf("aa", "bb", "too long item", "cc", "dd", "ee"),
+                lengthOfItem,
+                5
+        )
+
+        assertEquals(
+                listOf(listOf("aa", "bb"), listOf("too long item"), listOf("cc", "dd"), listOf("ee")),
+                batches
+        )
+    }
+
+    @Test
+    fun testFilterLengthMatchesEncodedArguments() {
+        val factory = RemoteAndroidTestRunnerFactory()
+        val testCase = TestCaseEvent.aTestCaseEvent(aTestCase("com.example.ClassTest", "test[1]"))
+
+        assertEquals(
+                factory.encodeTestName("com.example.ClassTest").length +
+                        factory.encodeTestName("test[1]").length + 2,
+                AndroidTestRunFactory.batchFilterLength(testCase, true, factory)
+        )
+        assertEquals(
+                "com.example.ClassTest#test[1],".length,
+                AndroidTestRunFactory.batchFilterLength(testCase, false, factory)
+        )
+    }
+
+    @Test
+    fun testNamesWithCommasAreNotBatchedWithoutOnDeviceLibrary() {
+        val factory = RemoteAndroidTestRunnerFactory()
+        val testCase = TestCaseEvent.aTestCaseEvent(aTestCase("com.example.ClassTest", "test[a, b]"))
+
+        assertEquals(Int.MAX_VALUE, AndroidTestRunFactory.batchFilterLength(testCase, false, factory))
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.github.tarcv.tongs.runner
+
+import com.android.ddmlib.testrunner.TestIdentifier
+import com.github.tarcv.tongs.suite.JUnitTestCaseProvider
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+class JsonInfoDecorderTest {
+    /**
+     * Output of the collecting run recorded for some tests of the functional test app
+     */
+    private val recordedLines: List<String> = javaClass.classLoader
+            .getResourceAsStream("collection-output.jsonl")!!
+            .bufferedReader(Charsets.UTF_8)
+            .use { it.readLines() }
+
+    @Test
+    fun testRecordedOutputIsDecoded() {
+        val infos = decode(recordedLines.asSequence())
+                .associateBy { it.identifier }
+
+        assertEquals(5, infos.size)
+        assertEquals(
+                listOf(
+                        "$appPackage.NormalTest",
+                        "test($appPackage.NormalTest)"
+                ),
+                infos.getValue(TestIdentifier("$appPackage.NormalTest", "test")).readablePath
+        )
+        assertEquals(
+                listOf(
+                        "$appPackage.ParameterizedTest",
+                        "[1]",
+                        "test[1]($appPackage.ParameterizedTest)"
+                ),
+                infos.getValue(TestIdentifier("$appPackage.ParameterizedTest", "test[1]")).readablePath
+        )
+        assertEquals(
+                listOf("com.github.tarcv.tongs.GrantPermission", "org.junit.Test"),
+                infos.getValue(TestIdentifier("$appPackage.GrantPermissionsTest", "testPermissionGranted"))
+                        .annotations
+                        .map { it.fullyQualifiedName }
+        )
+    }
+
+    /**
+     * Benchmark fixture: the recorded output replicated into a suite of 50k tests, decoding of which should take
+     * seconds at most when it is linear in the suite size
+     */
+    @Test(timeout = 30_000)
+    fun testLargeSuiteIsDecodedInLinearTime() {
+        val testsInRecording = 5
+        val copies = 50_000 / testsInRecording
+
+        val lines = (0 until copies)
+                .asSequence()
+                .flatMap { copy -> recordedLines.asSequence().map { replicateLine(it, copy) } }
+        val infos = decode(lines)
+
+        assertEquals(50_000, infos.size)
+        assertEquals(
+                listOf(
+                        "$appPackage.copy123.ParameterizedTest",
+                        "[0]",
+                        "test[0]($appPackage.copy123.ParameterizedTest)"
+                ),
+                infos.single {
+                    it.identifier == TestIdentifier("$appPackage.copy123.ParameterizedTest", "test[0]")
+                }.readablePath
+        )
+    }
+
+    private fun decode(lines: Sequence<String>): List<TestInfo> {
+        return JsonInfoDecorder().decodeStructure(JUnitTestCaseProvider.readTestInfoLines(lines))
+    }
+
+    /**
+     * Makes class names and description IDs in [line] unique for [copy]
+     */
+    private fun replicateLine(line: String, copy: Int): String {
+        return line
+                .replace("$appPackage.", "$appPackage.copy$copy.")
+                .replace(idPropertyRegex) { "${it.groupValues[1]}${replicateId(it.groupValues[2], copy)}" }
+                .replace(childIdsRegex) {
+                    "\"${replicateId(it.groupValues[1], copy)}-${replicateId(it.groupValues[2], copy)}-"
+                }
+    }
+
+    private fun replicateId(id: String, copy: Int): Int = id.toInt() * 10_007 + copy
+
+    companion object {
+        private const val appPackage = "com.github.tarcv.test.happy"
+
+        private val idPropertyRegex = Regex("(\"sId[12]\":)(-?\\d+)")
+        private val childIdsRegex = Regex("\"(\\d+)-(-?\\d+)-")
+    }
+}
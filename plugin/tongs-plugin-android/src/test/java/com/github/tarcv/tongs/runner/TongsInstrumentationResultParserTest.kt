@@ -17,7 +17,9 @@ import com.github.tarcv.tongs.api.run.aTestCaseEvent
 import com.github.tarcv.tongs.api.testcases.aTestCase
 import com.github.tarcv.tongs.runner.listeners.ResultListener
 import com.github.tarcv.tongs.runner.listeners.RunListenerAdapter
+import com.github.tarcv.tongs.suite.TestCollectingListener
 import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
 import org.junit.Test
 
 class TongsInstrumentationResultParserTest {
@@ -113,4 +115,50 @@ Tests run: 1,  Failures: 2
                 result.output.trim().toSystemLineSeparator()
         )
     }
-}
\ No newline at end of file
+
+    @Test
+    fun testInfoFileStatusIsReportedAndNotTreatedAsTestStatus() {
+        val collectingListener = TestCollectingListener()
+        val collectingParser = TongsInstrumentationResultParser("unitTest", listOf(collectingListener))
+        val stdLines = """INSTRUMENTATION_STATUS: tongs_testInfoFile=/storage/emulated/10/Android/data/com.example/files/tongs-test-info.jsonl
+INSTRUMENTATION_STATUS_CODE: 84
+INSTRUMENTATION_STATUS: numtests=1
+INSTRUMENTATION_STATUS: stream=
+INSTRUMENTATION_STATUS: id=AndroidJUnitRunner
+INSTRUMENTATION_STATUS: test=$testMethodName
+INSTRUMENTATION_STATUS: class=${testCase.testClass}
+INSTRUMENTATION_STATUS: current=1
+INSTRUMENTATION_STATUS_CODE: 1
+INSTRUMENTATION_STATUS: numtests=1
+INSTRUMENTATION_STATUS: stream=.
+INSTRUMENTATION_STATUS: id=AndroidJUnitRunner
+INSTRUMENTATION_STATUS: test=$testMethodName
+INSTRUMENTATION_STATUS: class=${testCase.testClass}
+INSTRUMENTATION_STATUS: current=1
+INSTRUMENTATION_STATUS_CODE: 0
+INSTRUMENTATION_RESULT: stream=
+
+Time: 0.01
+
+OK (1 test)
+
+
+INSTRUMENTATION_CODE: -1
+
+""".lines().toTypedArray()
+
+        collectingParser.processNewLines(stdLines)
+        collectingParser.done()
+
+        assertEquals(
+                "/storage/emulated/10/Android/data/com.example/files/tongs-test-info.jsonl",
+                collectingListener.testInfoFile
+        )
+        val result = collectingListener.result
+        assertTrue(result is TestCollectingListener.Result.Successful)
+        assertEquals(
+                setOf(TestIdentifier(testCase.testClass, testMethodName)),
+                (result as TestCollectingListener.Result.Successful).tests
+        )
+    }
+}
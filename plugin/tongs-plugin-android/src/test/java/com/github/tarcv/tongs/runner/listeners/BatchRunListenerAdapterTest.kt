@@ -0,0 +1,142 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.runner.listeners
+
+import com.android.ddmlib.testrunner.TestIdentifier
+import com.github.tarcv.tongs.api.run.ResultStatus
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+class BatchRunListenerAdapterTest {
+    private val tests = listOf(
+            TestIdentifier("com.example.ClassTest", "first"),
+            TestIdentifier("com.example.ClassTest", "second"),
+            TestIdentifier("com.example.ClassTest", "notExecuted")
+    )
+    private val events = ArrayList<String>()
+    private val batchAdapter = BatchRunListenerAdapter(
+            tests.associateWith { RunListenerAdapter(it.testName, it, listOf(RecordingListener(it.testName))) }
+    )
+
+    @Test
+    fun testEachTestCaseGetsItsOwnRun() {
+        batchAdapter.onBeforeTestRunStarted()
+        batchAdapter.testRunStarted("batch", 3)
+        batchAdapter.testStarted(tests[0])
+        batchAdapter.testEnded(tests[0], emptyMap())
+        batchAdapter.testStarted(tests[1])
+        batchAdapter.testFailed(tests[1], "trace")
+        batchAdapter.testEnded(tests[1], emptyMap())
+        batchAdapter.testRunEnded(100, emptyMap())
+        batchAdapter.onAfterTestRunEnded()
+
+        assertEquals(
+                listOf(
+                        "first: run started",
+                        "first: PASS",
+                        "first: metrics",
+                        "first: run finished",
+                        "second: run started",
+                        "second: FAIL trace",
+                        "second: metrics",
+                        "second: run finished",
+                        "notExecuted: run started",
+                        "notExecuted: run failure Test case was not executed as a part of its batch",
+                        "notExecuted: run failure No expected tests were found",
+                        "notExecuted: run finished"
+                ),
+                events
+        )
+    }
+
+    @Test
+    fun testRunFailureIsReportedToCurrentAndRemainingTestCases() {
+        batchAdapter.onBeforeTestRunStarted()
+        batchAdapter.testStarted(tests[0])
+        batchAdapter.testEnded(tests[0], emptyMap())
+        batchAdapter.testStarted(tests[1])
+        batchAdapter.testRunFailed("crashed")
+        batchAdapter.onAfterTestRunEnded()
+
+        assertEquals(
+                listOf(
+                        "first: run started",
+                        "first: PASS",
+                        "first: metrics",
+                        "first: run finished"
+                ),
+                events.filter { it.startsWith("first: ") }
+        )
+        assertEquals(
+                listOf(
+                        "second: run started",
+                        "second: run failure crashed",
+                        "second: run failure No expected tests were found",
+                        "second: run finished"
+                ),
+                events.filter { it.startsWith("second: ") }
+        )
+        assertEquals(
+                listOf(
+                        "notExecuted: run started",
+                        "notExecuted: run failure crashed",
+                        "notExecuted: run failure No expected tests were found",
+                        "notExecuted: run finished"
+                ),
+                events.filter { it.startsWith("notExecuted: ") }
+        )
+    }
+
+    @Test
+    fun testEventsAfterTestCaseEndedAreIgnored() {
+        batchAdapter.onBeforeTestRunStarted()
+        batchAdapter.testStarted(tests[0])
+        batchAdapter.testEnded(tests[0], emptyMap())
+        batchAdapter.testFailed(tests[0], "late failure")
+        batchAdapter.testStarted(tests[1])
+        batchAdapter.testEnded(tests[1], emptyMap())
+        batchAdapter.testStarted(tests[2])
+        batchAdapter.testEnded(tests[2], emptyMap())
+        batchAdapter.onAfterTestRunEnded()
+
+        assertEquals(
+                tests.flatMap { test ->
+                    listOf("run started", "PASS", "metrics", "run finished").map { "${test.testName}: $it" }
+                },
+                events
+        )
+    }
+
+    private inner class RecordingListener(private val name: String) : RunListener {
+        override fun onRunStarted() {
+            events.add("$name: run started")
+        }
+
+        override fun onTestFinished(testIdentifier: TestIdentifier, resultStatus: ResultStatus, trace: String, hasStarted: Boolean) {
+            events.add("$name: $resultStatus $trace".trimEnd())
+        }
+
+        override fun onRunFailure(errorMessage: String) {
+            events.add("$name: run failure $errorMessage")
+        }
+
+        override fun onRunFinished() {
+            events.add("$name: run finished")
+        }
+
+        override fun addTestMetrics(testIdentifier: TestIdentifier, testMetrics: Map<String, String>, hasStarted: Boolean) {
+            events.add("$name: metrics")
+        }
+
+        override fun addRunData(runOutput: String, runMetrics: Map<String, String>) {
+            events.add("$name: run data")
+        }
+    }
+}
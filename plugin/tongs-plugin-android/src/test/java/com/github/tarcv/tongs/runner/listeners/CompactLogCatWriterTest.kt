@@ -0,0 +1,105 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.github.tarcv.tongs.runner.listeners
+
+import com.android.ddmlib.Log
+import com.android.ddmlib.logcat.LogCatHeader
+import com.android.ddmlib.logcat.LogCatMessage
+import com.android.ddmlib.logcat.LogCatTimestamp
+import com.github.tarcv.tongs.injector.GsonInjector.gson
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.StringWriter
+
+class CompactLogCatWriterTest {
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    @Test
+    fun testMessagesAreDecodedAsWritten() {
+        val messages = generateMessages(3000) + listOf(
+                aMessage(Log.LogLevel.ASSERT, 1, 1, "", "", "12-31 23:59:59.999", "Ω".repeat(70_000)),
+                aMessage(Log.LogLevel.VERBOSE, 32767, 2, "com.example.other", "Other", "01-01 00:00:00.000", "")
+        )
+        val compactFile = writeCompactFile(messages)
+
+        val decoded = CompactLogCatReader(compactFile.inputStream()).use { it.asSequence().toList() }
+        assertEquals(messages.map { it.toString() }, decoded.map { it.toString() })
+        assertEquals(messages.map { it.tid }, decoded.map { it.tid })
+    }
+
+    @Test
+    fun testConvertedJsonIsSameAsJsonTable() {
+        val messages = generateMessages(100)
+        val compactFile = writeCompactFile(messages)
+        val jsonFile = temporaryFolder.newFile()
+
+        CompactLogCatConverter.convertToJson(compactFile, jsonFile, gson())
+
+        val expectedJson = StringWriter()
+                .also { TableLogCatWriter.writeTable(gson(), it, messages) }
+                .toString()
+        assertEquals(expectedJson, jsonFile.readText(Charsets.UTF_8))
+    }
+
+    @Test
+    fun testCompactFileIsSmallerThanJsonTable() {
+        val messages = generateMessages(10_000)
+        val compactFile = writeCompactFile(messages)
+
+        val jsonSize = StringWriter()
+                .also { TableLogCatWriter.writeTable(gson(), it, messages) }
+                .toString()
+                .toByteArray(Charsets.UTF_8)
+                .size
+        assertTrue("Compact file should be much smaller than JSON",
+                compactFile.length() * 4 < jsonSize)
+    }
+
+    private fun writeCompactFile(messages: List<LogCatMessage>) = temporaryFolder.newFile().also { file ->
+        CompactLogCatEncoder(file.outputStream()).use { encoder ->
+            messages.forEach { encoder.write(it) }
+        }
+    }
+
+    private fun generateMessages(count: Int): List<LogCatMessage> {
+        val levels = listOf(Log.LogLevel.DEBUG, Log.LogLevel.INFO, Log.LogLevel.WARN, Log.LogLevel.ERROR)
+        return (0 until count).map { index ->
+            val pid = 1000 + index / 500
+            val millis = index * 7
+            aMessage(
+                    levels[index % levels.size],
+                    pid,
+                    pid + index % 3,
+                    "com.example.app",
+                    "Tag${index % 10}",
+                    String.format("08-13 22:%02d:%02d.%03d", millis / 60_000 % 60, millis / 1000 % 60, millis % 1000),
+                    "Message number $index"
+            )
+        }
+    }
+
+    private fun aMessage(
+            level: Log.LogLevel,
+            pid: Int,
+            tid: Int,
+            appName: String,
+            tag: String,
+            timestamp: String,
+            text: String
+    ): LogCatMessage {
+        val header = LogCatHeader(level, pid, tid, appName, tag, LogCatTimestamp.fromString(timestamp))
+        return LogCatMessage(header, text)
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.github.tarcv.tongs.runner.listeners
+
+import com.github.tarcv.tongs.api.devices.Pool
+import org.jacoco.core.data.ExecutionData
+import org.jacoco.core.data.ExecutionDataReader
+import org.jacoco.core.data.ExecutionDataStore
+import org.jacoco.core.data.ExecutionDataWriter
+import org.jacoco.core.data.SessionInfo
+import org.jacoco.core.data.SessionInfoStore
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+
+class CoverageAggregatorTest {
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    private val poolA = Pool.Builder.aDevicePool().withName("poolA").build()
+    private val poolB = Pool.Builder.aDevicePool().withName("poolB").build()
+
+    @Test
+    fun testMergesCoverageOfPoolsAndRun() {
+        val output = temporaryFolder.newFolder("output")
+        val aggregator = CoverageAggregator(output)
+
+        aggregator.merge(poolA, anExecFile("test1", booleanArrayOf(true, false, false)), false)
+        aggregator.merge(poolA, anExecFile("test2", booleanArrayOf(false, true, false)), false)
+        aggregator.merge(poolB, anExecFile("test3", booleanArrayOf(false, false, true)), false)
+        aggregator.finishPool(poolA)
+        aggregator.finish()
+
+        val coverageDir = File(output, "coverage")
+        assertArrayEquals(booleanArrayOf(true, true, false),
+                readProbes(File(coverageDir, "poolA/${CoverageAggregator.MERGED_FILE_NAME}")))
+        assertArrayEquals(booleanArrayOf(false, false, true),
+                readProbes(File(coverageDir, "poolB/${CoverageAggregator.MERGED_FILE_NAME}")))
+        assertArrayEquals(booleanArrayOf(true, true, true),
+                readProbes(File(coverageDir, CoverageAggregator.MERGED_FILE_NAME)))
+    }
+
+    @Test
+    fun testRemovesMergedFilesWhenRequested() {
+        val output = temporaryFolder.newFolder("output")
+        val aggregator = CoverageAggregator(output)
+        val removedFile = anExecFile("test1", booleanArrayOf(true, false, false))
+        val keptFile = anExecFile("test2", booleanArrayOf(false, true, false))
+
+        aggregator.merge(poolA, removedFile, true)
+        aggregator.merge(poolA, keptFile, false)
+        aggregator.finish()
+
+        assertFalse(removedFile.exists())
+        assertTrue(keptFile.exists())
+        assertArrayEquals(booleanArrayOf(true, true, false),
+                readProbes(File(output, "coverage/${CoverageAggregator.MERGED_FILE_NAME}")))
+    }
+
+    private fun anExecFile(sessionId: String, probes: BooleanArray): File {
+        return temporaryFolder.newFile("$sessionId.ec").also { file ->
+            file.outputStream().use {
+                val writer = ExecutionDataWriter(it)
+                writer.visitSessionInfo(SessionInfo(sessionId, 0, 0))
+                writer.visitClassExecution(ExecutionData(CLASS_ID, CLASS_NAME, probes))
+            }
+        }
+    }
+
+    private fun readProbes(file: File): BooleanArray {
+        val executionData = ExecutionDataStore()
+        file.inputStream().use {
+            val reader = ExecutionDataReader(it)
+            reader.setSessionInfoVisitor(SessionInfoStore())
+            reader.setExecutionDataVisitor(executionData)
+            reader.read()
+        }
+        assertEquals(1, executionData.contents.size)
+        return executionData.get(CLASS_ID)!!.probes
+    }
+
+    companion object {
+        private const val CLASS_ID = 0x1234L
+        private const val CLASS_NAME = "com/example/Foo"
+    }
+}
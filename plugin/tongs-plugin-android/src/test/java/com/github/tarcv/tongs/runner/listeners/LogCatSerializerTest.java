@@ -22,6 +22,7 @@ import org.hamcrest.Description;
 import org.hamcrest.MatcherAssert;
 import org.hamcrest.TypeSafeDiagnosingMatcher;
 import org.hamcrest.collection.IsIterableContainingInOrder;
+import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.ArrayList;
@@ -76,6 +77,23 @@ public class LogCatSerializerTest {
         ));
     }
 
+    @Test
+    public void testSerialisesAllMessagesBetweenMarkers() {
+        TestIdentifier test = new TestIdentifier(CLASS1_NAME, TEST1_NAME);
+        SpyLogCatWriter logCatWriter = new SpyLogCatWriter();
+        LogCatSerializer serializer = new LogCatSerializer(test, logCatWriter);
+
+        List<LogCatMessage> logCatMessages = new ArrayList<>();
+        addOtherMessages(logCatMessages, 0, 400);
+        logCatMessages.add(nextMessage(startedMessage(TEST1_NAME, CLASS1_NAME)));
+        addOtherMessages(logCatMessages, 400, 600);
+        logCatMessages.add(nextMessage(finishedMessage(TEST1_NAME, CLASS1_NAME)));
+        addOtherMessages(logCatMessages, 600, 1000);
+        serializer.serializeLogs(logCatMessages);
+
+        Assert.assertEquals(logCatMessages.subList(400, 602), logCatWriter.logCatMessages);
+    }
+
     private org.hamcrest.Matcher<LogCatMessage> logCatMessageWithString(final String expected) {
         return new TypeSafeDiagnosingMatcher<LogCatMessage>() {
             @Override
@@ -97,6 +115,14 @@ public class LogCatSerializerTest {
         logCatMessages.add(nextMessage(finishedMessage(testName, className)));
     }
 
+    private void addOtherMessages(List<LogCatMessage> logCatMessages, int fromIndex, int toIndex) {
+        LogCatHeader logCatHeader = new LogCatHeader(Log.LogLevel.DEBUG, 1234, 4321, "TestRunner", "WaffleView",
+                LogCatTimestamp.fromString("08-13 22:37:25.001"));
+        for (int i = fromIndex; i < toIndex; i++) {
+            logCatMessages.add(new LogCatMessage(logCatHeader, "Measured waffle #" + i + " of " + CLASS1_NAME));
+        }
+    }
+
     private String finishedMessage(String testName, String className) {
         return "finished: " + testName + "(" + className + ")";
     }
@@ -114,11 +140,11 @@ public class LogCatSerializerTest {
     }
 
     private static class SpyLogCatWriter implements LogCatWriter {
-        private List<LogCatMessage> logCatMessages;
+        private final List<LogCatMessage> logCatMessages = new ArrayList<>();
 
         @Override
-        public void writeLogs(List<LogCatMessage> logCatMessages) {
-            this.logCatMessages = logCatMessages;
+        public void writeLogs(Iterable<LogCatMessage> logCatMessages) {
+            logCatMessages.forEach(this.logCatMessages::add);
         }
     }
 }
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.runner.listeners;
+
+import com.android.ddmlib.RawImage;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class ScreenCapturerTest {
+    @Test
+    public void testConvertsRgba8888Framebuffer() {
+        RawImage rawImage = aRawImage(32, 0, 8, 8, 8, 16, 8);
+        assertSamePixels(rawImage, ScreenCapturer.bufferedImageFrom(rawImage, 0));
+    }
+
+    @Test
+    public void testConvertsBgra8888Framebuffer() {
+        RawImage rawImage = aRawImage(32, 16, 8, 8, 8, 0, 8);
+        assertSamePixels(rawImage, ScreenCapturer.bufferedImageFrom(rawImage, 0));
+    }
+
+    @Test
+    public void testConvertsRgb565Framebuffer() {
+        RawImage rawImage = aRawImage(16, 11, 5, 5, 6, 0, 5);
+        assertSamePixels(rawImage, ScreenCapturer.bufferedImageFrom(rawImage, 0));
+    }
+
+    @Test
+    public void testDownscalesLargeFramebuffer() {
+        RawImage rawImage = aRawImage(32, 0, 8, 8, 8, 16, 8);
+        BufferedImage image = ScreenCapturer.bufferedImageFrom(rawImage, 3);
+
+        assertEquals(3, image.getWidth());
+        assertEquals(2, image.getHeight());
+        int bytesPerPixel = rawImage.bpp >> 3;
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int sourceX = x * rawImage.width / image.getWidth();
+                int sourceY = y * rawImage.height / image.getHeight();
+                int index = (sourceY * rawImage.width + sourceX) * bytesPerPixel;
+                assertEquals(rawImage.getARGB(index) & 0xffffff, image.getRGB(x, y) & 0xffffff);
+            }
+        }
+    }
+
+    @Test
+    public void testKeepsSizeOfSmallFramebuffer() {
+        RawImage rawImage = aRawImage(32, 0, 8, 8, 8, 16, 8);
+        BufferedImage image = ScreenCapturer.bufferedImageFrom(rawImage, 100);
+
+        assertEquals(rawImage.width, image.getWidth());
+        assertEquals(rawImage.height, image.getHeight());
+    }
+
+    private static void assertSamePixels(RawImage rawImage, BufferedImage image) {
+        int bytesPerPixel = rawImage.bpp >> 3;
+        int index = 0;
+        for (int y = 0; y < rawImage.height; y++) {
+            for (int x = 0; x < rawImage.width; x++) {
+                assertEquals("Pixel at " + x + "," + y,
+                        rawImage.getARGB(index) & 0xffffff, image.getRGB(x, y) & 0xffffff);
+                index += bytesPerPixel;
+            }
+        }
+    }
+
+    private static RawImage aRawImage(int bpp,
+                                      int redOffset, int redLength,
+                                      int greenOffset, int greenLength,
+                                      int blueOffset, int blueLength) {
+        RawImage rawImage = new RawImage();
+        rawImage.version = 1;
+        rawImage.bpp = bpp;
+        rawImage.width = 7;
+        rawImage.height = 5;
+        rawImage.size = rawImage.width * rawImage.height * (bpp >> 3);
+        rawImage.red_offset = redOffset;
+        rawImage.red_length = redLength;
+        rawImage.green_offset = greenOffset;
+        rawImage.green_length = greenLength;
+        rawImage.blue_offset = blueOffset;
+        rawImage.blue_length = blueLength;
+        if (bpp == 32) {
+            rawImage.alpha_offset = 24;
+            rawImage.alpha_length = 8;
+        }
+        rawImage.data = new byte[rawImage.size];
+        new Random(42).nextBytes(rawImage.data);
+        return rawImage;
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.github.tarcv.tongs.suite
+
+import com.android.ddmlib.testrunner.TestIdentifier
+import org.jf.dexlib2.AccessFlags
+import org.jf.dexlib2.AnnotationVisibility
+import org.jf.dexlib2.DexFileFactory
+import org.jf.dexlib2.Opcodes
+import org.jf.dexlib2.dexbacked.DexBackedMethod
+import org.jf.dexlib2.iface.Annotation
+import org.jf.dexlib2.iface.ClassDef
+import org.jf.dexlib2.iface.Method
+import org.jf.dexlib2.iface.MethodImplementation
+import org.jf.dexlib2.iface.value.StringEncodedValue
+import org.jf.dexlib2.immutable.ImmutableAnnotation
+import org.jf.dexlib2.immutable.ImmutableAnnotationElement
+import org.jf.dexlib2.immutable.ImmutableDexFile
+import org.jf.dexlib2.immutable.value.ImmutableStringEncodedValue
+import org.junit.Assert.assertEquals
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+class ApkTestInfoReaderTest {
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    @Test
+    fun testMultiDexResultsMatchSequentialScan() {
+        val apk = createMultiDexApk()
+        val testsToCheck = loadDexEntries(apk)
+                .flatten()
+                .filter { it.type.startsWith("Ljunit/") }
+                .flatMap { clazz ->
+                    val className = decodeClassName(clazz.type)
+                    (clazz.virtualMethods + clazz.directMethods)
+                            .map { it.name }
+                            .filter { methodNameRegex.matches(it) }
+                            .map { TestIdentifier(className, it) }
+                }
+                .distinct()
+
+        val result = ApkTestInfoReader().readTestInfo(apk, testsToCheck)
+
+        val expectedMethods = readSequentially(apk, testsToCheck)
+        assertEquals(
+                expectedMethods.mapValues { (_, method) -> originOf(method) },
+                result.associate { info ->
+                    info.identifier to info.annotations
+                            .single { it.fullyQualifiedName == ORIGIN_ANNOTATION_NAME }
+                            .properties.getValue("value")
+                }
+        )
+        assertEquals(
+                expectedMethods.mapValues { (_, method) ->
+                    method.definingClass
+                            .substringBeforeLast('/', "")
+                            .removePrefix("L")
+                            .replace('/', '.')
+                },
+                result.associate { it.identifier to it.`package` }
+        )
+    }
+
+    /**
+     * Splits classes of the test dex into several entries. Classes of the first entry are also put into the last one,
+     * so that the same methods are found in different entries. Each method is marked with an annotation
+     * telling where it is located.
+     */
+    private fun createMultiDexApk(): File {
+        val sourceClasses = DexFileFactory.loadDexFile(File(TEST_DEX_PATH), Opcodes.getDefault())
+                .classes
+                .toList()
+        val entryClasses = (0 until DEX_COUNT).map { dexIndex ->
+            sourceClasses.filterIndexed { index, _ -> index % DEX_COUNT == dexIndex }
+        }
+        val entries = entryClasses.mapIndexed { dexIndex, classes ->
+            if (dexIndex == DEX_COUNT - 1) {
+                classes + entryClasses.first()
+            } else {
+                classes
+            }
+        }
+
+        val apk = temporaryFolder.newFile("multidex.apk")
+        ZipOutputStream(apk.outputStream()).use { zip ->
+            entries.forEachIndexed { dexIndex, classes ->
+                val dexFile = temporaryFolder.newFile("classes$dexIndex.dex")
+                DexFileFactory.writeDexFile(dexFile.path, ImmutableDexFile(
+                        Opcodes.getDefault(),
+                        classes.map { MarkedClassDef(it, dexIndex) }
+                ))
+
+                zip.putNextEntry(ZipEntry(dexEntryName(dexIndex)))
+                dexFile.inputStream().use { it.copyTo(zip) }
+                zip.closeEntry()
+            }
+        }
+        return apk
+    }
+
+    /**
+     * Matches methods the same way as the reader did before dex entries were scanned in parallel:
+     * all methods of all entries are sorted by their kind (keeping the APK order for the same kind),
+     * and the first method with the most matching parts is taken
+     */
+    private fun readSequentially(apk: File, testsToCheck: List<TestIdentifier>): Map<TestIdentifier, DexBackedMethod> {
+        val testParts = HashMap<String, MutableList<TestIdentifier>>()
+        testsToCheck.forEach { test ->
+            // Test names are plain method names here, so they are not split into parts
+            listOf(test.className, test.testName)
+                    .forEach { testParts.computeIfAbsent(it) { ArrayList() }.add(test) }
+        }
+
+        val foundMethods = LinkedHashMap<TestIdentifier, Pair<Int, DexBackedMethod>>()
+        loadDexEntries(apk)
+                .flatten()
+                .filter { it.type.startsWith("L") }
+                .flatMap { clazz -> clazz.virtualMethods + clazz.directMethods }
+                .filter { it.name != "<init>" && it.name != "<clinit>" }
+                .filter {
+                    it.accessFlags and (AccessFlags.ABSTRACT.value or AccessFlags.CONSTRUCTOR.value or AccessFlags.NATIVE.value) == 0
+                }
+                .sortedBy { methodKindIndex(it.accessFlags) }
+                .forEach { method ->
+                    ((testParts[decodeClassName(method.definingClass)] ?: emptyList<TestIdentifier>()) +
+                            (testParts[method.name] ?: emptyList()))
+                            .groupingBy { it }
+                            .eachCount()
+                            .forEach { (test, matchingParts) ->
+                                val found = foundMethods[test]
+                                if (found == null || found.first < matchingParts) {
+                                    foundMethods[test] = matchingParts to method
+                                }
+                            }
+                }
+
+        return testsToCheck.associateWith { foundMethods.getValue(it).second }
+    }
+
+    private fun loadDexEntries(apk: File) = (0 until DEX_COUNT).map { dexIndex ->
+        DexFileFactory.loadDexEntry(apk, dexEntryName(dexIndex), true, null).dexFile.classes
+    }
+
+    private fun originOf(method: DexBackedMethod): String {
+        val originValue = method.annotations
+                .single { it.type == ORIGIN_ANNOTATION_TYPE }
+                .elements
+                .single()
+                .value
+        return (originValue as StringEncodedValue).value
+    }
+
+    private class MarkedClassDef(
+            private val classDef: ClassDef,
+            private val dexIndex: Int
+    ) : ClassDef by classDef {
+        override fun getDirectMethods(): Iterable<Method> = classDef.directMethods.map { MarkedMethod(it, dexIndex) }
+        override fun getVirtualMethods(): Iterable<Method> = classDef.virtualMethods.map { MarkedMethod(it, dexIndex) }
+        override fun getMethods(): Iterable<Method> = getDirectMethods() + getVirtualMethods()
+    }
+
+    /**
+     * Method without its code (the reader never looks at it) that is annotated with its location in the APK
+     */
+    private class MarkedMethod(
+            private val method: Method,
+            dexIndex: Int
+    ) : Method by method {
+        private val originAnnotation = ImmutableAnnotation(
+                AnnotationVisibility.RUNTIME,
+                ORIGIN_ANNOTATION_TYPE,
+                listOf(ImmutableAnnotationElement(
+                        "value",
+                        ImmutableStringEncodedValue(
+                                "$dexIndex:${method.definingClass}->${method.name}" +
+                                        "(${method.parameterTypes.joinToString("")})${method.returnType}"
+                        )
+                ))
+        )
+
+        override fun getAnnotations(): Set<Annotation> = method.annotations + originAnnotation
+
+        override fun getImplementation(): MethodImplementation? = null
+
+        override fun equals(other: Any?): Boolean = method == other
+
+        override fun hashCode(): Int = method.hashCode()
+    }
+
+    companion object {
+        private const val TEST_DEX_PATH = "../tongs-common/src/test/resources/tests.dex"
+        private const val DEX_COUNT = 3
+        private const val ORIGIN_ANNOTATION_NAME = "com.github.tarcv.tongs.Origin"
+        private const val ORIGIN_ANNOTATION_TYPE = "Lcom/github/tarcv/tongs/Origin;"
+
+        private val methodNameRegex = Regex("[A-Za-z_][A-Za-z0-9_]*")
+
+        private fun dexEntryName(dexIndex: Int) = if (dexIndex == 0) "classes.dex" else "classes${dexIndex + 1}.dex"
+
+        private fun decodeClassName(type: String): String {
+            return type
+                    .removeSurrounding("L", ";")
+                    .replace('/', '.')
+                    .replace('$', '.')
+        }
+
+        /**
+         * Public instance methods are preferred, then protected (or default), public static, protected static,
+         * private instance and private static ones
+         */
+        private fun methodKindIndex(accessFlags: Int): Int {
+            val isStatic = accessFlags and AccessFlags.STATIC.value != 0
+            val accessIndex = when {
+                accessFlags and AccessFlags.PUBLIC.value != 0 -> if (isStatic) 2 else 0
+                accessFlags and AccessFlags.PRIVATE.value != 0 -> if (isStatic) 5 else 4
+                else -> if (isStatic) 3 else 1
+            }
+            return accessIndex * 10
+        }
+    }
+}
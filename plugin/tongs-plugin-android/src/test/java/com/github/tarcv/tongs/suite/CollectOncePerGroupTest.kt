@@ -0,0 +1,101 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.github.tarcv.tongs.suite
+
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Test
+import java.util.Collections
+
+class CollectOncePerGroupTest {
+    // Devices are named '<profile>-<index>'
+    private val devices = listOf("a-1", "a-2", "a-3", "b-1", "b-2")
+    private val profileOf = { device: String -> device.substringBefore('-') }
+
+    @Test
+    fun testResultIsCollectedOncePerProfile() {
+        val collectedFrom = Collections.synchronizedList(ArrayList<String>())
+
+        val results = runBlocking {
+            collectOncePerGroup(devices, 2, profileOf) { device ->
+                collectedFrom.add(device)
+                "tests of $device"
+            }
+        }
+
+        assertEquals(listOf("a-1", "b-1"), collectedFrom.sorted())
+        assertEquals(
+                devices.map { it to "tests of ${profileOf(it)}-1" }.toSet(),
+                results.flatMap { it.getOrThrow() }.toSet()
+        )
+    }
+
+    @Test
+    fun testSecondRepresentativeIsTriedOnFailure() {
+        val results = runBlocking {
+            collectOncePerGroup(devices, 2, profileOf) { device ->
+                if (device == "a-1") {
+                    throw IllegalStateException("Collecting run crashed")
+                }
+                "tests of $device"
+            }
+        }
+
+        val groupA = results.flatMap { it.getOrThrow() }.filter { it.first.startsWith("a-") }
+        assertEquals(listOf("a-1", "a-2", "a-3").map { it to "tests of a-2" }, groupA)
+    }
+
+    @Test
+    fun testGroupFailsWhenAllAttemptsFail() {
+        val collectedFrom = Collections.synchronizedList(ArrayList<String>())
+
+        val results = runBlocking {
+            collectOncePerGroup(devices, 2, profileOf) { device ->
+                collectedFrom.add(device)
+                if (device.startsWith("a-")) {
+                    throw IllegalStateException("Collecting run crashed on $device")
+                }
+                "tests of $device"
+            }
+        }
+
+        assertEquals(listOf("a-1", "a-2", "b-1"), collectedFrom.sorted())
+        val failure = results.mapNotNull { it.exceptionOrNull() }.single()
+        assertTrue(failure.message!!.endsWith("a-2"))
+        assertEquals(listOf("b-1", "b-2"), results.mapNotNull { it.getOrNull() }.flatten().map { it.first })
+    }
+
+    @Test
+    fun testCancellationIsNotRetried() {
+        val collectedFrom = Collections.synchronizedList(ArrayList<String>())
+
+        try {
+            runBlocking {
+                collectOncePerGroup(devices, 2, profileOf) { device ->
+                    collectedFrom.add(device)
+                    if (device == "a-1") {
+                        throw CancellationException("Collecting was cancelled")
+                    }
+                    "tests of $device"
+                }
+            }
+            fail("Cancellation should be rethrown")
+        } catch (e: CancellationException) {
+            // expected
+        }
+
+        assertFalse(collectedFrom.contains("a-2"))
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.github.tarcv.tongs.suite
+
+import com.android.ddmlib.testrunner.TestIdentifier
+import com.github.tarcv.tongs.api.devices.Device
+import com.github.tarcv.tongs.api.testcases.AnnotationInfo
+import com.github.tarcv.tongs.runner.TestInfo
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+class DiscoveryCacheTest {
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    private val test1 = TestIdentifier("com.example.Class", "test1")
+    private val test2 = TestIdentifier("com.example.Class", "test2")
+    private val entry = DiscoveryCache.Entry(
+            true,
+            setOf(test1, test2),
+            mapOf(
+                    test1 to TestInfo(test1, "com.example", listOf("Class", "test1"), listOf(
+                            AnnotationInfo("org.junit.Test", mapOf("timeout" to "0")),
+                            AnnotationInfo("com.example.Tagged", mapOf("tags" to listOf("a", "b"), "value" to null))
+                    )),
+                    test2 to TestInfo(test2, "com.example", listOf("Class", "test2"), emptyList())
+            )
+    )
+
+    @Test
+    fun testStoredEntryIsLoaded() {
+        val key = aKey()
+        DiscoveryCache(temporaryFolder.root).store(key, entry)
+
+        val loaded = DiscoveryCache(temporaryFolder.root).load(aKey())!!
+
+        assertEquals(entry.hasOnDeviceLibrary, loaded.hasOnDeviceLibrary)
+        assertEquals(entry.tests, loaded.tests)
+        assertEquals(entry.infos, loaded.infos)
+    }
+
+    @Test
+    fun testEntryIsNotUsedWhenKeyInputsChange() {
+        val cache = DiscoveryCache(temporaryFolder.root)
+        cache.store(aKey(), entry)
+
+        assertNull(cache.load(aKey(apkDigest = "other")))
+        assertNull(cache.load(aKey(arguments = mapOf("size" to "small"))))
+        assertNull(cache.load(aKey(excludedAnnotation = "com.example.Flaky")))
+        assertNull(cache.load(aKey(testRunnerClass = "com.example.OtherRunner")))
+        assertNull(cache.load(aKey(tongsVersion = "0.0.2")))
+    }
+
+    private fun aKey(
+            apkDigest: String = "digest",
+            testRunnerClass: String = "androidx.test.runner.AndroidJUnitRunner",
+            arguments: Map<String, String> = emptyMap(),
+            excludedAnnotation: String? = null,
+            tongsVersion: String = "0.0.1"
+    ) = DiscoveryCache.Key(apkDigest, testRunnerClass, arguments, excludedAnnotation, Device.TEST_DEVICE, tongsVersion)
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2019 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.github.tarcv.tongs.suite
+
+import org.junit.Assert
+import org.junit.Test
+
+class TestInfoFileReaderTest {
+    @Test
+    fun testEachLineIsSeparateObject() {
+        val finalResult = JUnitTestCaseProvider.readTestInfoLines((
+                "{\"a\": 0}\n" +
+                        "\n" +
+                        "{\"a\": 1, \"b\": \"line\\nbreak\"}\n"
+        ).lineSequence()).toList()
+
+        Assert.assertEquals(2, finalResult.size.toLong())
+        Assert.assertEquals(0, finalResult[0].get("a").asInt.toLong())
+        Assert.assertEquals(1, finalResult[1].get("a").asInt.toLong())
+        Assert.assertEquals("line\nbreak", finalResult[1].get("b").asString)
+    }
+
+    @Test
+    fun testTruncatedLastLineIsSkipped() {
+        val finalResult = JUnitTestCaseProvider.readTestInfoLines((
+                "{\"a\": 0}\n" +
+                        "{\"a\": 1, \"b"
+        ).lineSequence()).toList()
+
+        Assert.assertEquals(1, finalResult.size.toLong())
+        Assert.assertEquals(0, finalResult[0].get("a").asInt.toLong())
+    }
+}
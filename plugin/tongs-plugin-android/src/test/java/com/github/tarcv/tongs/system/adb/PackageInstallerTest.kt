@@ -0,0 +1,168 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.system.adb
+
+import com.android.ddmlib.IDevice
+import com.android.ddmlib.IShellOutputReceiver
+import com.github.tarcv.tongs.model.AndroidDevice.Builder.aDevice
+import com.github.tarcv.tongs.pooling.StubDevice
+import com.github.tarcv.tongs.util.FileDigests
+import org.junit.Assert.assertEquals
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+
+class PackageInstallerTest {
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    private val apk: File by lazy {
+        temporaryFolder.newFile("app.apk").apply { writeText("APK contents") }
+    }
+
+    @Test
+    fun testSameApkIsNotReinstalled() {
+        val device = resetInstallation(
+                forceReinstall = false,
+                pmPathOutput = "package:$INSTALLED_PATH\n",
+                sha256Output = "${FileDigests.sha256Of(apk)}  $INSTALLED_PATH\n"
+        )
+
+        assertEquals(
+                listOf("pm path $PACKAGE", "sha256sum $INSTALLED_PATH", "pm clear $PACKAGE"),
+                device.shellCommands
+        )
+        assertEquals(emptyList<String>(), device.uninstalledPackages)
+        assertEquals(emptyList<String>(), device.installedApks)
+    }
+
+    @Test
+    fun testDifferentApkIsReinstalled() {
+        val device = resetInstallation(
+                forceReinstall = false,
+                pmPathOutput = "package:$INSTALLED_PATH\n",
+                sha256Output = "${"0".repeat(64)}  $INSTALLED_PATH\n"
+        )
+
+        assertReinstalled(device)
+    }
+
+    @Test
+    fun testSplitApkIsReinstalled() {
+        val device = resetInstallation(
+                forceReinstall = false,
+                pmPathOutput = "package:$INSTALLED_PATH\npackage:/data/app/$PACKAGE-1/split_config.xxhdpi.apk\n",
+                sha256Output = "${FileDigests.sha256Of(apk)}  $INSTALLED_PATH\n"
+        )
+
+        assertEquals(listOf("pm path $PACKAGE"), device.shellCommands)
+        assertReinstalled(device)
+    }
+
+    @Test
+    fun testNotInstalledApkIsInstalled() {
+        val device = resetInstallation(forceReinstall = false, pmPathOutput = "", sha256Output = "")
+
+        assertEquals(listOf("pm path $PACKAGE"), device.shellCommands)
+        assertReinstalled(device)
+    }
+
+    @Test
+    fun testApkIsReinstalledWhenDigestIsMissing() {
+        val device = resetInstallation(
+                forceReinstall = false,
+                pmPathOutput = "package:$INSTALLED_PATH\n",
+                sha256Output = ""
+        )
+
+        assertReinstalled(device)
+    }
+
+    @Test
+    fun testApkIsReinstalledWhenDigestIsMalformed() {
+        val device = resetInstallation(
+                forceReinstall = false,
+                pmPathOutput = "package:$INSTALLED_PATH\n",
+                sha256Output = "/system/bin/sh: sha256sum: not found\n"
+        )
+
+        assertReinstalled(device)
+    }
+
+    @Test
+    fun testForcedReinstallationSkipsDigestCheck() {
+        val device = resetInstallation(
+                forceReinstall = true,
+                pmPathOutput = "package:$INSTALLED_PATH\n",
+                sha256Output = "${FileDigests.sha256Of(apk)}  $INSTALLED_PATH\n"
+        )
+
+        assertEquals(emptyList<String>(), device.shellCommands)
+        assertReinstalled(device)
+    }
+
+    private fun resetInstallation(forceReinstall: Boolean, pmPathOutput: String, sha256Output: String): FakePackageDevice {
+        val deviceInterface = FakePackageDevice(
+                StubDevice("tongs-5554", "Stub", "StubModel", "stub", 25, "", 0),
+                mapOf(
+                        "pm path $PACKAGE" to pmPathOutput,
+                        "sha256sum $INSTALLED_PATH" to sha256Output
+                )
+        )
+        val device = aDevice()
+                .withSerial("tongs-5554")
+                .withDeviceInterface(deviceInterface)
+                .build()
+
+        PackageInstaller(apk, PACKAGE, null, "$PACKAGE.test", forceReinstall)
+                .resetInstallation(device)
+
+        return deviceInterface
+    }
+
+    private fun assertReinstalled(device: FakePackageDevice) {
+        assertEquals(listOf(PACKAGE), device.uninstalledPackages)
+        assertEquals(listOf(apk.absolutePath), device.installedApks)
+    }
+
+    private class FakePackageDevice(
+            private val delegate: IDevice,
+            private val shellOutputs: Map<String, String>
+    ) : IDevice by delegate {
+        val shellCommands = ArrayList<String>()
+        val uninstalledPackages = ArrayList<String>()
+        val installedApks = ArrayList<String>()
+
+        override fun executeShellCommand(command: String, receiver: IShellOutputReceiver) {
+            shellCommands.add(command)
+            val output = (shellOutputs[command] ?: "").toByteArray(Charsets.ISO_8859_1)
+            receiver.addOutput(output, 0, output.size)
+            receiver.flush()
+        }
+
+        override fun uninstallPackage(packageName: String): String? {
+            uninstalledPackages.add(packageName)
+            return null
+        }
+
+        override fun installPackage(packageFilePath: String, reinstall: Boolean, vararg extraArgs: String) {
+            installedApks.add(packageFilePath)
+        }
+    }
+
+    companion object {
+        private const val PACKAGE = "com.example.app"
+        private const val INSTALLED_PATH = "/data/app/com.example.app-1/base.apk"
+    }
+}
@@ -43,6 +43,12 @@ public interface TongsConfiguration {
     @Nonnull
     File getOutput();
 
+    /**
+     * Directory for data that is kept between runs (unlike {@link #getOutput()} that is cleaned before each run)
+     */
+    @Nonnull
+    File getHistoryDirectory();
+
     @Nonnull
     String getTitle();
 
@@ -73,6 +79,46 @@ public interface TongsConfiguration {
 
     boolean shouldTerminateDdm();
 
+    /**
+     * Whether APKs should be reinstalled even when the same ones are already installed on a device
+     */
+    boolean shouldForceReinstall();
+
+    /**
+     * Whether logcat of each test case should be stored in the compact compressed format instead of JSON and text
+     */
+    boolean isCompactLogcatEnabled();
+
+    /**
+     * Whether logcat of test cases should contain only messages of the application and instrumentation processes
+     */
+    boolean isProcessScopedLogcatEnabled();
+
+    /**
+     * Maximum number of the latest screenshots kept for an animation of a failed test case
+     */
+    int getScreenshotFrameCount();
+
+    /**
+     * Maximum width and height screenshots are downscaled to, or 0 to keep their original size
+     */
+    int getScreenshotMaxSize();
+
+    /**
+     * Whether per test case coverage files should be removed after they are merged into pool and run coverage files
+     */
+    boolean isMergedCoverageOnly();
+
+    /**
+     * Number of files left on a device before they are pulled together, 0 when files are pulled after each test case
+     */
+    int getArtifactPullBatchSize();
+
+    /**
+     * Whether idle devices should execute duplicates of the longest running test cases once nothing else is left
+     */
+    boolean isSpeculativeExecutionEnabled();
+
     List<Object> getPluginsInstances();
 
     List<String> getExcludedPlugins();
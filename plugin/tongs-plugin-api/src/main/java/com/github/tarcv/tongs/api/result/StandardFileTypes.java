@@ -17,6 +17,7 @@ public enum StandardFileTypes implements FileType {
     TEST ("tests", "xml"),
     RAW_LOG("logcat", "log"),
     JSON_LOG("logcat_json", "json"),
+    COMPACT_LOG("logcat_compact", "lcz"),
     SCREENSHOT ("screenshot", "png"),
     ANIMATION ("animation", "gif"),
     SCREENRECORD ("screenrecord", "mp4"),
@@ -17,9 +17,18 @@ import com.github.tarcv.tongs.api.devices.Pool
 
 class DeviceRunRuleContext(
         val configuration: RunConfiguration,
-        val pool: Pool,
+        private val poolProvider: () -> Pool,
         val device: Device
-)
+) {
+    constructor(configuration: RunConfiguration, pool: Pool, device: Device) : this(configuration, { pool }, device)
+
+    /**
+     * Pool the device currently belongs to. Devices that fail to be set up are excluded from it,
+     * so the value might change after [DeviceRunRule.before] of all devices is finished
+     */
+    val pool: Pool
+        get() = poolProvider()
+}
 
 interface DeviceRunRuleFactory<out T: DeviceRunRule> {
     fun deviceRules(context: DeviceRunRuleContext): Array<out T>
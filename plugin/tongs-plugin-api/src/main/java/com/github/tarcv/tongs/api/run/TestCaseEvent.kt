@@ -21,13 +21,14 @@ class TestCaseEvent private constructor( // TODO: avoid creating objects of this
         val testCase: TestCase,
         excludedDevices: Collection<Device>,
         val totalFailureCount: Int = 0,
-        private val deviceRunners: MutableMap<Device, MutableList<TestCaseRunner>> = HashMap()
+        private val deviceRunners: MutableMap<Device, MutableList<TestCaseRunner>> = HashMap(),
+        deviceExclusionHints: Collection<Device> = emptyList()
 ) {
     constructor(
         testCase: TestCase,
         excludedDevices: Collection<Device>,
         totalFailureCount: Int = 0
-    ) : this(testCase, excludedDevices, totalFailureCount, HashMap())
+    ) : this(testCase, excludedDevices, totalFailureCount, HashMap(), emptyList())
 
     val testMethod: String
         get() = testCase.testMethod
@@ -39,6 +40,13 @@ class TestCaseEvent private constructor( // TODO: avoid creating objects of this
 
     private val _excludedDevices = HashSet(excludedDevices)
 
+    /**
+     * Devices that should execute this test case only when no other device takes it,
+     * e.g. devices on which the test case already failed.
+     * Unlike [excludedDevices] these are only hints, the test case is still enabled on such devices.
+     */
+    val deviceExclusionHints: Set<Device> = Collections.unmodifiableSet(HashSet(deviceExclusionHints))
+
     fun isEnabledOn(device: Device): Boolean {
         val included = testCase.includedDevices?.contains(device) ?: true
         val excluded = _excludedDevices.contains(device)
@@ -65,7 +73,11 @@ class TestCaseEvent private constructor( // TODO: avoid creating objects of this
     }
 
     fun withFailureCount(totalFailureCount: Int): TestCaseEvent {
-        return TestCaseEvent(testCase, excludedDevices, totalFailureCount, deviceRunners)
+        return TestCaseEvent(testCase, excludedDevices, totalFailureCount, deviceRunners, deviceExclusionHints)
+    }
+
+    fun withDeviceExclusionHint(device: Device): TestCaseEvent {
+        return TestCaseEvent(testCase, excludedDevices, totalFailureCount, deviceRunners, deviceExclusionHints + device)
     }
 
     fun addDeviceRunner(device: Device, runner: TestCaseRunner) {
@@ -41,3 +41,17 @@ interface TestCaseRunRule {
     fun after(arguments: TestCaseRunRuleAfterArguments)
     // TODO: consider adding a separate method for transforming results and making after() nonmutating
 }
+
+/**
+ * Rule which actions can be executed for all test cases of a batch at once
+ * (before actions of all test cases, then the batch, then after actions of all test cases).
+ * Test cases of a batch share app state, so only rules that don't isolate test cases from each other
+ * should be marked with this interface, test cases with any other rule are never batched
+ */
+interface BatchableTestCaseRunRule : TestCaseRunRule
+
+/**
+ * Batchable rule that prepares the device rather than a particular test case (e.g. clears app data),
+ * so in a batch its before and after actions are executed only for the first test case of the batch
+ */
+interface BatchScopedTestCaseRunRule : BatchableTestCaseRunRule
@@ -28,6 +28,19 @@ interface TestCaseRunner {
     fun run(arguments: TestCaseRunnerArguments): RunTesult
 }
 
+/**
+ * Runner that can execute several test cases at once, e.g. in one process
+ */
+interface BatchTestCaseRunner : TestCaseRunner {
+    /**
+     * Test cases that failed in a batch are run again one by one (together with their rules) by Tongs,
+     * so implementations should not re-run them
+     *
+     * @return results in the same order as [arguments]
+     */
+    fun runBatch(arguments: List<TestCaseRunnerArguments>): List<RunTesult>
+}
+
 // TODO: review arguments
 data class TestCaseRunnerContext(
         val configuration: RunConfiguration,
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.model
+
+import com.github.tarcv.tongs.api.devices.Device
+import com.github.tarcv.tongs.api.devices.createStubDevice
+import com.github.tarcv.tongs.api.result.TestCaseRunResult
+import com.github.tarcv.tongs.api.run.ResultStatus
+import com.github.tarcv.tongs.api.run.TestCaseEvent
+import com.github.tarcv.tongs.api.run.aTestResult
+import com.github.tarcv.tongs.api.testcases.aTestCase
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Level
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OperationsPerInvocation
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+import org.openjdk.jmh.annotations.Warmup
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+/**
+ * Measures how many test cases per second all devices of a pool together can poll from [TestCaseEventQueue]
+ * when all of them poll concurrently.
+ *
+ * Run with `./gradlew :tongs-runner:jmh`
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+open class TestCaseEventQueueBenchmark {
+    @Param("1", "8", "30", "60")
+    var deviceCount: Int = 0
+
+    private lateinit var devices: List<Device>
+    private lateinit var events: List<TestCaseEvent>
+    private lateinit var executor: ExecutorService
+    private lateinit var queue: TestCaseEventQueue
+    private lateinit var result: TestCaseRunResult
+
+    @Setup(Level.Trial)
+    fun setUpTrial() {
+        devices = (1..deviceCount).map { createStubDevice("device$it") }
+        events = (1..TEST_CASES).map { index ->
+            // Make some test cases runnable on a part of the pool only, like API-level specific tests
+            val includes = if (index % 4 == 0 && deviceCount > 1) {
+                devices.subList(0, deviceCount / 2)
+            } else {
+                null
+            }
+            val excludes = if (index % 7 == 0 && deviceCount > 1) {
+                listOf(devices[index % deviceCount])
+            } else {
+                emptyList()
+            }
+            TestCaseEvent(aTestCase("Class${index / 100}", "test$index", includes), excludes)
+        }
+        result = TestCaseRunResult.aTestResult(events.first().testCase, ResultStatus.PASS, emptyList())
+        executor = Executors.newFixedThreadPool(deviceCount)
+    }
+
+    @Setup(Level.Invocation)
+    fun setUpInvocation() {
+        queue = TestCaseEventQueue(events, ArrayList(TEST_CASES))
+    }
+
+    @TearDown(Level.Trial)
+    fun tearDownTrial() {
+        executor.shutdownNow()
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POLLS_PER_INVOCATION)
+    fun poll() {
+        val pollsPerDevice = POLLS_PER_INVOCATION / deviceCount
+        val latch = CountDownLatch(deviceCount)
+        devices.forEach { device ->
+            executor.execute {
+                try {
+                    repeat(pollsPerDevice) {
+                        queue.pollForDevice(device)!!
+                                .doWork { result }
+                    }
+                } finally {
+                    latch.countDown()
+                }
+            }
+        }
+        latch.await()
+    }
+
+    companion object {
+        private const val TEST_CASES = 20_000
+
+        /**
+         * Divisible by every [deviceCount] value and small enough for a device to never drain its part of the queue
+         * (so that the benchmark never waits for new items)
+         */
+        private const val POLLS_PER_INVOCATION = 12_000
+    }
+}
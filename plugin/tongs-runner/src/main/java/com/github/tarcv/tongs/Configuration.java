@@ -54,6 +54,7 @@ public class Configuration implements TongsConfiguration {
 
     private final Map<String, String> testRunnerArguments;
     private final File output;
+    private final File historyDirectory;
     private final String title;
     private final String subtitle;
     private final String testPackage;
@@ -64,9 +65,20 @@ public class Configuration implements TongsConfiguration {
     private final int retryPerTestCaseQuota;
     private final boolean isCoverageEnabled;
     private final PoolingStrategy poolingStrategy;
+    private final TestCaseOrder testCaseOrder;
+    private final int testCaseBatchSize;
+    private final int deviceSetupConcurrency;
     private final String excludedAnnotation;
     private final TongsIntegrationTestRunType tongsIntegrationTestRunType;
     private final boolean terminateDdm;
+    private final boolean forceReinstall;
+    private final boolean compactLogcat;
+    private final boolean processScopedLogcat;
+    private final int screenshotFrameCount;
+    private final int screenshotMaxSize;
+    private final boolean mergedCoverageOnly;
+    private final int artifactPullBatchSize;
+    private final boolean speculativeExecution;
     private final Map<String, Object> pluginConfiguration;
 
     private final String PLUGIN_EXCLUDE_PREFIX = "-";
@@ -82,6 +94,7 @@ public class Configuration implements TongsConfiguration {
         pluginsClasses = builder.plugins;
         pluginConfiguration = builder.pluginConfiguration;
         output = builder.output;
+        historyDirectory = builder.historyDirectory;
         title = builder.title;
         subtitle = builder.subtitle;
         testPackage = builder.testPackage;
@@ -92,9 +105,20 @@ public class Configuration implements TongsConfiguration {
         retryPerTestCaseQuota = builder.retryPerTestCaseQuota;
         isCoverageEnabled = builder.isCoverageEnabled;
         poolingStrategy = builder.poolingStrategy;
+        testCaseOrder = builder.testCaseOrder;
+        testCaseBatchSize = builder.testCaseBatchSize;
+        deviceSetupConcurrency = builder.deviceSetupConcurrency;
         this.excludedAnnotation = builder.excludedAnnotation;
         this.tongsIntegrationTestRunType = builder.tongsIntegrationTestRunType;
         this.terminateDdm = builder.terminateDdm;
+        this.forceReinstall = builder.forceReinstall;
+        this.compactLogcat = builder.compactLogcat;
+        this.processScopedLogcat = builder.processScopedLogcat;
+        this.screenshotFrameCount = builder.screenshotFrameCount;
+        this.screenshotMaxSize = builder.screenshotMaxSize;
+        this.mergedCoverageOnly = builder.mergedCoverageOnly;
+        this.artifactPullBatchSize = builder.artifactPullBatchSize;
+        this.speculativeExecution = builder.speculativeExecution;
     }
 
     private Builder newBuilder() {
@@ -109,6 +133,7 @@ public class Configuration implements TongsConfiguration {
         builder.plugins = pluginsClasses;
         builder.pluginConfiguration = pluginConfiguration;
         builder.output = output;
+        builder.historyDirectory = historyDirectory;
         builder.title = title;
         builder.subtitle = subtitle;
         builder.testPackage = testPackage;
@@ -119,9 +144,20 @@ public class Configuration implements TongsConfiguration {
         builder.retryPerTestCaseQuota = retryPerTestCaseQuota;
         builder.isCoverageEnabled = isCoverageEnabled;
         builder.poolingStrategy = poolingStrategy;
+        builder.testCaseOrder = testCaseOrder;
+        builder.testCaseBatchSize = testCaseBatchSize;
+        builder.deviceSetupConcurrency = deviceSetupConcurrency;
         builder.excludedAnnotation = this.excludedAnnotation;
         builder.tongsIntegrationTestRunType = this.tongsIntegrationTestRunType;
         builder.terminateDdm = this.terminateDdm;
+        builder.forceReinstall = this.forceReinstall;
+        builder.compactLogcat = this.compactLogcat;
+        builder.processScopedLogcat = this.processScopedLogcat;
+        builder.screenshotFrameCount = this.screenshotFrameCount;
+        builder.screenshotMaxSize = this.screenshotMaxSize;
+        builder.mergedCoverageOnly = this.mergedCoverageOnly;
+        builder.artifactPullBatchSize = this.artifactPullBatchSize;
+        builder.speculativeExecution = this.speculativeExecution;
         return builder;
     }
 
@@ -173,6 +209,12 @@ public class Configuration implements TongsConfiguration {
         return output;
     }
 
+    @Override
+    @Nonnull
+    public File getHistoryDirectory() {
+        return historyDirectory;
+    }
+
     @Override
     @Nonnull
     public String getTitle() {
@@ -227,6 +269,25 @@ public class Configuration implements TongsConfiguration {
         return poolingStrategy;
     }
 
+    @Nonnull
+    public TestCaseOrder getTestCaseOrder() {
+        return testCaseOrder;
+    }
+
+    /**
+     * Maximum number of test cases a device executes at once, when its test case runner supports that
+     */
+    public int getTestCaseBatchSize() {
+        return testCaseBatchSize;
+    }
+
+    /**
+     * Maximum number of devices that are set up (e.g. get APKs installed) at the same time
+     */
+    public int getDeviceSetupConcurrency() {
+        return deviceSetupConcurrency;
+    }
+
     @Override
     public String getExcludedAnnotation() {
         return excludedAnnotation;
@@ -237,6 +298,46 @@ public class Configuration implements TongsConfiguration {
         return terminateDdm;
     }
 
+    @Override
+    public boolean shouldForceReinstall() {
+        return forceReinstall;
+    }
+
+    @Override
+    public boolean isCompactLogcatEnabled() {
+        return compactLogcat;
+    }
+
+    @Override
+    public boolean isProcessScopedLogcatEnabled() {
+        return processScopedLogcat;
+    }
+
+    @Override
+    public int getScreenshotFrameCount() {
+        return screenshotFrameCount;
+    }
+
+    @Override
+    public int getScreenshotMaxSize() {
+        return screenshotMaxSize;
+    }
+
+    @Override
+    public boolean isMergedCoverageOnly() {
+        return mergedCoverageOnly;
+    }
+
+    @Override
+    public int getArtifactPullBatchSize() {
+        return artifactPullBatchSize;
+    }
+
+    @Override
+    public boolean isSpeculativeExecutionEnabled() {
+        return speculativeExecution;
+    }
+
     @Override
     public TongsIntegrationTestRunType getTongsIntegrationTestRunType() {
         return tongsIntegrationTestRunType;
@@ -292,6 +393,7 @@ public class Configuration implements TongsConfiguration {
         private Map<String, String> testRunnerArguments;
         private List<String> plugins;
         private File output;
+        private File historyDirectory;
         private String title;
         private String subtitle;
         private String testPackage;
@@ -302,9 +404,20 @@ public class Configuration implements TongsConfiguration {
         private int retryPerTestCaseQuota;
         private boolean isCoverageEnabled;
         private PoolingStrategy poolingStrategy;
+        private TestCaseOrder testCaseOrder;
+        private int testCaseBatchSize;
+        private int deviceSetupConcurrency;
         private String excludedAnnotation;
         private TongsIntegrationTestRunType tongsIntegrationTestRunType = NONE;
         private boolean terminateDdm = true;
+        private boolean forceReinstall;
+        private boolean compactLogcat;
+        private boolean processScopedLogcat;
+        private int screenshotFrameCount;
+        private int screenshotMaxSize;
+        private boolean mergedCoverageOnly;
+        private int artifactPullBatchSize;
+        private boolean speculativeExecution;
         private Map<String, Object> pluginConfiguration;
 
         public static Builder configuration() {
@@ -331,6 +444,11 @@ public class Configuration implements TongsConfiguration {
             return this;
         }
 
+        public Builder withHistoryDirectory(@Nullable File historyDirectory) {
+            this.historyDirectory = historyDirectory;
+            return this;
+        }
+
         public Builder withTitle(String title) {
             this.title = title;
             return this;
@@ -406,6 +524,21 @@ public class Configuration implements TongsConfiguration {
             return this;
         }
 
+        public Builder withTestCaseOrder(@Nullable TestCaseOrder testCaseOrder) {
+            this.testCaseOrder = testCaseOrder;
+            return this;
+        }
+
+        public Builder withTestCaseBatchSize(int testCaseBatchSize) {
+            this.testCaseBatchSize = testCaseBatchSize;
+            return this;
+        }
+
+        public Builder withDeviceSetupConcurrency(int deviceSetupConcurrency) {
+            this.deviceSetupConcurrency = deviceSetupConcurrency;
+            return this;
+        }
+
         public Builder withExcludedAnnotation(String excludedAnnotation) {
             this.excludedAnnotation = excludedAnnotation;
             return this;
@@ -421,6 +554,46 @@ public class Configuration implements TongsConfiguration {
             return this;
         }
 
+        public Builder withForceReinstall(boolean forceReinstall) {
+            this.forceReinstall = forceReinstall;
+            return this;
+        }
+
+        public Builder withCompactLogcat(boolean compactLogcat) {
+            this.compactLogcat = compactLogcat;
+            return this;
+        }
+
+        public Builder withProcessScopedLogcat(boolean processScopedLogcat) {
+            this.processScopedLogcat = processScopedLogcat;
+            return this;
+        }
+
+        public Builder withScreenshotFrameCount(int screenshotFrameCount) {
+            this.screenshotFrameCount = screenshotFrameCount;
+            return this;
+        }
+
+        public Builder withScreenshotMaxSize(int screenshotMaxSize) {
+            this.screenshotMaxSize = screenshotMaxSize;
+            return this;
+        }
+
+        public Builder withMergedCoverageOnly(boolean mergedCoverageOnly) {
+            this.mergedCoverageOnly = mergedCoverageOnly;
+            return this;
+        }
+
+        public Builder withArtifactPullBatchSize(int artifactPullBatchSize) {
+            this.artifactPullBatchSize = artifactPullBatchSize;
+            return this;
+        }
+
+        public Builder withSpeculativeExecution(boolean speculativeExecution) {
+            this.speculativeExecution = speculativeExecution;
+            return this;
+        }
+
         public Builder withPluginConfiguration(Map<String, Object> configuration) {
             this.pluginConfiguration = configuration;
             return this;
@@ -453,6 +626,7 @@ public class Configuration implements TongsConfiguration {
             testPackage = assignValueOrDefaultIfNull(testPackage, applicationPackage);
 
             checkNotNull(output, "Output path is required.");
+            historyDirectory = assignValueOrDefaultIfNull(historyDirectory, Utils.cleanFileSafe(Defaults.TONGS_HISTORY));
 
             plugins = assignValueOrDefaultIfNull(plugins, Collections.emptyList());
             pluginConfiguration = assignValueOrDefaultIfNull(pluginConfiguration, Collections.emptyMap());
@@ -462,9 +636,18 @@ public class Configuration implements TongsConfiguration {
             testRunnerArguments = assignValueOrDefaultIfNull(testRunnerArguments, Defaults.TEST_RUNNER_ARGUMENTS);
             testOutputTimeout = assignValueOrDefaultIfZero(testOutputTimeout, Defaults.TEST_OUTPUT_TIMEOUT_MILLIS);
             excludedSerials = assignValueOrDefaultIfNull(excludedSerials, Collections.emptyList());
+            testCaseOrder = assignValueOrDefaultIfNull(testCaseOrder, Defaults.TEST_CASE_ORDER);
             checkArgument(totalAllowedRetryQuota >= 0, "Total allowed retry quota should not be negative.");
             checkArgument(retryPerTestCaseQuota >= 0, "Retry per test case quota should not be negative.");
             retryPerTestCaseQuota = assignValueOrDefaultIfZero(retryPerTestCaseQuota, Defaults.RETRY_QUOTA_PER_TEST_CASE);
+            checkArgument(testCaseBatchSize >= 0, "Test case batch size should not be negative.");
+            testCaseBatchSize = assignValueOrDefaultIfZero(testCaseBatchSize, Defaults.TEST_CASE_BATCH_SIZE);
+            checkArgument(deviceSetupConcurrency >= 0, "Device setup concurrency should not be negative.");
+            deviceSetupConcurrency = assignValueOrDefaultIfZero(deviceSetupConcurrency, Defaults.DEVICE_SETUP_CONCURRENCY);
+            checkArgument(screenshotFrameCount >= 0, "Screenshot frame count should not be negative.");
+            screenshotFrameCount = assignValueOrDefaultIfZero(screenshotFrameCount, Defaults.SCREENSHOT_FRAME_COUNT);
+            checkArgument(screenshotMaxSize >= 0, "Screenshot max size should not be negative.");
+            checkArgument(artifactPullBatchSize >= 0, "Artifact pull batch size should not be negative.");
             if (withWarnings) {
                 logArgumentsBadInteractions();
             }
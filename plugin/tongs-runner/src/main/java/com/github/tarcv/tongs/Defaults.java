@@ -23,8 +23,13 @@ class Defaults {
     static final Map<String, String> TEST_RUNNER_ARGUMENTS = Collections.emptyMap();
     static final long TEST_OUTPUT_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(1);
     static final String TONGS_OUTPUT = "tongs-output";
+    static final String TONGS_HISTORY = "tongs-history";
     static final int STRATEGY_LIMIT = 1;
     static final String TITLE = "Tongs Report";
     static final String SUBTITLE = "";
     static final int RETRY_QUOTA_PER_TEST_CASE = 1;
+    static final TestCaseOrder TEST_CASE_ORDER = TestCaseOrder.DISCOVERY;
+    static final int TEST_CASE_BATCH_SIZE = 1;
+    static final int DEVICE_SETUP_CONCURRENCY = 8;
+    static final int SCREENSHOT_FRAME_COUNT = 20;
 }
@@ -0,0 +1,29 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs;
+
+/**
+ * Order in which test cases of a pool are dispatched to devices
+ */
+public enum TestCaseOrder {
+    /**
+     * Test cases are dispatched in the order they were found by test suite loaders
+     */
+    DISCOVERY,
+
+    /**
+     * Test cases that took longer in previous runs are dispatched first, so that long tests do not end up
+     * being the last ones running while other devices are idle
+     */
+    LONGEST_FIRST
+}
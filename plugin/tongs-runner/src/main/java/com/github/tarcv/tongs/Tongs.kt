@@ -22,6 +22,7 @@ import com.github.tarcv.tongs.injector.RuleManagerFactory
 import com.github.tarcv.tongs.injector.accumulatorModule
 import com.github.tarcv.tongs.injector.deviceGeometryModule
 import com.github.tarcv.tongs.injector.deviceModule
+import com.github.tarcv.tongs.injector.historyModule
 import com.github.tarcv.tongs.injector.listenersModule
 import com.github.tarcv.tongs.injector.modulesCreatedAtStart
 import com.github.tarcv.tongs.injector.poolingModule
@@ -32,6 +33,7 @@ import com.github.tarcv.tongs.injector.summary.summaryPrinterModule
 import com.github.tarcv.tongs.injector.systemModule
 import com.github.tarcv.tongs.injector.testLoadingModule
 import com.github.tarcv.tongs.injector.withRules
+import com.github.tarcv.tongs.runner.AndroidCoverageMergeRunRuleFactory
 import com.github.tarcv.tongs.runner.AndroidDdmRunRuleFactory
 import com.google.gson.Gson
 import org.apache.commons.io.FileUtils
@@ -54,7 +56,8 @@ class Tongs(private val configuration: Configuration) {
             val startOfTestsMs = System.nanoTime()
             val predefinedRulesFactories = listOf(
                     PrepareOutputDirectoryRuleFactory(),
-                    AndroidDdmRunRuleFactory()
+                    AndroidDdmRunRuleFactory(),
+                    AndroidCoverageMergeRunRuleFactory()
             )
             val ruleManagerFactory by KoinContextHandler.get().inject<RuleManagerFactory>()
             val runRules = ruleManagerFactory
@@ -146,6 +149,7 @@ class Tongs(private val configuration: Configuration) {
                     testLoadingModule, // needs RuleManagerFactory
                     deviceGeometryModule, // needs CommandOutputLogger from poolingModule
                     systemModule, // needs Configuration
+                    historyModule, // needs Configuration
                     runnerModule,
                     listenersModule,
                     summaryPrinterModule,
@@ -56,6 +56,7 @@ object TongsCli {
                     .withApplicationApk(parsedArgs.apk)
                     .withInstrumentationApk(parsedArgs.testApk)
                     .withOutput(Utils.cleanFileSafe(tongsConfiguration.baseOutputDir ?: Defaults.TONGS_OUTPUT))
+                    .withHistoryDirectory(Utils.cleanFileSafe(tongsConfiguration.historyDir ?: Defaults.TONGS_HISTORY))
                     .withTitle(tongsConfiguration.title)
                     .withSubtitle(tongsConfiguration.subtitle)
                     .withTestPackage(tongsConfiguration.testPackage)
@@ -68,6 +69,17 @@ object TongsCli {
                     .withRetryPerTestCaseQuota(tongsConfiguration.retryPerTestCaseQuota)
                     .withCoverageEnabled(tongsConfiguration.isCoverageEnabled)
                     .withPoolingStrategy(tongsConfiguration.poolingStrategy)
+                    .withTestCaseOrder(tongsConfiguration.testCaseOrder)
+                    .withTestCaseBatchSize(tongsConfiguration.testCaseBatchSize)
+                    .withDeviceSetupConcurrency(tongsConfiguration.deviceSetupConcurrency)
+                    .withForceReinstall(tongsConfiguration.forceReinstall)
+                    .withCompactLogcat(tongsConfiguration.compactLogcat)
+                    .withProcessScopedLogcat(tongsConfiguration.processScopedLogcat)
+                    .withScreenshotFrameCount(tongsConfiguration.screenshotFrameCount)
+                    .withScreenshotMaxSize(tongsConfiguration.screenshotMaxSize)
+                    .withMergedCoverageOnly(tongsConfiguration.mergedCoverageOnly)
+                    .withArtifactPullBatchSize(tongsConfiguration.artifactPullBatchSize)
+                    .withSpeculativeExecution(tongsConfiguration.speculativeExecution)
                     .withExcludedAnnotation(tongsConfiguration.excludedAnnotation)
                     .withTongsIntegrationTestRunType(tongsConfiguration.tongsIntegrationTestRunType)
                     .withPluginConfiguration(tongsConfiguration.configuration)
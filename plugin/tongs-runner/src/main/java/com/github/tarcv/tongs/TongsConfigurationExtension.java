@@ -30,6 +30,12 @@ public abstract class TongsConfigurationExtension {
      */
     public String baseOutputDir;
 
+    /**
+     * Directory where results of previous runs and caches are kept. It should be outside of the output directory,
+     * as the latter is cleaned before each run. If empty, the default dir will be used.
+     */
+    public String historyDir;
+
     /**
      * Ignore test failures flag.
      */
@@ -80,6 +86,74 @@ public abstract class TongsConfigurationExtension {
      */
     public int retryPerTestCaseQuota;
 
+    /**
+     * Order in which test cases are dispatched to devices, DISCOVERY (the order test cases were found in) by default
+     */
+    public TestCaseOrder testCaseOrder;
+
+    /**
+     * Maximum number of test cases executed in one instrumentation run, 1 (no batching) by default.
+     * Test cases of a batch share the application state (app data is cleared only before the batch),
+     * failed ones are executed again in isolation. Test cases that require per-test rules
+     * (e.g. {@code @GrantPermission}) are never batched.
+     */
+    public int testCaseBatchSize;
+
+    /**
+     * Maximum number of devices that are set up (e.g. get APKs installed) at the same time, 8 by default.
+     * Devices that fail to be set up are excluded from the run.
+     */
+    public int deviceSetupConcurrency;
+
+    /**
+     * Reinstall APKs on devices even when the same APKs are already installed there
+     */
+    public boolean forceReinstall;
+
+    /**
+     * Store logcat of test cases in a compact compressed format instead of JSON and plain text files.
+     * Such files can be converted to JSON with {@code com.github.tarcv.tongs.runner.listeners.CompactLogCatConverter}
+     */
+    public boolean compactLogcat;
+
+    /**
+     * Receive logcat only from the application and instrumentation processes on devices that support it.
+     * Full logcat is still pulled for failed test cases
+     */
+    public boolean processScopedLogcat;
+
+    /**
+     * Number of the latest screenshots kept in memory for an animation of a failed test case, 20 by default.
+     * Used on devices that can't record videos.
+     */
+    public int screenshotFrameCount;
+
+    /**
+     * Maximum width and height of screenshots in an animation, larger screenshots are downscaled.
+     * Screenshots keep their original size by default.
+     */
+    public int screenshotMaxSize;
+
+    /**
+     * Keep only merged coverage files of each pool and of the whole run, per test case coverage files are removed
+     * once they are merged
+     */
+    public boolean mergedCoverageOnly;
+
+    /**
+     * Leave coverage files and videos on a device until this many of them are pending, and then pull them at once.
+     * Remaining files are pulled when a device finishes its tests. 0 (default) pulls files after each test case
+     */
+    public int artifactPullBatchSize;
+
+    /**
+     * When devices of a pool have no test cases left, let them start duplicate attempts of the test cases
+     * that have been running the longest on other devices. The first passed attempt is used
+     * (or the last one when both fail), the application is force-stopped on the device of the other attempt
+     * and its result is discarded
+     */
+    public boolean speculativeExecution;
+
     /**
      * Filter test run to tests without given annotation
      */
@@ -20,6 +20,7 @@ import com.github.tarcv.tongs.api.run.TestCaseEvent
 import com.github.tarcv.tongs.api.run.TestCaseRunnerContext
 import com.github.tarcv.tongs.api.testcases.NoTestCasesFoundException
 import com.github.tarcv.tongs.api.testcases.TestCaseRuleContext
+import com.github.tarcv.tongs.history.TestHistoryStore
 import com.github.tarcv.tongs.injector.RuleManagerFactory
 import com.github.tarcv.tongs.injector.TestCaseRuleManager
 import com.github.tarcv.tongs.injector.TestCaseRunnerManager
@@ -29,12 +30,14 @@ import com.github.tarcv.tongs.pooling.NoPoolLoaderConfiguredException
 import com.github.tarcv.tongs.pooling.PoolLoader
 import com.github.tarcv.tongs.runner.DeviceTestRunner
 import com.github.tarcv.tongs.runner.DeviceTestRunnerFactory
+import com.github.tarcv.tongs.runner.ParallelDeviceSetup
 import com.github.tarcv.tongs.runner.PoolTestRunnerFactory
 import com.github.tarcv.tongs.runner.ProgressReporter
 import com.github.tarcv.tongs.summary.SummaryGeneratorHook
 import com.github.tarcv.tongs.tests.JoiningTestProvider
 import org.koin.core.context.KoinContextHandler
 import org.slf4j.LoggerFactory
+import java.io.IOException
 import java.util.concurrent.CountDownLatch
 
 class TongsRunner(private val poolLoader: PoolLoader,
@@ -43,7 +46,8 @@ class TongsRunner(private val poolLoader: PoolLoader,
                   private val summaryGeneratorHook: SummaryGeneratorHook,
                   private val testCaseRuleManager: TestCaseRuleManager,
                   private val testCaseRunnerManager: TestCaseRunnerManager,
-                  private val ruleManagerFactory: RuleManagerFactory
+                  private val ruleManagerFactory: RuleManagerFactory,
+                  private val testHistoryStore: TestHistoryStore
 ) {
     class PoolTask(
             val pool: Pool,
@@ -70,21 +74,16 @@ class TongsRunner(private val poolLoader: PoolLoader,
     }
 
     fun throwingRun(): Boolean {
-        val pools = poolLoader.loadPools()
-        val numberOfPools = pools.size
+        val loadedPools = poolLoader.loadPools()
+        val numberOfPools = loadedPools.size
         val poolCountDownLatch = CountDownLatch(numberOfPools)
         val poolExecutor = Utils.namedExecutor(numberOfPools, "PoolExecutor-%d")
         return try {
-            val deviceTestRunnerFactory by KoinContextHandler.get().inject<DeviceTestRunnerFactory>()
-
-            val poolTestCasesMap: Map<Pool, PoolTask> = pools
-                .map { pool ->
-                    val deviceRunners = pool.devices.map { device ->
-                        device to deviceTestRunnerFactory.createDeviceTestRunner(pool, device, ruleManagerFactory)
-                    }
-
-                    deviceRunners.forEach { it.second.runBeforeRules() }
+            val poolDeviceRunners = setUpDevices(loadedPools)
+            val pools = poolDeviceRunners.map { it.first }
 
+            val poolTestCasesMap: Map<Pool, PoolTask> = poolDeviceRunners
+                .map { (pool, deviceRunners) ->
                     val testCaseRules = testCaseRuleManager
                         .createRulesFrom { configuration ->
                             TestCaseRuleContext(configuration, pool)
@@ -160,6 +159,8 @@ class TongsRunner(private val poolLoader: PoolLoader,
             poolCountDownLatch.await()
             progressReporter.stop()
 
+            saveHistory(allResults)
+
             val overallSuccess = summaryGeneratorHook.defineOutcome()
             summaryGeneratorHook.unregisterHook()
             logger.info("Overall success: $overallSuccess")
@@ -170,6 +171,62 @@ class TongsRunner(private val poolLoader: PoolLoader,
         }
     }
 
+    /**
+     * Executes device rules (e.g. installs APKs) on all devices concurrently.
+     * Devices that fail to be set up are quarantined - their pools are replaced with pools without such devices.
+     */
+    private fun setUpDevices(loadedPools: List<Pool>): List<Pair<Pool, List<Pair<Device, DeviceTestRunner>>>> {
+        val deviceTestRunnerFactory by KoinContextHandler.get().inject<DeviceTestRunnerFactory>()
+        val configuration by KoinContextHandler.get().inject<Configuration>()
+
+        val loadedDeviceRunners = loadedPools.map { pool ->
+            pool to pool.devices.map { device ->
+                device to deviceTestRunnerFactory.createDeviceTestRunner(pool, device, ruleManagerFactory)
+            }
+        }
+
+        val failedRunners = ParallelDeviceSetup(configuration.deviceSetupConcurrency)
+                .setUp(
+                        loadedDeviceRunners.flatMap { it.second },
+                        { it.runBeforeRules() },
+                        { it.runAfterRules() }
+                )
+
+        loadedDeviceRunners.firstOrNull { (_, deviceRunners) -> deviceRunners.all { it.second in failedRunners } }
+                ?.let { (pool, _) ->
+                    // Tests won't be executed at all, so release devices that were set up successfully
+                    loadedDeviceRunners
+                            .flatMap { it.second }
+                            .filter { it.second !in failedRunners }
+                            .forEach { it.second.runAfterRules() }
+                    throw NoDevicesForPoolException("All devices of pool ${pool.name} failed to be set up")
+                }
+
+        return loadedDeviceRunners.map { (pool, deviceRunners) ->
+            val (healthyRunners, quarantinedRunners) = deviceRunners.partition { it.second !in failedRunners }
+            if (quarantinedRunners.isEmpty()) {
+                pool to deviceRunners
+            } else {
+                quarantinedRunners.forEach { (device, _) ->
+                    logger.warn("Device {} is excluded from pool {} as it failed to be set up", device.serial, pool.name)
+                }
+                val healthyPool = Pool.Builder.aDevicePool()
+                        .withName(pool.name)
+                        .apply { healthyRunners.forEach { addDevice(it.first) } }
+                        .build()
+                healthyPool to healthyRunners.map { (device, runner) -> device to runner.withPool(healthyPool) }
+            }
+        }
+    }
+
+    private fun saveHistory(results: List<TestCaseRunResult>) {
+        try {
+            testHistoryStore.append(results)
+        } catch (e: IOException) {
+            logger.warn("Failed to save test history", e)
+        }
+    }
+
     companion object {
         private val logger = LoggerFactory.getLogger(TongsRunner::class.java)
 
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.history
+
+import com.github.tarcv.tongs.api.run.ResultStatus
+import com.github.tarcv.tongs.api.testcases.TestCase
+
+/**
+ * Durations of test cases measured in previous runs, kept separately for each device model.
+ */
+class TestDurationHistory(private val store: TestHistoryStore) {
+    private val lock = Any()
+
+    /**
+     * Average durations of classes by device models and class names. Guarded by [lock].
+     */
+    private val classDurationsCache = HashMap<Pair<String, String>, Long?>()
+
+    /**
+     * Returns expected duration of the test case on devices of the given models,
+     * or null when neither the test case nor other test cases of its class ran before.
+     */
+    fun expectedMillis(testCase: TestCase, deviceModels: Collection<String>): Long? {
+        synchronized(lock) {
+            val allModels by lazy { store.deviceModels() }
+            return averageOf(deviceModels) { methodDurationMillis(it, testCase.testClass, testCase.testMethod) }
+                    ?: averageOf(deviceModels) { classDurationMillis(it, testCase.testClass) }
+                    ?: averageOf(allModels) { methodDurationMillis(it, testCase.testClass, testCase.testMethod) }
+                    ?: averageOf(allModels) { classDurationMillis(it, testCase.testClass) }
+        }
+    }
+
+    private fun methodDurationMillis(deviceModel: String, testClass: String, testMethod: String): Long? {
+        return store.recordsOf(testClass, testMethod)
+                .take(MAX_SCANNED_RECORDS)
+                .filter { it.deviceModel == deviceModel }
+                .filter { it.status != ResultStatus.IGNORED && it.status != ResultStatus.ASSUMPTION_FAILED }
+                .filter { it.durationMillis > 0 }
+                .take(RECENT_RECORDS)
+                .map { it.durationMillis }
+                .toList()
+                .takeIf { it.isNotEmpty() }
+                ?.average()
+                ?.toLong()
+    }
+
+    private fun classDurationMillis(deviceModel: String, testClass: String): Long? {
+        return classDurationsCache.getOrPut(deviceModel to testClass) {
+            averageOf(store.methodsOf(testClass)) { methodDurationMillis(deviceModel, testClass, it) }
+        }
+    }
+
+    companion object {
+        /**
+         * Only the latest runs are used, so that changes in test cases are picked up quickly
+         */
+        private const val RECENT_RECORDS = 5
+
+        /**
+         * Limits reading records from other device models
+         */
+        private const val MAX_SCANNED_RECORDS = 50
+
+        private inline fun averageOf(keys: Collection<String>, durationOf: (String) -> Long?): Long? {
+            return keys
+                    .mapNotNull(durationOf)
+                    .takeIf { it.isNotEmpty() }
+                    ?.average()
+                    ?.toLong()
+        }
+    }
+}
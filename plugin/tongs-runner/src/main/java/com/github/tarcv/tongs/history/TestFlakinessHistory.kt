@@ -0,0 +1,61 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.history
+
+import com.github.tarcv.tongs.api.run.ResultStatus
+import com.github.tarcv.tongs.api.testcases.TestCase
+
+/**
+ * How failures of test cases ended in previous runs: whether retries made them pass or they kept failing.
+ */
+class TestFlakinessHistory(private val store: TestHistoryStore) {
+    /**
+     * Returns stats of the latest runs in which the test case failed at least once.
+     *
+     * Only runs in which a failure was actually retried tell whether retries help, so runs in which retries
+     * were not granted (e.g. because of quotas) are counted separately.
+     */
+    fun failureStatsOf(testCase: TestCase): FailureStats {
+        val recentRuns = store.recordsOf(testCase.testClass, testCase.testMethod)
+                .take(MAX_SCANNED_RECORDS)
+                .filter { it.status != ResultStatus.IGNORED && it.status != ResultStatus.ASSUMPTION_FAILED }
+                .groupBy { it.runId }
+                .values
+                .take(RECENT_RUNS)
+
+        val failedRuns = recentRuns.filter { attempts -> attempts.any { ResultStatus.isFailure(it.status) } }
+        val retriedRuns = failedRuns.filter { attempts -> attempts.any { it.retryCount > 0 } }
+        val recoveredRuns = retriedRuns.count { attempts -> attempts.any { it.status == ResultStatus.PASS } }
+        val unretriedRunsSinceRetry = failedRuns.takeWhile { attempts -> attempts.none { it.retryCount > 0 } }.size
+        return FailureStats(retriedRuns.size, recoveredRuns, unretriedRunsSinceRetry)
+    }
+
+    companion object {
+        /**
+         * Only the latest runs are used, so that fixed (or newly broken) test cases are picked up quickly
+         */
+        private const val RECENT_RUNS = 10
+
+        /**
+         * Limits reading records when test cases are executed in many pools
+         */
+        private const val MAX_SCANNED_RECORDS = 100
+    }
+}
+
+/**
+ * @property retriedRuns number of runs in which the test case failed and was retried at least once
+ * @property recoveredRuns number of [retriedRuns] in which the test case eventually passed after retries
+ * @property unretriedRunsSinceRetry number of the latest runs in which the test case failed without being retried
+ */
+class FailureStats(val retriedRuns: Int, val recoveredRuns: Int, val unretriedRunsSinceRetry: Int) {
+    val flakeRate: Double
+        get() = if (retriedRuns == 0) 0.0 else recoveredRuns.toDouble() / retriedRuns
+}
@@ -0,0 +1,520 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.history
+
+import com.github.tarcv.tongs.api.result.TestCaseRunResult
+import com.github.tarcv.tongs.api.run.ResultStatus
+import org.slf4j.LoggerFactory
+import java.io.Closeable
+import java.io.File
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.channels.FileLock
+import java.nio.channels.OverlappingFileLockException
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.nio.file.StandardOpenOption.CREATE
+import java.nio.file.StandardOpenOption.READ
+import java.nio.file.StandardOpenOption.WRITE
+import java.time.Instant
+
+/**
+ * Append-only store of test case results from all previous runs.
+ *
+ * The store consists of:
+ * - `tests.bin` and `models.bin` - tables of test case and device model names, ID of a name is its index
+ * - `records.bin` - fixed size records, each of them points to the previous record of the same test case
+ * - `heads.bin` - offset of the latest record for each test case ID
+ *
+ * Only names and heads are kept in memory, records are read on demand by following the chain of a test case
+ * from its latest record, so reading the last runs of a test case takes the same time no matter how many runs
+ * are in the store.
+ *
+ * The directory is locked while the store is open, as the store is not meant to be written by several processes
+ * at once. Records that refer to missing names or have unknown values (e.g. because files were damaged)
+ * are treated as the end of the history of their test case.
+ */
+class TestHistoryStore private constructor(
+        internal val directory: File,
+        private val directoryLock: FileLock,
+        private val isTemporary: Boolean
+) : Closeable {
+    private val lock = Any()
+
+    private val tests = NameTable(File(directory, TESTS_FILE))
+    private val models = NameTable(File(directory, MODELS_FILE))
+    private val headsFile = File(directory, HEADS_FILE)
+
+    private val records = FileChannel.open(File(directory, RECORDS_FILE).toPath(), CREATE, READ, WRITE)
+
+    /** Guarded by [lock] */
+    private var recordsLength = HEADER_SIZE
+
+    /** Guarded by [lock] */
+    private var heads = LongArray(0)
+
+    /** Guarded by [lock] */
+    private var nextRunId = 0
+
+    /**
+     * Test methods by their classes, used to find test cases of the same class. Guarded by [lock].
+     */
+    private val classMethods = HashMap<String, MutableList<String>>()
+
+    init {
+        try {
+            recordsLength = prepareRecords()
+            heads = loadHeads()
+            if (recordsLength > HEADER_SIZE) {
+                nextRunId = readRunId(recordsLength - RECORD_SIZE) + 1
+            }
+            tests.names.forEach { addToClassIndex(it) }
+        } catch (e: Exception) {
+            close()
+            throw e
+        }
+    }
+
+    /**
+     * Stores results of one run. All results are marked as belonging to the same new run.
+     *
+     * @return ID of the new run
+     */
+    @Throws(IOException::class)
+    fun append(results: Collection<TestCaseRunResult>): Int {
+        synchronized(lock) {
+            val runId = nextRunId++
+            val buffer = ByteBuffer.allocate(RECORD_SIZE * results.size)
+            var offset = recordsLength
+            results.forEach { result ->
+                val testKey = testKeyOf(result.testCase.testClass, result.testCase.testMethod)
+                val testId = tests.idOf(testKey) ?: tests.add(testKey).also { addToClassIndex(testKey) }
+                val modelId = models.idOf(result.device.modelName) ?: models.add(result.device.modelName)
+                if (testId >= heads.size) {
+                    heads = heads.copyOf(maxOf(testId + 1, heads.size * 2))
+                        .apply { fill(NO_RECORD, heads.size) }
+                }
+
+                buffer.putLong(heads[testId])
+                buffer.putInt(runId)
+                buffer.putInt(testId)
+                buffer.putInt(modelId)
+                buffer.putShort(result.device.osApiLevel.toShort())
+                buffer.put(STATUS_CODES.indexOf(result.status).toByte())
+                buffer.put(result.baseTotalFailureCount.coerceIn(0, Byte.MAX_VALUE.toInt()).toByte())
+                buffer.putLong(result.startTimestampUtc.toEpochMilli())
+                buffer.putLong(result.timeTakenMillis)
+                buffer.putLong(result.timeNetTakenMillis ?: NO_DURATION)
+
+                heads[testId] = offset
+                offset += RECORD_SIZE
+            }
+
+            // Names are already written at this point, so records never refer to missing names
+            buffer.flip()
+            writeFully(records, buffer, recordsLength)
+            records.force(false)
+            recordsLength = offset
+            saveHeads()
+
+            return runId
+        }
+    }
+
+    /**
+     * Returns results of the test case from the latest one to the oldest one.
+     * Records are read lazily while the sequence is iterated.
+     */
+    fun recordsOf(testClass: String, testMethod: String): Sequence<TestHistoryRecord> {
+        val firstOffset = synchronized(lock) {
+            val testId = tests.idOf(testKeyOf(testClass, testMethod)) ?: return emptySequence()
+            heads.getOrElse(testId) { NO_RECORD }
+        }
+        val testKey = testKeyOf(testClass, testMethod)
+        return generateSequence(firstOffset.takeIf { isValidOffset(it) }) { offset ->
+            // Offsets only decrease along a chain, so a damaged chain can't loop
+            readPreviousOffset(offset).takeIf { it < offset && isValidOffset(it) }
+        }
+                .map { readRecord(it) }
+                .takeWhile { it != null && testKeyOf(it.testClass, it.testMethod) == testKey }
+                .map { it!! }
+    }
+
+    /**
+     * Returns names of test methods of the class that has records in the store
+     */
+    fun methodsOf(testClass: String): List<String> {
+        synchronized(lock) {
+            return classMethods[testClass]?.toList() ?: emptyList()
+        }
+    }
+
+    /**
+     * Returns names of all device models that has records in the store
+     */
+    fun deviceModels(): List<String> {
+        synchronized(lock) {
+            return models.names.toList()
+        }
+    }
+
+    override fun close() {
+        synchronized(lock) {
+            try {
+                records.close()
+                tests.close()
+                models.close()
+            } finally {
+                directoryLock.channel().close()
+                if (isTemporary) {
+                    directory.deleteRecursively()
+                }
+            }
+        }
+    }
+
+    private fun prepareRecords(): Long {
+        val size = records.size()
+        if (size < HEADER_SIZE) {
+            val header = ByteBuffer.allocate(HEADER_SIZE.toInt())
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .apply { flip() }
+            records.truncate(0)
+            writeFully(records, header, 0)
+            return HEADER_SIZE
+        }
+
+        val header = ByteBuffer.allocate(HEADER_SIZE.toInt())
+        readFully(records, header, 0)
+        header.flip()
+        if (header.int != MAGIC || header.int != VERSION) {
+            throw IOException("Unsupported test history format")
+        }
+
+        // A record might be written partially if a previous run was killed
+        val validSize = size - (size - HEADER_SIZE) % RECORD_SIZE
+        if (validSize != size) {
+            records.truncate(validSize)
+        }
+        return validSize
+    }
+
+    private fun loadHeads(): LongArray {
+        var coveredLength = HEADER_SIZE
+        var loadedHeads = LongArray(tests.names.size) { NO_RECORD }
+        if (headsFile.isFile) {
+            val bytes = ByteBuffer.wrap(headsFile.readBytes())
+            val storedLength = if (bytes.remaining() >= 8) bytes.long else -1
+            if (storedLength in HEADER_SIZE..recordsLength && bytes.remaining() % 8 == 0) {
+                coveredLength = storedLength
+                loadedHeads = LongArray(maxOf(tests.names.size, bytes.remaining() / 8)) { NO_RECORD }
+                    .also { bytes.asLongBuffer().get(it, 0, bytes.remaining() / 8) }
+            }
+        }
+
+        // Heads are written after records, so they can miss the latest records when a previous run was killed
+        if (coveredLength < recordsLength) {
+            logger.info("Updating test history index")
+            val buffer = ByteBuffer.allocate(RECORD_SIZE * 1024)
+            var position = coveredLength
+            while (position < recordsLength) {
+                buffer.clear()
+                buffer.limit(minOf(buffer.capacity().toLong(), recordsLength - position).toInt())
+                readFully(records, buffer, position)
+                buffer.flip()
+                while (buffer.hasRemaining()) {
+                    val testId = buffer.getInt(buffer.position() + TEST_ID_OFFSET)
+                    if (testId !in tests.names.indices) {
+                        logger.warn("Skipping a test history record of an unknown test case")
+                        position += RECORD_SIZE
+                        buffer.position(buffer.position() + RECORD_SIZE)
+                        continue
+                    }
+                    if (testId >= loadedHeads.size) {
+                        loadedHeads = loadedHeads.copyOf(testId + 1).apply { fill(NO_RECORD, loadedHeads.size) }
+                    }
+                    loadedHeads[testId] = position
+                    position += RECORD_SIZE
+                    buffer.position(buffer.position() + RECORD_SIZE)
+                }
+            }
+        }
+        return loadedHeads
+    }
+
+    private fun saveHeads() {
+        val buffer = ByteBuffer.allocate(8 + 8 * heads.size)
+        buffer.putLong(recordsLength)
+        buffer.asLongBuffer().put(heads)
+
+        val tempFile = File(headsFile.parentFile, headsFile.name + ".tmp")
+        tempFile.writeBytes(buffer.array())
+        Files.move(tempFile.toPath(), headsFile.toPath(), StandardCopyOption.REPLACE_EXISTING)
+    }
+
+    private fun addToClassIndex(testKey: String) {
+        val separator = testKey.indexOf(KEY_SEPARATOR)
+        classMethods
+            .getOrPut(testKey.substring(0, separator)) { ArrayList() }
+            .add(testKey.substring(separator + 1))
+    }
+
+    private fun isValidOffset(offset: Long): Boolean {
+        val recordsEnd = synchronized(lock) { recordsLength }
+        return offset in HEADER_SIZE until recordsEnd && (offset - HEADER_SIZE) % RECORD_SIZE == 0L
+    }
+
+    private fun readPreviousOffset(offset: Long): Long {
+        val buffer = ByteBuffer.allocate(8)
+        readFully(records, buffer, offset)
+        return buffer.getLong(0)
+    }
+
+    private fun readRunId(offset: Long): Int {
+        val buffer = ByteBuffer.allocate(4)
+        readFully(records, buffer, offset + RUN_ID_OFFSET)
+        return buffer.getInt(0)
+    }
+
+    /**
+     * @return the record, or null when it refers to missing names or has unknown values
+     */
+    private fun readRecord(offset: Long): TestHistoryRecord? {
+        val buffer = ByteBuffer.allocate(RECORD_SIZE)
+        readFully(records, buffer, offset)
+        buffer.flip()
+
+        buffer.long // offset of the previous record
+        val runId = buffer.int
+        val testId = buffer.int
+        val modelId = buffer.int
+        val apiLevel = buffer.short.toInt()
+        val statusCode = buffer.get().toInt()
+        val retryCount = buffer.get().toInt()
+        val startTimestamp = Instant.ofEpochMilli(buffer.long)
+        val durationMillis = buffer.long
+        val netDurationMillis = buffer.long.takeIf { it != NO_DURATION }
+
+        val names = synchronized(lock) {
+            if (testId !in tests.names.indices || modelId !in models.names.indices) {
+                null
+            } else {
+                tests.nameOf(testId) to models.nameOf(modelId)
+            }
+        }
+        if (names == null || statusCode !in STATUS_CODES.indices || retryCount < 0) {
+            logger.warn("Test history record at $offset is damaged, older records of its test case are ignored")
+            return null
+        }
+        val (testKey, deviceModel) = names
+        val status = STATUS_CODES[statusCode]
+
+        val separator = testKey.indexOf(KEY_SEPARATOR)
+        return TestHistoryRecord(
+            runId,
+            testKey.substring(0, separator),
+            testKey.substring(separator + 1),
+            deviceModel,
+            apiLevel,
+            status,
+            retryCount,
+            startTimestamp,
+            durationMillis,
+            netDurationMillis
+        )
+    }
+
+    /**
+     * Append-only list of names, each entry is a length followed by UTF-8 bytes
+     */
+    private class NameTable(file: File) : Closeable {
+        private val channel = FileChannel.open(file.toPath(), CREATE, READ, WRITE)
+        private var length: Long
+        private val ids = HashMap<String, Int>()
+        val names = ArrayList<String>()
+
+        init {
+            val buffer = ByteBuffer.allocate(channel.size().toInt())
+            readFully(channel, buffer, 0)
+            buffer.flip()
+            while (buffer.remaining() >= 2) {
+                val nameLength = buffer.getShort(buffer.position()).toInt() and 0xFFFF
+                if (buffer.remaining() < 2 + nameLength) {
+                    break
+                }
+                buffer.position(buffer.position() + 2)
+                val bytes = ByteArray(nameLength).also { buffer.get(it) }
+                addToMemory(String(bytes, Charsets.UTF_8))
+            }
+
+            // An entry might be written partially if a previous run was killed
+            length = buffer.position().toLong()
+            if (length != channel.size()) {
+                channel.truncate(length)
+            }
+        }
+
+        fun idOf(name: String): Int? = ids[name]
+
+        fun nameOf(id: Int): String = names[id]
+
+        fun add(name: String): Int {
+            val bytes = name.toByteArray(Charsets.UTF_8)
+            require(bytes.size <= 0xFFFF) { "Name is too long: $name" }
+            val buffer = ByteBuffer.allocate(2 + bytes.size)
+                .putShort(bytes.size.toShort())
+                .put(bytes)
+                .apply { flip() }
+            writeFully(channel, buffer, length)
+            length += buffer.limit()
+            return addToMemory(name)
+        }
+
+        private fun addToMemory(name: String): Int {
+            val id = names.size
+            names.add(name)
+            ids[name] = id
+            return id
+        }
+
+        override fun close() {
+            channel.close()
+        }
+    }
+
+    companion object {
+        private val logger = LoggerFactory.getLogger(TestHistoryStore::class.java)
+
+        private const val TESTS_FILE = "tests.bin"
+        private const val MODELS_FILE = "models.bin"
+        private const val RECORDS_FILE = "records.bin"
+        private const val HEADS_FILE = "heads.bin"
+
+        private const val MAGIC = 0x544E4748 // "TNGH"
+        private const val VERSION = 1
+        private const val HEADER_SIZE = 8L
+
+        private const val RECORD_SIZE = 48
+        private const val RUN_ID_OFFSET = 8
+        private const val TEST_ID_OFFSET = 12
+
+        private const val LOCK_FILE = "lock"
+
+        private const val NO_RECORD = -1L
+        private const val NO_DURATION = -1L
+
+        private const val KEY_SEPARATOR = '#'
+
+        /**
+         * Persisted codes of statuses are indexes in this list, so new statuses must only be added to its end
+         */
+        private val STATUS_CODES = listOf(
+            ResultStatus.PASS,
+            ResultStatus.FAIL,
+            ResultStatus.ERROR,
+            ResultStatus.IGNORED,
+            ResultStatus.ASSUMPTION_FAILED
+        )
+
+        @JvmStatic
+        @Throws(IOException::class)
+        fun open(directory: File): TestHistoryStore {
+            if (!directory.isDirectory && !directory.mkdirs()) {
+                throw IOException("Failed to create test history directory $directory")
+            }
+            return openLocked(directory, false)
+        }
+
+        /**
+         * Opens an empty store in a new temporary directory, which is deleted when the store is closed
+         */
+        @JvmStatic
+        @Throws(IOException::class)
+        fun openTemporary(): TestHistoryStore {
+            val directory = Files.createTempDirectory("tongs-history").toFile()
+            return try {
+                openLocked(directory, true)
+            } catch (e: Exception) {
+                directory.deleteRecursively()
+                throw e
+            }
+        }
+
+        private fun openLocked(directory: File, isTemporary: Boolean): TestHistoryStore {
+            val directoryLock = lockDirectory(directory)
+            return try {
+                TestHistoryStore(directory, directoryLock, isTemporary)
+            } catch (e: Exception) {
+                directoryLock.channel().close()
+                throw e
+            }
+        }
+
+        /**
+         * @throws IOException when the directory is already locked by another store, in this or another process
+         */
+        private fun lockDirectory(directory: File): FileLock {
+            val channel = FileChannel.open(File(directory, LOCK_FILE).toPath(), CREATE, WRITE)
+            val lock = try {
+                channel.tryLock()
+            } catch (e: OverlappingFileLockException) {
+                null
+            } catch (e: IOException) {
+                channel.close()
+                throw e
+            }
+            if (lock == null) {
+                channel.close()
+                throw IOException("Test history at $directory is used by another Tongs run")
+            }
+            return lock
+        }
+
+        private fun testKeyOf(testClass: String, testMethod: String) = "$testClass$KEY_SEPARATOR$testMethod"
+
+        private fun readFully(channel: FileChannel, buffer: ByteBuffer, position: Long) {
+            var currentPosition = position
+            while (buffer.hasRemaining()) {
+                val read = channel.read(buffer, currentPosition)
+                if (read < 0) {
+                    throw IOException("Unexpected end of test history file")
+                }
+                currentPosition += read
+            }
+        }
+
+        private fun writeFully(channel: FileChannel, buffer: ByteBuffer, position: Long) {
+            var currentPosition = position
+            while (buffer.hasRemaining()) {
+                currentPosition += channel.write(buffer, currentPosition)
+            }
+        }
+    }
+}
+
+data class TestHistoryRecord(
+    val runId: Int,
+    val testClass: String,
+    val testMethod: String,
+    val deviceModel: String,
+    val apiLevel: Int,
+    val status: ResultStatus,
+
+    /**
+     * Number of failed attempts of the test case before this one
+     */
+    val retryCount: Int,
+
+    val startTimestampUtc: Instant,
+    val durationMillis: Long,
+    val netDurationMillis: Long?
+)
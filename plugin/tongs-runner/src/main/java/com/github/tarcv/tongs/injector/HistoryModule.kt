@@ -0,0 +1,58 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.injector
+
+import com.github.tarcv.tongs.Configuration
+import com.github.tarcv.tongs.TestCaseOrder
+import com.github.tarcv.tongs.history.TestDurationHistory
+import com.github.tarcv.tongs.history.TestFlakinessHistory
+import com.github.tarcv.tongs.history.TestHistoryStore
+import com.github.tarcv.tongs.runner.DiscoveryOrdering
+import com.github.tarcv.tongs.runner.LongestFirstOrdering
+import com.github.tarcv.tongs.runner.TestCaseOrdering
+import org.koin.dsl.module
+import org.koin.dsl.onClose
+import org.slf4j.LoggerFactory
+import java.io.File
+import java.io.IOException
+
+val historyModule = module(createdAtStart = modulesCreatedAtStart) {
+    single {
+        val historyDirectory = get<Configuration>().historyDirectory
+        try {
+            TestHistoryStore.open(historyDirectory)
+        } catch (e: IOException) {
+            openTemporaryHistory(historyDirectory, e)
+        } catch (e: RuntimeException) {
+            openTemporaryHistory(historyDirectory, e)
+        }
+    } onClose { it?.close() }
+    single {
+        TestDurationHistory(get())
+    }
+    single {
+        TestFlakinessHistory(get())
+    }
+    factory<TestCaseOrdering> {
+        when (get<Configuration>().testCaseOrder) {
+            TestCaseOrder.DISCOVERY -> DiscoveryOrdering()
+            TestCaseOrder.LONGEST_FIRST -> LongestFirstOrdering(get())
+        }
+    }
+}
+
+/**
+ * Broken or locked history should not prevent running tests
+ */
+private fun openTemporaryHistory(historyDirectory: File, error: Exception): TestHistoryStore {
+    LoggerFactory.getLogger(TestHistoryStore::class.java)
+            .warn("Failed to open test history at $historyDirectory, history of this run will be discarded", error)
+    return TestHistoryStore.openTemporary()
+}
@@ -169,6 +169,35 @@ class ActualConfiguration(configuration: Configuration)
     : RunConfiguration,
         TongsConfiguration by configuration
 
+/**
+ * Executes before actions of rules until one of them fails
+ *
+ * @return rules which after actions should be executed, and an exception thrown by a before action (if any)
+ */
+inline fun <R> runRulesBeforeActions(
+        logger: Logger,
+        inRuleText: String,
+        rules: List<R>,
+        beforeAction: (R) -> Unit
+): Pair<List<R>, Throwable?> {
+    var lastException: Throwable? = null
+    val allowedRules = rules.takeWhile {
+        if (lastException == null) {
+            try {
+                beforeAction(it)
+            } catch (t: Throwable) {
+                logger.error("Exception $inRuleText (in before method)", t)
+                lastException = t
+            }
+            return@takeWhile true
+        } else {
+            return@takeWhile false
+        }
+    }
+
+    return Pair(allowedRules, lastException)
+}
+
 inline fun <R, V>withRulesWithoutAfter(
         logger: Logger,
         inRuleText: String,
@@ -177,24 +206,7 @@ inline fun <R, V>withRulesWithoutAfter(
         beforeAction: (R) -> Unit,
         block: () -> V
 ): Pair<List<R>, Result<V>> {
-    val (allowedAfterRules, lastException) = run {
-        var lastException: Throwable? = null
-        val allowedRules = rules.takeWhile {
-            if (lastException == null) {
-                try {
-                    beforeAction(it)
-                } catch (t: Throwable) {
-                    logger.error("Exception $inRuleText (in before method)", t)
-                    lastException = t
-                }
-                return@takeWhile true
-            } else {
-                return@takeWhile false
-            }
-        }
-
-        Pair(allowedRules, lastException)
-    }
+    val (allowedAfterRules, lastException) = runRulesBeforeActions(logger, inRuleText, rules, beforeAction)
 
     val actionResult: Result<V> = if (lastException == null) {
         try {
@@ -24,6 +24,8 @@ import com.github.tarcv.tongs.runner.OverallProgressReporter
 import com.github.tarcv.tongs.runner.PoolProgressTrackers
 import com.github.tarcv.tongs.runner.PoolTestRunnerFactory
 import com.github.tarcv.tongs.runner.ProgressReporter
+import com.github.tarcv.tongs.runner.RetryDecisionLog
+import com.github.tarcv.tongs.runner.RetryPolicy
 import org.koin.dsl.module
 import org.slf4j.LoggerFactory
 
@@ -31,14 +33,19 @@ val runnerModule = module(createdAtStart = modulesCreatedAtStart) {
     factory { PoolProgressTrackers(mutableMapOf()) }
 
     factory {
-        PoolTestRunnerFactory(get(), get())
+        PoolTestRunnerFactory(get(), get(), get())
+    }
+
+    single {
+        RetryDecisionLog()
     }
 
     factory<ProgressReporter> {
         OverallProgressReporter(
             get<Configuration>().totalAllowedRetryQuota,
-            get<Configuration>().retryPerTestCaseQuota,
             get(),
+            get(),
+            RetryPolicy(get<Configuration>().retryPerTestCaseQuota, get()),
             get()
         )
     }
@@ -65,6 +72,7 @@ val runnerModule = module(createdAtStart = modulesCreatedAtStart) {
             get(),
             ruleManager,
             runnerManager,
+            get(),
             get()
         )
 
@@ -29,7 +29,7 @@ val summaryModule = module(createdAtStart = modulesCreatedAtStart) {
         OutcomeAggregator()
     }
     factory {
-        SummaryCompiler(get<Configuration>())
+        SummaryCompiler(get<Configuration>(), get())
     }
     factory {
         Summarizer(
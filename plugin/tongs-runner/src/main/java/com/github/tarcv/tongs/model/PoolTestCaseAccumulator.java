@@ -15,7 +15,10 @@ import com.github.tarcv.tongs.api.devices.Pool;
 import com.github.tarcv.tongs.api.run.TestCaseEvent;
 
 public interface PoolTestCaseAccumulator {
-    void record(Pool pool, TestCaseEvent testCaseEvent);
+    /**
+     * @return number of times the test case is recorded in all pools, including this call
+     */
+    int record(Pool pool, TestCaseEvent testCaseEvent);
 
     int getCount(Pool pool, TestCaseEvent testCaseEvent);
 
@@ -1,5 +1,5 @@
 /*
- * Copyright 2020 TarCV
+ * Copyright 2021 TarCV
  * Copyright 2018 Shazam Entertainment Limited
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
@@ -13,64 +13,75 @@ package com.github.tarcv.tongs.model;
 
 import com.github.tarcv.tongs.api.devices.Pool;
 import com.github.tarcv.tongs.api.run.TestCaseEvent;
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.SetMultimap;
 
-import java.util.List;
-import java.util.function.Predicate;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Class that keeps track of the number of times each testCase is executed for device.
+ *
+ * Counters are indexed both by pool and test case, and by test case only, so updates and lookups take constant time
+ * and don't need locks once a counter exists.
  */
 public class PoolTestCaseFailureAccumulator implements PoolTestCaseAccumulator {
 
-    private final SetMultimap<Pool, TestCaseEventCounter> map = HashMultimap.create();
+    private final ConcurrentMap<PoolTestCase, AtomicInteger> poolCounters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<TestCaseEvent, AtomicInteger> totalCounters = new ConcurrentHashMap<>();
 
     @Override
-    public void record(Pool pool, TestCaseEvent testCaseEvent) {
-        if (!map.containsKey(pool)) {
-            map.put(pool, createNew(testCaseEvent));
-        }
-
-        map.get(pool).stream()
-                .filter(isSameTestCase(testCaseEvent))
-                .findFirst()
-                .orElseGet(() -> {
-                    TestCaseEventCounter newCounter = createNew(testCaseEvent);
-                    map.get(pool).add(newCounter);
-
-                    return newCounter;
-                })
-                .increaseCount();
+    public int record(Pool pool, TestCaseEvent testCaseEvent) {
+        counterFor(poolCounters, new PoolTestCase(pool, testCaseEvent)).incrementAndGet();
+        return counterFor(totalCounters, testCaseEvent).incrementAndGet();
     }
 
     @Override
     public int getCount(Pool pool, TestCaseEvent testCaseEvent) {
-        if (map.containsKey(pool)) {
-            return map.get(pool).stream().filter(isSameTestCase(testCaseEvent)).findFirst().orElse(TestCaseEventCounter.EMPTY)
-                    .getCount();
-        } else {
-            return 0;
-        }
+        return countOf(poolCounters.get(new PoolTestCase(pool, testCaseEvent)));
     }
 
     @Override
     public int getCount(TestCaseEvent testCaseEvent) {
-        int result = 0;
-        List<TestCaseEventCounter> counters = map.values().stream().filter(isSameTestCase(testCaseEvent)).collect(Collectors.toList());
-        for (TestCaseEventCounter counter : counters) {
-            result += counter.getCount();
+        return countOf(totalCounters.get(testCaseEvent));
+    }
+
+    private static <K> AtomicInteger counterFor(ConcurrentMap<K, AtomicInteger> counters, K key) {
+        // Plain get first, as computeIfAbsent locks the bin even when the key is present
+        AtomicInteger counter = counters.get(key);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(key, k -> new AtomicInteger());
         }
-        return result;
+        return counter;
     }
 
-    private static TestCaseEventCounter createNew(final TestCaseEvent testCaseEvent) {
-        return new TestCaseEventCounter(testCaseEvent, 0);
+    private static int countOf(AtomicInteger counter) {
+        return counter == null ? 0 : counter.get();
     }
 
-    private static Predicate<TestCaseEventCounter> isSameTestCase(final TestCaseEvent testCaseEvent) {
-        return input -> input.getTestCaseEvent() != null
-                && testCaseEvent.equals(input.getTestCaseEvent());
+    private static final class PoolTestCase {
+        private final String poolName;
+        private final TestCaseEvent testCaseEvent;
+        private final int hashCode;
+
+        PoolTestCase(Pool pool, TestCaseEvent testCaseEvent) {
+            this.poolName = pool.getName();
+            this.testCaseEvent = testCaseEvent;
+            this.hashCode = 31 * poolName.hashCode() + testCaseEvent.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof PoolTestCase)) return false;
+            PoolTestCase other = (PoolTestCase) obj;
+            return hashCode == other.hashCode
+                    && poolName.equals(other.poolName)
+                    && testCaseEvent.equals(other.testCaseEvent);
+        }
     }
 }
@@ -12,85 +12,541 @@ package com.github.tarcv.tongs.model
 
 import com.github.tarcv.tongs.api.devices.Device
 import com.github.tarcv.tongs.api.result.TestCaseRunResult
+import com.github.tarcv.tongs.api.run.ResultStatus
 import com.github.tarcv.tongs.api.run.TestCaseEvent
+import org.slf4j.LoggerFactory
 import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.PriorityBlockingQueue
 import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
 import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicReference
 import java.util.concurrent.locks.ReentrantLock
 import kotlin.concurrent.withLock
 
+/**
+ * Queue of test cases to be executed in a pool.
+ *
+ * Each device gets its own index of test cases enabled on it, so polling does not need to scan (or lock)
+ * test cases of other devices. An event present in several indexes is claimed atomically by the first device that
+ * polls it, other indexes drop claimed events lazily.
+ *
+ * Offered events are deferred for devices from their [TestCaseEvent.deviceExclusionHints]
+ * (while some other polling device can execute them), so that a failed test case is retried on another device.
+ * Devices must be removed with [removeDevice] once they stop polling.
+ * A deferred event is still taken by a hinted device once [hintedDeviceDelayMillis] pass,
+ * so test cases are executed even when other devices are busy or gone.
+ *
+ * Devices that have nothing left to execute can take duplicates of running test cases ([pollDuplicateForDevice]).
+ * Only one of the attempts gets its result (and retries) into the queue, see [resolveCurrentAttempt].
+ */
 class TestCaseEventQueue(
         events: Collection<TestCaseEvent>,
-        resultsCollection: MutableList<TestCaseRunResult>
+        resultsCollection: MutableList<TestCaseRunResult>,
+        hintedDeviceDelayMillis: Long = DEFAULT_HINTED_DEVICE_DELAY_MILLIS
 ) {
-    private val list = ArrayList<TestCaseEvent>(events)
+    private val hintedDeviceDelayNanos = TimeUnit.MILLISECONDS.toNanos(hintedDeviceDelayMillis)
+
     private val syncResultsCollection = Collections.synchronizedList(resultsCollection)
 
+    private val nextSequenceNumber = AtomicLong()
+
+    private val indexLock = Any()
+    private val deviceIndexes = ConcurrentHashMap<Device, PriorityBlockingQueue<Entry>>()
+
+    /**
+     * Entries that are not known to be claimed yet, used to build indexes for devices polling for the first time.
+     * Guarded by [indexLock].
+     */
+    private val unindexedEntries = events.mapTo(ArrayList()) { Entry(it, nextSequenceNumber.getAndIncrement()) }
+
+    /**
+     * Size of [unindexedEntries] right after claimed entries were last removed from it. Guarded by [indexLock].
+     */
+    private var prunedUnindexedSize = unindexedEntries.size
+
     private val conditionLock = ReentrantLock()
-    private val newItemCondition = conditionLock.newCondition()
 
+    /**
+     * Signalled when a new item is offered or when the last event in work is finished
+     */
+    private val queueStateCondition = conditionLock.newCondition()
+
+    /**
+     * Number of events that are claimed by some device and can still offer new events to the queue
+     */
     private val numEventsInWork = AtomicInteger()
 
+    /**
+     * Number of devices waiting only for the last event in work to finish (nothing is deferred for them).
+     * Failed polls change [numEventsInWork] only for a moment, so they signal the condition only when such devices
+     * exist. Otherwise devices waiting for deferred entries would wake each other up in a loop.
+     */
+    private val numWaitersForLastWork = AtomicInteger()
+
+    private val speculationLock = Any()
+
+    /**
+     * Tasks being executed by [TestCaseTask.doWork]. Guarded by [speculationLock].
+     */
+    private val runningTasks = LinkedHashSet<TestCaseTask>()
+
+    /**
+     * Task being executed by the current thread, so that events offered by an attempt that might still lose
+     * to another attempt can be held back
+     */
+    private val currentTask = ThreadLocal<TestCaseTask>()
+
+    /**
+     * Returns next test case enabled on the device or waits until some other device offers such a test case.
+     *
+     * Null is returned right after the last event in work is finished without offering an event for the device,
+     * or when the timeout expires (zero timeout means waiting without a time limit).
+     */
     fun pollForDevice(device: Device, timeoutSeconds: Long = 0): TestCaseTask? {
-        val currentTime = System.currentTimeMillis()
-        val timeoutTime = currentTime + timeoutSeconds * 1000
+        val index = indexFor(device)
+        val timeoutTime = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds)
         while (true) {
+            val item = tryPoll(device, index)
+            if (item != null) {
+                return item
+            }
+
             conditionLock.withLock {
-                val item = tryPollForDevice(device)
-                if (item != null) {
-                    return TestCaseTask(item)
+                // Recheck under the lock, otherwise a signal from 'offer' or a finishing task might be missed
+                val offeredItem = tryPoll(device, index)
+                if (offeredItem != null) {
+                    return offeredItem
                 }
 
-                newItemCondition.await(1, TimeUnit.SECONDS)
-                if (timeoutSeconds > 0 && timeoutTime < System.currentTimeMillis()) {
-                    return null
+                // Registered before reading the number of events in work, so that a failed poll that momentarily
+                // increased it either is not seen here or sees this waiter and signals it
+                numWaitersForLastWork.incrementAndGet()
+                var isWaitingForLastWork = true
+                try {
+                    // Unclaimed entries left in the index are deferred for this device, they must not be lost
+                    val hasEventsInWork = numEventsInWork.get() > 0
+                    val hasDeferredEntries = hasUnclaimedEntries(index)
+                    if (!hasEventsInWork && !hasDeferredEntries) {
+                        return null
+                    }
+
+                    var nanosToWait = Long.MAX_VALUE
+                    if (timeoutSeconds > 0) {
+                        nanosToWait = timeoutTime - System.nanoTime()
+                        if (nanosToWait <= 0) {
+                            return null
+                        }
+                    }
+                    if (hasDeferredEntries) {
+                        // Deferred entries become available after a delay, so the waiting is limited anyway
+                        numWaitersForLastWork.decrementAndGet()
+                        isWaitingForLastWork = false
+                        nanosToWait = minOf(nanosToWait, hintedDeviceDelayNanos)
+                    }
+
+                    if (nanosToWait == Long.MAX_VALUE) {
+                        queueStateCondition.await()
+                    } else {
+                        queueStateCondition.awaitNanos(nanosToWait)
+                    }
+                } finally {
+                    if (isWaitingForLastWork) {
+                        numWaitersForLastWork.decrementAndGet()
+                    }
                 }
             }
         }
     }
 
-    fun hasNoPotentialEventsFor(device: Device): Boolean {
+    /**
+     * Same as [pollForDevice], but after getting the first test case also takes up to [maxSize] - 1 other
+     * test cases already available for the device (without waiting for them).
+     *
+     * Empty list is returned when [pollForDevice] would return null.
+     */
+    fun pollBatchForDevice(device: Device, maxSize: Int, timeoutSeconds: Long = 0): List<TestCaseTask> {
+        val firstTask = pollForDevice(device, timeoutSeconds) ?: return emptyList()
+        val index = indexFor(device)
+        val batch = arrayListOf(firstTask)
+        while (batch.size < maxSize) {
+            batch.add(tryPoll(device, index) ?: break)
+        }
+        return batch
+    }
+
+    /**
+     * Executes several tasks at once. [block] must return results in the same order as the tasks.
+     */
+    fun doBatchWork(tasks: List<TestCaseTask>, block: (testCaseEvents: List<TestCaseEvent>) -> List<TestCaseRunResult>) {
+        try {
+            val testCaseResults = block.invoke(tasks.map { it.testCaseEvent })
+            check(testCaseResults.size == tasks.size) { "Got ${testCaseResults.size} results for ${tasks.size} tasks" }
+            syncResultsCollection.addAll(testCaseResults)
+        } finally {
+            tasks.forEach { finishWork() }
+        }
+    }
+
+    /**
+     * Starts another attempt of the test case that has been running on another device for the longest time.
+     * The attempt that wins in [resolveCurrentAttempt] gets its result stored and events it offered put into
+     * the queue. Results and offered events of the other attempt are discarded.
+     *
+     * Null is returned when there are still unclaimed test cases for the device, or when no running test case
+     * can be duplicated (it is not enabled on the device, [canExecute] returns false for it,
+     * it already has a duplicate or it has already offered new events).
+     */
+    fun pollDuplicateForDevice(device: Device, canExecute: (TestCaseEvent) -> Boolean): TestCaseTask? {
+        if (hasUnclaimedEntries(indexFor(device))) {
+            return null
+        }
+
+        synchronized(speculationLock) {
+            val original = runningTasks
+                    .filter { it.device != device && it.attemptGroup == null && !it.hasOffered }
+                    .filter { it.testCaseEvent.isEnabledOn(device) && canExecute(it.testCaseEvent) }
+                    .minBy { it.startNanos }
+                    ?: return null
+
+            numEventsInWork.incrementAndGet()
+            val duplicate = TestCaseTask(original.testCaseEvent, device)
+            val attemptGroup = AttemptGroup(listOf(original, duplicate))
+            original.attemptGroup = attemptGroup
+            duplicate.attemptGroup = attemptGroup
+            logger.info("Started a duplicate of {} from {} on {}",
+                    original.testCaseEvent, original.device.serial, device.serial)
+            return duplicate
+        }
+    }
+
+    /**
+     * Decides whether the result of the test case executed by the current thread should be reported
+     * (to progress, retry and other listeners). Must be called once the test case is executed and before its result
+     * is reported. Results of test cases that were not duplicated are always reported.
+     *
+     * Of attempts started by [pollDuplicateForDevice] only one is reported. An attempt that didn't fail wins
+     * and cancels the other attempt, unless the other attempt has already won. A failed attempt gives way
+     * to the other attempt, so that the other attempt is reported whatever its result is.
+     *
+     * @return false when the result must be discarded without reporting
+     */
+    fun resolveCurrentAttempt(isFailed: Boolean): Boolean {
+        val task = currentTask.get() ?: return true
+        return task.resolve(isFailed)
+    }
+
+    /**
+     * Stops indexing events for a device that won't poll anymore, so that events are not deferred
+     * for the sake of that device
+     */
+    fun removeDevice(device: Device) {
+        synchronized(indexLock) {
+            deviceIndexes.remove(device)
+        }
+
+        // Entries deferred for other devices might have no other device to run on anymore
         conditionLock.withLock {
-            return indexOfEventFor(device) == -1 && numEventsInWork.get() == 0
+            queueStateCondition.signalAll()
         }
     }
 
+    fun hasNoPotentialEventsFor(device: Device): Boolean {
+        // Events in work must be checked first as they can offer new events before finishing
+        return numEventsInWork.get() == 0 && !hasUnclaimedEntries(indexFor(device))
+    }
+
     fun offer(event: TestCaseEvent) {
+        if (numEventsInWork.get() < 1) {
+            throw IllegalStateException("TestCaseEventQueue.offer can only be called during TestCaseTask.doWork")
+        }
+
+        val task = currentTask.get()
+        if (task != null && !task.admitOffer(event)) {
+            return
+        }
+        enqueue(event)
+    }
+
+    private fun enqueue(event: TestCaseEvent) {
+        val sequenceNumber = nextSequenceNumber.getAndIncrement()
+        synchronized(indexLock) {
+            val hints = event.deviceExclusionHints
+            val entry = if (canRunOnOtherDevice(event)) {
+                Entry(event, sequenceNumber, hints, System.nanoTime() + hintedDeviceDelayNanos)
+            } else {
+                Entry(event, sequenceNumber)
+            }
+
+            unindexedEntries.add(entry)
+            // Pruned once the list doubles, so that it doesn't grow without bound when no new devices come,
+            // while each offer still takes amortized constant time
+            if (unindexedEntries.size >= 2 * maxOf(prunedUnindexedSize, MIN_PRUNED_SIZE)) {
+                pruneUnindexedEntries()
+            }
+            deviceIndexes.forEach { (device, index) ->
+                if (event.isEnabledOn(device)) {
+                    index.add(entry)
+                }
+            }
+        }
+
         conditionLock.withLock {
-            if (numEventsInWork.get() < 1) {
-                throw IllegalStateException("TestCaseEventQueue.offer can only be called during TestCaseTask.doWork")
+            queueStateCondition.signalAll()
+        }
+    }
+
+    private fun indexFor(device: Device): PriorityBlockingQueue<Entry> {
+        deviceIndexes[device]?.let {
+            return it
+        }
+
+        synchronized(indexLock) {
+            return deviceIndexes.getOrPut(device) {
+                pruneUnindexedEntries()
+
+                val enabledEntries = unindexedEntries.filter { it.event.isEnabledOn(device) }
+                PriorityBlockingQueue<Entry>(enabledEntries.size.coerceAtLeast(1))
+                        .apply { addAll(enabledEntries) }
+            }
+        }
+    }
+
+    private fun tryPoll(device: Device, index: PriorityBlockingQueue<Entry>): TestCaseTask? {
+        // The event is counted as being in work before it is claimed,
+        // so that other devices never see the queue as finished while a test case is being taken from it
+        numEventsInWork.incrementAndGet()
+        val nowNanos = System.nanoTime()
+        var deferredEntries: MutableList<Entry>? = null
+        try {
+            while (true) {
+                val entry = index.poll()
+                if (entry == null) {
+                    finishFailedPoll()
+                    return null
+                }
+                if (entry.isDeferredFor(device, nowNanos) && !entry.isClaimed && canRunOnOtherDevice(entry.event)) {
+                    deferredEntries = (deferredEntries ?: ArrayList()).apply { add(entry) }
+                    continue
+                }
+                if (entry.claim()) {
+                    return TestCaseTask(entry.event, device)
+                }
             }
-            list.add(event)
+        } finally {
+            deferredEntries?.let { index.addAll(it) }
+        }
+    }
+
+    private fun pruneUnindexedEntries() {
+        unindexedEntries.removeIf { it.isClaimed }
+        prunedUnindexedSize = unindexedEntries.size
+    }
+
+    /**
+     * Whether a device that is still polling and is not hinted to be excluded can execute the event
+     */
+    private fun canRunOnOtherDevice(event: TestCaseEvent): Boolean {
+        val hints = event.deviceExclusionHints
+        return hints.isNotEmpty() && deviceIndexes.keys.any { it !in hints && event.isEnabledOn(it) }
+    }
 
-            newItemCondition.signalAll()
+    private fun finishWork() {
+        val result = numEventsInWork.decrementAndGet()
+        if (result < 0) {
+            throw IllegalStateException()
+        } else if (result == 0) {
+            conditionLock.withLock {
+                queueStateCondition.signalAll()
+            }
         }
     }
 
-    private fun tryPollForDevice(device: Device): TestCaseEvent? {
-        return conditionLock.withLock {
-            val itemIndex = indexOfEventFor(device)
-            if (itemIndex != -1) {
-                list.removeAt(itemIndex)
-            } else {
-                null
+    /**
+     * Same as [finishWork] for a poll that claimed nothing. It changed nothing other devices might wait for,
+     * unless they saw the momentarily increased [numEventsInWork].
+     */
+    private fun finishFailedPoll() {
+        val result = numEventsInWork.decrementAndGet()
+        if (result < 0) {
+            throw IllegalStateException()
+        } else if (result == 0 && numWaitersForLastWork.get() > 0) {
+            conditionLock.withLock {
+                queueStateCondition.signalAll()
             }
         }
     }
 
-    private fun indexOfEventFor(device: Device) = list.indexOfFirst { it.isEnabledOn(device) }
+    private fun hasUnclaimedEntries(index: PriorityBlockingQueue<Entry>): Boolean {
+        while (true) {
+            val head = index.poll() ?: return false
+            if (!head.isClaimed) {
+                index.add(head)
+                return true
+            }
+        }
+    }
+
+    private class Entry(
+            val event: TestCaseEvent,
+            private val sequenceNumber: Long,
+            private val deferredDevices: Set<Device> = emptySet(),
+            private val deferredUntilNanos: Long = 0
+    ) : Comparable<Entry> {
+        private val claimed = AtomicBoolean()
+
+        val isClaimed: Boolean
+            get() = claimed.get()
+
+        fun isDeferredFor(device: Device, nowNanos: Long): Boolean {
+            return deferredDevices.contains(device) && nowNanos - deferredUntilNanos < 0
+        }
+
+        fun claim(): Boolean = claimed.compareAndSet(false, true)
+
+        override fun compareTo(other: Entry): Int = sequenceNumber.compareTo(other.sequenceNumber)
+    }
+
+    /**
+     * Attempts of the same test case started by [pollDuplicateForDevice]
+     */
+    internal class AttemptGroup(val attempts: List<TestCaseTask>) {
+        private val winnerReference = AtomicReference<TestCaseTask?>()
+
+        val winner: TestCaseTask?
+            get() = winnerReference.get()
+
+        /**
+         * @return whether [task] has just become the winner
+         */
+        fun resolve(task: TestCaseTask, isFailed: Boolean): Boolean {
+            val candidate = if (isFailed) attempts.first { it !== task } else task
+            return winnerReference.compareAndSet(null, candidate) && candidate === task
+        }
+    }
 
-    inner class TestCaseTask(private val testCaseEvent: TestCaseEvent) {
-        fun doWork(block: (testCaseEvent: TestCaseEvent) -> TestCaseRunResult) {
+    companion object {
+        const val DEFAULT_HINTED_DEVICE_DELAY_MILLIS = 10_000L
+
+        private const val MIN_PRUNED_SIZE = 64
+
+        private val logger = LoggerFactory.getLogger(TestCaseEventQueue::class.java)
+    }
+
+    /**
+     * A claimed test case. Either [doWork] or [doBatchWork] must be called exactly once for every task
+     * returned by [pollForDevice], [pollBatchForDevice] or [pollDuplicateForDevice].
+     */
+    inner class TestCaseTask internal constructor(val testCaseEvent: TestCaseEvent, internal val device: Device) {
+        // Fields below are guarded by speculationLock
+        internal var startNanos = 0L
+        internal var attemptGroup: AttemptGroup? = null
+        internal var hasOffered = false
+        private var isExecuted = false
+        private var cancelAttempt: (() -> Unit)? = null
+        private var cancellationInProgress: CountDownLatch? = null
+        private val heldBackEvents = ArrayList<TestCaseEvent>()
+
+        /**
+         * @param cancelAttempt stops execution of the test case on the device, called from another thread when
+         *                      a duplicate attempt of the test case wins
+         */
+        fun doWork(cancelAttempt: (() -> Unit)? = null, block: (testCaseEvent: TestCaseEvent) -> TestCaseRunResult) {
+            synchronized(speculationLock) {
+                this.cancelAttempt = cancelAttempt
+                startNanos = System.nanoTime()
+                runningTasks.add(this)
+            }
+            currentTask.set(this)
             try {
-                numEventsInWork.incrementAndGet()
                 val testCaseResult = block.invoke(testCaseEvent)
-                syncResultsCollection.add(testCaseResult)
+                finishAttempt(testCaseResult)
+            } finally {
+                currentTask.remove()
+                markExecuted()
+                finishWork()
+            }
+        }
+
+        internal fun resolve(isFailed: Boolean): Boolean {
+            val group = markExecuted() ?: return true
+
+            if (group.resolve(this, isFailed)) {
+                group.attempts
+                        .filter { it !== this }
+                        .forEach { it.cancel() }
+            }
+            return group.winner === this
+        }
+
+        internal fun admitOffer(event: TestCaseEvent): Boolean {
+            synchronized(speculationLock) {
+                hasOffered = true
+                val winner = (attemptGroup ?: return true).winner
+                if (winner == null) {
+                    heldBackEvents.add(event)
+                }
+                return winner === this
+            }
+        }
+
+        private fun finishAttempt(result: TestCaseRunResult) {
+            // Resolved here too in case the block didn't do that (e.g. when it failed before executing the test case)
+            if (!resolve(ResultStatus.isFailure(result.status))) {
+                logger.info("Discarded result of {} on {} as another attempt is used", testCaseEvent, device.serial)
+                return
+            }
+
+            // Only this thread adds held back events, and it is not adding them anymore
+            heldBackEvents.forEach { enqueue(it) }
+            syncResultsCollection.add(result)
+        }
+
+        /**
+         * Executed tasks are neither duplicated nor cancelled anymore. A cancellation that is already in progress
+         * is waited for, so that it can't stop the next test case started on the device after this one
+         *
+         * @return the attempt group of this task
+         */
+        private fun markExecuted(): AttemptGroup? {
+            while (true) {
+                val pendingCancellation = synchronized(speculationLock) {
+                    cancellationInProgress.also {
+                        if (it == null) {
+                            isExecuted = true
+                            runningTasks.remove(this)
+                        }
+                    }
+                }
+                if (pendingCancellation == null) {
+                    return synchronized(speculationLock) { attemptGroup }
+                }
+                pendingCancellation.await()
+            }
+        }
+
+        private fun cancel() {
+            val finished = CountDownLatch(1)
+            val action = synchronized(speculationLock) {
+                if (isExecuted || cancellationInProgress != null) {
+                    return
+                }
+                cancellationInProgress = finished
+                cancelAttempt
+            }
+            try {
+                action?.invoke()
+            } catch (e: Exception) {
+                logger.warn("Failed to cancel an attempt of $testCaseEvent on ${device.serial}", e)
             } finally {
-                val result = numEventsInWork.decrementAndGet()
-                if (result < 0) {
-                    throw IllegalStateException()
+                synchronized(speculationLock) {
+                    cancellationInProgress = null
                 }
+                finished.countDown()
             }
         }
     }
-}
\ No newline at end of file
+}
@@ -15,7 +15,7 @@ package com.github.tarcv.tongs.pooling;
 
 public class NoDevicesForPoolException extends Exception {
 
-	NoDevicesForPoolException(String message) {
+	public NoDevicesForPoolException(String message) {
 		super(message);
 	}
 }
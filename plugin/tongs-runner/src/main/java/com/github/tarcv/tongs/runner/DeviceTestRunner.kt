@@ -20,19 +20,27 @@ import com.github.tarcv.tongs.api.result.Delegate
 import com.github.tarcv.tongs.api.result.StackTrace
 import com.github.tarcv.tongs.api.result.TestCaseFileManager
 import com.github.tarcv.tongs.api.result.TestCaseRunResult
+import com.github.tarcv.tongs.api.run.BatchScopedTestCaseRunRule
+import com.github.tarcv.tongs.api.run.BatchTestCaseRunner
+import com.github.tarcv.tongs.api.run.BatchableTestCaseRunRule
+import com.github.tarcv.tongs.api.run.DeviceRunRule
 import com.github.tarcv.tongs.api.run.DeviceRunRuleContext
 import com.github.tarcv.tongs.api.run.DeviceRunRuleFactory
 import com.github.tarcv.tongs.api.run.ResultStatus
 import com.github.tarcv.tongs.api.run.TestCaseEvent
 import com.github.tarcv.tongs.api.run.TestCaseRunRuleAfterArguments
+import com.github.tarcv.tongs.api.run.TestCaseRunRule
 import com.github.tarcv.tongs.api.run.TestCaseRunRuleContext
 import com.github.tarcv.tongs.api.run.TestCaseRunRuleFactory
 import com.github.tarcv.tongs.api.run.TestCaseRunnerArguments
+import com.github.tarcv.tongs.device.forceStop
 import com.github.tarcv.tongs.injector.ActualConfiguration
 import com.github.tarcv.tongs.injector.RuleManagerFactory
-import com.github.tarcv.tongs.injector.withRulesWithoutAfter
+import com.github.tarcv.tongs.injector.runRulesBeforeActions
+import com.github.tarcv.tongs.model.AndroidDevice
 import com.github.tarcv.tongs.model.TestCaseEventQueue
 import com.github.tarcv.tongs.runner.listeners.TestRunListenersFactoryTongs
+import com.github.tarcv.tongs.runner.listeners.TongsTestListener
 import com.github.tarcv.tongs.system.io.FileManager
 import com.github.tarcv.tongs.system.io.TestCaseFileManagerImpl
 import org.koin.core.context.KoinContextHandler
@@ -42,16 +50,48 @@ import java.io.BufferedOutputStream
 import java.io.ByteArrayOutputStream
 import java.io.PrintStream
 import java.time.Instant
+import java.util.IdentityHashMap
 import java.util.concurrent.CountDownLatch
+import java.util.concurrent.atomic.AtomicReference
 
-class DeviceTestRunner(private val pool: Pool,
-                       private val device: Device,
-                       private val ruleManagerFactory: RuleManagerFactory
+class DeviceTestRunner private constructor(
+        private val currentPool: AtomicReference<Pool>,
+        private val device: Device,
+        private val ruleManagerFactory: RuleManagerFactory,
+        private val rules: List<DeviceRunRule>,
+        @Volatile private var allowedAfterRules: List<DeviceRunRule>
 ) {
-    private val rules = ruleManagerFactory.create(DeviceRunRuleFactory::class.java,
-            listOf(AndroidSetupDeviceRuleFactory()),
-            { factory, context: DeviceRunRuleContext -> factory.deviceRules(context) }
-    ).createRulesFrom { configuration -> DeviceRunRuleContext(configuration, pool, device) }
+    constructor(pool: Pool, device: Device, ruleManagerFactory: RuleManagerFactory) :
+            this(AtomicReference(pool), device, ruleManagerFactory)
+
+    private constructor(
+            currentPool: AtomicReference<Pool>,
+            device: Device,
+            ruleManagerFactory: RuleManagerFactory
+    ) : this(
+            currentPool,
+            device,
+            ruleManagerFactory,
+            ruleManagerFactory.create(DeviceRunRuleFactory::class.java,
+                    listOf(AndroidSetupDeviceRuleFactory()),
+                    { factory, context: DeviceRunRuleContext -> factory.deviceRules(context) }
+            ).createRulesFrom { configuration -> DeviceRunRuleContext(configuration, { currentPool.get() }, device) },
+            emptyList()
+    )
+
+    private val pool: Pool
+        get() = currentPool.get()
+
+    /**
+     * Creates a runner for the same device in [pool] (e.g. when other devices are excluded from the original pool),
+     * rules of this runner are reused as is, so [runBeforeRules] should not be called again.
+     *
+     * The rules see [pool] as the pool of the device from now on, and so does this runner.
+     */
+    fun withPool(pool: Pool): DeviceTestRunner {
+        currentPool.set(pool)
+        return DeviceTestRunner(currentPool, device, ruleManagerFactory, rules, allowedAfterRules)
+    }
 
     fun run(
             queueOfTestsInPool: TestCaseEventQueue,
@@ -60,24 +100,32 @@ class DeviceTestRunner(private val pool: Pool,
     ) {
         try {
             try {
+                val configuration = get(Configuration::class.java)
+                val batchSize = configuration.testCaseBatchSize
                 while (true) {
-                    val testCaseTask = queueOfTestsInPool.pollForDevice(device, 10)
-                    if (testCaseTask != null) {
-                        testCaseTask.doWork { testCaseEvent: TestCaseEvent ->
+                    val testCaseTasks = queueOfTestsInPool.pollBatchForDevice(device, batchSize, 10)
+                    if (testCaseTasks.size == 1) {
+                        runTask(testCaseTasks.single(), progressReporter, queueOfTestsInPool)
+                    } else if (testCaseTasks.isNotEmpty()) {
+                        queueOfTestsInPool.doBatchWork(testCaseTasks) { testCaseEvents: List<TestCaseEvent> ->
                             val startTimestampUtc = Instant.now()
                             try {
-                                runEvent(testCaseEvent, startTimestampUtc, progressReporter, queueOfTestsInPool)
-                                        .fixRunResult(testCaseEvent, startTimestampUtc)
-                                        .copy(endTimestampUtc = Instant.now())
+                                runBatch(testCaseEvents, startTimestampUtc, progressReporter, queueOfTestsInPool)
                             } catch (e: Exception) {
-                                fatalErrorResult(testCaseEvent, e, startTimestampUtc)
+                                testCaseEvents.map { fatalErrorResult(it, e, startTimestampUtc) }
                             }
                         }
                     } else if (queueOfTestsInPool.hasNoPotentialEventsFor(device)) {
                         break
+                    } else if (configuration.isSpeculativeExecutionEnabled) {
+                        // Nothing was claimable during the poll timeout, so help with test cases still running elsewhere
+                        queueOfTestsInPool
+                                .pollDuplicateForDevice(device) { it.runnersFor(device).isNotEmpty() }
+                                ?.let { runTask(it, progressReporter, queueOfTestsInPool) }
                     }
                 }
             } finally {
+                queueOfTestsInPool.removeDevice(device)
                 runAfterRules()
             }
         } finally {
@@ -86,12 +134,149 @@ class DeviceTestRunner(private val pool: Pool,
         }
     }
 
+    private fun runTask(
+            testCaseTask: TestCaseEventQueue.TestCaseTask,
+            progressReporter: ProgressReporter,
+            queueOfTestsInPool: TestCaseEventQueue
+    ) {
+        testCaseTask.doWork(this::cancelRunningTestCase) { testCaseEvent: TestCaseEvent ->
+            runSingle(testCaseEvent, progressReporter, queueOfTestsInPool)
+        }
+    }
+
+    private fun runSingle(
+            testCaseEvent: TestCaseEvent,
+            progressReporter: ProgressReporter,
+            queueOfTestsInPool: TestCaseEventQueue
+    ): TestCaseRunResult {
+        val startTimestampUtc = Instant.now()
+        return try {
+            runEvent(testCaseEvent, startTimestampUtc, progressReporter, queueOfTestsInPool)
+                    .fixRunResult(testCaseEvent, startTimestampUtc)
+                    .copy(endTimestampUtc = Instant.now())
+        } catch (e: Exception) {
+            fatalErrorResult(testCaseEvent, e, startTimestampUtc)
+        }
+    }
+
+    /**
+     * Stops the instrumentation of a test case when another attempt of it on another device finished first
+     */
+    private fun cancelRunningTestCase() {
+        if (device is AndroidDevice) {
+            val configuration = get(Configuration::class.java)
+            logger.info("Force stopping a discarded attempt on {}", device.serial)
+            forceStop(device.deviceInterface,
+                    listOf(configuration.instrumentationPackage, configuration.applicationPackage))
+        }
+    }
+
     private fun runEvent(
             testCaseEvent: TestCaseEvent,
             startTimestampUtc: Instant,
             progressReporter: ProgressReporter,
             queueOfTestsInPool: TestCaseEventQueue
     ): TestCaseRunResult {
+        val preparedTestCase = prepareTestCase(
+                createTestCaseRules(testCaseEvent, startTimestampUtc, progressReporter, queueOfTestsInPool))
+        val eitherResult = preparedTestCase.beforeException
+                ?.let { Result.failure<TestCaseRunResult>(it) }
+                ?: try {
+                    Result.success(
+                            completeRunResult(preparedTestCase, runUntilResult(preparedTestCase.executeContext))
+                    )
+                } catch (t: Throwable) {
+                    logger.error("Exception while executing a test case")
+                    Result.failure<TestCaseRunResult>(t)
+                }
+
+        // A duplicated test case must be reported only once, so a discarded attempt doesn't touch progress or retries
+        val isFailed = eitherResult.map { ResultStatus.isFailure(it.status) }.getOrDefault(true)
+        val isReported = queueOfTestsInPool.resolveCurrentAttempt(isFailed)
+        return finishTestCase(preparedTestCase, eitherResult, isReported)
+    }
+
+    /**
+     * Runs test cases at once when their runner supports that. Only test cases which rules are all
+     * [BatchableTestCaseRunRule] are batched, others are run one by one after the batch.
+     * All before actions are executed before the batch, and all after actions are executed after it.
+     * [BatchScopedTestCaseRunRule] rules prepare the device for the whole batch, so they are executed
+     * only for the first test case of the batch, other rules are executed for each test case.
+     * Test cases that failed in the batch are run again one by one with all their rules,
+     * as the failure might be caused by other test cases of the batch.
+     */
+    private fun runBatch(
+            testCaseEvents: List<TestCaseEvent>,
+            startTimestampUtc: Instant,
+            progressReporter: ProgressReporter,
+            queueOfTestsInPool: TestCaseEventQueue
+    ): List<TestCaseRunResult> {
+        val batchedRules = testCaseEvents
+                .map { createTestCaseRules(it, startTimestampUtc, progressReporter, queueOfTestsInPool) }
+                .filter { it.isBatchable }
+        if (batchedRules.size < 2) {
+            return testCaseEvents.map { runSingle(it, progressReporter, queueOfTestsInPool) }
+        }
+
+        val firstPreparedTestCase = prepareTestCase(batchedRules.first())
+        if (firstPreparedTestCase.beforeException != null) {
+            // The device is not prepared for the batch, so each test case is run with all its rules instead
+            finishTestCase(firstPreparedTestCase, Result.failure(firstPreparedTestCase.beforeException), false)
+            return testCaseEvents.map { runSingle(it, progressReporter, queueOfTestsInPool) }
+        }
+        val preparedTestCases = listOf(firstPreparedTestCase) + batchedRules
+                .drop(1)
+                .map { rules ->
+                    prepareTestCase(TestCaseRules(
+                            rules.executeContext,
+                            rules.rules.filter { it !is BatchScopedTestCaseRunRule }
+                    ))
+                }
+        val runnableTestCases = preparedTestCases.filter { it.beforeException == null }
+        val runResults = runnableTestCases
+                .zip(runBatchUntilResults(runnableTestCases.map { it.executeContext }))
+                .toMap()
+
+        val batchResults = IdentityHashMap<TestCaseEvent, TestCaseRunResult>()
+        preparedTestCases.forEach { preparedTestCase ->
+            val testCaseEvent = preparedTestCase.executeContext.testCaseEvent
+            val runResult = runResults[preparedTestCase]
+            if (runResult != null && ResultStatus.isFailure(runResult.status)) {
+                // Only rules are finished here, the result of the isolated run is the one reported to listeners
+                val batchResult = completeRunResult(preparedTestCase, runResult)
+                finishTestCase(preparedTestCase, Result.success(batchResult), false)
+                logger.info("Running {} again outside of its batch as it failed", testCaseEvent)
+                return@forEach
+            }
+
+            val eitherResult = preparedTestCase.beforeException
+                    ?.let { Result.failure<TestCaseRunResult>(it) }
+                    ?: Result.success(completeRunResult(preparedTestCase, runResults.getValue(preparedTestCase)))
+            batchResults[testCaseEvent] = finishTestCase(preparedTestCase, eitherResult)
+                    .let { result ->
+                        // Time of the whole batch is not the time of a test case, so the net time is used instead
+                        val netStart = result.netStartTimestampUtc
+                        val netEnd = result.netEndTimestampUtc
+                        if (netStart != null && netEnd != null && netStart != Instant.EPOCH && netEnd != Instant.EPOCH) {
+                            result.copy(startTimestampUtc = netStart, endTimestampUtc = netEnd)
+                        } else {
+                            result.copy(endTimestampUtc = Instant.now())
+                        }
+                    }
+        }
+
+        // After actions of the whole batch are finished by now, so test cases are run again in a clean state
+        return testCaseEvents.map {
+            batchResults[it] ?: runSingle(it, progressReporter, queueOfTestsInPool)
+        }
+    }
+
+    private fun createTestCaseRules(
+            testCaseEvent: TestCaseEvent,
+            startTimestampUtc: Instant,
+            progressReporter: ProgressReporter,
+            queueOfTestsInPool: TestCaseEventQueue
+    ): TestCaseRules {
         val fileManager by KoinContextHandler.get().inject<FileManager>()
         val testCaseFileManager: TestCaseFileManager =
      TestCaseFileManagerImpl(fileManager, pool, device, testCaseEvent.testCase)
@@ -123,38 +308,52 @@ class DeviceTestRunner(private val pool: Pool,
                     pool, device, testCaseEvent, startTimestampUtc)
         }
 
-        val inRuleText = "while executing a test case run rule"
+        val executeContext = TestCaseRunRuleContext(
+                ActualConfiguration(configuration), testCaseFileManager,
+                pool, device, testCaseEvent, startTimestampUtc)
+        return TestCaseRules(executeContext, testRunListeners + testCaseRunRules)
+    }
 
-        val (allowedAfterRules, eitherResult) = withRulesWithoutAfter(
+    private fun prepareTestCase(testCaseRules: TestCaseRules): PreparedTestCase {
+        val (allowedAfterRules, beforeException) = runRulesBeforeActions(
                 logger,
-                inRuleText,
-                "while executing a test case",
-                (testRunListeners + testCaseRunRules),
-                { it.before() },
-                {
-                    val executeContext = TestCaseRunRuleContext(
-                            ActualConfiguration(configuration), testCaseFileManager,
-                            pool, device, testCaseEvent, startTimestampUtc)
-
-                    runUntilResult(executeContext)
-                            .let {
-                                it.copy(
-                                        startTimestampUtc = executeContext.startTimestampUtc,
-                                        baseTotalFailureCount = executeContext.testCaseEvent.totalFailureCount,
-                                        additionalProperties = combineProperties(executeContext.testCaseEvent, it.additionalProperties)
-                                )
-                            }
-                            .fixRunResult(testCaseEvent, startTimestampUtc)
-                }
+                IN_RULE_TEXT,
+                testCaseRules.rules,
+                { it.before() }
         )
 
+        return PreparedTestCase(testCaseRules.executeContext, allowedAfterRules, beforeException)
+    }
+
+    private fun completeRunResult(preparedTestCase: PreparedTestCase, result: TestCaseRunResult): TestCaseRunResult {
+        val executeContext = preparedTestCase.executeContext
+        return result
+                .copy(
+                        startTimestampUtc = executeContext.startTimestampUtc,
+                        baseTotalFailureCount = executeContext.testCaseEvent.totalFailureCount,
+                        additionalProperties = combineProperties(executeContext.testCaseEvent, result.additionalProperties)
+                )
+                .fixRunResult(executeContext.testCaseEvent, executeContext.startTimestampUtc)
+    }
+
+    /**
+     * @param isReported when false, only rules are executed, listeners don't get the result
+     */
+    private fun finishTestCase(
+            preparedTestCase: PreparedTestCase,
+            eitherResult: Result<TestCaseRunResult>,
+            isReported: Boolean = true
+    ): TestCaseRunResult {
+        val testCaseEvent = preparedTestCase.executeContext.testCaseEvent
+        val startTimestampUtc = preparedTestCase.executeContext.startTimestampUtc
         val fixedResult = eitherResult
                 .getOrElse { e ->
                     logger.error("Exception while executing a test case", e)
                     fatalErrorResult(testCaseEvent, e, startTimestampUtc)
                 }
 
-        return allowedAfterRules
+        return preparedTestCase.allowedAfterRules
+                .filter { isReported || it !is TongsTestListener }
                 .asReversed()
                 .fold(fixedResult) { acc, rule ->
                     try {
@@ -167,7 +366,7 @@ class DeviceTestRunner(private val pool: Pool,
                                     startTimestampUtc
                                 )
                     } catch (e: Exception) {
-                        val header = "Exception ${inRuleText} (after)"
+                        val header = "Exception ${IN_RULE_TEXT} (after)"
                         val newStackTrace = "$header: ${traceAsString(e)}"
                         acc.copy(
                                 status = ResultStatus.ERROR,
@@ -204,10 +403,14 @@ class DeviceTestRunner(private val pool: Pool,
         baseTotalFailureCount = baseTotalFailureCount.coerceAtLeast(testCaseEvent.totalFailureCount)
     )
 
-    private fun runUntilResult(context: TestCaseRunRuleContext): TestCaseRunResult {
+    /**
+     * @param skippedRunners number of preferred runners that already delegated running the test case
+     */
+    private fun runUntilResult(context: TestCaseRunRuleContext, skippedRunners: Int = 0): TestCaseRunResult {
         return try {
             context.testCaseEvent.runnersFor(context.device)
                     .asReversed()
+                    .drop(skippedRunners)
                     .forEach {
                         val result = it.run(TestCaseRunnerArguments(
                                 context.fileManager,
@@ -227,20 +430,84 @@ class DeviceTestRunner(private val pool: Pool,
         }
     }
 
+    private fun runBatchUntilResults(contexts: List<TestCaseRunRuleContext>): List<TestCaseRunResult> {
+        fun preferredRunnerFor(context: TestCaseRunRuleContext) = context.testCaseEvent.runnersFor(context.device)
+                .lastOrNull()
+
+        val batchRunner = contexts.firstOrNull()?.let { preferredRunnerFor(it) } as? BatchTestCaseRunner
+        if (batchRunner == null || contexts.any { preferredRunnerFor(it) !== batchRunner }) {
+            return contexts.map { runUntilResult(it) }
+        }
+
+        val results = try {
+            batchRunner.runBatch(contexts.map {
+                TestCaseRunnerArguments(it.fileManager, it.testCaseEvent, it.startTimestampUtc)
+            })
+        } catch (e: Exception) {
+            return contexts.map { fatalErrorResult(it.testCaseEvent, e, it.startTimestampUtc) }
+        }
+        if (results.size != contexts.size) {
+            val error = IllegalStateException("Got ${results.size} results for ${contexts.size} test cases")
+            return contexts.map { fatalErrorResult(it.testCaseEvent, error, it.startTimestampUtc) }
+        }
+
+        return contexts.zip(results) { context, result ->
+            when (result) {
+                is Delegate -> runUntilResult(context, 1)
+                is TestCaseRunResult -> result
+                else -> fatalErrorResult(context.testCaseEvent,
+                        IllegalArgumentException("Unexpected test run result: $result"), context.startTimestampUtc)
+            }
+        }
+    }
+
+    /**
+     * Executes before actions of device rules, [runAfterRules] executes after actions only for rules
+     * which before actions were executed (including the failed one)
+     */
     fun runBeforeRules() {
-        rules.forEach { it.before() }
+        val (allowedRules, beforeException) = runRulesBeforeActions(logger, IN_DEVICE_RULE_TEXT, rules) {
+            it.before()
+        }
+        allowedAfterRules = allowedRules
+        if (beforeException != null) {
+            throw beforeException
+        }
     }
 
-    private fun runAfterRules() {
-        // TODO: execute only successful rules
-        rules
+    fun runAfterRules() {
+        allowedAfterRules
                 .asReversed()
-                .forEach { it.after() }
+                .forEach {
+                    try {
+                        it.after()
+                    } catch (e: Exception) {
+                        logger.error("Exception $IN_DEVICE_RULE_TEXT (in after method)", e)
+                    }
+                }
+        allowedAfterRules = emptyList()
+    }
+
+    private class TestCaseRules(
+            val executeContext: TestCaseRunRuleContext,
+            val rules: List<TestCaseRunRule>
+    ) {
+        val isBatchable: Boolean
+            get() = rules.all { it is BatchableTestCaseRunRule }
     }
 
+    private class PreparedTestCase(
+            val executeContext: TestCaseRunRuleContext,
+            val allowedAfterRules: List<TestCaseRunRule>,
+            val beforeException: Throwable?
+    )
+
     companion object {
         private val logger = LoggerFactory.getLogger(DeviceTestRunner::class.java)
 
+        private const val IN_RULE_TEXT = "while executing a test case run rule"
+        private const val IN_DEVICE_RULE_TEXT = "while executing a device run rule"
+
         private fun combineProperties(
                 testCaseEvent: TestCaseEvent,
                 additionalProperties: Map<String, String>
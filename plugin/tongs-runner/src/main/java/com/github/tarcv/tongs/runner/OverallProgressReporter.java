@@ -13,11 +13,13 @@ package com.github.tarcv.tongs.runner;
 
 import com.github.tarcv.tongs.Utils;
 import com.github.tarcv.tongs.api.devices.Pool;
+import com.github.tarcv.tongs.api.result.TestCaseRunResult;
 import com.github.tarcv.tongs.api.run.TestCaseEvent;
 import com.github.tarcv.tongs.model.PoolTestCaseAccumulator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -30,6 +32,8 @@ public class OverallProgressReporter implements ProgressReporter {
 
     private final Map<Pool, PoolProgressTracker> poolProgressTrackers;
     private final RetryWatchdog retryWatchdog;
+    private final RetryPolicy retryPolicy;
+    private final RetryDecisionLog retryDecisionLog;
     private final PoolTestCaseAccumulator failedTestCasesAccumulator;
     private long startOfTests;
     private long endOfTests;
@@ -38,9 +42,20 @@ public class OverallProgressReporter implements ProgressReporter {
                                    int retryPerTestCaseQuota,
                                    PoolProgressTrackers poolProgressTrackers,
                                    PoolTestCaseAccumulator failedTestCasesAccumulator) {
-        this.retryWatchdog = new RetryWatchdog(totalAllowedRetryQuota, retryPerTestCaseQuota);
+        this(totalAllowedRetryQuota, poolProgressTrackers, failedTestCasesAccumulator,
+                RetryPolicy.quotaOnly(retryPerTestCaseQuota), new RetryDecisionLog());
+    }
+
+    public OverallProgressReporter(int totalAllowedRetryQuota,
+                                   PoolProgressTrackers poolProgressTrackers,
+                                   PoolTestCaseAccumulator failedTestCasesAccumulator,
+                                   RetryPolicy retryPolicy,
+                                   RetryDecisionLog retryDecisionLog) {
+        this.retryWatchdog = new RetryWatchdog(totalAllowedRetryQuota);
         this.poolProgressTrackers = poolProgressTrackers.getTrackers();
         this.failedTestCasesAccumulator = failedTestCasesAccumulator;
+        this.retryPolicy = retryPolicy;
+        this.retryDecisionLog = retryDecisionLog;
     }
 
     @Override
@@ -94,16 +109,57 @@ public class OverallProgressReporter implements ProgressReporter {
 
     @Override
     public boolean requestRetry(Pool pool, TestCaseEvent testCase) {
-        boolean result = retryWatchdog.requestRetry(failedTestCasesAccumulator.getCount(testCase));
-        if (result && poolProgressTrackers.containsKey(pool)) {
-            poolProgressTrackers.get(pool).trackTestEnqueuedAgain();
+        return requestRetry(pool, testCase, failedTestCasesAccumulator.getCount(testCase));
+    }
+
+    @Override
+    public boolean requestRetry(Pool pool, TestCaseEvent testCase, int testCaseFailures) {
+        return requestRetry(pool, testCase, testCaseFailures, null);
+    }
+
+    @Override
+    public boolean requestRetry(Pool pool,
+                                TestCaseEvent testCase,
+                                int testCaseFailures,
+                                @Nullable TestCaseRunResult failureResult) {
+        RetryBudget budget = retryPolicy.budgetFor(testCase.getTestCase());
+        boolean singleTestAllowed = testCaseFailures <= budget.getMaxRetries();
+
+        // The total quota is only spent on retries that are actually allowed
+        boolean result = singleTestAllowed && retryWatchdog.takeTotalAllowedRetry();
+        retryWatchdog.log(testCaseFailures, budget.getMaxRetries(), result);
+
+        String reason;
+        if (result || budget.getMaxRetries() == 0) {
+            reason = budget.getReason();
+        } else if (!singleTestAllowed) {
+            reason = "all " + budget.getMaxRetries() + " retries of the test case are spent, " + budget.getReason();
+        } else {
+            reason = "total retry quota is spent";
+        }
+        retryDecisionLog.add(new RetryDecision(
+                pool.getName(),
+                testCase.getTestClass(),
+                testCase.getTestMethod(),
+                failureResult != null ? failureResult.getDevice().getSerial() : "",
+                testCaseFailures,
+                result,
+                reason,
+                failureResult != null ? failureResult.getTimeTakenMillis() : 0
+        ));
+
+        if (result) {
+            PoolProgressTracker poolProgressTracker = poolProgressTrackers.get(pool);
+            if (poolProgressTracker != null) {
+                poolProgressTracker.trackTestEnqueuedAgain();
+            }
         }
         return result;
     }
 
     @Override
-    public void recordFailedTestCase(Pool pool, TestCaseEvent testCase) {
-        failedTestCasesAccumulator.record(pool, testCase);
+    public int recordFailedTestCase(Pool pool, TestCaseEvent testCase) {
+        return failedTestCasesAccumulator.record(pool, testCase);
     }
 
     @Override
@@ -113,37 +169,30 @@ public class OverallProgressReporter implements ProgressReporter {
 
     private static class RetryWatchdog {
         private final Logger logger = LoggerFactory.getLogger(RetryWatchdog.class);
-        private final int maxRetryPerTestCaseQuota;
         private final AtomicInteger totalAllowedRetryLeft;
-        private final StringBuilder logBuilder = new StringBuilder();
 
-        public RetryWatchdog(int totalAllowedRetryQuota, int retryPerTestCaseQuota) {
+        public RetryWatchdog(int totalAllowedRetryQuota) {
             totalAllowedRetryLeft = new AtomicInteger(totalAllowedRetryQuota);
-            maxRetryPerTestCaseQuota = retryPerTestCaseQuota;
         }
 
-        public boolean requestRetry(int currentSingleTestCaseFailures) {
-            boolean totalAllowedRetryAvailable = totalAllowedRetryAvailable();
-            boolean singleTestAllowed = currentSingleTestCaseFailures <= maxRetryPerTestCaseQuota;
-            boolean result = totalAllowedRetryAvailable && singleTestAllowed;
-
-            log(currentSingleTestCaseFailures, singleTestAllowed, result);
-            return result;
-        }
-
-        private boolean totalAllowedRetryAvailable() {
-            return totalAllowedRetryLeft.get() > 0 && totalAllowedRetryLeft.getAndDecrement() >= 0;
+        public boolean takeTotalAllowedRetry() {
+            while (true) {
+                int retryLeft = totalAllowedRetryLeft.get();
+                if (retryLeft <= 0) {
+                    return false;
+                }
+                if (totalAllowedRetryLeft.compareAndSet(retryLeft, retryLeft - 1)) {
+                    return true;
+                }
+            }
         }
 
-        private void log(int testCaseFailures, boolean singleTestAllowed, boolean result) {
-            if(logger.isDebugEnabled()) {
-                logBuilder.setLength(0); //clean up.
-                logBuilder.append("Retry requested ")
-                        .append(result ? " and allowed. " : " but not allowed. ")
-                        .append("Total retry left :").append(totalAllowedRetryLeft.get())
-                        .append(" and Single Test case retry left: ")
-                        .append(singleTestAllowed ? maxRetryPerTestCaseQuota - testCaseFailures : 0);
-                logger.debug(logBuilder.toString());
+        public void log(int testCaseFailures, int maxRetries, boolean result) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Retry requested {}. Total retry left: {} and Single Test case retry left: {}",
+                        result ? "and allowed" : "but not allowed",
+                        totalAllowedRetryLeft.get(),
+                        Math.max(0, maxRetries - testCaseFailures));
             }
         }
     }
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.runner
+
+import com.github.tarcv.tongs.Utils
+import com.github.tarcv.tongs.api.devices.Device
+import org.slf4j.LoggerFactory
+import java.util.concurrent.ExecutionException
+
+/**
+ * Sets up devices concurrently, while setting up at most [concurrency] devices at the same time
+ * (so that devices connected to the same USB hub do not saturate it)
+ */
+class ParallelDeviceSetup(private val concurrency: Int) {
+    init {
+        require(concurrency > 0) { "Concurrency must be positive" }
+    }
+
+    /**
+     * Runs [setUpAction] for all runners, and then [cleanUpAction] for runners which devices failed to be set up
+     * (so that resources acquired before the failure are released)
+     *
+     * @return runners which devices failed to be set up
+     */
+    fun <T> setUp(
+            deviceRunners: List<Pair<Device, T>>,
+            setUpAction: (T) -> Unit,
+            cleanUpAction: (T) -> Unit
+    ): Set<T> {
+        if (deviceRunners.isEmpty()) {
+            return emptySet()
+        }
+
+        val executor = Utils.namedExecutor(concurrency.coerceAtMost(deviceRunners.size), "DeviceSetup-%d")
+        try {
+            val futures = deviceRunners.map { (device, runner) ->
+                Triple(device, runner, executor.submit { setUpAction(runner) })
+            }
+            return futures
+                    .filter { (device, runner, future) ->
+                        try {
+                            future.get()
+                            false
+                        } catch (e: ExecutionException) {
+                            logger.error("Failed to set up device ${device.serial}, it will be quarantined", e.cause)
+                            cleanUp(device, runner, cleanUpAction)
+                            true
+                        }
+                    }
+                    .mapTo(HashSet()) { it.second }
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    private fun <T> cleanUp(device: Device, runner: T, cleanUpAction: (T) -> Unit) {
+        try {
+            cleanUpAction(runner)
+        } catch (e: Exception) {
+            logger.error("Failed to clean up quarantined device ${device.serial}", e)
+        }
+    }
+
+    companion object {
+        private val logger = LoggerFactory.getLogger(ParallelDeviceSetup::class.java)
+    }
+}
@@ -34,7 +34,7 @@ class PoolTestRunner(
 ) : Runnable {
     override fun run() {
         val poolName = poolTask.pool.name
-        val devicesInPool = poolTask.pool.size()
+        val devicesInPool = poolTask.deviceRunners.size
         val concurrentDeviceExecutor: ExecutorService = Utils.namedExecutor(devicesInPool, "DeviceExecutor-%d")
         try {
             logger.info("Pool {} started", poolName)
@@ -52,7 +52,7 @@ class PoolTestRunner(
     private fun runTestsAndRules(devicesInPool: Int, concurrentDeviceExecutor: ExecutorService) {
         val deviceCountDownLatch = CountDownLatch(devicesInPool)
         val rules = ruleManagerFactory.create(PoolRunRuleFactory::class.java,
-                emptyList(),
+                listOf(AndroidCoverageMergePoolRuleFactory()),
                 { factory, context: PoolRunRuleContext -> factory.poolRules(context) })
                 .createRulesFrom { configuration -> PoolRunRuleContext(configuration, poolTask.pool) }
 
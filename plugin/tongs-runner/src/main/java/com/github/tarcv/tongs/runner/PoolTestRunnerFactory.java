@@ -13,6 +13,7 @@ package com.github.tarcv.tongs.runner;
 
 import com.github.tarcv.tongs.TongsRunner;
 import com.github.tarcv.tongs.api.result.TestCaseRunResult;
+import com.github.tarcv.tongs.api.run.TestCaseEvent;
 import com.github.tarcv.tongs.injector.RuleManagerFactory;
 import com.github.tarcv.tongs.model.TestCaseEventQueue;
 
@@ -22,11 +23,14 @@ import java.util.concurrent.CountDownLatch;
 public class PoolTestRunnerFactory {
     private final DeviceTestRunnerFactory deviceTestRunnerFactory;
     private final RuleManagerFactory ruleManagerFactory;
+    private final TestCaseOrdering testCaseOrdering;
 
     public PoolTestRunnerFactory(DeviceTestRunnerFactory deviceTestRunnerFactory,
-                                 RuleManagerFactory ruleManagerFactory) {
+                                 RuleManagerFactory ruleManagerFactory,
+                                 TestCaseOrdering testCaseOrdering) {
         this.deviceTestRunnerFactory = deviceTestRunnerFactory;
         this.ruleManagerFactory = ruleManagerFactory;
+        this.testCaseOrdering = testCaseOrdering;
     }
 
     public Runnable createPoolTestRunner(TongsRunner.PoolTask poolTask,
@@ -36,10 +40,12 @@ public class PoolTestRunnerFactory {
         int totalTests = poolTask.getTestCases().size();
         progressReporter.addPoolProgress(poolTask.getPool(), new PoolProgressTrackerImpl(totalTests));
 
+        List<TestCaseEvent> orderedTestCases = testCaseOrdering.order(poolTask.getPool(), poolTask.getTestCases());
+
         return new PoolTestRunner(
                 deviceTestRunnerFactory,
                 poolTask,
-                new TestCaseEventQueue(poolTask.getTestCases(), testCaseResults),
+                new TestCaseEventQueue(orderedTestCases, testCaseResults),
                 poolCountDownLatch,
                 progressReporter,
                 ruleManagerFactory);
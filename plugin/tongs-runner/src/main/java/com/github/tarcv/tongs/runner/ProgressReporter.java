@@ -12,8 +12,11 @@
 package com.github.tarcv.tongs.runner;
 
 import com.github.tarcv.tongs.api.devices.Pool;
+import com.github.tarcv.tongs.api.result.TestCaseRunResult;
 import com.github.tarcv.tongs.api.run.TestCaseEvent;
 
+import javax.annotation.Nullable;
+
 public interface ProgressReporter {
 
     void start();
@@ -37,7 +40,25 @@ public interface ProgressReporter {
 
     boolean requestRetry(Pool pool, TestCaseEvent testCaseEvent);
 
-    void recordFailedTestCase(Pool pool, TestCaseEvent testCase);
+    /**
+     * @param testCaseFailures number of failures of the test case in all pools, as returned by
+     *                         {@link #recordFailedTestCase(Pool, TestCaseEvent)}
+     */
+    boolean requestRetry(Pool pool, TestCaseEvent testCaseEvent, int testCaseFailures);
+
+    /**
+     * Same as {@link #requestRetry(Pool, TestCaseEvent, int)}, the decision is reported together with
+     * the device and the duration of the failed attempt.
+     */
+    boolean requestRetry(Pool pool,
+                         TestCaseEvent testCaseEvent,
+                         int testCaseFailures,
+                         @Nullable TestCaseRunResult failureResult);
+
+    /**
+     * @return number of failures of the test case in all pools, including this one
+     */
+    int recordFailedTestCase(Pool pool, TestCaseEvent testCase);
 
     int getTestFailuresCount(Pool pool, TestCaseEvent testCase);
 }
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.runner
+
+import java.util.concurrent.ConcurrentLinkedQueue
+
+/**
+ * Whether a failed attempt of a test case was retried, and why.
+ *
+ * Only plain values are kept, so that decisions can be serialized into summaries.
+ *
+ * @property deviceSerial serial of the device on which the attempt failed, empty when unknown
+ * @property failureCount number of failures of the test case including the attempt
+ * @property failedAttemptMillis device time spent on the failed attempt
+ */
+class RetryDecision(
+        val poolName: String,
+        val testClass: String,
+        val testMethod: String,
+        val deviceSerial: String,
+        val failureCount: Int,
+        val isAllowed: Boolean,
+        val reason: String,
+        val failedAttemptMillis: Long
+) {
+    val outcome: String
+        get() = if (isAllowed) "retried" else "not retried"
+}
+
+/**
+ * Retry decisions made during a run, in the order they were made
+ */
+class RetryDecisionLog {
+    private val decisions = ConcurrentLinkedQueue<RetryDecision>()
+
+    fun add(decision: RetryDecision) {
+        decisions.add(decision)
+    }
+
+    fun decisions(): List<RetryDecision> = decisions.toList()
+}
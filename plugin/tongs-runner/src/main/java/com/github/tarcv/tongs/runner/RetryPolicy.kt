@@ -0,0 +1,81 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.runner
+
+import com.github.tarcv.tongs.api.testcases.TestCase
+import com.github.tarcv.tongs.history.TestFlakinessHistory
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Decides how many retries a failed test case deserves, based on how its failures ended in previous runs.
+ *
+ * Test cases that were retried in several recent runs and never passed on a retry are considered to fail
+ * deterministically and are not retried at all, except for a single probe retry once they failed in several runs
+ * in a row without retries (so that fixed flakiness is noticed). Test cases that rarely pass on a retry get
+ * a single retry. Other test cases (including ones without enough history) get the whole [retryPerTestCaseQuota].
+ */
+class RetryPolicy(
+        private val retryPerTestCaseQuota: Int,
+        private val flakinessHistory: TestFlakinessHistory?
+) {
+    /**
+     * History doesn't change during a run, so budgets are calculated once per test case
+     */
+    private val budgets = ConcurrentHashMap<TestCase, RetryBudget>()
+
+    fun budgetFor(testCase: TestCase): RetryBudget {
+        return budgets.computeIfAbsent(testCase) { calculateBudget(it) }
+    }
+
+    private fun calculateBudget(testCase: TestCase): RetryBudget {
+        val stats = flakinessHistory?.failureStatsOf(testCase)
+        if (stats == null || stats.retriedRuns < MIN_RETRIED_RUNS) {
+            return RetryBudget(retryPerTestCaseQuota, "not enough failure history")
+        }
+
+        val statsDescription = "passed on retry in ${stats.recoveredRuns} of ${stats.retriedRuns} recent runs with retries"
+        return when {
+            stats.recoveredRuns == 0 && stats.unretriedRunsSinceRetry >= PROBE_INTERVAL_RUNS ->
+                RetryBudget(minOf(1, retryPerTestCaseQuota), "probing deterministic failure: $statsDescription")
+            stats.recoveredRuns == 0 ->
+                RetryBudget(0, "fails deterministically: $statsDescription")
+            stats.flakeRate < RARELY_FLAKY_RATE ->
+                RetryBudget(minOf(1, retryPerTestCaseQuota), "rarely flaky: $statsDescription")
+            else ->
+                RetryBudget(retryPerTestCaseQuota, "flaky: $statsDescription")
+        }
+    }
+
+    companion object {
+        /**
+         * Fewer retried runs are not enough to tell a deterministic failure from bad luck
+         */
+        private const val MIN_RETRIED_RUNS = 3
+
+        /**
+         * Number of failed runs without retries after which a deterministically failing test case gets a retry again
+         */
+        private const val PROBE_INTERVAL_RUNS = 3
+
+        private const val RARELY_FLAKY_RATE = 0.25
+
+        /**
+         * @return policy that gives every test case the same budget, regardless of history
+         */
+        @JvmStatic
+        fun quotaOnly(retryPerTestCaseQuota: Int): RetryPolicy = RetryPolicy(retryPerTestCaseQuota, null)
+    }
+}
+
+/**
+ * @property maxRetries how many failures of a test case can be retried
+ * @property reason human-readable explanation of [maxRetries]
+ */
+class RetryBudget(val maxRetries: Int, val reason: String)
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.runner
+
+import com.github.tarcv.tongs.api.devices.Pool
+import com.github.tarcv.tongs.api.run.TestCaseEvent
+import com.github.tarcv.tongs.history.TestDurationHistory
+
+/**
+ * Defines the order in which test cases of a pool are put into its queue
+ */
+interface TestCaseOrdering {
+    fun order(pool: Pool, testCases: List<TestCaseEvent>): List<TestCaseEvent>
+}
+
+class DiscoveryOrdering : TestCaseOrdering {
+    override fun order(pool: Pool, testCases: List<TestCaseEvent>): List<TestCaseEvent> = testCases
+}
+
+/**
+ * Puts test cases that are expected to take longer first, so that the slowest test cases do not start
+ * when the rest of the pool is about to finish.
+ *
+ * Test cases that never ran (even as a part of their classes) are treated as average ones.
+ */
+class LongestFirstOrdering(private val history: TestDurationHistory) : TestCaseOrdering {
+    override fun order(pool: Pool, testCases: List<TestCaseEvent>): List<TestCaseEvent> {
+        val deviceModels = pool.devices
+                .map { it.modelName }
+                .distinct()
+        val expectedDurations = testCases.map { history.expectedMillis(it.testCase, deviceModels) }
+        val defaultDuration = expectedDurations
+                .filterNotNull()
+                .takeIf { it.isNotEmpty() }
+                ?.average()
+                ?.toLong()
+                ?: 0
+
+        // sortedByDescending is stable, so test cases with equal durations stay in the discovery order
+        return testCases
+                .zip(expectedDurations)
+                .sortedByDescending { (_, duration) -> duration ?: defaultDuration }
+                .map { (testCase, _) -> testCase }
+    }
+}
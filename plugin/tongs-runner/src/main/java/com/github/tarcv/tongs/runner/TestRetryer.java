@@ -11,8 +11,12 @@
 
 package com.github.tarcv.tongs.runner;
 
+import com.github.tarcv.tongs.api.result.TestCaseRunResult;
 import com.github.tarcv.tongs.api.run.TestCaseEvent;
 
 public interface TestRetryer {
-    boolean rescheduleTestExecution(TestCaseEvent testCaseEvent);
+    /**
+     * @param failureResult result of the failed attempt
+     */
+    boolean rescheduleTestExecution(TestCaseEvent testCaseEvent, TestCaseRunResult failureResult);
 }
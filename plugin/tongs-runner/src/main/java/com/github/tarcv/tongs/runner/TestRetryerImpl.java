@@ -12,6 +12,7 @@
 package com.github.tarcv.tongs.runner;
 
 import com.github.tarcv.tongs.api.devices.Pool;
+import com.github.tarcv.tongs.api.result.TestCaseRunResult;
 import com.github.tarcv.tongs.api.run.TestCaseEvent;
 import com.github.tarcv.tongs.model.TestCaseEventQueue;
 
@@ -27,9 +28,10 @@ public class TestRetryerImpl implements TestRetryer {
     }
 
     @Override
-    public boolean rescheduleTestExecution(TestCaseEvent testCaseEvent) {
-        progressReporter.recordFailedTestCase(pool, testCaseEvent);
-        if (progressReporter.requestRetry(pool, testCaseEvent)) {
+    public boolean rescheduleTestExecution(TestCaseEvent testCaseEvent, TestCaseRunResult failureResult) {
+        // The count returned by recording is used, as other devices might record failures of the same test case meanwhile
+        int testCaseFailures = progressReporter.recordFailedTestCase(pool, testCaseEvent);
+        if (progressReporter.requestRetry(pool, testCaseEvent, testCaseFailures, failureResult)) {
             queueOfTestsInPool.offer(testCaseEvent);
             return true;
         }
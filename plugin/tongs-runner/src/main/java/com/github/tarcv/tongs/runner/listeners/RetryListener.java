@@ -71,7 +71,11 @@ public class RetryListener extends TongsTestListener {
 
     @Override
     public void onTestFailed(@NotNull TestCaseRunResult failureResult) {
-        if (testRetryer.rescheduleTestExecution(currentTestCaseEvent.withFailureCount(failureResult.getTotalFailureCount()))) {
+        // The hint makes other devices of the pool take the retry first
+        TestCaseEvent retriedTestCaseEvent = currentTestCaseEvent
+                .withFailureCount(failureResult.getTotalFailureCount())
+                .withDeviceExclusionHint(device);
+        if (testRetryer.rescheduleTestExecution(retriedTestCaseEvent, failureResult)) {
             logger.info("Test " + currentTestCaseEvent.toString() + " enqueued again into pool:" + pool.getName());
             removeFailureTraceFiles();
         } else {
@@ -13,11 +13,14 @@ package com.github.tarcv.tongs.runner.listeners;
 
 import com.github.tarcv.tongs.Utils;
 import com.github.tarcv.tongs.api.result.TestCaseRunResult;
+import com.github.tarcv.tongs.api.run.TestCaseRunRuleAfterArguments;
 import com.github.tarcv.tongs.api.testcases.TestCase;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Instant;
+
 import static java.lang.System.nanoTime;
 
 class SlowWarningTestRunListener extends TongsTestListener {
@@ -35,8 +38,20 @@ class SlowWarningTestRunListener extends TongsTestListener {
         startTime = nanoTime();
     }
 
-    public void onTestEnded() {
-        long testDuration = Utils.millisSinceNanoTime(startTime);
+    @Override
+    public void after(@NotNull TestCaseRunRuleAfterArguments arguments) {
+        // Batched test cases are all started at once, so the time measured on the device is preferred
+        TestCaseRunResult result = arguments.getResult();
+        Long netTime = result.getTimeNetTakenMillis();
+        if (netTime != null && !Instant.EPOCH.equals(result.getNetStartTimestampUtc())) {
+            warnIfSlow(netTime);
+        } else {
+            warnIfSlow(Utils.millisSinceNanoTime(startTime));
+        }
+        super.after(arguments);
+    }
+
+    private void warnIfSlow(long testDuration) {
         if (testDuration > TEST_LENGTH_THRESHOLD_MILLIS) {
             logger.warn("Slow test ({}ms): {} {}" , testDuration, test.getTestClass(), test.getTestMethod());
 
@@ -45,21 +60,17 @@ class SlowWarningTestRunListener extends TongsTestListener {
 
     @Override
     public void onTestSuccessful() {
-        onTestEnded();
     }
 
     @Override
     public void onTestFailed(@NotNull TestCaseRunResult failureResult) {
-        onTestEnded();
     }
 
     @Override
     public void onTestSkipped(@NotNull TestCaseRunResult skipResult) {
-        onTestEnded();
     }
 
     @Override
     public void onTestAssumptionFailure(@NotNull TestCaseRunResult skipResult) {
-        onTestEnded();
     }
 }
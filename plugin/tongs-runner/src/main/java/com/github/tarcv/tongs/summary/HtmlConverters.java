@@ -15,6 +15,7 @@ package com.github.tarcv.tongs.summary;
 
 import javax.annotation.Nullable;
 import java.util.Collection;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -34,7 +35,9 @@ class HtmlConverters {
 				summary.getFlakyTests(),
 				summary.getFailedTests(),
         		summary.getFatalCrashedTests(),
-        		summary.getFatalErrors() // TODO: Add to template
+        		summary.getFatalErrors(), // TODO: Add to template
+				summary.getRetryDecisions(),
+				TimeUnit.MILLISECONDS.toSeconds(summary.getRetryCostMillis())
 		);
 	}
 
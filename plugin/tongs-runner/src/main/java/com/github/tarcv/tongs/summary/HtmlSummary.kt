@@ -14,6 +14,7 @@
 package com.github.tarcv.tongs.summary
 
 import com.github.tarcv.tongs.api.result.TestCaseRunResult
+import com.github.tarcv.tongs.runner.RetryDecision
 
 /**
  * Plain bean class, to feed to Moustache markup files.
@@ -27,5 +28,7 @@ class HtmlSummary(
         val flakyTests: List<TestCaseRunResult>,
         val failedTests: List<TestCaseRunResult>,
         val fatalCrashedTests: List<TestCaseRunResult>,
-        val fatalErrors: List<String>
+        val fatalErrors: List<String>,
+        val retryDecisions: List<RetryDecision>,
+        val retryCostSeconds: Long
 )
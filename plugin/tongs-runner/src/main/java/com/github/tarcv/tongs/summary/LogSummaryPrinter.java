@@ -15,6 +15,7 @@ package com.github.tarcv.tongs.summary;
 
 import com.github.tarcv.tongs.api.result.TestCaseRunResult;
 import com.github.tarcv.tongs.api.run.ResultStatus;
+import com.github.tarcv.tongs.runner.RetryDecision;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,6 +48,36 @@ public class LogSummaryPrinter implements SummaryPrinter {
         }
 
         printSuppressedTestsList(summary);
+        printRetryDecisions(summary);
+    }
+
+    private static void printRetryDecisions(Summary summary) {
+        if (logger.isInfoEnabled()) {
+            List<RetryDecision> decisions = summary.getRetryDecisions();
+            if (decisions.isEmpty()) {
+                logger.info("No retry decisions.");
+                return;
+            }
+
+            long allowedCount = decisions.stream()
+                    .filter(RetryDecision::isAllowed)
+                    .count();
+            logger.info(String.format("Retry decisions (%d retried, %d not retried, %.1fs spent on retries):",
+                    allowedCount,
+                    decisions.size() - allowedCount,
+                    summary.getRetryCostMillis() / 1000f));
+            for (RetryDecision decision : decisions) {
+                logger.info(String.format("%s %s#%s in %s after failure %d on %s (%.1fs): %s",
+                        decision.isAllowed() ? "RETRIED" : "NOT RETRIED",
+                        decision.getTestClass(),
+                        decision.getTestMethod(),
+                        decision.getPoolName(),
+                        decision.getFailureCount(),
+                        decision.getDeviceSerial(),
+                        decision.getFailedAttemptMillis() / 1000f,
+                        decision.getReason()));
+            }
+        }
     }
 
     private static void printSuppressedTestsList(Summary summary) {
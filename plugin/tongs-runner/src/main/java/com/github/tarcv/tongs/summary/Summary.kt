@@ -14,6 +14,7 @@
 package com.github.tarcv.tongs.summary
 
 import com.github.tarcv.tongs.api.result.TestCaseRunResult
+import com.github.tarcv.tongs.runner.RetryDecision
 import java.util.Collections.unmodifiableList
 
 
@@ -35,6 +36,13 @@ class Summary private constructor(builder: Builder) {
         get() = unmodifiableList(field)
     val allTests: List<TestCaseRunResult>
         get() = unmodifiableList(field)
+    val retryDecisions: List<RetryDecision>
+        get() = unmodifiableList(field)
+
+    /**
+     * Device time spent on attempts that were retries of failed attempts
+     */
+    val retryCostMillis: Long
 
     init {
         poolSummaries = builder.poolSummaries
@@ -46,6 +54,8 @@ class Summary private constructor(builder: Builder) {
         fatalCrashedTests = builder.fatalCrashedTests
         fatalErrors = builder.fatalErrors
         allTests = builder.allTests
+        retryDecisions = builder.retryDecisions
+        retryCostMillis = builder.retryCostMillis
     }
 
     class Builder {
@@ -58,6 +68,8 @@ class Summary private constructor(builder: Builder) {
         internal val fatalCrashedTests = ArrayList<TestCaseRunResult>()
         internal val fatalErrors = ArrayList<String>()
         internal val allTests = ArrayList<TestCaseRunResult>()
+        internal val retryDecisions = ArrayList<RetryDecision>()
+        internal var retryCostMillis = 0L
 
         fun addPoolSummary(poolSummary: PoolSummary): Builder {
             poolSummaries.add(poolSummary)
@@ -104,6 +116,16 @@ class Summary private constructor(builder: Builder) {
             return this
         }
 
+        fun addRetryDecisions(decisions: Collection<RetryDecision>): Builder {
+            retryDecisions.addAll(decisions)
+            return this
+        }
+
+        fun withRetryCostMillis(retryCostMillis: Long): Builder {
+            this.retryCostMillis = retryCostMillis
+            return this
+        }
+
         fun build(): Summary {
             return Summary(this)
         }
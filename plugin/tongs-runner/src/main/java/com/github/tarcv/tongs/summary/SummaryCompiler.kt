@@ -25,10 +25,14 @@ import com.github.tarcv.tongs.api.run.ResultStatus.Companion.isFailure
 import com.github.tarcv.tongs.api.run.ResultStatus.Companion.isIgnored
 import com.github.tarcv.tongs.api.run.TestCaseEvent
 import com.github.tarcv.tongs.api.testcases.TestCase
+import com.github.tarcv.tongs.runner.RetryDecisionLog
 import com.github.tarcv.tongs.summary.Summary.Builder.Companion.aSummary
 import java.time.Instant
 
-class SummaryCompiler(private val configuration: TongsConfiguration) {
+class SummaryCompiler @JvmOverloads constructor(
+        private val configuration: TongsConfiguration,
+        private val retryDecisionLog: RetryDecisionLog = RetryDecisionLog()
+) {
     fun compileSummary(pools: Collection<Pool>, testCasesPerPool: Map<Pool, Collection<TestCaseEvent>>, results: List<TestCaseRunResult>): Summary {
         val summaryBuilder = aSummary()
         summaryBuilder.addResults(results)
@@ -55,6 +59,12 @@ class SummaryCompiler(private val configuration: TongsConfiguration) {
                 }
         addFatalCrashedPools(pools, testCasesPerPool, summaryBuilder)
 
+        summaryBuilder.addRetryDecisions(retryDecisionLog.decisions())
+        summaryBuilder.withRetryCostMillis(results
+                .filter { it.baseTotalFailureCount > 0 }
+                .map { it.timeTakenMillis }
+                .sum())
+
         summaryBuilder.withTitle(configuration.title)
         summaryBuilder.withSubtitle(configuration.subtitle)
         return summaryBuilder.build()
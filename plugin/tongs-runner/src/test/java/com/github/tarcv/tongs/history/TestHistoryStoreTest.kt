@@ -0,0 +1,152 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.history
+
+import com.github.tarcv.tongs.api.devices.Device
+import com.github.tarcv.tongs.api.devices.Pool
+import com.github.tarcv.tongs.api.result.TestCaseRunResult
+import com.github.tarcv.tongs.api.run.ResultStatus
+import com.github.tarcv.tongs.api.testcases.TestCase
+import com.github.tarcv.tongs.api.testcases.aTestCase
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.fail
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.time.Instant
+
+class TestHistoryStoreTest {
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    private val pool = Pool.Builder.aDevicePool().addDevice(Device.TEST_DEVICE).build()
+
+    private val testCase1 = aTestCase("Class1", "test1")
+    private val testCase2 = aTestCase("Class1", "test2")
+
+    @Test
+    fun testRecordsAreReadFromLatestToOldest() {
+        TestHistoryStore.open(temporaryFolder.root).use { store ->
+            store.append(listOf(resultOf(testCase1, 100, ResultStatus.PASS), resultOf(testCase2, 200, ResultStatus.PASS)))
+            store.append(listOf(resultOf(testCase1, 300, ResultStatus.FAIL, 1)))
+
+            val records = store.recordsOf("Class1", "test1").toList()
+
+            assertEquals(listOf(1, 0), records.map { it.runId })
+            assertEquals(listOf(300L, 100L), records.map { it.durationMillis })
+            assertEquals(listOf(ResultStatus.FAIL, ResultStatus.PASS), records.map { it.status })
+            assertEquals(listOf(1, 0), records.map { it.retryCount })
+            assertEquals(Device.TEST_DEVICE.modelName, records.first().deviceModel)
+            assertEquals(Device.TEST_DEVICE.osApiLevel, records.first().apiLevel)
+            assertEquals(listOf("test1", "test2"), store.methodsOf("Class1"))
+        }
+    }
+
+    @Test
+    fun testRecordsSurviveReopening() {
+        TestHistoryStore.open(temporaryFolder.root).use { store ->
+            store.append(listOf(resultOf(testCase1, 100, ResultStatus.PASS)))
+        }
+
+        TestHistoryStore.open(temporaryFolder.root).use { store ->
+            val runId = store.append(listOf(resultOf(testCase1, 200, ResultStatus.PASS)))
+
+            assertEquals(1, runId)
+            assertEquals(listOf(200L, 100L), store.recordsOf("Class1", "test1").map { it.durationMillis }.toList())
+        }
+    }
+
+    @Test
+    fun testRecordsAreRecoveredAfterInterruptedWrite() {
+        TestHistoryStore.open(temporaryFolder.root).use { store ->
+            store.append(listOf(resultOf(testCase1, 100, ResultStatus.PASS)))
+            store.append(listOf(resultOf(testCase1, 200, ResultStatus.PASS)))
+        }
+        // Simulate a run killed after writing records but before updating the index, with a partial record at the end
+        File(temporaryFolder.root, "heads.bin").delete()
+        RandomAccessFile(File(temporaryFolder.root, "records.bin"), "rw").use {
+            it.setLength(it.length() + 10)
+        }
+
+        TestHistoryStore.open(temporaryFolder.root).use { store ->
+            assertEquals(listOf(200L, 100L), store.recordsOf("Class1", "test1").map { it.durationMillis }.toList())
+        }
+    }
+
+    @Test
+    fun testUnknownTestCaseHasNoRecords() {
+        TestHistoryStore.open(temporaryFolder.root).use { store ->
+            store.append(listOf(resultOf(testCase1, 100, ResultStatus.PASS)))
+
+            assertEquals(emptyList<TestHistoryRecord>(), store.recordsOf("Class1", "test2").toList())
+        }
+    }
+
+    @Test
+    fun testDamagedRecordEndsHistoryOfTestCase() {
+        TestHistoryStore.open(temporaryFolder.root).use { store ->
+            store.append(listOf(resultOf(testCase1, 100, ResultStatus.PASS), resultOf(testCase2, 200, ResultStatus.PASS)))
+            store.append(listOf(resultOf(testCase1, 300, ResultStatus.PASS)))
+        }
+        // Records are 48 bytes long and follow an 8 byte header
+        RandomAccessFile(File(temporaryFolder.root, "records.bin"), "rw").use {
+            it.seek(8L + 22) // status of the first record of test1
+            it.writeByte(100)
+            it.seek(56L + 12) // test ID of the record of test2
+            it.writeInt(1000)
+        }
+
+        TestHistoryStore.open(temporaryFolder.root).use { store ->
+            assertEquals(listOf(300L), store.recordsOf("Class1", "test1").map { it.durationMillis }.toList())
+            assertEquals(emptyList<TestHistoryRecord>(), store.recordsOf("Class1", "test2").toList())
+        }
+    }
+
+    @Test
+    fun testHistoryIsNotOpenedTwice() {
+        TestHistoryStore.open(temporaryFolder.root).use {
+            try {
+                TestHistoryStore.open(temporaryFolder.root).close()
+                fail("History must be locked while it is open")
+            } catch (e: IOException) {
+                // expected
+            }
+        }
+
+        TestHistoryStore.open(temporaryFolder.root).close()
+    }
+
+    @Test
+    fun testTemporaryHistoryIsDeletedOnClose() {
+        val store = TestHistoryStore.openTemporary()
+        store.append(listOf(resultOf(testCase1, 100, ResultStatus.PASS)))
+        val directory = store.directory
+
+        store.close()
+
+        assertFalse(directory.exists())
+    }
+
+    private fun resultOf(
+            testCase: TestCase,
+            millis: Long,
+            status: ResultStatus,
+            failureCount: Int = 0
+    ): TestCaseRunResult {
+        val start = Instant.now()
+        return TestCaseRunResult(pool, Device.TEST_DEVICE, testCase, status, emptyList(),
+                start, start.plusMillis(millis), null, null,
+                failureCount, emptyMap(), null, emptyList())
+    }
+}
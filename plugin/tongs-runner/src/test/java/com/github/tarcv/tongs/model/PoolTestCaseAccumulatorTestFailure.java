@@ -17,6 +17,13 @@ import com.github.tarcv.tongs.api.run.TestCaseEvent;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static com.github.tarcv.tongs.api.run.TestCaseEventExtKt.aTestCaseEvent;
 import static com.github.tarcv.tongs.api.testcases.TestCaseExtKt.aTestCase;
 import static com.github.tarcv.tongs.model.AndroidDevice.Builder.aDevice;
@@ -106,4 +113,43 @@ public class PoolTestCaseAccumulatorTestFailure {
         assertThat(actualCount, equalTo(1));
         assertThat(anotherActualCount, equalTo(1));
     }
+
+    @Test
+    public void shouldCountAllRecordsFromParallelThreads() throws Exception {
+        int threadCount = 8;
+        int recordsPerThread = 1000;
+        CountDownLatch startLatch = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threadCount; i++) {
+                Pool pool = i % 2 == 0 ? A_POOL : ANOTHER_POOL;
+                futures.add(executor.submit(() -> {
+                    startLatch.await();
+                    for (int j = 0; j < recordsPerThread; j++) {
+                        subject.record(pool, A_TEST_CASE);
+                        subject.record(pool, aTestCaseEvent(aTestCase("A_class", "method" + j)));
+                    }
+                    return null;
+                }));
+            }
+            startLatch.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(subject.getCount(A_TEST_CASE), equalTo(threadCount * recordsPerThread));
+        assertThat(subject.getCount(A_POOL, A_TEST_CASE), equalTo(threadCount * recordsPerThread / 2));
+        assertThat(subject.getCount(aTestCaseEvent(aTestCase("A_class", "method0"))), equalTo(threadCount));
+    }
+
+    @Test
+    public void shouldReturnTotalCountWhenRecording() throws Exception {
+        assertThat(subject.record(A_POOL, A_TEST_CASE), equalTo(1));
+        assertThat(subject.record(ANOTHER_POOL, A_TEST_CASE), equalTo(2));
+        assertThat(subject.record(A_POOL, ANOTHER_TEST_CASE), equalTo(1));
+    }
 }
@@ -20,6 +20,9 @@ import com.github.tarcv.tongs.api.testcases.aTestCase
 import org.junit.Assert
 import org.junit.Test
 import java.lang.Thread.sleep
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
 import java.util.concurrent.atomic.AtomicReference
 import kotlin.concurrent.thread
 
@@ -82,17 +85,19 @@ class TestCaseEventQueueTest {
         val queue = TestCaseEventQueue(listOf(
                 test1
         ), mutableListOf())
+        val inWorkLatch = CountDownLatch(1)
         thread(start = true) {
-            sleep(100)
-
-            try {
+            queue.pollForDevice(device2)!!.doWork {
+                inWorkLatch.countDown()
+                sleep(100)
                 queue.offer(test2)
-            } catch (_: IllegalStateException) {
-                // intentional no-op
+
+                TestCaseRunResult.aTestResult(test1.testCase, ResultStatus.FAIL, emptyList<StackTrace>())
             }
         }
 
         withTimeout {
+            inWorkLatch.await()
             queue.pollForDevice(device1)!!.doWork {
                 Assert.assertEquals(test2, it)
 
@@ -100,6 +105,288 @@ class TestCaseEventQueueTest {
             }
         }
     }
+
+    @Test
+    fun testWaitingStopsRightAfterLastTaskIsFinished() {
+        val test1 = createTestCaseEvent("test1", emptyList())
+        val queue = TestCaseEventQueue(listOf(
+                test1
+        ), mutableListOf())
+        val inWorkLatch = CountDownLatch(1)
+        thread(start = true) {
+            queue.pollForDevice(device2)!!.doWork {
+                inWorkLatch.countDown()
+                sleep(100)
+
+                TestCaseRunResult.aTestResult(test1.testCase, ResultStatus.PASS, emptyList<StackTrace>())
+            }
+        }
+
+        withTimeout {
+            inWorkLatch.await()
+            Assert.assertFalse(queue.hasNoPotentialEventsFor(device1))
+
+            Assert.assertNull(queue.pollForDevice(device1, 10))
+            Assert.assertTrue(queue.hasNoPotentialEventsFor(device1))
+        }
+    }
+
+    @Test
+    fun testOfferedEventIsIndexedOnlyForCompatibleDevices() {
+        val test1 = createTestCaseEvent("test1", emptyList())
+        val test2 = createTestCaseEvent("test2", listOf(device1))
+        val queue = TestCaseEventQueue(listOf(
+                test1
+        ), mutableListOf())
+        withTimeout {
+            queue.pollForDevice(device2)!!.doWork {
+                Assert.assertEquals(test1, it)
+                Assert.assertFalse(queue.hasNoPotentialEventsFor(device1))
+                queue.offer(test2)
+
+                TestCaseRunResult.aTestResult(test1.testCase, ResultStatus.FAIL, emptyList<StackTrace>())
+            }
+            Assert.assertTrue(queue.hasNoPotentialEventsFor(device1))
+            Assert.assertFalse(queue.hasNoPotentialEventsFor(device2))
+
+            queue.pollForDevice(device2)!!.doWork {
+                Assert.assertEquals(test2, it)
+
+                TestCaseRunResult.aTestResult(test2.testCase, ResultStatus.PASS, emptyList<StackTrace>())
+            }
+            Assert.assertTrue(queue.hasNoPotentialEventsFor(device2))
+        }
+    }
+
+    @Test
+    fun testBatchTakesOnlyEnabledTestsWithoutWaiting() {
+        val test1 = createTestCaseEvent("test1", emptyList())
+        val test2 = createTestCaseEvent("test2", listOf(device1))
+        val test3 = createTestCaseEvent("test3", emptyList())
+        val test4 = createTestCaseEvent("test4", emptyList())
+        val results = mutableListOf<TestCaseRunResult>()
+        val queue = TestCaseEventQueue(listOf(test1, test2, test3, test4), results)
+        withTimeout {
+            val batch = queue.pollBatchForDevice(device1, 5)
+            Assert.assertEquals(listOf(test1, test3, test4), batch.map { it.testCaseEvent })
+
+            queue.doBatchWork(batch) { events ->
+                events.map { TestCaseRunResult.aTestResult(it.testCase, ResultStatus.PASS, emptyList()) }
+            }
+            Assert.assertEquals(3, results.size)
+            Assert.assertTrue(queue.pollBatchForDevice(device1, 5).isEmpty())
+            Assert.assertEquals(listOf(test2), queue.pollBatchForDevice(device2, 5).map { it.testCaseEvent })
+        }
+    }
+
+    @Test
+    fun testRetryIsTakenByOtherDeviceFirst() {
+        val test1 = createTestCaseEvent("test1", emptyList())
+        val test2 = createTestCaseEvent("test2", emptyList())
+        val queue = TestCaseEventQueue(listOf(test1, test2), mutableListOf(), hintedDeviceDelayMillis = 60_000)
+        withTimeout {
+            val task1 = queue.pollForDevice(device1)!!
+            val task2 = queue.pollForDevice(device2)!!
+            task1.doWork {
+                queue.offer(it.withFailureCount(1).withDeviceExclusionHint(device1))
+
+                TestCaseRunResult.aTestResult(test1.testCase, ResultStatus.FAIL, emptyList())
+            }
+            Assert.assertFalse(queue.hasNoPotentialEventsFor(device1))
+            task2.doWork {
+                TestCaseRunResult.aTestResult(test2.testCase, ResultStatus.PASS, emptyList())
+            }
+
+            queue.pollForDevice(device2)!!.doWork {
+                Assert.assertEquals(test1, it)
+                Assert.assertEquals(setOf(device1), it.deviceExclusionHints)
+
+                TestCaseRunResult.aTestResult(test1.testCase, ResultStatus.PASS, emptyList())
+            }
+            Assert.assertNull(queue.pollForDevice(device1))
+        }
+    }
+
+    @Test
+    fun testHintedDeviceTakesRetryWhenOtherDevicesDoNotTakeIt() {
+        val test1 = createTestCaseEvent("test1", emptyList())
+        val test2 = createTestCaseEvent("test2", emptyList())
+        val queue = TestCaseEventQueue(listOf(test1, test2), mutableListOf(), hintedDeviceDelayMillis = 200)
+        withTimeout {
+            val task1 = queue.pollForDevice(device1)!!
+            queue.pollForDevice(device2)!!.doWork {
+                TestCaseRunResult.aTestResult(test2.testCase, ResultStatus.PASS, emptyList())
+            }
+            val offerNanos = System.nanoTime()
+            task1.doWork {
+                queue.offer(it.withFailureCount(1).withDeviceExclusionHint(device1))
+
+                TestCaseRunResult.aTestResult(test1.testCase, ResultStatus.FAIL, emptyList())
+            }
+
+            queue.pollForDevice(device1)!!.doWork {
+                Assert.assertEquals(test1, it)
+                Assert.assertTrue(System.nanoTime() - offerNanos >= TimeUnit.MILLISECONDS.toNanos(200))
+
+                TestCaseRunResult.aTestResult(test1.testCase, ResultStatus.PASS, emptyList())
+            }
+            Assert.assertTrue(queue.hasNoPotentialEventsFor(device1))
+        }
+    }
+
+    @Test
+    fun testRetryIsNotDeferredForRemovedDevices() {
+        val test1 = createTestCaseEvent("test1", emptyList())
+        val test2 = createTestCaseEvent("test2", emptyList())
+        val queue = TestCaseEventQueue(listOf(test1, test2), mutableListOf(), hintedDeviceDelayMillis = 60_000)
+        withTimeout {
+            val task1 = queue.pollForDevice(device1)!!
+            queue.pollForDevice(device2)!!.doWork {
+                TestCaseRunResult.aTestResult(test2.testCase, ResultStatus.PASS, emptyList())
+            }
+            queue.removeDevice(device2)
+
+            task1.doWork {
+                queue.offer(it.withFailureCount(1).withDeviceExclusionHint(device1))
+
+                TestCaseRunResult.aTestResult(test1.testCase, ResultStatus.FAIL, emptyList())
+            }
+            queue.pollForDevice(device1)!!.doWork {
+                Assert.assertEquals(test1, it)
+
+                TestCaseRunResult.aTestResult(test1.testCase, ResultStatus.PASS, emptyList())
+            }
+        }
+    }
+
+    @Test
+    fun testPassedAttemptWinsAndCancelsOtherAttempt() {
+        val test1 = createTestCaseEvent("test1", emptyList())
+        val results = mutableListOf<TestCaseRunResult>()
+        val queue = TestCaseEventQueue(listOf(test1), results)
+        val inWorkLatch = CountDownLatch(1)
+        val cancelledLatch = CountDownLatch(1)
+        val isOriginalReported = AtomicReference<Boolean>()
+        val originalAttempt = thread(start = true) {
+            queue.pollForDevice(device1)!!.doWork({ cancelledLatch.countDown() }) {
+                inWorkLatch.countDown()
+                cancelledLatch.await()
+                reportAttempt(queue, it, ResultStatus.FAIL, isOriginalReported)
+            }
+        }
+
+        withTimeout {
+            inWorkLatch.await()
+            val duplicate = queue.pollDuplicateForDevice(device2) { true }!!
+            Assert.assertEquals(test1, duplicate.testCaseEvent)
+            Assert.assertNull(queue.pollDuplicateForDevice(device2) { true })
+
+            val isDuplicateReported = AtomicReference<Boolean>()
+            duplicate.doWork {
+                reportAttempt(queue, it, ResultStatus.PASS, isDuplicateReported)
+            }
+            originalAttempt.join()
+
+            Assert.assertEquals(true, isDuplicateReported.get())
+            Assert.assertEquals(false, isOriginalReported.get())
+            Assert.assertEquals(listOf(ResultStatus.PASS), results.map { it.status })
+            Assert.assertTrue(queue.hasNoPotentialEventsFor(device1))
+            Assert.assertTrue(queue.hasNoPotentialEventsFor(device2))
+        }
+    }
+
+    @Test
+    fun testLosingAttemptWaitsForItsCancellation() {
+        val test1 = createTestCaseEvent("test1", emptyList())
+        val results = mutableListOf<TestCaseRunResult>()
+        val queue = TestCaseEventQueue(listOf(test1), results)
+        val inWorkLatch = CountDownLatch(1)
+        val cancellingLatch = CountDownLatch(1)
+        val allowCancellingLatch = CountDownLatch(1)
+        val isCancelled = AtomicBoolean(false)
+        val originalAttempt = thread(start = true) {
+            queue.pollForDevice(device1)!!.doWork({
+                cancellingLatch.countDown()
+                allowCancellingLatch.await()
+                isCancelled.set(true)
+            }) {
+                inWorkLatch.countDown()
+                // The attempt finishes on its own while the cancellation is still being sent
+                cancellingLatch.await()
+                reportAttempt(queue, it, ResultStatus.FAIL, AtomicReference())
+            }
+        }
+
+        withTimeout {
+            inWorkLatch.await()
+            val duplicate = queue.pollDuplicateForDevice(device2) { true }!!
+            val duplicateAttempt = thread(start = true) {
+                duplicate.doWork {
+                    reportAttempt(queue, it, ResultStatus.PASS, AtomicReference())
+                }
+            }
+
+            cancellingLatch.await()
+            originalAttempt.join(200)
+            Assert.assertTrue("Original attempt must not finish before it is cancelled", originalAttempt.isAlive)
+
+            allowCancellingLatch.countDown()
+            originalAttempt.join()
+            duplicateAttempt.join()
+            Assert.assertTrue(isCancelled.get())
+            Assert.assertEquals(listOf(ResultStatus.PASS), results.map { it.status })
+        }
+    }
+
+    @Test
+    fun testFailedDuplicateGivesWayToPassingOriginal() {
+        val test1 = createTestCaseEvent("test1", emptyList())
+        val results = mutableListOf<TestCaseRunResult>()
+        val queue = TestCaseEventQueue(listOf(test1), results)
+        val inWorkLatch = CountDownLatch(1)
+        val duplicateFinishedLatch = CountDownLatch(1)
+        val isOriginalCancelled = AtomicReference(false)
+        val isOriginalReported = AtomicReference<Boolean>()
+        val originalAttempt = thread(start = true) {
+            queue.pollForDevice(device1)!!.doWork({ isOriginalCancelled.set(true) }) {
+                inWorkLatch.countDown()
+                duplicateFinishedLatch.await()
+                reportAttempt(queue, it, ResultStatus.PASS, isOriginalReported)
+            }
+        }
+
+        withTimeout {
+            inWorkLatch.await()
+            val isDuplicateReported = AtomicReference<Boolean>()
+            queue.pollDuplicateForDevice(device2) { true }!!.doWork {
+                reportAttempt(queue, it, ResultStatus.FAIL, isDuplicateReported)
+            }
+            duplicateFinishedLatch.countDown()
+            originalAttempt.join()
+
+            Assert.assertEquals(false, isDuplicateReported.get())
+            Assert.assertEquals(true, isOriginalReported.get())
+            Assert.assertFalse(isOriginalCancelled.get())
+            Assert.assertEquals(listOf(ResultStatus.PASS), results.map { it.status })
+            Assert.assertTrue(queue.hasNoPotentialEventsFor(device1))
+            Assert.assertTrue(queue.hasNoPotentialEventsFor(device2))
+        }
+    }
+
+    @Test
+    fun testNoDuplicatesWhileDeviceHasUnclaimedTests() {
+        val test1 = createTestCaseEvent("test1", emptyList())
+        val test2 = createTestCaseEvent("test2", emptyList())
+        val queue = TestCaseEventQueue(listOf(test1, test2), mutableListOf())
+        withTimeout {
+            queue.pollForDevice(device1)!!.doWork {
+                Assert.assertNull(queue.pollDuplicateForDevice(device2) { true })
+                Assert.assertNull(queue.pollDuplicateForDevice(device1) { true })
+
+                TestCaseRunResult.aTestResult(test1.testCase, ResultStatus.PASS, emptyList())
+            }
+        }
+    }
 }
 
 private fun withTimeout(block: () -> Unit) {
@@ -110,7 +397,12 @@ private fun withTimeout(block: () -> Unit) {
         } catch (t: Throwable) {
             exception.set(t)
         }
-    }).join(1000)
+    }).apply {
+        join(1000)
+        if (isAlive) {
+            throw AssertionError("Timed out")
+        }
+    }
 
     exception.get().let {
         if (it != null) {
@@ -119,6 +411,22 @@ private fun withTimeout(block: () -> Unit) {
     }
 }
 
+/**
+ * Resolves the attempt like DeviceTestRunner does, a reported failure is retried
+ */
+private fun reportAttempt(
+        queue: TestCaseEventQueue,
+        event: TestCaseEvent,
+        status: ResultStatus,
+        isReported: AtomicReference<Boolean>
+): TestCaseRunResult {
+    isReported.set(queue.resolveCurrentAttempt(ResultStatus.isFailure(status)))
+    if (isReported.get() && ResultStatus.isFailure(status)) {
+        queue.offer(event.withFailureCount(1))
+    }
+    return TestCaseRunResult.aTestResult(event.testCase, status, emptyList())
+}
+
 private fun createTestCaseEvent(name: String, excludes: List<Device>): TestCaseEvent {
     val test = aTestCase("Class", name, null)
     return TestCaseEvent(test, excludes)
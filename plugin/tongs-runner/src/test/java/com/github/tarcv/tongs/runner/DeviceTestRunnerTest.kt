@@ -0,0 +1,134 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.runner
+
+import com.github.tarcv.tongs.aConfigurationBuilder
+import com.github.tarcv.tongs.api.devices.Device
+import com.github.tarcv.tongs.api.devices.Pool
+import com.github.tarcv.tongs.api.result.TestCaseRunResult
+import com.github.tarcv.tongs.api.run.BatchTestCaseRunner
+import com.github.tarcv.tongs.api.run.DeviceRunRule
+import com.github.tarcv.tongs.api.run.DeviceRunRuleContext
+import com.github.tarcv.tongs.api.run.DeviceRunRuleFactory
+import com.github.tarcv.tongs.api.run.ResultStatus
+import com.github.tarcv.tongs.api.run.RunTesult
+import com.github.tarcv.tongs.api.run.TestCaseRunnerArguments
+import com.github.tarcv.tongs.api.run.aTestCaseEvent
+import com.github.tarcv.tongs.api.testcases.TestCase
+import com.github.tarcv.tongs.api.testcases.aTestCase
+import com.github.tarcv.tongs.injector.RuleManagerFactory
+import com.github.tarcv.tongs.koinRule
+import com.github.tarcv.tongs.model.TestCaseEventQueue
+import com.github.tarcv.tongs.runner.FakePoolTestCaseAccumulator.aFakePoolTestCaseAccumulator
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertSame
+import org.junit.Rule
+import org.junit.Test
+import java.time.Instant
+import java.util.Collections
+import java.util.concurrent.CountDownLatch
+
+class DeviceTestRunnerTest {
+    @get:Rule
+    val koinRule = koinRule {
+        aConfigurationBuilder()
+                .withTestCaseBatchSize(3)
+                .withPlugins(listOf(PoolRecordingRuleFactory::class.java.name))
+                .build(true)
+    }
+
+    private val device = Device.TEST_DEVICE
+    private val pool = Pool.Builder.aDevicePool().addDevice(device).build()
+
+    private val passing = aTestCase("ClassA", "passing")
+    private val failingInBatch = aTestCase("ClassA", "failingInBatch")
+    private val anotherPassing = aTestCase("ClassB", "passing")
+
+    @Test
+    fun testTestCaseFailedInBatchIsRerunAloneAndReportedOnce() {
+        val runner = FakeBatchRunner(failingInBatch)
+        val events = listOf(passing, failingInBatch, anotherPassing).map { testCase ->
+            aTestCaseEvent(testCase).apply { addDeviceRunner(device, runner) }
+        }
+        val results = ArrayList<TestCaseRunResult>()
+        val poolProgressTracker = PoolProgressTrackerImpl(events.size)
+        val progressReporter = OverallProgressReporter(0, 0,
+                PoolProgressTrackers(hashMapOf<Pool, PoolProgressTracker>(pool to poolProgressTracker)),
+                aFakePoolTestCaseAccumulator())
+
+        DeviceTestRunner(pool, device, koinRule.koin.get<RuleManagerFactory>())
+                .run(TestCaseEventQueue(events, results), CountDownLatch(1), progressReporter)
+
+        assertEquals(listOf(listOf(passing, failingInBatch, anotherPassing)), runner.batches)
+        assertEquals(listOf(failingInBatch), runner.singleRuns)
+        assertEquals(
+                mapOf(passing to ResultStatus.PASS, failingInBatch to ResultStatus.PASS, anotherPassing to ResultStatus.PASS),
+                results.associate { it.testCase to it.status }
+        )
+        assertEquals(events.size, results.size)
+        assertEquals(1.0f, poolProgressTracker.progress)
+        assertEquals(0, poolProgressTracker.numberOfFailedTests)
+    }
+
+    @Test
+    fun testDeviceRulesSeePoolOfRunner() {
+        PoolRecordingRuleFactory.contexts.clear()
+        val healthyPool = Pool.Builder.aDevicePool().withName("healthy").addDevice(device).build()
+
+        DeviceTestRunner(pool, device, koinRule.koin.get<RuleManagerFactory>())
+                .withPool(healthyPool)
+
+        assertSame(healthyPool, PoolRecordingRuleFactory.contexts.single().pool)
+    }
+
+    /**
+     * Fails [failingInBatch] only when it is run as a part of a batch
+     */
+    private inner class FakeBatchRunner(private val failingInBatch: TestCase) : BatchTestCaseRunner {
+        val batches: MutableList<List<TestCase>> = Collections.synchronizedList(ArrayList())
+        val singleRuns: MutableList<TestCase> = Collections.synchronizedList(ArrayList())
+
+        override fun supports(device: Device, testCase: TestCase): Boolean = true
+
+        override fun run(arguments: TestCaseRunnerArguments): RunTesult {
+            singleRuns.add(arguments.testCaseEvent.testCase)
+            return resultOf(arguments, ResultStatus.PASS)
+        }
+
+        override fun runBatch(arguments: List<TestCaseRunnerArguments>): List<RunTesult> {
+            batches.add(arguments.map { it.testCaseEvent.testCase })
+            return arguments.map {
+                val status = if (it.testCaseEvent.testCase == failingInBatch) ResultStatus.FAIL else ResultStatus.PASS
+                resultOf(it, status)
+            }
+        }
+
+        private fun resultOf(arguments: TestCaseRunnerArguments, status: ResultStatus): TestCaseRunResult {
+            val now = Instant.now()
+            return TestCaseRunResult(pool, device, arguments.testCaseEvent.testCase, status, emptyList(),
+                    arguments.startTimestampUtc, now, arguments.startTimestampUtc, now,
+                    0, emptyMap(), null, emptyList())
+        }
+    }
+
+    /**
+     * Creates no rules, only remembers contexts it was asked to create rules for
+     */
+    class PoolRecordingRuleFactory : DeviceRunRuleFactory<DeviceRunRule> {
+        override fun deviceRules(context: DeviceRunRuleContext): Array<out DeviceRunRule> {
+            contexts.add(context)
+            return emptyArray()
+        }
+
+        companion object {
+            val contexts: MutableList<DeviceRunRuleContext> = Collections.synchronizedList(ArrayList())
+        }
+    }
+}
@@ -29,7 +29,8 @@ public class FakePoolTestCaseAccumulator implements PoolTestCaseAccumulator {
     }
 
     @Override
-    public void record(Pool pool, TestCaseEvent testCaseEvent) {
+    public int record(Pool pool, TestCaseEvent testCaseEvent) {
+        return count;
     }
 
     @Override
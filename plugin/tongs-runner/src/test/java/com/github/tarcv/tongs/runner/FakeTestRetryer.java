@@ -11,6 +11,7 @@
 
 package com.github.tarcv.tongs.runner;
 
+import com.github.tarcv.tongs.api.result.TestCaseRunResult;
 import com.github.tarcv.tongs.api.run.TestCaseEvent;
 
 public class FakeTestRetryer implements TestRetryer {
@@ -29,7 +30,7 @@ public class FakeTestRetryer implements TestRetryer {
     }
 
     @Override
-    public boolean rescheduleTestExecution(TestCaseEvent testCaseEvent) {
+    public boolean rescheduleTestExecution(TestCaseEvent testCaseEvent, TestCaseRunResult failureResult) {
         return result;
     }
 }
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.runner
+
+import com.github.tarcv.tongs.api.devices.Device
+import com.github.tarcv.tongs.api.devices.Pool
+import com.github.tarcv.tongs.api.result.TestCaseRunResult
+import com.github.tarcv.tongs.api.run.ResultStatus
+import com.github.tarcv.tongs.api.run.TestCaseEvent
+import com.github.tarcv.tongs.api.run.aTestCaseEvent
+import com.github.tarcv.tongs.api.testcases.TestCase
+import com.github.tarcv.tongs.api.testcases.aTestCase
+import com.github.tarcv.tongs.history.TestDurationHistory
+import com.github.tarcv.tongs.history.TestHistoryStore
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.time.Instant
+
+class LongestFirstOrderingTest {
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    private val pool = Pool.Builder.aDevicePool().addDevice(Device.TEST_DEVICE).build()
+
+    private val store by lazy { TestHistoryStore.open(temporaryFolder.root) }
+
+    private val short = aTestCase("ClassA", "short")
+    private val long = aTestCase("ClassA", "long")
+    private val medium = aTestCase("ClassB", "medium")
+    private val newInLongClass = aTestCase("ClassC", "new")
+    private val knownInLongClass = aTestCase("ClassC", "known")
+    private val unknown = aTestCase("ClassD", "unknown")
+
+    @Test
+    fun testLongestTestCasesGoFirst() {
+        val history = historyOf(short to 10, long to 3000, medium to 500)
+
+        val ordered = LongestFirstOrdering(history).order(pool, eventsOf(short, medium, long))
+
+        assertEquals(listOf(long, medium, short), ordered.map { it.testCase })
+    }
+
+    @Test
+    fun testUnknownTestCasesUseClassAverageOrOverallAverage() {
+        val history = historyOf(short to 10, long to 1000, knownInLongClass to 5000)
+
+        val ordered = LongestFirstOrdering(history).order(pool, eventsOf(unknown, short, newInLongClass, long))
+
+        // unknown is treated as an average test case - (10 + 1000 + 5000) / 3
+        assertEquals(listOf(newInLongClass, unknown, long, short), ordered.map { it.testCase })
+    }
+
+    @Test
+    fun testOnlyRecentRunsAreUsed() {
+        repeat(10) { store.append(listOf(resultOf(short, 5000), resultOf(long, 1000))) }
+        repeat(5) { store.append(listOf(resultOf(short, 10), resultOf(long, 1000))) }
+
+        val ordered = LongestFirstOrdering(TestDurationHistory(store)).order(pool, eventsOf(short, long))
+
+        assertEquals(listOf(long, short), ordered.map { it.testCase })
+    }
+
+    @After
+    fun tearDown() {
+        store.close()
+    }
+
+    private fun historyOf(vararg durations: Pair<TestCase, Long>): TestDurationHistory {
+        store.append(durations.map { (testCase, millis) -> resultOf(testCase, millis) })
+        return TestDurationHistory(store)
+    }
+
+    private fun resultOf(testCase: TestCase, millis: Long): TestCaseRunResult {
+        val start = Instant.now()
+        return TestCaseRunResult(pool, Device.TEST_DEVICE, testCase, ResultStatus.PASS, emptyList(),
+                start, start.plusMillis(millis), start, start.plusMillis(millis),
+                0, emptyMap(), null, emptyList())
+    }
+
+    private fun eventsOf(vararg testCases: TestCase): List<TestCaseEvent> = testCases.map { aTestCaseEvent(it) }
+}
@@ -14,18 +14,30 @@ package com.github.tarcv.tongs.runner;
 import com.github.tarcv.tongs.api.devices.Device;
 import com.github.tarcv.tongs.api.devices.Pool;
 import com.github.tarcv.tongs.api.run.TestCaseEvent;
+import com.github.tarcv.tongs.model.PoolTestCaseFailureAccumulator;
 import org.jmock.Expectations;
 import org.jmock.auto.Mock;
 import org.jmock.integration.junit4.JUnitRuleMockery;
 import org.junit.Rule;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static com.github.tarcv.tongs.api.devices.Pool.Builder.aDevicePool;
 import static com.github.tarcv.tongs.api.run.TestCaseEventExtKt.aTestCaseEvent;
 import static com.github.tarcv.tongs.api.testcases.TestCaseExtKt.aTestCase;
 import static com.github.tarcv.tongs.model.AndroidDevice.Builder.aDevice;
 import static com.github.tarcv.tongs.runner.FakePoolTestCaseAccumulator.aFakePoolTestCaseAccumulator;
 import static com.github.tarcv.tongs.runner.FakeProgressReporterTrackers.aFakeProgressReporterTrackers;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
 
 public class OverallProgressReporterTest {
 
@@ -69,4 +81,53 @@ public class OverallProgressReporterTest {
         overallProgressReporter.requestRetry(A_POOL, A_TEST_CASE);
     }
 
+    @Test
+    public void retriesDoNotExceedTotalQuotaWhenManyTestsFailInParallel() throws Exception {
+        int totalAllowedRetryQuota = 10;
+        overallProgressReporter = new OverallProgressReporter(totalAllowedRetryQuota, 100,
+                new PoolProgressTrackers(new HashMap<>()),
+                new PoolTestCaseFailureAccumulator());
+
+        int threadCount = 8;
+        AtomicInteger allowedRetries = new AtomicInteger();
+        CountDownLatch startLatch = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threadCount; i++) {
+                futures.add(executor.submit(() -> {
+                    startLatch.await();
+                    for (int j = 0; j < 100; j++) {
+                        TestCaseEvent testCase = aTestCaseEvent(aTestCase("ATestClass", "aTestMethod" + j));
+                        int failures = overallProgressReporter.recordFailedTestCase(A_POOL, testCase);
+                        if (overallProgressReporter.requestRetry(A_POOL, testCase, failures)) {
+                            allowedRetries.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            startLatch.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(allowedRetries.get(), equalTo(totalAllowedRetryQuota));
+    }
+
+    @Test
+    public void retryIsAllowedForOnlyOneOfParallelFailuresOfSameTestCase() throws Exception {
+        overallProgressReporter = new OverallProgressReporter(100, 1,
+                new PoolProgressTrackers(new HashMap<>()),
+                new PoolTestCaseFailureAccumulator());
+
+        int failures1 = overallProgressReporter.recordFailedTestCase(A_POOL, A_TEST_CASE);
+        int failures2 = overallProgressReporter.recordFailedTestCase(A_POOL, A_TEST_CASE);
+
+        assertThat(overallProgressReporter.requestRetry(A_POOL, A_TEST_CASE, failures1), equalTo(true));
+        assertThat(overallProgressReporter.requestRetry(A_POOL, A_TEST_CASE, failures2), equalTo(false));
+    }
 }
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.runner
+
+import com.github.tarcv.tongs.api.devices.createStubDevice
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.Collections
+import java.util.concurrent.atomic.AtomicInteger
+
+class ParallelDeviceSetupTest {
+    private val devices = (1..6).map { createStubDevice("device$it") }
+
+    @Test
+    fun testFailedDevicesAreReturned() {
+        val deviceRunners = devices.map { it to it.serial }
+
+        val failed = ParallelDeviceSetup(3).setUp(deviceRunners, { serial ->
+            if (serial == "device2" || serial == "device5") {
+                throw IllegalStateException("Failed to install APK")
+            }
+        }, {})
+
+        assertEquals(setOf("device2", "device5"), failed)
+    }
+
+    @Test
+    fun testFailedDevicesAreCleanedUp() {
+        val deviceRunners = devices.map { it to it.serial }
+        val cleanedUp = Collections.synchronizedSet(HashSet<String>())
+
+        ParallelDeviceSetup(3).setUp(deviceRunners, { serial ->
+            if (serial == "device2" || serial == "device5") {
+                throw IllegalStateException("Failed to install APK")
+            }
+        }, { serial ->
+            cleanedUp.add(serial)
+            if (serial == "device2") {
+                throw IllegalStateException("Failed to stop logcat")
+            }
+        })
+
+        assertEquals(setOf("device2", "device5"), cleanedUp)
+    }
+
+    @Test
+    fun testConcurrencyIsLimited() {
+        val deviceRunners = devices.map { it to it.serial }
+        val running = AtomicInteger()
+        val maxRunning = AtomicInteger()
+
+        val failed = ParallelDeviceSetup(2).setUp(deviceRunners, {
+            val nowRunning = running.incrementAndGet()
+            maxRunning.accumulateAndGet(nowRunning) { a, b -> maxOf(a, b) }
+            Thread.sleep(50)
+            running.decrementAndGet()
+        }, {})
+
+        assertTrue(failed.isEmpty())
+        assertTrue(maxRunning.get() <= 2)
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2021 TarCV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.github.tarcv.tongs.runner
+
+import com.github.tarcv.tongs.api.result.TestCaseRunResult
+import com.github.tarcv.tongs.api.run.ResultStatus
+import com.github.tarcv.tongs.api.run.aTestResult
+import com.github.tarcv.tongs.api.testcases.TestCase
+import com.github.tarcv.tongs.api.testcases.aTestCase
+import com.github.tarcv.tongs.history.TestFlakinessHistory
+import com.github.tarcv.tongs.history.TestHistoryStore
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+class RetryPolicyTest {
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    private val store by lazy { TestHistoryStore.open(temporaryFolder.root) }
+    private val policy by lazy { RetryPolicy(QUOTA, TestFlakinessHistory(store)) }
+
+    private val testCase = aTestCase("ClassA", "test")
+
+    @Test
+    fun testDeterministicFailuresAreNotRetried() {
+        repeat(3) { store.append(failedRun(testCase)) }
+
+        assertEquals(0, policy.budgetFor(testCase).maxRetries)
+    }
+
+    @Test
+    fun testStarvedDeterministicFailuresGetProbeRetry() {
+        repeat(3) { store.append(failedRun(testCase)) }
+        repeat(2) { store.append(unretriedRun(testCase)) }
+        assertEquals(0, RetryPolicy(QUOTA, TestFlakinessHistory(store)).budgetFor(testCase).maxRetries)
+
+        store.append(unretriedRun(testCase))
+        assertEquals(1, RetryPolicy(QUOTA, TestFlakinessHistory(store)).budgetFor(testCase).maxRetries)
+    }
+
+    @Test
+    fun testRunsWithoutRetriesAreNotDeterministicFailures() {
+        repeat(5) { store.append(unretriedRun(testCase)) }
+
+        assertEquals(QUOTA, policy.budgetFor(testCase).maxRetries)
+    }
+
+    @Test
+    fun testFlakyTestCasesGetWholeQuota() {
+        repeat(2) { store.append(failedRun(testCase)) }
+        repeat(2) { store.append(recoveredRun(testCase)) }
+
+        assertEquals(QUOTA, policy.budgetFor(testCase).maxRetries)
+    }
+
+    @Test
+    fun testRarelyFlakyTestCasesGetSingleRetry() {
+        repeat(4) { store.append(failedRun(testCase)) }
+        store.append(recoveredRun(testCase))
+
+        assertEquals(1, policy.budgetFor(testCase).maxRetries)
+    }
+
+    @Test
+    fun testTestCasesWithoutEnoughHistoryGetWholeQuota() {
+        repeat(2) { store.append(failedRun(testCase)) }
+        repeat(5) { store.append(listOf(attempt(testCase, ResultStatus.PASS, 0))) }
+
+        assertEquals(QUOTA, policy.budgetFor(testCase).maxRetries)
+        assertEquals(QUOTA, policy.budgetFor(aTestCase("ClassA", "unknown")).maxRetries)
+    }
+
+    @Test
+    fun testOnlyRecentRunsAreUsed() {
+        repeat(10) { store.append(failedRun(testCase)) }
+        repeat(10) { store.append(recoveredRun(testCase)) }
+
+        assertEquals(QUOTA, policy.budgetFor(testCase).maxRetries)
+    }
+
+    @After
+    fun tearDown() {
+        store.close()
+    }
+
+    private fun failedRun(testCase: TestCase): List<TestCaseRunResult> {
+        return listOf(attempt(testCase, ResultStatus.FAIL, 0), attempt(testCase, ResultStatus.FAIL, 1))
+    }
+
+    private fun unretriedRun(testCase: TestCase): List<TestCaseRunResult> {
+        return listOf(attempt(testCase, ResultStatus.FAIL, 0))
+    }
+
+    private fun recoveredRun(testCase: TestCase): List<TestCaseRunResult> {
+        return listOf(attempt(testCase, ResultStatus.FAIL, 0), attempt(testCase, ResultStatus.PASS, 1))
+    }
+
+    private fun attempt(testCase: TestCase, status: ResultStatus, failureCount: Int): TestCaseRunResult {
+        return TestCaseRunResult.aTestResult(testCase, status, emptyList(), failureCount = failureCount)
+    }
+
+    companion object {
+        private const val QUOTA = 3
+    }
+}
@@ -13,6 +13,7 @@ package com.github.tarcv.tongs.runner.listeners;
 
 import com.github.tarcv.tongs.api.devices.Device;
 import com.github.tarcv.tongs.api.devices.Pool;
+import com.github.tarcv.tongs.api.result.TestCaseRunResult;
 import com.github.tarcv.tongs.api.run.TestCaseEvent;
 import com.github.tarcv.tongs.api.testcases.TestCase;
 import com.github.tarcv.tongs.device.DeviceTestFilesCleaner;
@@ -53,7 +54,8 @@ public class RetryListenerTest {
                 new RetryListener(pool, device, fatalCrashedTestCaseEvent, testRetryer, deviceTestFilesCleaner);
 
         mockery.checking(new Expectations() {{
-            oneOf(testRetryer).rescheduleTestExecution(fatalCrashedTestCaseEvent);
+            oneOf(testRetryer).rescheduleTestExecution(
+                    with(equal(fatalCrashedTestCaseEvent)), with(any(TestCaseRunResult.class)));
             will(returnValue(true));
 
             oneOf(deviceTestFilesCleaner).deleteTraceFiles(aTestCaseEvent(fatalCrashedTest));
@@ -73,7 +75,8 @@ public class RetryListenerTest {
                 new RetryListener(pool, device, fatalCrashedTestCaseEvent, testRetryer, deviceTestFilesCleaner);
 
         mockery.checking(new Expectations() {{
-            oneOf(testRetryer).rescheduleTestExecution(fatalCrashedTestCaseEvent);
+            oneOf(testRetryer).rescheduleTestExecution(
+                    with(equal(fatalCrashedTestCaseEvent)), with(any(TestCaseRunResult.class)));
             will(returnValue(false));
 
             never(deviceTestFilesCleaner).deleteTraceFiles(aTestCaseEvent(fatalCrashedTest));